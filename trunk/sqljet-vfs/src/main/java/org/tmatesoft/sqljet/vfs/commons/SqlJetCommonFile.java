@@ -13,6 +13,7 @@
  */
 package org.tmatesoft.sqljet.vfs.commons;
 
+import java.nio.ByteBuffer;
 import java.util.Set;
 
 import org.tmatesoft.sqljet.core.SqlJetException;
@@ -49,6 +50,9 @@ public class SqlJetCommonFile implements ISqlJetFile {
     public void write(ISqlJetMemoryPointer buffer, int amount, long offset) throws SqlJetIOException {
     }
 
+    public void write(ISqlJetMemoryPointer[] buffers, int[] amounts, long offset) throws SqlJetIOException {
+    }
+
     public void truncate(long size) throws SqlJetIOException {
     }
 
@@ -87,4 +91,18 @@ public class SqlJetCommonFile implements ISqlJetFile {
         return false;
     }
 
+    public ByteBuffer map(long size) {
+        return null;
+    }
+
+    public void setChunkSize(int chunkSize) {
+    }
+
+    public boolean lockProcess() throws SqlJetIOException {
+        return false;
+    }
+
+    public void unlockProcess() throws SqlJetIOException {
+    }
+
 }
@@ -42,6 +42,10 @@ public class SqlJetCommonFileSystem implements ISqlJetFileSystem {
         return null;
     }
 
+    public ISqlJetFile memJournalOpen(SqlJetFileType type, int spillSize) {
+        return null;
+    }
+
     public boolean delete(File path, boolean sync) throws SqlJetException {
         return false;
     }
@@ -634,6 +634,24 @@ public interface ISqlJetBtree {
      */
     ISqlJetBtreeCursor getCursor(int table, boolean wrFlag, ISqlJetKeyInfo keyInfo) throws SqlJetException;
 
+    /**
+     * Create a loader which builds the BTree whose root is on the page iTable
+     * from entries given in ascending key order. There must be an active write
+     * transaction.
+     *
+     * Bulk loading is possible only for empty BTree of database without
+     * auto-vacuum, otherwise null is returned and entries should be inserted
+     * with cursor.
+     *
+     * @param table
+     *            Index of root page
+     * @param keyInfo
+     *            First argument to compare function, null for tables
+     * @return loader or null if BTree can't be loaded bottom-up.
+     * @throws SqlJetException
+     */
+    ISqlJetBtreeBulkLoader getBulkLoader(int table, ISqlJetKeyInfo keyInfo) throws SqlJetException;
+
     /**
      * Enter a mutex on the given BTree object.
      *
@@ -0,0 +1,63 @@
+/**
+ * ISqlJetBtreeBulkLoader.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * Builds an empty BTree bottom-up from entries which come in ascending key
+ * order. Leaf pages are filled up one after another and interior levels are
+ * appended as leaves are completed, so no balancing is done per entry. The
+ * tree is stored into its root page by {@link #finish()}; until then the
+ * BTree looks empty to cursors.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public interface ISqlJetBtreeBulkLoader {
+
+    /**
+     * Append an entry to the end of the BTree. Keys are given in the same way
+     * as for {@link ISqlJetBtreeCursor#insert(ISqlJetMemoryPointer, long,
+     * ISqlJetMemoryPointer, int, int, boolean)}.
+     *
+     * If the key is not greater than the key of previously appended entry
+     * then entry isn't appended, the loader is finished and entry should be
+     * inserted with cursor.
+     *
+     * @param pKey The key of the new record
+     * @param nKey The key of the new record
+     * @param pData The data of the new record
+     * @param nData The data of the new record
+     * @param nZero Number of extra 0 bytes to append to data
+     * @return true if entry was appended and false if loader is finished.
+     * @throws SqlJetException
+     */
+    boolean append(ISqlJetMemoryPointer pKey, long nKey, ISqlJetMemoryPointer pData, int nData, int nZero)
+            throws SqlJetException;
+
+    /**
+     * Complete interior levels of the BTree and store it into the root page.
+     * Does nothing if loader is already finished.
+     *
+     * @throws SqlJetException
+     */
+    void finish() throws SqlJetException;
+
+}
@@ -246,6 +246,80 @@ public interface ISqlJetBtreeCursor {
      */
     ISqlJetMemoryPointer dataFetch( int[] pAmt ) throws SqlJetException;
 
+    /**
+     * Returns whole key (for index) or data (for table) of entry which cursor
+     * points to as read-only view on B-Tree page, without copying. View is
+     * valid only while {@link #isViewValid(ISqlJetMemoryPointer)} returns true,
+     * i.e. until cursor moves or any B-Tree is changed. Its remaining() is size
+     * of payload.
+     *
+     * @param key
+     *            true for key of index entry, false for data of table entry.
+     * @return view of payload or null if cursor doesn't point to entry or
+     *         payload spills to overflow pages.
+     * @throws SqlJetException
+     */
+    ISqlJetMemoryPointer payloadView(boolean key) throws SqlJetException;
+
+    /**
+     * Checks that view returned by {@link #payloadView(boolean)} still shows
+     * payload of the same entry. It is last view taken by cursor, cursor
+     * stays at the same entry and nothing is changed in B-Trees since then.
+     *
+     * @param view
+     *            view of payload.
+     * @return true if view could be used.
+     */
+    boolean isViewValid(ISqlJetMemoryPointer view);
+
+    /**
+     * Counts entries of B-Tree. Only headers of pages are read, records
+     * aren't touched. Position of cursor isn't changed.
+     *
+     * @return count of entries in B-Tree.
+     * @throws SqlJetException
+     */
+    long count() throws SqlJetException;
+
+    /**
+     * Counts entries from the entry at which this cursor points (inclusive)
+     * up to the entry at which other cursor points (exclusive). If other
+     * cursor doesn't point to entry then entries up to the end of B-Tree are
+     * counted. Only leaves at the ends of range are counted by cells, whole
+     * subtrees between them are counted by headers of their pages. Positions
+     * of cursors aren't changed.
+     *
+     * @param pEnd
+     *            cursor on the same B-Tree which points to end of range.
+     * @return count of entries in range, 0 if this cursor doesn't point to
+     *         entry or range is empty.
+     * @throws SqlJetException
+     */
+    long countTo(ISqlJetBtreeCursor pEnd) throws SqlJetException;
+
+    /**
+     * Returns number of entry at which cursor points, i.e. count of entries
+     * before it. Entries of subtrees at left of cursor's path are counted by
+     * headers of pages.
+     *
+     * @return number of entry starting from 0, or count of entries if cursor
+     *         doesn't point to entry.
+     * @throws SqlJetException
+     */
+    long getPosition() throws SqlJetException;
+
+    /**
+     * Moves cursor to entry with given number. Cursor descends from root to
+     * entry choosing children by counts of entries in their subtrees.
+     *
+     * @param position
+     *            number of entry starting from 0.
+     * @return true if cursor points to entry, false if there is no entry with
+     *         such number and cursor is at EOF.
+     * @throws SqlJetException
+     */
+    boolean moveToPosition(long position) throws SqlJetException;
+
     /**
      * Return the number of bytes of data in the entry the
      * cursor currently points to.  If the cursor is not currently
@@ -89,4 +89,10 @@ public interface ISqlJetDbHandle {
      * @param busyHandler
      */
     void setBusyHandler(ISqlJetBusyHandler busyHandler);
+
+    /**
+     * @return encoder of records which is shared by all tables of this
+     *         connection, its buffer is reused by all inserts and updates.
+     */
+    ISqlJetRecordWriter getRecordWriter();
 }
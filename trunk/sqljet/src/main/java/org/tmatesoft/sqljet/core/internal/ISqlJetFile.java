@@ -17,6 +17,7 @@
  */
 package org.tmatesoft.sqljet.core.internal;
 
+import java.nio.ByteBuffer;
 import java.util.Set;
 
 import org.tmatesoft.sqljet.core.SqlJetException;
@@ -119,6 +120,19 @@ public interface ISqlJetFile {
      */
     void write(final ISqlJetMemoryPointer buffer, final int amount, final long offset) throws SqlJetIOException;
 
+    /**
+     * Write data from several buffers into a file, one after other, by single
+     * gathering write if file allows it.
+     * 
+     * @param buffers
+     * @param amounts
+     *            count of bytes to write from each buffer.
+     * @param offset
+     *            offset in file of first buffer.
+     * @throws SqlJetIOException
+     */
+    void write(final ISqlJetMemoryPointer[] buffers, final int[] amounts, final long offset) throws SqlJetIOException;
+
     /**
      * Truncate an open file to a specified size
      * 
@@ -241,5 +255,51 @@ public interface ISqlJetFile {
     * an in-memory journal 
     */
     boolean isMemJournal();
-    
+
+    /**
+     * Maps beginning of file into memory for reading.
+     * 
+     * @param size
+     *            count of bytes to map from start of file.
+     * @return read-only buffer with mapped region or null if file couldn't be
+     *         mapped.
+     * @throws SqlJetIOException
+     */
+    ByteBuffer map(long size) throws SqlJetIOException;
+
+    /**
+     * Sets size of chunks in which file grows when data is written past its
+     * end. File space is allocated in whole chunks, and file is truncated back
+     * to size of written data when it is synced, unlocked or closed. Size
+     * reported by {@link #fileSize()} is always size of written data. Zero
+     * disables allocation in chunks.
+     * 
+     * @param chunkSize
+     *            count of bytes in chunk.
+     */
+    void setChunkSize(int chunkSize);
+
+    /**
+     * Excludes other processes from file for as long as this process keeps
+     * the lock. Handles of file in this process keep their usual locks. It is
+     * used by write-ahead log, whose index is kept in memory of this process.
+     * Calls are counted and the lock is dropped by the same count of calls of
+     * {@link #unlockProcess()}, which could be done on any handle of file.
+     * 
+     * Handle should hold SHARED lock. When lock is taken first time it should
+     * be the only lock of file in this process.
+     * 
+     * @return true if lock is held, false if other process or other handle of
+     *         this process holds lock of file.
+     * @throws SqlJetIOException
+     */
+    boolean lockProcess() throws SqlJetIOException;
+
+    /**
+     * Drops lock which is taken by {@link #lockProcess()}.
+     * 
+     * @throws SqlJetIOException
+     */
+    void unlockProcess() throws SqlJetIOException;
+
 }
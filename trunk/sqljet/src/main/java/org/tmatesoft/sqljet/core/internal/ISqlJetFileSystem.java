@@ -127,6 +127,17 @@ public interface ISqlJetFileSystem {
     */
     ISqlJetFile memJournalOpen();
 
+    /**
+     * Open a memory journal file which is moved into temporary file when its
+     * size exceeds given limit.
+     * 
+     * @param type
+     *            type of temporary file.
+     * @param spillSize
+     *            maximum size of journal in memory, negative means unlimited.
+     */
+    ISqlJetFile memJournalOpen(SqlJetFileType type, int spillSize);
+
     /**
      * Delete the file. If the sync argument is true, sync()
      * the directory after deleting the file.
@@ -19,6 +19,7 @@ package org.tmatesoft.sqljet.core.internal;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
@@ -205,6 +206,16 @@ public interface ISqlJetMemoryBuffer {
      */
     int writeToFile(int pointer, RandomAccessFile file, FileChannel channel, long position, int count) throws IOException;
 
+    /**
+     * Returns view of memory chunk at pointer, f.e. for gathering write into
+     * file. Content of view must not be modified.
+     * 
+     * @param pointer
+     * @param count
+     * @return buffer which has position and limit at bounds of chunk.
+     */
+    ByteBuffer getByteBuffer(int pointer, int count);
+
     /**
      * @param dstPos
      * @param src
@@ -88,4 +88,13 @@ public interface ISqlJetMemoryManager {
      */
     void free(ISqlJetMemoryBuffer buffer);
 
+    /**
+     * Count of buffers of type {@link SqlJetMemoryBufferType#SLAB} which were
+     * allocated in new memory. Buffers which reuse memory of freed buffers
+     * aren't counted.
+     * 
+     * @return
+     */
+    long getSlabAllocationCount();
+
 }
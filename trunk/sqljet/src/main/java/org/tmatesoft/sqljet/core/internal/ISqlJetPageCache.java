@@ -203,4 +203,19 @@ public interface ISqlJetPageCache {
      */
     void setCacheSize(final int cacheSize);
 
+    /**
+     * Count of fetches of pages which were found in the cache.
+     * 
+     * @return
+     */
+    long getHitCount();
+
+    /**
+     * Count of fetches of pages which weren't found in the cache and were
+     * created.
+     * 
+     * @return
+     */
+    long getMissCount();
+
 }
@@ -510,6 +510,15 @@ public interface ISqlJetPager {
      */
     void sync() throws SqlJetIOException;
 
+    /**
+     * Copy pages from write-ahead log back into the database file. Pages
+     * which could be visible to active readers are left in the log. No-op if
+     * journal mode isn't WAL.
+     * 
+     * @throws SqlJetException
+     */
+    void checkpoint() throws SqlJetException;
+
     /**
      * Ensure that there are at least nSavepoint savepoints open.
      * 
@@ -561,4 +570,67 @@ public interface ISqlJetPager {
      */
     int getCacheSize();
 
+    /**
+     * @return count of page fetches which were found in the cache.
+     */
+    long getCacheHitCount();
+
+    /**
+     * @return count of page fetches which weren't found in the cache.
+     */
+    long getCacheMissCount();
+
+    /**
+     * Change the maximum count of bytes of database file which are mapped into
+     * memory for reading. Zero disables memory-mapped reads.
+     *
+     * @param mmapSize
+     */
+    void setMmapSize(final long mmapSize);
+
+    /**
+     * @return maximum count of bytes of database file mapped into memory.
+     */
+    long getMmapSize();
+
+    /**
+     * Change the maximum count of pages which are read ahead by one read when
+     * pages are read sequentially. Zero disables read-ahead.
+     *
+     * @param readAhead
+     */
+    void setReadAhead(final int readAhead);
+
+    /**
+     * @return maximum count of pages which are read ahead.
+     */
+    int getReadAhead();
+
+    /**
+     * Change the count of bytes by which database file grows when pages are
+     * appended to it. Zero means file grows by pages.
+     *
+     * @param chunkSize
+     */
+    void setChunkSize(final int chunkSize);
+
+    /**
+     * @return count of bytes by which database file grows.
+     */
+    int getChunkSize();
+
+    /**
+     * Change the size after which journals kept in memory (sub-journals and
+     * journals of MEMORY and WAL modes) are moved into temporary files.
+     * Negative value keeps them in memory, zero keeps them in files.
+     *
+     * @param journalSpillSize
+     */
+    void setJournalSpillSize(final int journalSpillSize);
+
+    /**
+     * @return size after which journals are moved from memory into files.
+     */
+    int getJournalSpillSize();
+
 }
@@ -0,0 +1,72 @@
+/**
+ * ISqlJetRecordWriter.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal;
+
+import org.tmatesoft.sqljet.core.SqlJetEncoding;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * Encoder of values into records, like OP_MakeRecord does. Values are
+ * serialized directly into buffer which is reused by following writes, so no
+ * intermediate objects are created for each value.
+ *
+ * Record returned by {@link #write(SqlJetEncoding, Object[])} or
+ * {@link #writeKey(SqlJetEncoding, Object[], long)} is valid only until next
+ * write, callers should copy it or pass it to B-Tree (which copies it) before
+ * writing other record.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public interface ISqlJetRecordWriter {
+
+    /**
+     * Encodes values into record of table.
+     *
+     * @param encoding
+     *            encoding of strings.
+     * @param values
+     *            values of fields.
+     * @return record, its remaining() is size of record without zero-filled
+     *         tail.
+     * @throws SqlJetException
+     */
+    ISqlJetMemoryPointer write(SqlJetEncoding encoding, Object[] values) throws SqlJetException;
+
+    /**
+     * Encodes key of index, ROWID is appended as last field.
+     *
+     * @param encoding
+     *            encoding of strings.
+     * @param key
+     *            values of indexed fields.
+     * @param rowId
+     *            ROWID of indexed row.
+     * @return record, its remaining() is size of record.
+     * @throws SqlJetException
+     */
+    ISqlJetMemoryPointer writeKey(SqlJetEncoding encoding, Object[] key, long rowId) throws SqlJetException;
+
+    /**
+     * @return count of zero bytes at the end of last written record which
+     *         aren't stored in buffer.
+     */
+    int getZeroTail();
+
+}
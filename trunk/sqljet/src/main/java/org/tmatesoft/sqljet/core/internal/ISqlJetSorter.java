@@ -0,0 +1,75 @@
+/**
+ * ISqlJetSorter.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * Sorter of index records. Records are collected in memory in limited amount,
+ * when the limit is reached they are sorted and written into temporary file
+ * as sorted run. Runs are merged when records are read back.
+ *
+ * Usage: {@link #write(ISqlJetMemoryPointer)} all records, then
+ * {@link #sort()} and read them in order by {@link #next()}, at last
+ * {@link #close()}.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public interface ISqlJetSorter {
+
+    /**
+     * Adds record to the sorter. Record is copied, so its memory could be
+     * reused by caller.
+     *
+     * @param pRecord
+     *            record in index format.
+     * @throws SqlJetException
+     */
+    void write(ISqlJetMemoryPointer pRecord) throws SqlJetException;
+
+    /**
+     * Completes writing of records and prepares to read them in order.
+     *
+     * @throws SqlJetException
+     */
+    void sort() throws SqlJetException;
+
+    /**
+     * Reads next record in sort order.
+     *
+     * @return next record or null when all records are read. Record stays
+     *         valid after next calls.
+     * @throws SqlJetException
+     */
+    ISqlJetMemoryPointer next() throws SqlJetException;
+
+    /**
+     * @return count of sorted runs written into temporary file.
+     */
+    int getRunsCount();
+
+    /**
+     * Releases memory and deletes temporary file.
+     *
+     * @throws SqlJetException
+     */
+    void close() throws SqlJetException;
+
+}
@@ -4,5 +4,8 @@ package org.tmatesoft.sqljet.core.internal;
  * Types of buffers implementation.
  */
 public enum SqlJetMemoryBufferType {
-    ARRAY, BUFFER, DIRECT
+    ARRAY, BUFFER, DIRECT,
+
+    /** Direct buffers from slabs which are recycled when freed */
+    SLAB
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+/**
+ * SqlJetPageCacheReplacement.java
+ * Copyright (C) 2008 TMate Software Ltd
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal;
+
+/**
+ * Policies of replacement of unpinned pages in page cache.
+ * 
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ * 
+ */
+public enum SqlJetPageCacheReplacement {
+
+    /** Least recently used page is replaced first */
+    LRU,
+
+    /**
+     * 2Q: pages referenced once stay in short FIFO queue and only pages
+     * referenced again after leaving it get to main LRU queue, so single scan
+     * doesn't evict frequently used pages
+     */
+    TWO_Q
+
+}
@@ -40,6 +40,10 @@ public enum SqlJetSafetyLevel {
      * very unlikely, that an inopertune power failure could leave the journal
      * in a state which would cause damage to the database when it is rolled
      * back.
+     * 
+     * In {@link SqlJetPagerJournalMode#WAL} journal mode the log is synced at
+     * each commit, so committed transactions survive crash as they do with
+     * rollback journal.
      */
     NORMAL,
 
@@ -51,6 +55,21 @@ public enum SqlJetSafetyLevel {
      * journal will not be corrupted to the point of causing damage to the
      * database during rollback.
      */
-    FULL
+    FULL,
+
+    /**
+     * It is {@link #NORMAL} with bounded window of loss: commit returns as
+     * soon as pages are written to the log and the sync, which {@link #NORMAL}
+     * does at commit, is done later by background thread, at most
+     * {@link org.tmatesoft.sqljet.core.internal.pager.SqlJetWal#SQLJET_WAL_SYNC_INTERVAL}
+     * milliseconds after commit. Crash could lose transactions committed
+     * during this interval but database stays consistent, because log frames
+     * which weren't synced are discarded by checksums at recovery.
+     * 
+     * Works only in {@link SqlJetPagerJournalMode#WAL} journal mode, in other
+     * modes the journal has to be synced before database file is written, so
+     * there it is the same as {@link #NORMAL}.
+     */
+    ASYNC
 
 }
@@ -149,6 +149,16 @@ public final class SqlJetUtility {
         }
     }
 
+    public static long getLongSysProp(final String propName, final long defValue) throws SqlJetError {
+        if (null == propName)
+            throw new SqlJetError("Undefined property name");
+        try {
+            return Long.valueOf(System.getProperty(propName, Long.toString(defValue)));
+        } catch (Throwable t) {
+            throw new SqlJetError("Error while get long value for property " + propName, t);
+        }
+    }
+
     /**
      * @param string
      * @param b
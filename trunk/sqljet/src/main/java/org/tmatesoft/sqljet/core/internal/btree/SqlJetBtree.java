@@ -30,6 +30,7 @@ import org.tmatesoft.sqljet.core.SqlJetLogDefinitions;
 import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBackend;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBtree;
+import org.tmatesoft.sqljet.core.internal.ISqlJetBtreeBulkLoader;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor;
 import org.tmatesoft.sqljet.core.internal.ISqlJetDbHandle;
 import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
@@ -731,6 +732,9 @@ public class SqlJetBtree implements ISqlJetBtree {
         if (pBt.pPage1 != null)
             return;
 
+        /* database could be changed by other connections since last lock. */
+        pBt.nChange++;
+
         pPage1 = pBt.getPage(1, false);
 
         try {
@@ -1143,6 +1147,8 @@ public class SqlJetBtree implements ISqlJetBtree {
                     try {
                         pBt.pPager.rollback();
                     } finally {
+                        /* pages are restored, cached views and counts are stale. */
+                        pBt.nChange++;
                         /*
                          * The rollback may have destroyed the pPage1->aData
                          * value. So call sqlite3BtreeGetPage() on page 1 again
@@ -1240,6 +1246,22 @@ public class SqlJetBtree implements ISqlJetBtree {
 
     }
 
+    /**
+     * Saves positions of cursors before pages are restored by rollback of
+     * statement or savepoint, so cursors seek their keys again instead of
+     * pointing into restored pages.
+     *
+     * @throws SqlJetException
+     */
+    private void saveCursorsBeforeRollback() throws SqlJetException {
+        try {
+            pBt.saveAllCursors(0, null);
+        } catch (SqlJetException e) {
+            /* as in rollback(), cursors which can't be saved are aborted. */
+            tripAllCursors(e.getErrorCode());
+        }
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -1252,11 +1274,14 @@ public class SqlJetBtree implements ISqlJetBtree {
             assert (!pBt.readOnly);
             if (pBt.inStmt)
                 try {
+                    saveCursorsBeforeRollback();
                     int iStmtpoint = this.db.getSavepointNum();
                     pBt.pPager.savepoint(SqlJetSavepointOperation.ROLLBACK, iStmtpoint);
                     pBt.pPager.savepoint(SqlJetSavepointOperation.RELEASE, iStmtpoint);
                 } finally {
                     pBt.inStmt = false;
+                    /* pages are restored, cached views and counts are stale. */
+                    pBt.nChange++;
                 }
         } finally {
             leave();
@@ -1651,7 +1676,17 @@ public class SqlJetBtree implements ISqlJetBtree {
             enter();
             try {
                 pBt.db = this.db;
-                pBt.pPager.savepoint(op, savepoint);
+                if (op == SqlJetSavepointOperation.ROLLBACK) {
+                    saveCursorsBeforeRollback();
+                }
+                try {
+                    pBt.pPager.savepoint(op, savepoint);
+                } finally {
+                    if (op == SqlJetSavepointOperation.ROLLBACK) {
+                        /* pages are restored, cached views and counts are stale. */
+                        pBt.nChange++;
+                    }
+                }
                 newDatabase();
             } finally {
                 leave();
@@ -2094,6 +2129,20 @@ public class SqlJetBtree implements ISqlJetBtree {
         }
     }
 
+    /**
+     * Invalidate incremental blob cursors open on the row iRow of the table
+     * pgnoRoot, or on any row of that table if isClearTable is true. Following
+     * operations of invalidated cursors fail with SQLITE_ABORT.
+     */
+    void invalidateIncrblobCursors(int pgnoRoot, long iRow, boolean isClearTable) {
+        assert (holdsMutex());
+        for (SqlJetBtreeCursor p = pBt.pCursor; p != null; p = p.pNext) {
+            if (p.isIncrblobHandle && p.pgnoRoot == pgnoRoot && (isClearTable || p.info.nKey == iRow)) {
+                p.eState = CursorState.INVALID;
+            }
+        }
+    }
+
     /**
      * This routine checks all cursors that point to table pgnoRoot. If any of
      * those cursors were opened with wrFlag==0 in a different database
@@ -2295,6 +2344,41 @@ public class SqlJetBtree implements ISqlJetBtree {
         }
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetBtree#getBulkLoader(int,
+     * org.tmatesoft.sqljet.core.internal.ISqlJetKeyInfo)
+     */
+    public ISqlJetBtreeBulkLoader getBulkLoader(int table, ISqlJetKeyInfo keyInfo) throws SqlJetException {
+        enter();
+        try {
+            pBt.db = db;
+            assert (inTrans == TransMode.WRITE);
+            if (pBt.readOnly) {
+                throw new SqlJetException(SqlJetErrorCode.READONLY);
+            }
+            if (checkReadLocks(table, null, 0)) {
+                throw new SqlJetException(SqlJetErrorCode.LOCKED);
+            }
+            if (pBt.autoVacuum || table == 1) {
+                return null;
+            }
+            final SqlJetMemPage pRoot = pBt.getAndInitPage(table);
+            try {
+                if (!pRoot.leaf || pRoot.nCell > 0) {
+                    return null;
+                }
+            } finally {
+                SqlJetMemPage.releasePage(pRoot);
+            }
+            pBt.saveAllCursors(table, null);
+            return new SqlJetBtreeBulkLoader(this, table, keyInfo);
+        } finally {
+            leave();
+        }
+    }
+
     /**
      * This routine works like lockBtree() except that it also invokes the busy
      * callback if there is lock contention.
@@ -0,0 +1,281 @@
+/**
+ * SqlJetBtreeBulkLoader.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.btree;
+
+import static org.tmatesoft.sqljet.core.internal.SqlJetUtility.get4byte;
+import static org.tmatesoft.sqljet.core.internal.SqlJetUtility.memcpy;
+import static org.tmatesoft.sqljet.core.internal.SqlJetUtility.put4byte;
+import static org.tmatesoft.sqljet.core.internal.SqlJetUtility.putVarint;
+import static org.tmatesoft.sqljet.core.internal.btree.SqlJetBtree.TRACE;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetBtreeBulkLoader;
+import org.tmatesoft.sqljet.core.internal.ISqlJetKeyInfo;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetUnpackedRecord;
+
+/**
+ * Implementation of {@link ISqlJetBtreeBulkLoader}.
+ *
+ * Pages are filled in key order, one page per level of the tree is open at a
+ * time. When the page of some level has no room for the next cell it is
+ * completed: a divider cell which points to it is appended to the page of the
+ * level above and a new page is started. For intkey trees the divider is the
+ * largest key of the page, for index trees the last cell of the page moves
+ * into the level above, as balance_nonroot() does. On finish right-children
+ * are linked and the top page is copied into the root page, so the tree stays
+ * empty for cursors until it is completely built.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SqlJetBtreeBulkLoader implements ISqlJetBtreeBulkLoader {
+
+    private final SqlJetBtree pBtree;
+    private final SqlJetBtreeShared pBt;
+    private final int pgnoRoot;
+    private final ISqlJetKeyInfo pKeyInfo;
+    private final boolean intKey;
+
+    /** Pages being filled, leaf is the first */
+    private final List<SqlJetMemPage> apPage = new ArrayList<SqlJetMemPage>();
+
+    /** Buffer where cells are built */
+    private final ISqlJetMemoryPointer pCell;
+
+    /** Key of last appended entry */
+    private long nLastKey;
+    private ISqlJetMemoryPointer pLastKey;
+
+    private long nEntry;
+    private boolean finished;
+
+    /**
+     * @param btree
+     * @param table
+     *            Index of root page
+     * @param keyInfo
+     *            Key info for index trees, null for tables
+     */
+    SqlJetBtreeBulkLoader(SqlJetBtree btree, int table, ISqlJetKeyInfo keyInfo) {
+        this.pBtree = btree;
+        this.pBt = btree.pBt;
+        this.pgnoRoot = table;
+        this.pKeyInfo = keyInfo;
+        this.intKey = keyInfo == null;
+        this.pCell = SqlJetUtility.allocatePtr(pBt.pageSize);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetBtreeBulkLoader#append(org.
+     * tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer, long,
+     * org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer, int, int)
+     */
+    public boolean append(ISqlJetMemoryPointer pKey, long nKey, ISqlJetMemoryPointer pData, int nData, int nZero)
+            throws SqlJetException {
+        if (finished) {
+            return false;
+        }
+        pBtree.enter();
+        try {
+            if (nEntry > 0 && !isGreater(pKey, nKey)) {
+                finish();
+                return false;
+            }
+            SqlJetMemPage pLeaf = apPage.isEmpty() ? startPage(0) : apPage.get(0);
+            final int szCell = pLeaf.fillInCell(pCell, pKey, nKey, pData, nData, nZero);
+            if (szCell + 2 > pLeaf.nFree) {
+                pLeaf = completeLeaf();
+            }
+            pLeaf.insertCell(pLeaf.nCell, pCell, szCell, null, 0);
+            rememberKey(pKey, nKey);
+            nEntry++;
+            return true;
+        } catch (SqlJetException e) {
+            abandon();
+            throw e;
+        } finally {
+            pBtree.leave();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetBtreeBulkLoader#finish()
+     */
+    public void finish() throws SqlJetException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (apPage.isEmpty()) {
+            return;
+        }
+        pBtree.enter();
+        try {
+            for (int i = 1; i < apPage.size(); i++) {
+                final SqlJetMemPage pParent = apPage.get(i);
+                put4byte(pParent.aData, pParent.hdrOffset + 8, apPage.get(i - 1).pgno);
+            }
+            final SqlJetMemPage pTop = apPage.get(apPage.size() - 1);
+            final SqlJetMemPage pRoot = pBt.getAndInitPage(pgnoRoot);
+            try {
+                pRoot.pDbPage.write();
+                pBt.nChange++;
+                pTop.copyNodeContent(pRoot);
+            } finally {
+                SqlJetMemPage.releasePage(pRoot);
+            }
+            TRACE("BULK: %d entries into %d pages deep tree %d\n", nEntry, apPage.size(), pgnoRoot);
+            pTop.freePage();
+        } finally {
+            try {
+                abandon();
+            } finally {
+                pBtree.leave();
+            }
+        }
+    }
+
+    /**
+     * Release all pages being filled.
+     *
+     * @throws SqlJetException
+     */
+    private void abandon() throws SqlJetException {
+        finished = true;
+        try {
+            for (final SqlJetMemPage pPage : apPage) {
+                SqlJetMemPage.releasePage(pPage);
+            }
+        } finally {
+            apPage.clear();
+        }
+    }
+
+    /**
+     * Check that key of new entry is greater than key of last appended entry.
+     */
+    private boolean isGreater(ISqlJetMemoryPointer pKey, long nKey) throws SqlJetException {
+        if (intKey) {
+            return nKey > nLastKey;
+        }
+        final SqlJetUnpackedRecord pIdxKey = pKeyInfo.recordUnpack((int) nKey, pKey);
+        try {
+            return pIdxKey.recordCompare((int) nLastKey, pLastKey) < 0;
+        } finally {
+            pIdxKey.release();
+        }
+    }
+
+    private void rememberKey(ISqlJetMemoryPointer pKey, long nKey) {
+        nLastKey = nKey;
+        if (!intKey) {
+            if (pLastKey == null || pLastKey.remaining() < nKey) {
+                pLastKey = SqlJetUtility.allocatePtr((int) Math.max(nKey, 64));
+            }
+            memcpy(pLastKey, pKey, (int) nKey);
+        }
+    }
+
+    /**
+     * Allocate new page for the given level of the tree.
+     */
+    private SqlJetMemPage startPage(int iLevel) throws SqlJetException {
+        final int[] pgnoNew = { 0 };
+        final SqlJetMemPage pNew = pBt.allocatePage(pgnoNew, 0, false);
+        try {
+            int flags = intKey ? SqlJetMemPage.PTF_INTKEY | SqlJetMemPage.PTF_LEAFDATA : SqlJetMemPage.PTF_ZERODATA;
+            if (iLevel == 0) {
+                flags |= SqlJetMemPage.PTF_LEAF;
+            }
+            pNew.zeroPage(flags);
+        } catch (SqlJetException e) {
+            SqlJetMemPage.releasePage(pNew);
+            throw e;
+        }
+        if (iLevel < apPage.size()) {
+            apPage.set(iLevel, pNew);
+        } else {
+            apPage.add(pNew);
+        }
+        return pNew;
+    }
+
+    /**
+     * Leaf page has no room for next cell: add divider for it into the level
+     * above and start new leaf.
+     *
+     * @return new leaf page.
+     */
+    private SqlJetMemPage completeLeaf() throws SqlJetException {
+        final SqlJetMemPage pLeaf = apPage.get(0);
+        final ISqlJetMemoryPointer pDivider;
+        final int szDivider;
+        if (intKey) {
+            pDivider = SqlJetUtility.allocatePtr(13);
+            szDivider = 4 + putVarint(pDivider.getMoved(4), nLastKey);
+        } else {
+            final ISqlJetMemoryPointer pLast = pLeaf.findCell(pLeaf.nCell - 1);
+            final int szLast = pLeaf.cellSizePtr(pLast);
+            pDivider = SqlJetUtility.allocatePtr(szLast + 4);
+            memcpy(pDivider, 4, pLast, 0, szLast);
+            pLeaf.dropCell(pLeaf.nCell - 1, szLast);
+            szDivider = szLast + 4;
+        }
+        appendDivider(1, pLeaf.pgno, pDivider, szDivider);
+        SqlJetMemPage.releasePage(pLeaf);
+        return startPage(0);
+    }
+
+    /**
+     * Append divider cell which points to the completed page iChild into the
+     * given interior level. First 4 bytes of divider are reserved for child
+     * pointer.
+     */
+    private void appendDivider(int iLevel, int iChild, ISqlJetMemoryPointer pDivider, int szDivider)
+            throws SqlJetException {
+        SqlJetMemPage pPage = iLevel < apPage.size() ? apPage.get(iLevel) : startPage(iLevel);
+        if (szDivider + 2 > pPage.nFree) {
+            /*
+             * Interior page is completed: its last cell moves into the level
+             * above and child of that cell becomes its right-child.
+             */
+            final ISqlJetMemoryPointer pLast = pPage.findCell(pPage.nCell - 1);
+            final int szLast = pPage.cellSizePtr(pLast);
+            final ISqlJetMemoryPointer pUp = SqlJetUtility.allocatePtr(szLast);
+            memcpy(pUp, pLast, szLast);
+            pPage.dropCell(pPage.nCell - 1, szLast);
+            put4byte(pPage.aData, pPage.hdrOffset + 8, get4byte(pUp));
+            appendDivider(iLevel + 1, pPage.pgno, pUp, szLast);
+            SqlJetMemPage.releasePage(pPage);
+            pPage = startPage(iLevel);
+        }
+        pPage.insertCell(pPage.nCell, pDivider, szDivider, null, iChild);
+    }
+
+}
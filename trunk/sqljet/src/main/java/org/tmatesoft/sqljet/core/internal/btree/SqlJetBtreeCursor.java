@@ -114,6 +114,15 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
     /** Cache of overflow page locations */
     int[] aOverflow;
 
+    /**
+     * Last view returned by payloadView() and position of cursor and count of
+     * changes of B-Tree when it was taken.
+     */
+    private ISqlJetMemoryPointer pView;
+    private SqlJetMemPage pViewPage;
+    private int iViewIdx;
+    private long nViewChange;
+
     /** True if Btree pages are rearranged by balance() */
     boolean pagesShuffled;
 
@@ -707,9 +716,10 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
 
     	  /* If this is a delete operation to remove a row from a table b-tree,
     	   invalidate any incrblob cursors open on the row being deleted.  */
-    	  //if( pCur.pKeyInfo==null ){
-    	  //    p.invalidateIncrblobCursors(pCur.info.nKey, 0);
-    	  //}
+    	  if( pCur.pKeyInfo==null ){
+    	      pCur.getCellInfo();
+    	      p.invalidateIncrblobCursors(pCur.pgnoRoot, pCur.info.nKey, false);
+    	  }
 
     	  iCellDepth = pCur.iPage;
     	  iCellIdx = pCur.aiIdx[iCellDepth];
@@ -2407,6 +2417,298 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
         return null;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor#payloadView(boolean)
+     */
+    public ISqlJetMemoryPointer payloadView(boolean key) throws SqlJetException {
+        assert (cursorHoldsMutex(this));
+        restoreCursorPosition();
+        if (eState != CursorState.VALID) {
+            return null;
+        }
+        final SqlJetMemPage pPage = apPage[iPage];
+        if (key && pPage.intKey) {
+            return null;
+        }
+        getCellInfo();
+        final long nPayload = key ? info.nKey : info.nData;
+        final int[] amt = { 0 };
+        final ISqlJetMemoryPointer p = fetchPayload(amt, !key);
+        if (amt[0] < nPayload) {
+            /* payload spills to overflow pages */
+            return null;
+        }
+        p.limit(p.getPointer() + (int) nPayload);
+        pView = p;
+        pViewPage = pPage;
+        iViewIdx = aiIdx[iPage];
+        nViewChange = pBt.nChange;
+        return p;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor#isViewValid(org
+     * .tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer)
+     */
+    public boolean isViewValid(ISqlJetMemoryPointer view) {
+        return view != null && view == pView && eState == CursorState.VALID && apPage[iPage] == pViewPage
+                && aiIdx[iPage] == iViewIdx && pBt.nChange == nViewChange;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor#count()
+     */
+    public long count() throws SqlJetException {
+        assert (cursorHoldsMutex(this));
+        if (pgnoRoot == 0) {
+            return 0;
+        }
+        return countSubtree(pgnoRoot, 0);
+    }
+
+    /**
+     * Sums counts of cells from headers of all pages of subtree. Cells of
+     * interior pages of table B-Trees aren't entries, so they are skipped.
+     * Counts of subtrees with interior roots are cached by shared B-Tree.
+     *
+     * @param pgno
+     *            root page of subtree.
+     * @param depth
+     *            depth of subtree's root in B-Tree.
+     * @return count of entries in subtree.
+     * @throws SqlJetException
+     */
+    private long countSubtree(int pgno, int depth) throws SqlJetException {
+        if (depth >= BTCURSOR_MAX_DEPTH) {
+            throw new SqlJetException(SqlJetErrorCode.CORRUPT);
+        }
+        final Long cached = pBt.getSubtreeCount(pgno);
+        if (cached != null) {
+            return cached;
+        }
+        final SqlJetMemPage pPage = pBt.getAndInitPage(pgno);
+        try {
+            if (pPage.leaf) {
+                return pPage.nCell;
+            }
+            long n = pPage.intKey ? 0 : pPage.nCell;
+            for (int i = 0; i <= pPage.nCell; i++) {
+                n += countSubtree(childPage(pPage, i), depth + 1);
+            }
+            pBt.putSubtreeCount(pgno, n);
+            return n;
+        } finally {
+            SqlJetMemPage.releasePage(pPage);
+        }
+    }
+
+    /**
+     * Returns number of i-th child page of interior page, child with number
+     * equal to count of cells is the right child.
+     */
+    private static int childPage(SqlJetMemPage pPage, int i) {
+        if (i == pPage.nCell) {
+            return get4byte(pPage.aData, pPage.hdrOffset + 8);
+        }
+        return get4byte(pPage.findCell(i));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor#countTo(org.tmatesoft
+     * .sqljet.core.internal.ISqlJetBtreeCursor)
+     */
+    public long countTo(ISqlJetBtreeCursor end) throws SqlJetException {
+        assert (cursorHoldsMutex(this));
+        final SqlJetBtreeCursor pEnd = (SqlJetBtreeCursor) end;
+        assert (pEnd.pBt == pBt && pEnd.pgnoRoot == pgnoRoot);
+        restoreCursorPosition();
+        pEnd.restoreCursorPosition();
+        if (eState != CursorState.VALID) {
+            return 0;
+        }
+        final boolean toEnd = pEnd.eState != CursorState.VALID;
+        if (!toEnd && comparePosition(pEnd) >= 0) {
+            return 0;
+        }
+
+        long n = 0;
+        int k = iPage;
+        SqlJetMemPage pPage = apPage[k];
+        int j = aiIdx[k];
+        if (pPage.leaf) {
+            if (!toEnd && pEnd.apPage[pEnd.iPage] == pPage) {
+                return pEnd.aiIdx[pEnd.iPage] - j;
+            }
+            n = pPage.nCell - j;
+            if (k == 0) {
+                return n;
+            }
+            k--;
+            pPage = apPage[k];
+            j = aiIdx[k];
+        }
+
+        /*
+         * Now subtree of child j of pPage is counted (or this cursor points to
+         * cell j of interior page of index), so go on with cell j and subtrees
+         * at right of it. Pages on path of this cursor are left upwards, pages
+         * on path of end cursor are entered downwards, other subtrees are
+         * counted as whole.
+         */
+        while (true) {
+            if (j < pPage.nCell) {
+                if (!toEnd && pEnd.iPage == k && pEnd.apPage[k] == pPage && pEnd.aiIdx[k] == j) {
+                    return n;
+                }
+                if (!pPage.intKey) {
+                    n++;
+                }
+                j++;
+                final int child = childPage(pPage, j);
+                if (!toEnd && pEnd.iPage > k && pEnd.apPage[k + 1].pgno == child) {
+                    return n + countBefore(pEnd, k + 1);
+                }
+                n += countSubtree(child, k + 1);
+            } else {
+                if (k == 0) {
+                    return n;
+                }
+                k--;
+                pPage = apPage[k];
+                j = aiIdx[k];
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor#getPosition()
+     */
+    public long getPosition() throws SqlJetException {
+        assert (cursorHoldsMutex(this));
+        restoreCursorPosition();
+        if (eState != CursorState.VALID) {
+            return count();
+        }
+        return countBefore(this, 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor#moveToPosition(long)
+     */
+    public boolean moveToPosition(long position) throws SqlJetException {
+        assert (cursorHoldsMutex(this));
+        moveToRoot();
+        skip = 0;
+        if (eState != CursorState.VALID) {
+            return false;
+        }
+        long n = position;
+        while (n >= 0) {
+            final SqlJetMemPage pPage = apPage[iPage];
+            if (pPage.leaf) {
+                if (n >= pPage.nCell) {
+                    break;
+                }
+                aiIdx[iPage] = (int) n;
+                info.nSize = 0;
+                validNKey = false;
+                return true;
+            }
+            int i = 0;
+            for (; i <= pPage.nCell; i++) {
+                final long nChild = countSubtree(childPage(pPage, i), iPage + 1);
+                if (n < nChild) {
+                    break;
+                }
+                n -= nChild;
+                if (i < pPage.nCell && !pPage.intKey) {
+                    if (n == 0) {
+                        /* entry is cell of interior page of index */
+                        aiIdx[iPage] = i;
+                        info.nSize = 0;
+                        validNKey = false;
+                        return true;
+                    }
+                    n--;
+                }
+            }
+            if (i > pPage.nCell) {
+                break;
+            }
+            aiIdx[iPage] = i;
+            moveToChild(childPage(pPage, i));
+        }
+        eState = CursorState.INVALID;
+        return false;
+    }
+
+    /**
+     * Counts entries of subtree on path of cursor which are before its
+     * position.
+     *
+     * @param pCur
+     *            cursor.
+     * @param k
+     *            level of subtree's root on path of cursor.
+     * @return count of entries before cursor.
+     * @throws SqlJetException
+     */
+    private long countBefore(SqlJetBtreeCursor pCur, int k) throws SqlJetException {
+        long n = 0;
+        for (;; k++) {
+            final SqlJetMemPage pPage = pCur.apPage[k];
+            final int e = pCur.aiIdx[k];
+            if (pPage.leaf) {
+                return n + e;
+            }
+            for (int i = 0; i < e; i++) {
+                n += countSubtree(childPage(pPage, i), k + 1);
+            }
+            if (!pPage.intKey) {
+                n += e;
+            }
+            if (k == pCur.iPage) {
+                /* cursor points to cell e of interior page of index */
+                return n + countSubtree(childPage(pPage, e), k + 1);
+            }
+        }
+    }
+
+    /**
+     * Compares positions of two valid cursors on the same B-Tree. Subtree of
+     * child i of interior page precedes cell i and cell i precedes subtree of
+     * child i+1.
+     *
+     * @return negative, zero or positive if this cursor points before, to the
+     *         same or after entry than other cursor.
+     */
+    private int comparePosition(SqlJetBtreeCursor pOther) {
+        for (int k = 0; k <= iPage && k <= pOther.iPage; k++) {
+            final int a = 2 * aiIdx[k] + (k == iPage && !apPage[k].leaf ? 1 : 0);
+            final int b = 2 * pOther.aiIdx[k] + (k == pOther.iPage && !pOther.apPage[k].leaf ? 1 : 0);
+            if (a != b) {
+                return a < b ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -2479,6 +2781,7 @@ public class SqlJetBtreeCursor extends SqlJetCloneable implements ISqlJetBtreeCu
             throw new SqlJetException(SqlJetErrorCode.ERROR);
         }
 
+        this.pBt.nChange++;
         accessPayload(offset, amt, data, 0, true);
 
     }
@@ -19,8 +19,10 @@ package org.tmatesoft.sqljet.core.internal.btree;
 
 import static org.tmatesoft.sqljet.core.internal.btree.SqlJetBtree.TRACE;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.tmatesoft.sqljet.core.ISqlJetMutex;
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
@@ -121,6 +123,33 @@ public class SqlJetBtreeShared {
     /** Number of references to this structure */
     int nRef;
 
+    /**
+     * Count of changes of content of B-Trees, views of payloads taken before
+     * change aren't valid after it.
+     */
+    long nChange;
+
+    /** Name of system property with maximum count of cached subtree counts */
+    public static final String SQLJET_POSITION_INDEX = "SQLJET.POSITION_INDEX";
+
+    /** Default maximum count of cached subtree counts */
+    public static final int POSITION_INDEX_DEFAULT = 16384;
+
+    /**
+     * Maximum count of entries in {@link #subtreeCounts}, 0 disables caching.
+     */
+    private final int positionIndexSize = SqlJetUtility.getIntSysProp(SQLJET_POSITION_INDEX, POSITION_INDEX_DEFAULT);
+
+    /**
+     * Counts of entries in subtrees by numbers of their interior root pages.
+     * It is sparse index of positions of entries: cursor moves to entry with
+     * given number by descent through interior pages, and only cells of
+     * leaves near the path are counted. Counts are valid while
+     * {@link #nChange} is equal to {@link #nCountsChange}.
+     */
+    private Map<Integer, Long> subtreeCounts;
+    private long nCountsChange;
+
     /** Next on a list of sharable BtShared structs */
     SqlJetBtreeShared pNext;
 
@@ -614,6 +643,7 @@ public class SqlJetBtreeShared {
         assert (s == PTRMAP_OVERFLOW2 || s == PTRMAP_OVERFLOW1 || s == PTRMAP_BTREE || s == PTRMAP_ROOTPAGE);
         assert (mutex.held());
         assert (pDbPage.pBt == this);
+        nChange++;
 
         /* Move page iDbPage from its current location to page number iFreePage */
 
@@ -861,6 +891,8 @@ public class SqlJetBtreeShared {
         SqlJetBtreeCursor p;
         assert (mutex.held());
         assert (pExcept == null || pExcept.pBt == this);
+        /* this is called before each change of B-Tree. */
+        nChange++;
         for (p = this.pCursor; p != null; p = p.pNext) {
             if (p != pExcept && (0 == iRoot || p.pgnoRoot == iRoot) && p.eState == SqlJetBtreeCursor.CursorState.VALID) {
                 if (!p.saveCursorPosition())
@@ -943,6 +975,51 @@ public class SqlJetBtreeShared {
 
     }
 
+    /**
+     * Returns cached count of entries in subtree with given interior root page.
+     * 
+     * @param pgno
+     *            root page of subtree.
+     * @return count of entries or null if it isn't known.
+     */
+    Long getSubtreeCount(int pgno) {
+        assert (mutex.held());
+        if (subtreeCounts == null) {
+            return null;
+        }
+        if (nCountsChange != nChange) {
+            subtreeCounts.clear();
+            nCountsChange = nChange;
+            return null;
+        }
+        return subtreeCounts.get(pgno);
+    }
+
+    /**
+     * Caches count of entries in subtree with given interior root page.
+     * 
+     * @param pgno
+     *            root page of subtree.
+     * @param count
+     *            count of entries in subtree.
+     */
+    void putSubtreeCount(int pgno, long count) {
+        assert (mutex.held());
+        if (positionIndexSize <= 0) {
+            return;
+        }
+        if (subtreeCounts == null) {
+            subtreeCounts = new HashMap<Integer, Long>();
+            nCountsChange = nChange;
+        } else if (nCountsChange != nChange) {
+            subtreeCounts.clear();
+            nCountsChange = nChange;
+        }
+        if (subtreeCounts.size() < positionIndexSize) {
+            subtreeCounts.put(pgno, count);
+        }
+    }
+
     /**
      * Get a page from the pager and initialize it. This routine* is just a
      * convenience wrapper around separate calls to* sqlite3BtreeGetPage() and
@@ -26,11 +26,13 @@ import org.tmatesoft.sqljet.core.internal.ISqlJetBackend;
 import org.tmatesoft.sqljet.core.internal.ISqlJetConfig;
 import org.tmatesoft.sqljet.core.internal.ISqlJetDbHandle;
 import org.tmatesoft.sqljet.core.internal.ISqlJetFileSystem;
+import org.tmatesoft.sqljet.core.internal.ISqlJetRecordWriter;
 import org.tmatesoft.sqljet.core.internal.SqlJetDbFlags;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 import org.tmatesoft.sqljet.core.internal.fs.SqlJetFileSystemsManager;
 import org.tmatesoft.sqljet.core.internal.mutex.SqlJetEmptyMutex;
 import org.tmatesoft.sqljet.core.internal.mutex.SqlJetMutex;
+import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetRecordWriter;
 import org.tmatesoft.sqljet.core.table.ISqlJetBusyHandler;
 import org.tmatesoft.sqljet.core.table.ISqlJetOptions;
 
@@ -48,6 +50,7 @@ public class SqlJetDbHandle implements ISqlJetDbHandle {
     private List<ISqlJetBackend> backends = new LinkedList<ISqlJetBackend>();
     private ISqlJetOptions options;
     private ISqlJetBusyHandler busyHandler;
+    private final ISqlJetRecordWriter recordWriter = new SqlJetRecordWriter();
 
     public SqlJetDbHandle() {
         if (config.isSynchronizedThreading()) {
@@ -152,4 +155,13 @@ public class SqlJetDbHandle implements ISqlJetDbHandle {
     public void setOptions(ISqlJetOptions options) {
         this.options = options;
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetDbHandle#getRecordWriter()
+     */
+    public ISqlJetRecordWriter getRecordWriter() {
+        return recordWriter;
+    }
 }
@@ -18,8 +18,10 @@
 package org.tmatesoft.sqljet.core.internal.fs;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.util.ArrayList;
@@ -70,30 +72,19 @@ public class SqlJetFile implements ISqlJetFile {
 
     public static final int SQLJET_DEFAULT_SECTOR_SIZE = 512;
 
-    private long timer_start = 0;
-    private long timer_elapsed = 0;
-
     /**
      * @return
      */
-    private long TIMER_ELAPSED() {
-        return timer_elapsed;
-    }
-
-    /**
-     *
-     */
-    private void TIMER_END() {
-        if (SQLJET_LOG_FILES_PERFORMANCE)
-            timer_elapsed = System.nanoTime() - timer_start;
+    private long TIMER_START() {
+        return SQLJET_LOG_FILES_PERFORMANCE ? System.nanoTime() : 0;
     }
 
     /**
-     *
+     * @param start
+     * @return
      */
-    private void TIMER_START() {
-        if (SQLJET_LOG_FILES_PERFORMANCE)
-            timer_start = System.nanoTime();
+    private long TIMER_ELAPSED(long start) {
+        return SQLJET_LOG_FILES_PERFORMANCE ? System.nanoTime() - start : 0;
     }
 
     /**
@@ -146,9 +137,26 @@ public class SqlJetFile implements ISqlJetFile {
 
     private final static Map<String, OpenFile> openFiles = new HashMap<String, OpenFile>();
 
+    /**
+     * Lock which excludes other processes from file, see
+     * {@link #lockProcess()}. It is held through its own descriptor, which
+     * is closed like descriptors of closed handles: only when no locks are
+     * left, because closing of any descriptor drops all POSIX locks of
+     * process on the file.
+     */
+    private static class ProcessLock {
+        private RandomAccessFile file;
+        private FileLock pendingLock;
+        private FileLock exclusiveLock;
+        /** Number of calls of lockProcess() */
+        private int count = 1;
+    }
+
+    private final static Map<String, ProcessLock> processLocks = new HashMap<String, ProcessLock>();
+
     private SqlJetFileType fileType;
     private Set<SqlJetFileOpenPermission> permissions;
-    private RandomAccessFile file;
+    private volatile RandomAccessFile file;
     private File filePath;
     private String filePathResolved;
     private boolean noLock;
@@ -161,6 +169,15 @@ public class SqlJetFile implements ISqlJetFile {
 
     private SqlJetFileLockManager fileLockManager;
 
+    /** Size of chunks in which file grows, zero if file grows by writes */
+    private int chunkSize;
+
+    /** Size of written data while file is extended by chunks, otherwise -1 */
+    private volatile long chunkedSize = -1;
+
+    /** Length of file extended by chunks */
+    private long chunkedLength;
+
     /**
      * @param fileSystem
      * @param file
@@ -219,6 +236,9 @@ public class SqlJetFile implements ISqlJetFile {
         if (null == file)
             return;
 
+        // unlock() doesn't trim files which aren't locked.
+        trimChunks();
+
         synchronized (openFiles) {
 
             unlock(SqlJetLockType.NONE);
@@ -229,6 +249,10 @@ public class SqlJetFile implements ISqlJetFile {
              * file descriptor to pOpen->aPending. It will be automatically
              * closed when the last lock is cleared.
              */
+            if (!noLock && null != openCount && processLocks.containsKey(filePathResolved)) {
+                openCount.pending.add(file);
+                return;
+            }
             if (!noLock && null != openCount && null != openCount.lockInfoMap && openCount.lockInfoMap.size() > 0) {
                 for (LockInfo l : openCount.lockInfoMap.values()) {
                     if (l.sharedLockCount > 0) {
@@ -279,18 +303,28 @@ public class SqlJetFile implements ISqlJetFile {
      *
      * @see org.tmatesoft.sqljet.core.ISqlJetFile#read(byte[], int, long)
      */
-    public synchronized int read(ISqlJetMemoryPointer buffer, int amount, long offset) throws SqlJetIOException {
+    public int read(ISqlJetMemoryPointer buffer, int amount, long offset) throws SqlJetIOException {
         assert (amount > 0);
         assert (offset >= 0);
         assert (buffer != null);
         assert (buffer.remaining() >= amount);
-        assert (file != null);
-        assert (channel != null);
+        final RandomAccessFile file = this.file;
+        final FileChannel channel = this.channel;
+        if (null == file || null == channel) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_READ, "File is closed");
+        }
+        final long size = chunkedSize;
+        if (size >= 0 && offset + amount > size) {
+            // don't read allocated but not written chunk.
+            if (offset >= size) {
+                return 0;
+            }
+            amount = (int) (size - offset);
+        }
         try {
-            TIMER_START();
+            final long start = TIMER_START();
             final int read = buffer.readFromFile(file, channel, offset, amount);
-            TIMER_END();
-            OSTRACE("READ %s %5d %7d %d\n", this.filePath, read, offset, TIMER_ELAPSED());
+            OSTRACE("READ %s %5d %7d %d\n", this.filePath, read, offset, TIMER_ELAPSED(start));
             return read < 0 ? 0 : read;
         } catch (IOException e) {
             throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_READ, e);
@@ -302,18 +336,62 @@ public class SqlJetFile implements ISqlJetFile {
      *
      * @see org.tmatesoft.sqljet.core.ISqlJetFile#write(byte[], int, long)
      */
-    public synchronized void write(ISqlJetMemoryPointer buffer, int amount, long offset) throws SqlJetIOException {
+    public void write(ISqlJetMemoryPointer buffer, int amount, long offset) throws SqlJetIOException {
         assert (amount > 0);
         assert (offset >= 0);
         assert (buffer != null);
         assert (buffer.remaining() >= amount);
-        assert (file != null);
-        assert (channel != null);
+        final RandomAccessFile file = this.file;
+        final FileChannel channel = this.channel;
+        if (null == file || null == channel) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_WRITE, "File is closed");
+        }
         try {
-            TIMER_START();
+            allocateChunks(offset + amount);
+            final long start = TIMER_START();
             final int write = buffer.writeToFile(file, channel, offset, amount);
-            TIMER_END();
-            OSTRACE("WRITE %s %5d %7d %d\n", this.filePath, write, offset, TIMER_ELAPSED());
+            OSTRACE("WRITE %s %5d %7d %d\n", this.filePath, write, offset, TIMER_ELAPSED(start));
+        } catch (IOException e) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_WRITE, e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#write(org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer[],
+     * int[], long)
+     */
+    public void write(ISqlJetMemoryPointer[] buffers, int[] amounts, long offset) throws SqlJetIOException {
+        assert (buffers != null);
+        assert (amounts != null);
+        assert (buffers.length == amounts.length);
+        assert (offset >= 0);
+        final RandomAccessFile file = this.file;
+        final FileChannel channel = this.channel;
+        if (null == file || null == channel) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_WRITE, "File is closed");
+        }
+        final ByteBuffer[] b = new ByteBuffer[buffers.length];
+        long amount = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            assert (buffers[i].remaining() >= amounts[i]);
+            b[i] = buffers[i].getBuffer().getByteBuffer(buffers[i].getPointer(), amounts[i]);
+            amount += amounts[i];
+        }
+        try {
+            allocateChunks(offset + amount);
+            final long start = TIMER_START();
+            long write = 0;
+            // gathering write uses position of channel, positional reads and
+            // writes don't depend on it.
+            synchronized (channel) {
+                channel.position(offset);
+                while (write < amount) {
+                    write += channel.write(b);
+                }
+            }
+            OSTRACE("WRITEV %s %5d %7d %d\n", this.filePath, write, offset, TIMER_ELAPSED(start));
         } catch (IOException e) {
             throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_WRITE, e);
         }
@@ -328,6 +406,7 @@ public class SqlJetFile implements ISqlJetFile {
         assert (size >= 0);
         assert (file != null);
         try {
+            chunkedSize = -1;
             file.setLength(size);
         } catch (IOException e) {
             throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_TRUNCATE, e);
@@ -339,8 +418,9 @@ public class SqlJetFile implements ISqlJetFile {
      *
      * @see org.tmatesoft.sqljet.core.ISqlJetFile#sync(boolean, boolean)
      */
-    public synchronized void sync(Set<SqlJetSyncFlags> syncFlags) throws SqlJetIOException {
-        assert (file != null);
+    public void sync(Set<SqlJetSyncFlags> syncFlags) throws SqlJetIOException {
+        final FileChannel channel = this.channel;
+        assert (channel != null);
         try {
             OSTRACE("SYNC    %s\n", this.filePath);
             boolean syncMetaData = syncFlags != null && syncFlags.contains(SqlJetSyncFlags.NORMAL);
@@ -355,8 +435,13 @@ public class SqlJetFile implements ISqlJetFile {
      *
      * @see org.tmatesoft.sqljet.core.ISqlJetFile#fileSize()
      */
-    public synchronized long fileSize() throws SqlJetException {
-        assert (file != null);
+    public long fileSize() throws SqlJetException {
+        final FileChannel channel = this.channel;
+        assert (channel != null);
+        final long size = chunkedSize;
+        if (size >= 0) {
+            return size;
+        }
         try {
             return channel.size();
         } catch (IOException e) {
@@ -610,6 +695,8 @@ public class SqlJetFile implements ISqlJetFile {
         if (this.lockType.compareTo(lockType) <= 0)
             return true;
 
+        trimChunks();
+
         synchronized (openFiles) {
 
             assert (lockInfo != null);
@@ -676,7 +763,8 @@ public class SqlJetFile implements ISqlJetFile {
                      */
                     openCount.numLock--;
                     assert (openCount.numLock >= 0);
-                    if (openCount.numLock == 0 && null != openCount.pending && openCount.pending.size() > 0) {
+                    if (openCount.numLock == 0 && !processLocks.containsKey(filePathResolved)
+                            && null != openCount.pending && openCount.pending.size() > 0) {
                         for (final RandomAccessFile f : openCount.pending) {
                             f.close();
                         }
@@ -694,6 +782,150 @@ public class SqlJetFile implements ISqlJetFile {
         return true;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#lockProcess()
+     */
+    public synchronized boolean lockProcess() throws SqlJetIOException {
+        if (noLock)
+            return true;
+
+        synchronized (openFiles) {
+
+            final ProcessLock processLock = processLocks.get(filePathResolved);
+            if (null != processLock) {
+                processLock.count++;
+                return true;
+            }
+
+            /*
+             * The lock is EXCLUSIVE lock which is kept, so SHARED lock of this
+             * handle should be the only one, as for usual EXCLUSIVE lock.
+             */
+            final FileLock sharedLock = locks.get(SqlJetLockType.SHARED);
+            if (SqlJetLockType.SHARED != lockType || lockInfo.sharedLockCount != 1 || null == sharedLock
+                    || ((SqlJetFileLock) sharedLock).getLocksCount() > 1) {
+                return false;
+            }
+
+            OSTRACE("LOCK PROCESS %s pid=%s\n", this.filePath, getpid());
+
+            final RandomAccessFile lockFile;
+            try {
+                lockFile = new RandomAccessFile(filePath, "rw");
+            } catch (FileNotFoundException e) {
+                // read-only file could not be locked exclusively.
+                return false;
+            }
+            final SqlJetFileLockManager lockManager = new SqlJetFileLockManager(filePathResolved,
+                    lockFile.getChannel());
+
+            FileLock pendingLock = null;
+            FileLock exclusiveLock = null;
+            try {
+
+                /* PENDING lock stops new readers of other processes */
+                pendingLock = lockManager.tryLock(PENDING_BYTE, 1, false);
+                if (null == pendingLock)
+                    return false;
+
+                sharedLock.release();
+                exclusiveLock = lockManager.tryLock(SHARED_FIRST, SHARED_SIZE, false);
+
+                /*
+                 * Handle keeps SHARED lock, as other handles of this process
+                 * get it while the process lock is held: by reference to lock
+                 * of overlapped range.
+                 */
+                final FileLock lock = null != exclusiveLock ? exclusiveLock : fileLockManager.lock(SHARED_FIRST,
+                        SHARED_SIZE, true);
+                if (null != exclusiveLock) {
+                    ((SqlJetFileLock) exclusiveLock).addLock();
+                }
+                locks.put(SqlJetLockType.SHARED, lock);
+                lockInfo.sharedLock = lock;
+
+                if (null == exclusiveLock)
+                    return false;
+
+                final ProcessLock newLock = new ProcessLock();
+                newLock.file = lockFile;
+                newLock.pendingLock = pendingLock;
+                newLock.exclusiveLock = exclusiveLock;
+                processLocks.put(filePathResolved, newLock);
+                return true;
+
+            } catch (IOException e) {
+                throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_LOCK, e);
+            } finally {
+                if (null == exclusiveLock) {
+                    try {
+                        if (null != pendingLock) {
+                            pendingLock.release();
+                        }
+                    } catch (IOException e) {
+                        throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_UNLOCK, e);
+                    } finally {
+                        closeLockFile(lockFile);
+                    }
+                }
+                OSTRACE("LOCK PROCESS %s %s\n", this.filePath, null != exclusiveLock ? "ok" : "failed");
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#unlockProcess()
+     */
+    public synchronized void unlockProcess() throws SqlJetIOException {
+        if (noLock)
+            return;
+
+        synchronized (openFiles) {
+
+            final ProcessLock processLock = processLocks.get(filePathResolved);
+            if (null == processLock || --processLock.count > 0)
+                return;
+
+            OSTRACE("UNLOCK PROCESS %s pid=%s\n", this.filePath, getpid());
+
+            processLocks.remove(filePathResolved);
+            try {
+                processLock.exclusiveLock.release();
+                processLock.pendingLock.release();
+            } catch (IOException e) {
+                throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_UNLOCK, e);
+            } finally {
+                closeLockFile(processLock.file);
+            }
+        }
+    }
+
+    /**
+     * Closes descriptor which is used for locks, or defers close while other
+     * handles of file in this process hold locks.
+     */
+    private void closeLockFile(RandomAccessFile lockFile) throws SqlJetIOException {
+        try {
+            if (null == openCount) {
+                lockFile.close();
+                return;
+            }
+            openCount.pending.add(lockFile);
+            if (openCount.numLock == 0 && !processLocks.containsKey(filePathResolved)) {
+                for (final RandomAccessFile f : openCount.pending) {
+                    f.close();
+                }
+                openCount.pending.clear();
+            }
+        } catch (IOException e) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_UNLOCK, e);
+        }
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -760,7 +992,11 @@ public class SqlJetFile implements ISqlJetFile {
     final static Set<SqlJetDeviceCharacteristics> noDeviceCharacteristircs = SqlJetUtility
             .noneOf(SqlJetDeviceCharacteristics.class);
 
-	private FileChannel channel;
+    /**
+     * Channel for positional reads and writes, these don't need monitor of
+     * this object: only transitions of locks are synchronized.
+     */
+    private volatile FileChannel channel;
 
     public Set<SqlJetDeviceCharacteristics> deviceCharacteristics() {
         return noDeviceCharacteristircs;
@@ -822,4 +1058,81 @@ public class SqlJetFile implements ISqlJetFile {
         return false;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#map(long)
+     */
+    public ByteBuffer map(long size) throws SqlJetIOException {
+        assert (file != null);
+        if (size <= 0 || size > Integer.MAX_VALUE) {
+            return null;
+        }
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_READ, e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#setChunkSize(int)
+     */
+    public synchronized void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize > 0 ? chunkSize : 0;
+    }
+
+    /**
+     * Allocates chunks of file for data which is written up to given offset.
+     * Chunks are allocated only under EXCLUSIVE lock, when nobody else reads
+     * the file and so nobody could see allocated but not written space.
+     *
+     * @param end
+     *            offset of end of written data.
+     * @throws IOException
+     */
+    private synchronized void allocateChunks(long end) throws IOException {
+        if (chunkSize <= 0 || SqlJetLockType.EXCLUSIVE != lockType) {
+            return;
+        }
+        if (chunkedSize < 0) {
+            final long length = channel.size();
+            if (end <= length) {
+                return;
+            }
+            chunkedLength = length;
+            chunkedSize = length;
+        }
+        if (end > chunkedLength) {
+            chunkedLength = (end + chunkSize - 1) / chunkSize * chunkSize;
+            file.setLength(chunkedLength);
+            OSTRACE("CHUNK %s %d\n", this.filePath, chunkedLength);
+        }
+        if (end > chunkedSize) {
+            chunkedSize = end;
+        }
+    }
+
+    /**
+     * Truncates file extended by chunks to size of written data. It is done
+     * when EXCLUSIVE lock is released, because other readers take count of
+     * pages from length of file, and on close.
+     *
+     * @throws SqlJetIOException
+     */
+    private synchronized void trimChunks() throws SqlJetIOException {
+        final long size = chunkedSize;
+        if (size < 0) {
+            return;
+        }
+        chunkedSize = -1;
+        try {
+            file.setLength(size);
+        } catch (IOException e) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_TRUNCATE, e);
+        }
+    }
+
 }
@@ -74,4 +74,11 @@ public class SqlJetFileLock extends FileLock {
     public void addLock() {
         locksCount++;
     }
+
+    /**
+     * @return count of holders of this lock.
+     */
+    long getLocksCount() {
+        return locksCount;
+    }
 }
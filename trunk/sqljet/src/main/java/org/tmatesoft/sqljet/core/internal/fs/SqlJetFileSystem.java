@@ -286,6 +286,17 @@ public class SqlJetFileSystem implements ISqlJetFileSystem {
         return new SqlJetMemJournal();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetFileSystem#memJournalOpen(org
+     * .tmatesoft.sqljet.core.internal.SqlJetFileType, int)
+     */
+    public ISqlJetFile memJournalOpen(SqlJetFileType type, int spillSize) {
+        return new SqlJetMemJournal(this, type, spillSize);
+    }
+
     /*
      * (non-Javadoc)
      * 
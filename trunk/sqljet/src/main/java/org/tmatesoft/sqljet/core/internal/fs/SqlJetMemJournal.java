@@ -17,9 +17,14 @@
  */
 package org.tmatesoft.sqljet.core.internal.fs;
 
+import java.nio.ByteBuffer;
 import java.util.Set;
 
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetIOErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetIOException;
 import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFileSystem;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
 import org.tmatesoft.sqljet.core.internal.SqlJetDeviceCharacteristics;
 import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
@@ -32,12 +37,110 @@ import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
  * This subclass is a subclass of sqlite3_file. Each open memory-journal is an
  * instance of this class.
  * 
+ * Journal could be limited by size: when it grows beyond the limit its
+ * content is moved into temporary file and all following operations are done
+ * on that file.
+ * 
  * @author TMate Software Ltd.
  * @author Sergey Scherbina (sergey.scherbina@gmail.com)
  * 
  */
 public class SqlJetMemJournal implements ISqlJetFile {
 
+    private static final Set<SqlJetFileOpenPermission> SPILL_PERMISSIONS = SqlJetUtility.of(
+            SqlJetFileOpenPermission.READWRITE, SqlJetFileOpenPermission.CREATE, SqlJetFileOpenPermission.EXCLUSIVE,
+            SqlJetFileOpenPermission.DELETEONCLOSE);
+
+    /** File system where journal is spilled, null if it is never spilled */
+    private final ISqlJetFileSystem fileSystem;
+
+    /** Type of temporary file where journal is spilled */
+    private final SqlJetFileType fileType;
+
+    /** Size of journal after which it is spilled, negative if never */
+    private final int spillSize;
+
+    /** Temporary file which holds journal after spill, null before */
+    private ISqlJetFile pReal;
+
+    /**
+     * Creates journal which is always kept in memory.
+     */
+    public SqlJetMemJournal() {
+        this(null, null, -1);
+    }
+
+    /**
+     * Creates journal which is kept in memory until its size exceeds
+     * spillSize bytes.
+     * 
+     * @param fileSystem
+     *            file system where temporary file is created.
+     * @param fileType
+     *            type of temporary file.
+     * @param spillSize
+     *            maximum size of journal in memory, negative means unlimited.
+     */
+    public SqlJetMemJournal(final ISqlJetFileSystem fileSystem, final SqlJetFileType fileType, final int spillSize) {
+        this.fileSystem = fileSystem;
+        this.fileType = fileType;
+        this.spillSize = null == fileSystem ? -1 : spillSize;
+    }
+
+    /**
+     * @return true if content of journal was moved into temporary file.
+     */
+    public boolean isSpilled() {
+        return null != pReal;
+    }
+
+    /**
+     * Moves content of journal into temporary file.
+     * 
+     * @throws SqlJetIOException
+     */
+    private void createFile() throws SqlJetIOException {
+        final ISqlJetFile real;
+        try {
+            real = fileSystem.open(null, fileType, SPILL_PERMISSIONS);
+        } catch (SqlJetIOException e) {
+            throw e;
+        } catch (SqlJetException e) {
+            throw new SqlJetIOException(SqlJetIOErrorCode.IOERR_WRITE, e);
+        }
+        final long size = endpoint.iOffset;
+        if (size > 0) {
+            final int nChunk = (int) ((size + JOURNAL_CHUNKSIZE - 1) / JOURNAL_CHUNKSIZE);
+            final ISqlJetMemoryPointer[] buffers = new ISqlJetMemoryPointer[nChunk];
+            final int[] amounts = new int[nChunk];
+            FileChunk pChunk = pFirst;
+            for (int i = 0; i < nChunk; i++, pChunk = pChunk.pNext) {
+                buffers[i] = pChunk.zChunk;
+                amounts[i] = i < nChunk - 1 ? JOURNAL_CHUNKSIZE : (int) (size - (long) i * JOURNAL_CHUNKSIZE);
+            }
+            try {
+                real.write(buffers, amounts, 0);
+            } catch (SqlJetIOException e) {
+                try {
+                    real.close();
+                } catch (SqlJetException e1) {
+                }
+                throw e;
+            }
+        }
+        freeChunks();
+        pReal = real;
+    }
+
+    /**
+     * Frees all chunks of journal in memory.
+     */
+    private void freeChunks() {
+        pFirst = null;
+        endpoint = new FilePoint();
+        readpoint = new FilePoint();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -47,6 +150,40 @@ public class SqlJetMemJournal implements ISqlJetFile {
         return true;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#map(long)
+     */
+    public ByteBuffer map(long size) {
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#setChunkSize(int)
+     */
+    public void setChunkSize(int chunkSize) {
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#lockProcess()
+     */
+    public boolean lockProcess() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#unlockProcess()
+     */
+    public void unlockProcess() {
+    }
+
     /*
      * Space to hold the rollback journal is allocated in increments of* this
      * many bytes.
@@ -91,7 +228,11 @@ public class SqlJetMemJournal implements ISqlJetFile {
      * 
      * @see org.tmatesoft.sqljet.core.ISqlJetFile#read(byte[], int, long)
      */
-    public int read(ISqlJetMemoryPointer buffer, int amount, long offset) {
+    public int read(ISqlJetMemoryPointer buffer, int amount, long offset) throws SqlJetIOException {
+
+        if (null != pReal) {
+            return pReal.read(buffer, amount, offset);
+        }
 
         SqlJetMemJournal p = this;
 
@@ -103,9 +244,14 @@ public class SqlJetMemJournal implements ISqlJetFile {
         int iChunkOffset;
         FileChunk pChunk;
 
-        assert (iOfst + iAmt <= p.endpoint.iOffset);
+        if (iOfst >= p.endpoint.iOffset) {
+            return 0;
+        } else if (iOfst + iAmt > p.endpoint.iOffset) {
+            iAmt = (int) (p.endpoint.iOffset - iOfst);
+            nRead = iAmt;
+        }
 
-        if (p.readpoint.iOffset != iOfst || iOfst == 0) {
+        if (p.readpoint.iOffset != iOfst || iOfst == 0 || p.readpoint.pChunk == null) {
             long iOff = 0;
             for (pChunk = p.pFirst; pChunk != null && (iOff + JOURNAL_CHUNKSIZE) <= iOfst; pChunk = pChunk.pNext) {
                 iOff += JOURNAL_CHUNKSIZE;
@@ -126,7 +272,7 @@ public class SqlJetMemJournal implements ISqlJetFile {
         p.readpoint.iOffset = iOfst + iAmt;
         p.readpoint.pChunk = pChunk;
 
-        return iAmt - nRead;
+        return iAmt;
 
     }
 
@@ -135,7 +281,15 @@ public class SqlJetMemJournal implements ISqlJetFile {
      * 
      * @see org.tmatesoft.sqljet.core.ISqlJetFile#write(byte[], int, long)
      */
-    public void write(ISqlJetMemoryPointer buffer, int amount, long offset) {
+    public void write(ISqlJetMemoryPointer buffer, int amount, long offset) throws SqlJetIOException {
+
+        if (null == pReal && spillSize >= 0 && offset + amount > spillSize) {
+            createFile();
+        }
+        if (null != pReal) {
+            pReal.write(buffer, amount, offset);
+            return;
+        }
 
         SqlJetMemJournal p = this;
 
@@ -180,20 +334,42 @@ public class SqlJetMemJournal implements ISqlJetFile {
     /*
      * (non-Javadoc)
      * 
-     * @see org.tmatesoft.sqljet.core.ISqlJetFile#truncate(long)
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetFile#write(org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer[], int[], long)
      */
-    public void truncate(long size) {
-        SqlJetMemJournal p = this;
-
-        FileChunk pChunk;
-        assert (size == 0);
-        pChunk = p.pFirst;
-        while (pChunk != null) {
-            pChunk = pChunk.pNext;
+    public void write(ISqlJetMemoryPointer[] buffers, int[] amounts, long offset) throws SqlJetIOException {
+        if (null != pReal) {
+            pReal.write(buffers, amounts, offset);
+            return;
         }
+        long iOfst = offset;
+        for (int i = 0; i < buffers.length; i++) {
+            write(buffers[i], amounts[i], iOfst);
+            iOfst += amounts[i];
+        }
+    }
 
-        // sqlite3MemJournalOpen(pJfd);
-
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.ISqlJetFile#truncate(long)
+     */
+    public void truncate(long size) throws SqlJetIOException {
+        if (null != pReal) {
+            pReal.truncate(size);
+            return;
+        }
+        if (size == 0) {
+            freeChunks();
+        } else if (size < endpoint.iOffset) {
+            FileChunk pChunk = pFirst;
+            for (long iOff = JOURNAL_CHUNKSIZE; iOff < size; iOff += JOURNAL_CHUNKSIZE) {
+                pChunk = pChunk.pNext;
+            }
+            pChunk.pNext = null;
+            endpoint.pChunk = pChunk;
+            endpoint.iOffset = size;
+            readpoint = new FilePoint();
+        }
     }
 
     /*
@@ -201,8 +377,13 @@ public class SqlJetMemJournal implements ISqlJetFile {
      * 
      * @see org.tmatesoft.sqljet.core.ISqlJetFile#close()
      */
-    public void close() {
-        truncate(0);
+    public void close() throws SqlJetException {
+        freeChunks();
+        if (null != pReal) {
+            final ISqlJetFile real = pReal;
+            pReal = null;
+            real.close();
+        }
     }
 
     /*
@@ -218,7 +399,10 @@ public class SqlJetMemJournal implements ISqlJetFile {
      * 
      * @see org.tmatesoft.sqljet.core.ISqlJetFile#fileSize()
      */
-    public long fileSize() {
+    public long fileSize() throws SqlJetException {
+        if (null != pReal) {
+            return pReal.fileSize();
+        }
         SqlJetMemJournal p = this;
         return p.endpoint.iOffset;
     }
@@ -250,7 +434,7 @@ public class SqlJetMemJournal implements ISqlJetFile {
      * @see org.tmatesoft.sqljet.core.ISqlJetFile#getFileType()
      */
     public SqlJetFileType getFileType() {
-        return null;
+        return fileType;
     }
 
     /*
@@ -19,6 +19,7 @@ package org.tmatesoft.sqljet.core.internal.memory;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
@@ -327,8 +328,7 @@ public class SqlJetByteArrayBuffer implements ISqlJetMemoryBuffer {
         assert (position >= 0);
         assert (count > 0);
 
-        file.seek(position);
-        return file.read(buffer, pointer, count);
+        return channel.read(ByteBuffer.wrap(buffer, pointer, count), position);
     }
 
     /*
@@ -347,11 +347,26 @@ public class SqlJetByteArrayBuffer implements ISqlJetMemoryBuffer {
         assert (position >= 0);
         assert (count > 0);
 
-        file.seek(position);
-        file.write(buffer, pointer, count);
+        final ByteBuffer b = ByteBuffer.wrap(buffer, pointer, count);
+        long p = position;
+        while (b.hasRemaining()) {
+            p += channel.write(b, p);
+        }
         return count;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetMemoryBuffer#getByteBuffer(int, int)
+     */
+    public ByteBuffer getByteBuffer(int pointer, int count) {
+        assert (buffer != null);
+        assert (pointer >= 0);
+        assert (pointer + count <= buffer.length);
+        return ByteBuffer.wrap(buffer, pointer, count);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -333,12 +333,9 @@ public class SqlJetByteBuffer implements ISqlJetMemoryBuffer {
         assert (position >= 0);
         assert (count > 0);
 
-        buffer.limit(pointer + count).position(pointer);
-        try {
-            return channel.read(buffer, position);
-        } finally {
-            buffer.clear();
-        }
+        final ByteBuffer b = buffer.duplicate();
+        b.limit(pointer + count).position(pointer);
+        return channel.read(b, position);
     }
 
     /*
@@ -357,12 +354,27 @@ public class SqlJetByteBuffer implements ISqlJetMemoryBuffer {
         assert (position >= 0);
         assert (count > 0);
 
-        buffer.limit(pointer + count).position(pointer);
-        try {
-            return channel.write(buffer, position);
-        } finally {
-            buffer.clear();
+        final ByteBuffer b = buffer.duplicate();
+        b.limit(pointer + count).position(pointer);
+        long p = position;
+        while (b.hasRemaining()) {
+            p += channel.write(b, p);
         }
+        return count;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetMemoryBuffer#getByteBuffer(int, int)
+     */
+    public ByteBuffer getByteBuffer(int pointer, int count) {
+        assert (buffer != null);
+        assert (pointer >= 0);
+        assert (pointer + count <= buffer.capacity());
+        final ByteBuffer b = buffer.duplicate();
+        b.limit(pointer + count).position(pointer);
+        return b;
     }
 
     /*
@@ -0,0 +1,174 @@
+/**
+ * SqlJetMappedByteBuffer.java
+ * Copyright (C) 2008 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.memory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryBuffer;
+
+/**
+ * Buffer which reads directly from a region of memory-mapped file. The
+ * region is never written: before the first modification content is copied
+ * into private heap buffer (copy-on-write), so page which is only read costs
+ * neither system call nor allocation of page-sized buffer.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SqlJetMappedByteBuffer extends SqlJetDirectByteBuffer {
+
+    private boolean mapped;
+
+    /**
+     * @param region
+     *            read-only slice of mapped file.
+     */
+    public SqlJetMappedByteBuffer(ByteBuffer region) {
+        super(region);
+        mapped = true;
+    }
+
+    /**
+     * Creates buffer for region of mapped file.
+     *
+     * @param map
+     *            mapped file.
+     * @param offset
+     *            offset of region in the map.
+     * @param size
+     *            size of region.
+     * @return buffer over region of map.
+     */
+    public static SqlJetMappedByteBuffer slice(ByteBuffer map, int offset, int size) {
+        final ByteBuffer region = map.duplicate();
+        region.limit(offset + size).position(offset);
+        return new SqlJetMappedByteBuffer(region.slice());
+    }
+
+    /**
+     * @return true if buffer still reads from mapped file.
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Copies content of mapped region into private buffer.
+     */
+    private void detach() {
+        if (mapped) {
+            final ByteBuffer copy = ByteBuffer.allocate(buffer.capacity());
+            final ByteBuffer region = buffer.duplicate();
+            region.clear();
+            copy.put(region);
+            copy.clear();
+            buffer = copy;
+            mapped = false;
+        }
+    }
+
+    @Override
+    public void allocate(int size) {
+        super.allocate(size);
+        mapped = false;
+    }
+
+    @Override
+    public void putByte(int pointer, byte value) {
+        detach();
+        super.putByte(pointer, value);
+    }
+
+    @Override
+    public void putByteUnsigned(int pointer, int value) {
+        detach();
+        super.putByteUnsigned(pointer, value);
+    }
+
+    @Override
+    public void putInt(int pointer, int value) {
+        detach();
+        super.putInt(pointer, value);
+    }
+
+    @Override
+    public void putIntUnsigned(int pointer, long value) {
+        detach();
+        super.putIntUnsigned(pointer, value);
+    }
+
+    @Override
+    public void putLong(int pointer, long value) {
+        detach();
+        super.putLong(pointer, value);
+    }
+
+    @Override
+    public void putShort(int pointer, short value) {
+        detach();
+        super.putShort(pointer, value);
+    }
+
+    @Override
+    public void putShortUnsigned(int pointer, int value) {
+        detach();
+        super.putShortUnsigned(pointer, value);
+    }
+
+    @Override
+    public void putBytes(int pointer, byte[] bytes, int from, int count) {
+        detach();
+        super.putBytes(pointer, bytes, from, count);
+    }
+
+    @Override
+    public void fill(int from, int count, byte value) {
+        detach();
+        super.fill(from, count, value);
+    }
+
+    @Override
+    public void copyFrom(int dstPos, ISqlJetMemoryBuffer src, int srcPos, int count) {
+        detach();
+        super.copyFrom(dstPos, src, srcPos, count);
+    }
+
+    @Override
+    public int readFromFile(int pointer, RandomAccessFile file, FileChannel channel, long position, int count)
+            throws IOException {
+        detach();
+        return super.readFromFile(pointer, file, channel, position, count);
+    }
+
+    @Override
+    public int writeToFile(int pointer, RandomAccessFile file, FileChannel channel, long position, int count)
+            throws IOException {
+        final ByteBuffer region = buffer.duplicate();
+        region.limit(pointer + count).position(pointer);
+        long p = position;
+        while (region.hasRemaining()) {
+            p += channel.write(region, p);
+        }
+        return count;
+    }
+
+}
@@ -33,6 +33,8 @@ public class SqlJetMemoryManager implements ISqlJetMemoryManager {
     private SqlJetMemoryBufferType defaultBufferType = SqlJetUtility.getEnumSysProp(
             "SqlJetMemoryManager.defaultBufferType", SqlJetMemoryBufferType.ARRAY);
 
+    private final SqlJetSlabAllocator slabAllocator = new SqlJetSlabAllocator();
+
     /*
      * (non-Javadoc)
      * 
@@ -110,6 +112,8 @@ public class SqlJetMemoryManager implements ISqlJetMemoryManager {
             case DIRECT:
                 buffer = new SqlJetDirectByteBuffer();
                 break;
+            case SLAB:
+                return slabAllocator.allocate(size);
             default:
                 buffer = new SqlJetByteArrayBuffer();
             }
@@ -134,4 +138,15 @@ public class SqlJetMemoryManager implements ISqlJetMemoryManager {
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetMemoryManager#getSlabAllocationCount
+     * ()
+     */
+    public long getSlabAllocationCount() {
+        return slabAllocator.getAllocationCount();
+    }
+
 }
@@ -0,0 +1,142 @@
+/**
+ * SqlJetSlabAllocator.java
+ * Copyright (C) 2008 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+
+/**
+ * Allocator of buffers of same size (pages) in direct memory. Buffers are
+ * slices of big direct buffers (slabs), freed buffers are recycled instead of
+ * being left to garbage collector.
+ * 
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ * 
+ */
+public class SqlJetSlabAllocator {
+
+    /**
+     * System property name for size of slab in bytes.
+     */
+    public static final String SQLJET_SLAB_SIZE = "SQLJET.SLAB_SIZE";
+    public static final int SLAB_SIZE_DEFAULT = 1024 * 1024;
+
+    private final int slabSize = SqlJetUtility.getIntSysProp(SQLJET_SLAB_SIZE, SLAB_SIZE_DEFAULT);
+
+    /**
+     * Slabs and free buffers for one size of buffer.
+     */
+    private class Pool {
+
+        private final int size;
+        private final List<ByteBuffer> free = new ArrayList<ByteBuffer>();
+        private ByteBuffer slab;
+
+        Pool(int size) {
+            this.size = size;
+        }
+
+        ByteBuffer allocate() {
+            if (!free.isEmpty()) {
+                final ByteBuffer b = free.remove(free.size() - 1);
+                zero(b);
+                return b;
+            }
+            if (slab == null || slab.remaining() < size) {
+                slab = ByteBuffer.allocateDirect(Math.max(size, slabSize - slabSize % size));
+                slabs++;
+            }
+            slab.limit(slab.position() + size);
+            final ByteBuffer b = slab.slice();
+            slab.position(slab.limit()).limit(slab.capacity());
+            allocations++;
+            return b;
+        }
+
+        void release(ByteBuffer b) {
+            free.add(b);
+        }
+
+    }
+
+    private static final byte[] ZERO = new byte[4096];
+
+    private final Map<Integer, Pool> pools = new HashMap<Integer, Pool>();
+
+    private long allocations;
+    private long slabs;
+
+    /**
+     * Allocates buffer.
+     * 
+     * @param size
+     *            size of buffer.
+     * @return buffer filled by zeros.
+     */
+    public synchronized SqlJetSlabBuffer allocate(int size) {
+        return new SqlJetSlabBuffer(this, pool(size).allocate());
+    }
+
+    /**
+     * Returns memory of buffer to the pool.
+     * 
+     * @param buffer
+     */
+    synchronized void release(ByteBuffer buffer) {
+        pool(buffer.capacity()).release(buffer);
+    }
+
+    /**
+     * @return count of buffers which were taken from slabs, recycled buffers
+     *         aren't counted.
+     */
+    public synchronized long getAllocationCount() {
+        return allocations;
+    }
+
+    /**
+     * @return count of slabs allocated in direct memory.
+     */
+    public synchronized long getSlabCount() {
+        return slabs;
+    }
+
+    private Pool pool(int size) {
+        Pool pool = pools.get(size);
+        if (pool == null) {
+            pool = new Pool(size);
+            pools.put(size, pool);
+        }
+        return pool;
+    }
+
+    private static void zero(ByteBuffer b) {
+        b.clear();
+        while (b.hasRemaining()) {
+            b.put(ZERO, 0, Math.min(ZERO.length, b.remaining()));
+        }
+        b.clear();
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * SqlJetSlabBuffer.java
+ * Copyright (C) 2008 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.memory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Direct buffer which is a slice of slab from {@link SqlJetSlabAllocator}.
+ * When buffer is freed its memory returns to the allocator and the buffer
+ * can't be used anymore.
+ * 
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ * 
+ */
+public class SqlJetSlabBuffer extends SqlJetDirectByteBuffer {
+
+    private final SqlJetSlabAllocator allocator;
+
+    SqlJetSlabBuffer(SqlJetSlabAllocator allocator, ByteBuffer slice) {
+        super(slice);
+        this.allocator = allocator;
+    }
+
+    @Override
+    public void allocate(int size) {
+        free();
+        buffer = allocator.allocate(size).buffer;
+    }
+
+    @Override
+    public void free() {
+        if (buffer != null) {
+            allocator.release(buffer);
+            buffer = null;
+        }
+    }
+
+}
@@ -38,10 +38,16 @@ import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 public class SqlJetPage implements ISqlJetPage {
 
     /**
-     * 
+     * System property name for type of buffers of pages.
+     */
+    public static final String SQLJET_PAGE_BUFFER_TYPE = "SqlJetPage.BUFFER_TYPE";
+
+    /**
+     * Default type of buffers of pages, page cache reads property again when
+     * it's created.
      */
     public static final SqlJetMemoryBufferType BUFFER_TYPE = SqlJetUtility.getEnumSysProp(
-            "SqlJetPage.BUFFER_TYPE", SqlJetMemoryBufferType.ARRAY);
+            SQLJET_PAGE_BUFFER_TYPE, SqlJetMemoryBufferType.ARRAY);
 
     /** Content of this page */
     ISqlJetMemoryPointer pData;
@@ -89,8 +95,19 @@ public class SqlJetPage implements ISqlJetPage {
     /**
      * 
      */
-    SqlJetPage(int szPage) {
-        pData = SqlJetUtility.allocatePtr(szPage, BUFFER_TYPE);
+    SqlJetPage(int szPage, SqlJetMemoryBufferType bufferType) {
+        pData = SqlJetUtility.allocatePtr(szPage, bufferType);
+    }
+
+    /**
+     * Returns buffer of page to memory manager if buffers are pooled. Page
+     * must not be used by anybody.
+     */
+    void freeData() {
+        if (pData != null && pCache != null && pCache.bufferType == SqlJetMemoryBufferType.SLAB) {
+            SqlJetUtility.memoryManager.free(pData.getBuffer());
+            pData = null;
+        }
     }
 
     /*
@@ -523,16 +540,13 @@ public class SqlJetPage implements ISqlJetPage {
 
                     try {
                         long cksum = pPager.cksum(pData);
-                        SqlJetPager.write32bits(pPager.jfd, pPager.journalOff, pgno);
-                        try {
-                            pPager.jfd.write(pData, pPager.pageSize, pPager.journalOff + 4);
-                        } finally {
-                            pPager.journalOff += pPager.pageSize + 4;
-                        }
+                        /* Record is written by one call. */
                         try {
-                            SqlJetPager.write32bitsUnsigned( pPager.jfd, pPager.journalOff, cksum );
+                            pPager.jfd.write(new ISqlJetMemoryPointer[] { SqlJetUtility.put4byte(pgno), pData,
+                                    SqlJetUtility.put4byteUnsigned(cksum) }, new int[] { 4, pPager.pageSize, 4 },
+                                    pPager.journalOff);
                         } finally {
-                            pPager.journalOff += 4;
+                            pPager.journalOff += pPager.pageSize + 8;
                         }
 
                     } finally {
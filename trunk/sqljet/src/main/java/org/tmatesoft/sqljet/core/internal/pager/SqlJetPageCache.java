@@ -19,7 +19,6 @@ package org.tmatesoft.sqljet.core.internal.pager;
 
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +28,8 @@ import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.internal.ISqlJetPage;
 import org.tmatesoft.sqljet.core.internal.ISqlJetPageCache;
 import org.tmatesoft.sqljet.core.internal.ISqlJetPageCallback;
+import org.tmatesoft.sqljet.core.internal.SqlJetMemoryBufferType;
+import org.tmatesoft.sqljet.core.internal.SqlJetPageCacheReplacement;
 import org.tmatesoft.sqljet.core.internal.SqlJetPageFlags;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 
@@ -48,6 +49,12 @@ public class SqlJetPageCache implements ISqlJetPageCache {
     public static final int PAGE_CACHE_SIZE_DEFAULT = 2000;
     public static final int PAGE_CACHE_SIZE_MINIMUM = 10;
 
+    /**
+     * System property name for replacement policy of cache.
+     */
+    public static final String SQLJET_PAGE_CACHE_REPLACEMENT = "SQLJET.PAGE_CACHE_REPLACEMENT";
+    public static final SqlJetPageCacheReplacement PAGE_CACHE_REPLACEMENT_DEFAULT = SqlJetPageCacheReplacement.LRU;
+
     private static final int N_SORT_BUCKET = 25;
 
     /** List of dirty pages in LRU order */
@@ -66,13 +73,29 @@ public class SqlJetPageCache implements ISqlJetPageCache {
     boolean bPurgeable;
     /** Call to try make a page clean */
     ISqlJetPageCallback xStress;
-    PCache pCache = new PCache();
+    /** Type of buffers of pages */
+    SqlJetMemoryBufferType bufferType;
+    /** Replacement policy of unpinned pages */
+    SqlJetPageCacheReplacement replacement;
+    /** Count of fetches which found page in the cache */
+    long nHit;
+    /** Count of fetches which created new page */
+    long nMiss;
+    volatile PCache pCache;
     ISqlJetPage pPage1;
+    /** Group of all caches which accounts memory used by pages */
+    final SqlJetPageCacheGroup group = SqlJetPageCacheGroup.getInstance();
+    /** Time of last fetch from this cache in ticks of group */
+    volatile long lastUsed;
 
     SqlJetPageCache() {
         final int cacheSize = SqlJetUtility.getIntSysProp(SQLJET_PAGE_CACHE_SIZE, nMax);
         if (cacheSize >= nMin)
             nMax = cacheSize;
+        replacement = SqlJetUtility.getEnumSysProp(SQLJET_PAGE_CACHE_REPLACEMENT, PAGE_CACHE_REPLACEMENT_DEFAULT);
+        bufferType = SqlJetUtility.getEnumSysProp(SqlJetPage.SQLJET_PAGE_BUFFER_TYPE, SqlJetPage.BUFFER_TYPE);
+        pCache = new PCache();
+        group.add(this);
     }
 
     /*
@@ -199,8 +222,13 @@ public class SqlJetPageCache implements ISqlJetPageCache {
             pCache = new PCache();
         }
 
+        lastUsed = group.tick();
+        if (createFlag && bPurgeable && group.isOverLimit(szPage)) {
+            group.reclaim(szPage);
+        }
+
         if (pCache != null) {
-            pPage = pCache.fetch(pgno, createFlag);
+            pPage = pin(pgno, createFlag);
         }
 
         if (pPage == null && createFlag) {
@@ -221,18 +249,17 @@ public class SqlJetPageCache implements ISqlJetPageCache {
             if (pPg != null) {
                 xStress.pageCallback(pPg);
             }
-            pCache.cleanUnpinned();
 
-            pPage = pCache.fetch(pgno, true);
+            /*
+             * Page made clean above is recycled by fetch, it must not be
+             * dropped before because cache could hold more pages than limit.
+             */
+            pPage = pin(pgno, true);
         }
 
         if (pPage != null) {
-            if (0 == pPage.nRef) {
-                nRef++;
-            }
-            pPage.nRef++;
             if (null == pPage.pData)
-                pPage.pData = SqlJetUtility.allocatePtr(szPage, SqlJetPage.BUFFER_TYPE);
+                pPage.pData = SqlJetUtility.allocatePtr(szPage, bufferType);
             pPage.pCache = this;
             pPage.pgno = pgno;
             if (pgno == 1) {
@@ -242,6 +269,25 @@ public class SqlJetPageCache implements ISqlJetPageCache {
         return pPage;
     }
 
+    /**
+     * Fetches page and increments its reference count. Both are done under
+     * lock of {@link PCache} because pages could be recycled by other threads
+     * through {@link SqlJetPageCacheGroup}.
+     */
+    private SqlJetPage pin(int pgno, boolean createFlag) {
+        final PCache cache = pCache;
+        synchronized (cache) {
+            final SqlJetPage pPage = cache.fetch(pgno, createFlag);
+            if (pPage != null) {
+                if (0 == pPage.nRef) {
+                    nRef++;
+                }
+                pPage.nRef++;
+            }
+            return pPage;
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -251,6 +297,21 @@ public class SqlJetPageCache implements ISqlJetPageCache {
      */
     public void release(ISqlJetPage page) {
         SqlJetPage p = (SqlJetPage) page;
+        final PCache cache = pCache;
+        if (cache == null) {
+            /* cache is dropped by setPageSize(), nobody could recycle pages. */
+            unref(p);
+            return;
+        }
+        synchronized (cache) {
+            unref(p);
+        }
+    }
+
+    /**
+     * Decrements reference count of page, unpins it when it isn't used.
+     */
+    private void unref(SqlJetPage p) {
         assert (p.nRef > 0);
         p.nRef--;
         if (p.nRef == 0) {
@@ -399,6 +460,7 @@ public class SqlJetPageCache implements ISqlJetPageCache {
         if (pCache != null) {
             pCache.destroy();
         }
+        group.remove(this);
     }
 
     /*
@@ -529,6 +591,24 @@ public class SqlJetPageCache implements ISqlJetPageCache {
         nMax = mxPage;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPageCache#getHitCount()
+     */
+    public long getHitCount() {
+        return nHit;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPageCache#getMissCount()
+     */
+    public long getMissCount() {
+        return nMiss;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -548,7 +628,8 @@ public class SqlJetPageCache implements ISqlJetPageCache {
         /** Hash table for fast lookup by key */
         private Map<Integer, SqlJetPage> apHash = new LinkedHashMap<Integer, SqlJetPage>();
 
-        private Set<Integer> unpinned = new LinkedHashSet<Integer>();
+        /** Order in which unpinned pages are recycled */
+        private final SqlJetPageReplacement policy = SqlJetPageReplacement.create(replacement);
 
         /** Largest key seen since xTruncate() */
         private int iMaxKey;
@@ -618,11 +699,15 @@ public class SqlJetPageCache implements ISqlJetPageCache {
             }
 
             if (pPage != null || !createFlag) {
+                if (pPage != null) {
+                    nHit++;
+                    policy.access(key, pPage.nRef > 0);
+                }
                 return fetch_out.go_to(pPage);
             }
 
-            /* Step 3 of header comment. */
-            if (bPurgeable && getPageCount() == nMax) {
+            /* Step 3 and 4 of header comment. */
+            if (bPurgeable && getPageCount() >= nMax && !cleanUnpinned()) {
                 return null;
             }
 
@@ -631,13 +716,16 @@ public class SqlJetPageCache implements ISqlJetPageCache {
              * allocate a new one.
              */
             if (pPage == null) {
-                pPage = new SqlJetPage(szPage);
+                pPage = new SqlJetPage(szPage, bufferType);
             }
 
             if (pPage != null) {
                 pPage.pgno = key;
                 pPage.pCache = SqlJetPageCache.this;
                 apHash.put(key, pPage);
+                group.allocated(szPage);
+                policy.insert(key);
+                nMiss++;
             }
 
             return fetch_out.go_to(pPage);
@@ -664,10 +752,8 @@ public class SqlJetPageCache implements ISqlJetPageCache {
          */
         public synchronized void unpin(ISqlJetPage page, boolean discard) {
             final int pageNumber = page.getPageNumber();
-            if (discard || (bPurgeable && getPageCount() == nMax)) {
-                apHash.remove(pageNumber);
-            } else if (!unpinned.contains(pageNumber)) {
-                unpinned.add(pageNumber);
+            if (discard) {
+                discard(pageNumber);
             }
         }
 
@@ -685,8 +771,11 @@ public class SqlJetPageCache implements ISqlJetPageCache {
 
             assert (pPage.pgno == oldKey);
 
+            discard(newKey);
             apHash.remove(oldKey);
+            policy.remove(oldKey);
             apHash.put(newKey, pPage);
+            policy.insert(newKey);
             pPage.pgno = newKey;
 
             if (newKey > iMaxKey) {
@@ -711,8 +800,9 @@ public class SqlJetPageCache implements ISqlJetPageCache {
                         l.add(i);
                     }
                 }
-                for (Integer i : l)
-                    apHash.remove(i);
+                for (Integer i : l) {
+                    discard(i);
+                }
                 iMaxKey = iLimit - 1;
             }
         }
@@ -725,38 +815,61 @@ public class SqlJetPageCache implements ISqlJetPageCache {
          * sqlite3_pcache_methods functions.
          */
         public synchronized void destroy() {
+            group.freed(apHash.size() * szPage);
+            for (SqlJetPage p : apHash.values()) {
+                if (p.nRef == 0) {
+                    p.freeData();
+                }
+            }
             apHash.clear();
-            unpinned.clear();
+            policy.clear();
         }
 
         /**
+         * Evicts one page which isn't pinned nor dirty, victim is chosen by
+         * replacement policy.
          * 
+         * @return true if page was evicted.
          */
-        public void cleanUnpinned() {
-            final Iterator<Integer> i = unpinned.iterator();
+        public synchronized boolean cleanUnpinned() {
+            Integer victim = null;
+            final Iterator<Integer> i = policy.victims(nMax);
             while (i.hasNext()) {
                 final Integer next = i.next();
-                if (next == null) {
-                    i.remove();
-                    continue;
-                }
                 final SqlJetPage p = apHash.get(next);
-                if (p == null) {
-                    i.remove();
+                if (p == null || p.getRefCount() > 0) {
                     continue;
                 }
-                if(p.getRefCount()>0){
-                    i.remove();
-                    continue;                    
-                }
                 final Set<SqlJetPageFlags> flags = p.getFlags();
                 if (flags.contains(SqlJetPageFlags.DIRTY) || flags.contains(SqlJetPageFlags.NEED_SYNC)) {
                     continue;
                 }
-                apHash.remove(next);
-                i.remove();
-                return;
+                victim = next;
+                break;
+            }
+            if (victim == null) {
+                return false;
+            }
+            apHash.remove(victim).freeData();
+            group.freed(szPage);
+            policy.evict(victim, nMax);
+            return true;
+        }
+
+        /**
+         * Removes page from the cache.
+         * 
+         * @param key
+         */
+        private void discard(Integer key) {
+            final SqlJetPage p = apHash.remove(key);
+            if (p != null) {
+                if (p.nRef == 0) {
+                    p.freeData();
+                }
+                group.freed(szPage);
             }
+            policy.remove(key);
         }
 
     }
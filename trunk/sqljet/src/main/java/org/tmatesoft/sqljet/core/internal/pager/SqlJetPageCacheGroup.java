@@ -0,0 +1,183 @@
+/**
+ * SqlJetPageCacheGroup.java
+ * Copyright (C) 2008 TMate Software Ltd
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+
+/**
+ * Group of all page caches in the process. It accounts memory which is used
+ * by pages of all caches and enforces soft limit of this memory: when limit
+ * is exceeded then before allocation of new page unpinned pages are recycled,
+ * first from caches which were not used for the longest time. So pages of
+ * idle databases are given to the busy ones.
+ * 
+ * Limit is soft: if there are no pages which could be recycled then page is
+ * allocated anyway.
+ * 
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ * 
+ */
+public class SqlJetPageCacheGroup {
+
+    /**
+     * System property name for soft limit of memory used by all page caches,
+     * in bytes. Zero means no limit.
+     */
+    public static final String SQLJET_PAGE_CACHE_HEAP_LIMIT = "SQLJET.PAGE_CACHE_HEAP_LIMIT";
+    public static final long PAGE_CACHE_HEAP_LIMIT_DEFAULT = 0;
+
+    private static final SqlJetPageCacheGroup instance = new SqlJetPageCacheGroup(SqlJetUtility.getLongSysProp(
+            SQLJET_PAGE_CACHE_HEAP_LIMIT, PAGE_CACHE_HEAP_LIMIT_DEFAULT));
+
+    /**
+     * Cache and time of its last use, which doesn't change while caches are
+     * sorted.
+     */
+    private static class Member implements Comparable<Member> {
+        private final SqlJetPageCache cache;
+        private final long lastUsed;
+
+        Member(SqlJetPageCache cache) {
+            this.cache = cache;
+            this.lastUsed = cache.lastUsed;
+        }
+
+        public int compareTo(Member m) {
+            return lastUsed < m.lastUsed ? -1 : (lastUsed == m.lastUsed ? 0 : 1);
+        }
+    }
+
+    private final Map<SqlJetPageCache, Object> caches = new WeakHashMap<SqlJetPageCache, Object>();
+
+    private final AtomicLong used = new AtomicLong();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private volatile long limit;
+
+    SqlJetPageCacheGroup(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return group of all page caches.
+     */
+    public static SqlJetPageCacheGroup getInstance() {
+        return instance;
+    }
+
+    /**
+     * Set soft limit of memory used by pages of all caches.
+     * 
+     * @param limit
+     *            count of bytes, zero means no limit.
+     */
+    public void setSoftHeapLimit(long limit) {
+        this.limit = limit > 0 ? limit : 0;
+    }
+
+    /**
+     * @return soft limit of memory used by pages of all caches, zero if there
+     *         is no limit.
+     */
+    public long getSoftHeapLimit() {
+        return limit;
+    }
+
+    /**
+     * @return count of bytes used by pages of all caches.
+     */
+    public long getUsedBytes() {
+        return used.get();
+    }
+
+    synchronized void add(SqlJetPageCache cache) {
+        caches.put(cache, null);
+    }
+
+    synchronized void remove(SqlJetPageCache cache) {
+        caches.remove(cache);
+    }
+
+    /**
+     * @return value which orders uses of caches.
+     */
+    long tick() {
+        return clock.incrementAndGet();
+    }
+
+    void allocated(int bytes) {
+        used.addAndGet(bytes);
+    }
+
+    void freed(int bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    /**
+     * @param bytes
+     *            size of page which is going to be allocated.
+     * @return true if allocation of page exceeds limit.
+     */
+    boolean isOverLimit(int bytes) {
+        final long limit = this.limit;
+        return limit > 0 && used.get() + bytes > limit;
+    }
+
+    /**
+     * Recycles unpinned pages of caches, from idle to busy ones, until
+     * allocation of new page fits in limit or there is nothing to recycle.
+     * Must be called without lock of any cache.
+     * 
+     * @param bytes
+     *            size of page which is going to be allocated.
+     */
+    void reclaim(int bytes) {
+        final List<Member> members = new ArrayList<Member>();
+        synchronized (this) {
+            for (SqlJetPageCache cache : caches.keySet()) {
+                members.add(new Member(cache));
+            }
+        }
+        Collections.sort(members);
+        for (Member member : members) {
+            final SqlJetPageCache cache = member.cache;
+            final SqlJetPageCache.PCache pCache = cache.pCache;
+            if (pCache == null || !cache.bPurgeable) {
+                continue;
+            }
+            while (isOverLimit(bytes)) {
+                if (!pCache.cleanUnpinned()) {
+                    break;
+                }
+            }
+            if (!isOverLimit(bytes)) {
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+/**
+ * SqlJetPageReplacement.java
+ * Copyright (C) 2008 TMate Software Ltd
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.tmatesoft.sqljet.core.internal.SqlJetPageCacheReplacement;
+
+/**
+ * Replacement policy of page cache: keeps track of pages which are in the
+ * cache and decides in which order they are evicted. Policy knows nothing
+ * about pinned and dirty pages, cache skips them when it looks for victim.
+ * 
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ * 
+ */
+abstract class SqlJetPageReplacement {
+
+    /**
+     * Creates implementation of policy.
+     * 
+     * @param replacement
+     * @return
+     */
+    static SqlJetPageReplacement create(SqlJetPageCacheReplacement replacement) {
+        switch (replacement) {
+        case TWO_Q:
+            return new TwoQ();
+        default:
+            return new Lru();
+        }
+    }
+
+    /**
+     * Page was added to the cache.
+     * 
+     * @param key
+     */
+    abstract void insert(Integer key);
+
+    /**
+     * Page which is in the cache was fetched again.
+     * 
+     * @param key
+     * @param pinned
+     *            true if page was still in use when it was fetched.
+     */
+    abstract void access(Integer key, boolean pinned);
+
+    /**
+     * Page was discarded from the cache.
+     * 
+     * @param key
+     */
+    abstract void remove(Integer key);
+
+    /**
+     * Page was chosen as victim and evicted from the cache.
+     * 
+     * @param key
+     * @param capacity
+     *            count of pages in the cache.
+     */
+    abstract void evict(Integer key, int capacity);
+
+    /**
+     * Returns pages in order in which they should be evicted. The iterator
+     * must not be used after the cache is changed.
+     * 
+     * @param capacity
+     *            count of pages in the cache.
+     * @return
+     */
+    abstract Iterator<Integer> victims(int capacity);
+
+    /**
+     * Forget about all pages.
+     */
+    abstract void clear();
+
+    /**
+     * Least recently used page is evicted first.
+     */
+    static class Lru extends SqlJetPageReplacement {
+
+        private final Set<Integer> order = new LinkedHashSet<Integer>();
+
+        @Override
+        void insert(Integer key) {
+            order.remove(key);
+            order.add(key);
+        }
+
+        @Override
+        void access(Integer key, boolean pinned) {
+            if (order.remove(key)) {
+                order.add(key);
+            }
+        }
+
+        @Override
+        void remove(Integer key) {
+            order.remove(key);
+        }
+
+        @Override
+        void evict(Integer key, int capacity) {
+            order.remove(key);
+        }
+
+        @Override
+        Iterator<Integer> victims(int capacity) {
+            return order.iterator();
+        }
+
+        @Override
+        void clear() {
+            order.clear();
+        }
+
+    }
+
+    /**
+     * 2Q of Johnson and Shasha. New pages go to FIFO queue "A1in". Pages
+     * evicted from it are remembered (without content) in queue "A1out", and
+     * when such page is read again it goes to LRU queue "Am". Page which is
+     * fetched again while it's still in "A1in" goes to "Am" too, but only if it
+     * was released before: repeated fetches during one operation are
+     * correlated and don't count. Pages which are touched only once, like
+     * pages of full scan, never get into "Am" and evict each other in "A1in".
+     */
+    static class TwoQ extends SqlJetPageReplacement {
+
+        private final Set<Integer> in = new LinkedHashSet<Integer>();
+        private final Set<Integer> out = new LinkedHashSet<Integer>();
+        private final Set<Integer> main = new LinkedHashSet<Integer>();
+
+        @Override
+        void insert(Integer key) {
+            remove(key);
+            if (out.remove(key)) {
+                main.add(key);
+            } else {
+                in.add(key);
+            }
+        }
+
+        @Override
+        void access(Integer key, boolean pinned) {
+            if (main.remove(key)) {
+                main.add(key);
+            } else if (!pinned && in.remove(key)) {
+                main.add(key);
+            }
+        }
+
+        @Override
+        void remove(Integer key) {
+            if (!in.remove(key)) {
+                main.remove(key);
+            }
+        }
+
+        @Override
+        void evict(Integer key, int capacity) {
+            if (in.remove(key)) {
+                out.add(key);
+                final int maxOut = Math.max(1, capacity / 2);
+                final Iterator<Integer> i = out.iterator();
+                while (out.size() > maxOut && i.hasNext()) {
+                    i.next();
+                    i.remove();
+                }
+            } else {
+                main.remove(key);
+            }
+        }
+
+        @Override
+        Iterator<Integer> victims(int capacity) {
+            if (in.size() > Math.max(1, capacity / 4)) {
+                return chain(in.iterator(), main.iterator());
+            } else {
+                return chain(main.iterator(), in.iterator());
+            }
+        }
+
+        @Override
+        void clear() {
+            in.clear();
+            out.clear();
+            main.clear();
+        }
+
+        private static Iterator<Integer> chain(final Iterator<Integer> first, final Iterator<Integer> second) {
+            return new Iterator<Integer>() {
+                public boolean hasNext() {
+                    return first.hasNext() || second.hasNext();
+                }
+
+                public Integer next() {
+                    if (first.hasNext()) {
+                        return first.next();
+                    } else if (second.hasNext()) {
+                        return second.next();
+                    }
+                    throw new NoSuchElementException();
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+    }
+
+}
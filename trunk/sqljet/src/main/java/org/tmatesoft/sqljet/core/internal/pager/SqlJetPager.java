@@ -18,10 +18,17 @@
 package org.tmatesoft.sqljet.core.internal.pager;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Logger;
 
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
@@ -51,6 +58,7 @@ import org.tmatesoft.sqljet.core.internal.SqlJetSavepointOperation;
 import org.tmatesoft.sqljet.core.internal.SqlJetSyncFlags;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 import org.tmatesoft.sqljet.core.internal.fs.SqlJetFile;
+import org.tmatesoft.sqljet.core.internal.memory.SqlJetMappedByteBuffer;
 import org.tmatesoft.sqljet.core.table.ISqlJetBusyHandler;
 
 /**
@@ -154,6 +162,15 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
     /** True if journal file descriptors is valid */
     boolean journalOpen;
 
+    /** Pages restored from journal which aren't written yet, by page number */
+    private TreeMap<Integer, ISqlJetMemoryPointer> playbackBatch;
+
+    /** Maximal count of pages in playbackBatch */
+    private static final int PLAYBACK_BATCH_PAGES = 256;
+
+    /** Buffer for reading of journal records */
+    private ISqlJetMemoryPointer journalRecord;
+
     /** True if header of journal is synced */
     boolean journalStarted;
 
@@ -291,6 +308,67 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
     /** Number of elements in aSavepoint[] */
     int nSavepoint;
 
+    /** Name of the write-ahead log file */
+    File walName;
+
+    /** Write-ahead log, if journal mode is WAL */
+    SqlJetWal wal;
+
+    /** Snapshot of current read transaction in the log, -1 if none */
+    int walSnapshot = -1;
+
+    /** Snapshot and generation of log which pages in cache are from */
+    int walCacheSnapshot = -1, walCacheGeneration;
+
+    /** Count of frames in the log after which a commit runs checkpoint */
+    private static final int walAutoCheckpoint = SqlJetUtility.getIntSysProp(SqlJetWal.SQLJET_WAL_AUTOCHECKPOINT,
+            SqlJetWal.WAL_AUTOCHECKPOINT_DEFAULT);
+
+    /** Name of system property with default size of memory-mapped region */
+    public static final String SQLJET_MMAP_SIZE = "SQLJET.MMAP_SIZE";
+
+    /** Maximum count of bytes of database file mapped into memory */
+    private long mmapSize = SqlJetUtility.getIntSysProp(SQLJET_MMAP_SIZE, 0);
+
+    /** Mapped region of database file, null if not mapped yet */
+    private ByteBuffer mmap;
+
+    /** Name of system property with default count of pages read ahead */
+    public static final String SQLJET_READ_AHEAD = "SQLJET.READ_AHEAD";
+
+    /** Count of pages read at once when sequential reading is detected */
+    private static final int READ_AHEAD_MIN = 4;
+
+    /** Maximum count of pages read ahead of sequential reading */
+    private int readAhead = SqlJetUtility.getIntSysProp(SQLJET_READ_AHEAD, 0);
+
+    /** Pages read ahead: first of them and their count */
+    private int readAheadFirst, readAheadCount;
+
+    /** Page which was read from file last time and current count of pages to read ahead */
+    private int readAheadLast, readAheadWindow;
+
+    /** Buffer with pages read ahead */
+    private ISqlJetMemoryPointer readAheadBuffer;
+
+    /** Name of system property with default size of chunks of database file */
+    public static final String SQLJET_CHUNK_SIZE = "SQLJET.CHUNK_SIZE";
+
+    /** Count of bytes by which database file grows, zero if it grows by pages */
+    private int chunkSize = SqlJetUtility.getIntSysProp(SQLJET_CHUNK_SIZE, 0);
+
+    /** Name of system property with default size of journals kept in memory */
+    public static final String SQLJET_JOURNAL_SPILL_SIZE = "SQLJET.JOURNAL_SPILL_SIZE";
+
+    /** Default size of journals kept in memory */
+    public static final int JOURNAL_SPILL_SIZE_DEFAULT = 1 << 20;
+
+    /**
+     * Size after which sub-journals and journals of MEMORY and WAL modes are
+     * moved from memory into temporary files, negative if never.
+     */
+    private int journalSpillSize = SqlJetUtility.getIntSysProp(SQLJET_JOURNAL_SPILL_SIZE, JOURNAL_SPILL_SIZE_DEFAULT);
+
     /**
      * The size of the header and of each page in the journal is determined by
      * the following macros.
@@ -391,9 +469,11 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 
             this.directory = this.fileName.getParentFile();
             this.journal = new File(this.directory, this.fileName.getName() + JOURNAL);
+            this.walName = new File(this.directory, this.fileName.getName() + SqlJetWal.WAL);
 
             this.fd = this.fileSystem.open(this.fileName, this.type, this.permissions);
             this.readOnly = this.fd.getPermissions().contains(SqlJetFileOpenPermission.READONLY);
+            this.fd.setChunkSize(chunkSize);
 
             /*
              * If the file was successfully opened for read/write access, choose
@@ -585,6 +665,9 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
      * .core.SqlJetPagerJournalMode)
      */
     public void setJournalMode(final SqlJetPagerJournalMode journalMode) {
+        if (journalMode == SqlJetPagerJournalMode.WAL && (memDb || tempFile)) {
+            return;
+        }
         this.journalMode = journalMode;
     }
 
@@ -724,6 +807,8 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         if (pageCache != null) {
             pageCache.clear();
         }
+        mmap = null;
+        readAheadCount = 0;
     }
 
     /*
@@ -765,6 +850,103 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         return pageCache.getCachesize();
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#getCacheHitCount()
+     */
+    public long getCacheHitCount() {
+        return pageCache.getHitCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#getCacheMissCount()
+     */
+    public long getCacheMissCount() {
+        return pageCache.getMissCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#setMmapSize(long)
+     */
+    public void setMmapSize(long mmapSize) {
+        this.mmapSize = mmapSize > 0 ? mmapSize : 0;
+        mmap = null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#getMmapSize()
+     */
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#setReadAhead(int)
+     */
+    public void setReadAhead(int readAhead) {
+        this.readAhead = readAhead > 0 ? readAhead : 0;
+        readAheadBuffer = null;
+        readAheadCount = 0;
+        readAheadWindow = 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#getReadAhead()
+     */
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#setChunkSize(int)
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize > 0 ? chunkSize : 0;
+        if (null != fd) {
+            fd.setChunkSize(this.chunkSize);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#getChunkSize()
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#setJournalSpillSize(int)
+     */
+    public void setJournalSpillSize(int journalSpillSize) {
+        this.journalSpillSize = journalSpillSize < 0 ? -1 : journalSpillSize;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetPager#getJournalSpillSize()
+     */
+    public int getJournalSpillSize() {
+        return journalSpillSize;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -797,7 +979,9 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         } else {
             assert (null != fd || tempFile);
             long l = 0;
-            if (null != fd) {
+            if (null != wal && walSnapshot > 0) {
+                l = ((long) wal.getDbSize(walSnapshot)) * pageSize;
+            } else if (null != fd) {
                 try {
                     l = fd.fileSize();
                 } catch (SqlJetException e) {
@@ -876,6 +1060,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             } catch (SqlJetException e) {
                 // TODO: handle exception
             }
+            sjfd = null;
         }
         aSavepoint = null;
         nSavepoint = 0;
@@ -907,6 +1092,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
      *
      */
     private void unlock() {
+        readAheadCount = 0;
         if (SqlJetPagerLockingMode.EXCLUSIVE != lockingMode) {
 
             /*
@@ -926,6 +1112,16 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
                 pagesAlwaysRollback = null;
             }
 
+            if (null != wal) {
+                if (state.compareTo(SqlJetPagerState.RESERVED) >= 0) {
+                    wal.endWrite();
+                }
+                endWalRead();
+                if (journalMode != SqlJetPagerJournalMode.WAL) {
+                    closeWal();
+                }
+            }
+
             try {
                 if (null != fd)
                     fd.unlock(SqlJetLockType.NONE);
@@ -984,6 +1180,14 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         pagesInJournal = null;
         pagesAlwaysRollback = null;
         releaseAllSavepoint();
+        if (null != wal) {
+            endWalRead();
+            try {
+                wal.release(fd, !readOnly, noSync, syncFlags);
+            } finally {
+                wal = null;
+            }
+        }
         if (null != fd)
             fd.close();
 
@@ -1058,7 +1262,9 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 
             } else {
                 try {
-                    readDbPage(page, pageNumber);
+                    if (!mapDbPage(page, pageNumber) && !readAheadDbPage(page, pageNumber, nMax)) {
+                        readDbPage(page, pageNumber);
+                    }
                 } catch (SqlJetIOException e) {
                     if (SqlJetIOErrorCode.IOERR_SHORT_READ != e.getIoErrorCode()) {
                         dropPage(page);
@@ -1176,13 +1382,116 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         }
         final long offset = ((long) (pageNumber - 1)) * pageSize;
         final ISqlJetMemoryPointer data = page.getData();
-        fd.read(data, pageSize, offset);
+        final int frame = null != wal ? wal.findFrame(pageNumber, walReadLimit()) : 0;
+        if (frame > 0) {
+            wal.readFrame(frame, data, pageSize);
+        } else {
+            fd.read(data, pageSize, offset);
+        }
         if (1 == pageNumber) {
             SqlJetUtility.memcpy(dbFileVers, 0, data, 24, dbFileVers.remaining());
         }
         PAGERTRACE("FETCH %s page %d hash(%08x)\n", PAGERID(), page.getPageNumber(), pageHash(page));
     }
 
+    /**
+     * Reads page from pages which were read ahead. When pages are read one
+     * after another then next pages are read ahead by one larger read, count
+     * of them is doubled on each such read up to {@link #readAhead}.
+     *
+     * Pages are read ahead only while pager holds SHARED lock, because then
+     * database file isn't changed under pager. Pages read ahead are forgotten
+     * when lock is released or write transaction is started.
+     *
+     * @param page
+     * @param pageNumber
+     * @param nMax
+     *            count of pages in database.
+     * @return false if page should be read from file.
+     * @throws SqlJetIOException
+     */
+    private boolean readAheadDbPage(final ISqlJetPage page, int pageNumber, int nMax) throws SqlJetIOException {
+        if (readAhead <= 0 || SqlJetPagerState.SHARED != state || null == fd || tempFile) {
+            return false;
+        }
+        if (null != wal && wal.findFrame(pageNumber, walReadLimit()) > 0) {
+            return false;
+        }
+        final boolean sequential = pageNumber == readAheadLast + 1;
+        readAheadLast = pageNumber;
+        if (pageNumber < readAheadFirst || pageNumber >= readAheadFirst + readAheadCount) {
+            if (!sequential) {
+                readAheadWindow = 0;
+                return false;
+            }
+            readAheadWindow = Math.min(readAheadWindow > 0 ? readAheadWindow * 2 : READ_AHEAD_MIN, readAhead);
+            final int count = Math.min(readAheadWindow, nMax - pageNumber + 1);
+            if (count < 2) {
+                return false;
+            }
+            if (null == readAheadBuffer || readAheadBuffer.remaining() < count * pageSize) {
+                readAheadBuffer = SqlJetUtility.allocatePtr(readAhead * pageSize);
+            }
+            readAheadCount = 0;
+            final long offset = ((long) (pageNumber - 1)) * pageSize;
+            if (fd.read(readAheadBuffer, count * pageSize, offset) < count * pageSize) {
+                return false;
+            }
+            readAheadFirst = pageNumber;
+            readAheadCount = count;
+            PAGERTRACE("READAHEAD %s pages %d-%d\n", PAGERID(), pageNumber, pageNumber + count - 1);
+        }
+        final ISqlJetMemoryPointer data = page.getData();
+        SqlJetUtility.memcpy(data, 0, readAheadBuffer, (pageNumber - readAheadFirst) * pageSize, pageSize);
+        if (1 == pageNumber) {
+            SqlJetUtility.memcpy(dbFileVers, 0, data, 24, dbFileVers.remaining());
+        }
+        PAGERTRACE("FETCH %s page %d hash(%08x)\n", PAGERID(), pageNumber, pageHash(page));
+        return true;
+    }
+
+    /**
+     * Points content of page pPg to region of memory-mapped database file
+     * instead of reading it. Content is copied out of the map only when page
+     * is modified, see {@link SqlJetMappedByteBuffer}.
+     *
+     * @param page
+     * @param pageNumber
+     * @return false if page couldn't be mapped and should be read.
+     * @throws SqlJetException
+     */
+    private boolean mapDbPage(final ISqlJetPage page, int pageNumber) throws SqlJetException {
+        if (mmapSize <= 0 || null == fd || tempFile || !(page instanceof SqlJetPage)) {
+            return false;
+        }
+        if (null != wal && wal.findFrame(pageNumber, walReadLimit()) > 0) {
+            return false;
+        }
+        final long offset = ((long) (pageNumber - 1)) * pageSize;
+        final long end = offset + pageSize;
+        if (end > mmapSize || end > Integer.MAX_VALUE) {
+            return false;
+        }
+        if (null == mmap || end > mmap.capacity()) {
+            final long fileSize = fd.fileSize();
+            if (end > fileSize) {
+                return false;
+            }
+            mmap = fd.map(Math.min(Math.min(fileSize, mmapSize), Integer.MAX_VALUE));
+            if (null == mmap) {
+                return false;
+            }
+        }
+        final ISqlJetMemoryPointer data = SqlJetMappedByteBuffer.slice(mmap, (int) offset, pageSize).getPointer(0);
+        ((SqlJetPage) page).freeData();
+        ((SqlJetPage) page).pData = data;
+        if (1 == pageNumber) {
+            SqlJetUtility.memcpy(dbFileVers, 0, data, 24, dbFileVers.remaining());
+        }
+        PAGERTRACE("MAP %s page %d\n", PAGERID(), pageNumber);
+        return true;
+    }
+
     /**
      * This function is called to obtain the shared lock required before data
      * may be read from the pager cache. If the shared lock has already been
@@ -1345,7 +1654,18 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 
                 }
 
-                if (pageCache.getPageCount() > 0) {
+                if (openWal()) {
+                    /*
+                     * In WAL mode the database is changed if other connection
+                     * has committed since pages in cache were read.
+                     */
+                    if (pageCache.getPageCount() > 0
+                            && (walSnapshot != walCacheSnapshot || wal.generation != walCacheGeneration)) {
+                        reset();
+                    }
+                    walCacheSnapshot = walSnapshot;
+                    walCacheGeneration = wal.generation;
+                } else if (pageCache.getPageCount() > 0) {
                     /*
                      * The shared-lock has just been acquired on the database
                      * file and there are already pages in the cache (from a
@@ -1460,6 +1780,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
          */
         assert (journalOpen);
 
+        playbackBatch = new TreeMap<Integer, ISqlJetMemoryPointer>();
         try {
             szJ = jfd.fileSize();
             if (szJ == 0) {
@@ -1579,6 +1900,15 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 
             // end_playback:
 
+            if (rc == null && null != fd) {
+                try {
+                    flushPlaybackBatch();
+                } catch (SqlJetException e) {
+                    rc = e;
+                }
+            }
+            playbackBatch = null;
+
             if (rc == null) {
                 try {
                     zMaster = readMasterJournal(jfd);
@@ -1865,7 +2195,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         }
         releaseAllSavepoint();
         if (journalOpen) {
-            if (journalMode == SqlJetPagerJournalMode.MEMORY) {
+            if (journalMode == SqlJetPagerJournalMode.MEMORY || null != wal) {
                 boolean isMemoryJournal = jfd.isMemJournal();
                 try {
                     jfd.close();
@@ -1933,6 +2263,10 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             assert (null == pagesInJournal);
         }
 
+        if (null != wal) {
+            wal.endWrite();
+        }
+
         if (!exclusiveMode()) {
             if (null != fd) {
                 try {
@@ -2082,9 +2416,18 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
 
         jfd = (isMainJrnl ? this.jfd : this.sjfd);
 
-        pgno = read32bits(jfd, pOffset);
-        jfd.read(aData, pageSize, pOffset + 4);
-        pOffset += pageSize + 4 + (isMainJrnl ? 4 : 0);
+        /* Read whole record, page number, content and checksum, at once. */
+        final int recordSize = pageSize + 4 + (isMainJrnl ? 4 : 0);
+        if (journalRecord == null || journalRecord.remaining() < recordSize) {
+            journalRecord = SqlJetUtility.allocatePtr(pageSize + 8);
+        }
+        final int read = jfd.read(journalRecord, recordSize, pOffset);
+        if (read < recordSize) {
+            SqlJetUtility.memset(journalRecord, read, (byte) 0, recordSize - read);
+        }
+        pgno = SqlJetUtility.get4byte(journalRecord, 0);
+        SqlJetUtility.memcpy(aData, 0, journalRecord, 4, pageSize);
+        pOffset += recordSize;
 
         /*
          * Sanity checking on the page. This is more important that I originally
@@ -2100,7 +2443,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             return pOffset;
         }
         if (isMainJrnl) {
-            cksum = read32bitsUnsigned(jfd, pOffset - 4);
+            cksum = SqlJetUtility.get4byteUnsigned(journalRecord, pageSize + 4);
             if (!isSavepnt && cksum(aData) != cksum) {
                 throw new SqlJetException(SqlJetErrorCode.DONE);
             }
@@ -2149,12 +2492,16 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
                 (isMainJrnl ? "main-journal" : "sub-journal"));
         if (state.compareTo(SqlJetPagerState.EXCLUSIVE) >= 0
                 && (pPg == null || !pPg.getFlags().contains(SqlJetPageFlags.NEED_SYNC)) && null != fd) {
-            final long ofst = (pgno - 1) * ((long)pageSize);
-            fd.write(aData, pageSize, ofst);
+            if (playbackBatch != null) {
+                deferPlaybackWrite(pgno, aData);
+            } else {
+                final long ofst = (pgno - 1) * ((long)pageSize);
+                fd.write(aData, pageSize, ofst);
+            }
             if (pgno > dbFileSize) {
                 dbFileSize = pgno;
             }
-        } else if (!isMainJrnl && pPg == null) {
+        } else if ((!isMainJrnl || (isSavepnt && null != wal)) && pPg == null) {
             /*
              * If this is a rollback of a savepoint and data was not written to
              * the database and the page is not in-memory, there is a potential
@@ -2231,6 +2578,48 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         return pOffset;
     }
 
+    /**
+     * Keeps page restored from journal to write it later together with its
+     * neighbours.
+     *
+     * @param pgno
+     * @param data
+     * @throws SqlJetException
+     */
+    private void deferPlaybackWrite(final int pgno, final ISqlJetMemoryPointer data) throws SqlJetException {
+        final ISqlJetMemoryPointer copy = SqlJetUtility.allocatePtr(pageSize);
+        SqlJetUtility.memcpy(copy, data, pageSize);
+        playbackBatch.put(pgno, copy);
+        if (playbackBatch.size() >= PLAYBACK_BATCH_PAGES) {
+            flushPlaybackBatch();
+        }
+    }
+
+    /**
+     * Writes pages restored from journal into database file, in order of page
+     * numbers, by one call for each run of adjacent pages.
+     *
+     * @throws SqlJetException
+     */
+    private void flushPlaybackBatch() throws SqlJetException {
+        final List<ISqlJetMemoryPointer> run = new ArrayList<ISqlJetMemoryPointer>();
+        int first = 0;
+        for (final Map.Entry<Integer, ISqlJetMemoryPointer> page : playbackBatch.entrySet()) {
+            if (!run.isEmpty() && first + run.size() != page.getKey()) {
+                writePages(fd, first, run.toArray(new ISqlJetMemoryPointer[run.size()]));
+                run.clear();
+            }
+            if (run.isEmpty()) {
+                first = page.getKey();
+            }
+            run.add(page.getValue());
+        }
+        if (!run.isEmpty()) {
+            writePages(fd, first, run.toArray(new ISqlJetMemoryPointer[run.size()]));
+        }
+        playbackBatch.clear();
+    }
+
     /**
      * Compute and return a checksum for the page of data.
      *
@@ -2600,6 +2989,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             newSize = ((long)pageSize) * pageNumber;
             if (currentSize != newSize) {
                 if (currentSize > newSize) {
+                    mmap = null;
                     fd.truncate(newSize);
                 } else {
                     final ISqlJetMemoryPointer b = SqlJetUtility.allocatePtr(1);
@@ -2738,8 +3128,8 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         PAGERTRACE("STMT-JOURNAL %s page %d\n", PAGERID(), pPg.pgno);
 
         assert (pageInJournal(pPg) || pPg.pgno > dbOrigSize);
-        write32bits(sjfd, offset, pPg.pgno);
-        sjfd.write(pData, pageSize, offset + 4);
+        sjfd.write(new ISqlJetMemoryPointer[] { SqlJetUtility.put4byte(pPg.pgno), pData }, new int[] { 4, pageSize },
+                offset);
         stmtNRec++;
         assert (nSavepoint > 0);
         addToSavepointBitSets(pPg.pgno);
@@ -2773,7 +3163,10 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             assert (!memDb);
             if (fd.lock(SqlJetLockType.RESERVED)) {
                 state = SqlJetPagerState.RESERVED;
-                if (exclusive) {
+                readAheadCount = 0;
+                if (null != wal) {
+                    beginWalWrite();
+                } else if (exclusive) {
                     waitOnLock(SqlJetLockType.EXCLUSIVE);
                 }
                 dirtyCache = false;
@@ -2956,11 +3349,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
      */
     private void openSubJournal() throws SqlJetException {
         if (journalOpen && sjfd == null) {
-            if (journalMode == SqlJetPagerJournalMode.MEMORY) {
-                sjfd = fileSystem.memJournalOpen();
-            } else {
-                sjfd = openTemp(SqlJetFileType.SUBJOURNAL, null);
-            }
+            sjfd = fileSystem.memJournalOpen(SqlJetFileType.SUBJOURNAL, journalSpillSize);
         }
     }
 
@@ -2997,8 +3386,8 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
                     fileType = SqlJetFileType.MAIN_JOURNAL;
                 }
                 try {
-                    if (journalMode == SqlJetPagerJournalMode.MEMORY) {
-                        jfd = fileSystem.memJournalOpen();
+                    if (journalMode == SqlJetPagerJournalMode.MEMORY || null != wal) {
+                        jfd = fileSystem.memJournalOpen(SqlJetFileType.TEMP_JOURNAL, journalSpillSize);
                     } else {
                         jfd = fileSystem.open(journal, fileType, flags);
                     }
@@ -3101,6 +3490,17 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
                  * commit the transaction the m-j name will have already been
                  * written.
                  */
+                if (null != wal) {
+                    incrChangeCounter();
+                    walFrames(pageCache.getDirtyList(), true);
+                    pageCache.cleanAll();
+                    state = SqlJetPagerState.SYNCED;
+                    if (walAutoCheckpoint > 0 && wal.getFrameCount() >= walAutoCheckpoint) {
+                        wal.checkpoint(fd, this.noSync, syncFlags);
+                    }
+                    return;
+                }
+
                 if (!setMaster) {
 
                     incrChangeCounter();
@@ -3206,6 +3606,11 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
          */
         waitOnLock(SqlJetLockType.EXCLUSIVE);
 
+        /*
+         * Dirty list is sorted by page numbers, so pages which follow one
+         * after other in file are written together by one call.
+         */
+        final List<ISqlJetPage> run = new ArrayList<ISqlJetPage>();
         for (ISqlJetPage page = pList; page != null; page = page.getDirty()) {
 
             /* If the file has not yet been opened, open it now. */
@@ -3222,25 +3627,71 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
              */
             if (page.getPageNumber() <= dbSize && !page.getFlags().contains(SqlJetPageFlags.DONT_WRITE)) {
 
-                final long offset = ((long) (page.getPageNumber() - 1)) * pageSize;
                 PAGERTRACE("STORE %s page %d hash(%08x)\n", PAGERID(), pList.getPageNumber(), pageHash(pList));
 
-                ISqlJetMemoryPointer pData = page.getData();
-
-                fd.write(pData, pageSize, offset);
-                if (page.getPageNumber() == 1) {
-                    SqlJetUtility.memcpy(dbFileVers, 0, pData, 24, dbFileVers.remaining());
-                }
-                if (page.getPageNumber() > dbFileSize) {
-                    dbFileSize = page.getPageNumber();
+                if (!run.isEmpty() && run.get(run.size() - 1).getPageNumber() + 1 != page.getPageNumber()) {
+                    writePageRun(run);
                 }
+                run.add(page);
             } else {
                 PAGERTRACE("NOSTORE %s page %d\n", PAGERID(), pList.getPageNumber());
             }
 
             page.setHash(pageHash(page));
         }
+        writePageRun(run);
+
+    }
 
+    /**
+     * Writes pages with subsequent page numbers into database file and clears
+     * list of them.
+     *
+     * @param run
+     * @throws SqlJetException
+     */
+    private void writePageRun(final List<ISqlJetPage> run) throws SqlJetException {
+        if (run.isEmpty()) {
+            return;
+        }
+        final int first = run.get(0).getPageNumber();
+        final ISqlJetMemoryPointer[] data = new ISqlJetMemoryPointer[run.size()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = run.get(i).getData();
+        }
+        writePages(fd, first, data);
+        for (final ISqlJetPage page : run) {
+            if (page.getPageNumber() == 1) {
+                SqlJetUtility.memcpy(dbFileVers, 0, page.getData(), 24, dbFileVers.remaining());
+            }
+            if (page.getPageNumber() > dbFileSize) {
+                dbFileSize = page.getPageNumber();
+            }
+        }
+        run.clear();
+    }
+
+    /**
+     * Writes content of pages with subsequent page numbers into file, by one
+     * write call.
+     *
+     * @param file
+     * @param first
+     *            number of first page.
+     * @param data
+     *            content of pages.
+     * @throws SqlJetIOException
+     */
+    private void writePages(final ISqlJetFile file, final int first, final ISqlJetMemoryPointer[] data)
+            throws SqlJetIOException {
+        final long offset = ((long) (first - 1)) * pageSize;
+        if (data.length == 1) {
+            file.write(data[0], pageSize, offset);
+        } else {
+            final int[] amounts = new int[data.length];
+            Arrays.fill(amounts, pageSize);
+            file.write(data, amounts, offset);
+        }
     }
 
     /**
@@ -3510,7 +3961,21 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         }
 
         assert (pPg.getFlags().contains(SqlJetPageFlags.DIRTY));
-        if (errCode == null) {
+        if (errCode == null && null != wal) {
+            /*
+             * In WAL mode the page is spilled into the log as not committed
+             * frame, the database file is never written before checkpoint.
+             */
+            try {
+                pPg.pDirty = null;
+                if (pPg.getPageNumber() > dbSize && subjRequiresPage(pPg)) {
+                    subjournalPage(pPg);
+                }
+                walFrames(pPg, false);
+            } catch (SqlJetException e) {
+                error(e);
+            }
+        } else if (errCode == null) {
             try {
                 if (pPg.getFlags().contains(SqlJetPageFlags.NEED_SYNC)) {
                     syncJournal();
@@ -3533,6 +3998,151 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
         pageCache.makeClean(pPg);
     }
 
+    /**
+     * Opens write-ahead log if journal mode is WAL or if log file exists, and
+     * starts read transaction on it. Must be called with SHARED lock held.
+     *
+     * @return true if pager uses write-ahead log.
+     * @throws SqlJetException
+     */
+    private boolean openWal() throws SqlJetException {
+        if (null == wal) {
+            if (memDb || tempFile || null == fd || null == walName) {
+                return false;
+            }
+            if (journalMode != SqlJetPagerJournalMode.WAL) {
+                /*
+                 * Log file which is left by other connection has to be read,
+                 * otherwise committed transactions in it would be lost.
+                 */
+                if (!fileSystem.access(walName, SqlJetFileAccesPermission.EXISTS)) {
+                    return false;
+                }
+            }
+            wal = SqlJetWal.open(fileSystem, fd, walName, readOnly);
+            if (null == wal) {
+                return false;
+            }
+            journalMode = SqlJetPagerJournalMode.WAL;
+        }
+        if (walSnapshot < 0) {
+            synchronized (wal) {
+                walSnapshot = wal.beginRead();
+                dbSizeValid = false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finishes read transaction on write-ahead log.
+     */
+    private void endWalRead() {
+        if (walSnapshot >= 0) {
+            wal.endRead(walSnapshot);
+            walSnapshot = -1;
+        }
+    }
+
+    /**
+     * Closes write-ahead log when journal mode was changed from WAL. The log
+     * is copied back into database file. If other connections still use the
+     * log then pager stays in WAL mode.
+     */
+    private void closeWal() {
+        if (!wal.isExclusive() || readOnly) {
+            journalMode = SqlJetPagerJournalMode.WAL;
+            return;
+        }
+        try {
+            wal.release(fd, true, noSync, syncFlags);
+        } catch (SqlJetException e) {
+            errCode = e.getErrorCode();
+        } finally {
+            wal = null;
+            walCacheSnapshot = -1;
+        }
+    }
+
+    /**
+     * Starts write transaction on write-ahead log. If other connection has
+     * committed after this one started read transaction then RESERVED lock is
+     * released and BUSY is thrown.
+     *
+     * @throws SqlJetException
+     */
+    private void beginWalWrite() throws SqlJetException {
+        try {
+            synchronized (wal) {
+                walSnapshot = wal.beginWrite(walSnapshot);
+                walCacheSnapshot = walSnapshot;
+                walCacheGeneration = wal.generation;
+            }
+        } catch (SqlJetException e) {
+            fd.unlock(SqlJetLockType.SHARED);
+            state = SqlJetPagerState.SHARED;
+            throw e;
+        }
+    }
+
+    /**
+     * Limit of frames which are visible to this pager: snapshot of reader or
+     * all appended frames for writer.
+     */
+    private int walReadLimit() {
+        return state.compareTo(SqlJetPagerState.RESERVED) >= 0 ? wal.getWriteLimit() : walSnapshot;
+    }
+
+    /**
+     * Appends pages to write-ahead log.
+     *
+     * @param pList
+     *            list of pages connected by {@link ISqlJetPage#getDirty()}.
+     * @param isCommit
+     *            true if these are last pages of transaction.
+     * @throws SqlJetException
+     */
+    private void walFrames(ISqlJetPage pList, boolean isCommit) throws SqlJetException {
+        final List<ISqlJetPage> pages = new LinkedList<ISqlJetPage>();
+        for (ISqlJetPage page = pList; page != null; page = page.getDirty()) {
+            if (page.getPageNumber() <= dbSize && !page.getFlags().contains(SqlJetPageFlags.DONT_WRITE)) {
+                pages.add(page);
+                if (page.getPageNumber() == 1) {
+                    SqlJetUtility.memcpy(dbFileVers, 0, page.getData(), 24, dbFileVers.remaining());
+                }
+            }
+            page.setHash(pageHash(page));
+        }
+        /*
+         * Commit is synced in NORMAL and FULL safety levels, ASYNC leaves
+         * sync to background thread.
+         */
+        final boolean async = safetyLevel == SqlJetSafetyLevel.ASYNC;
+        wal.writeFrames(pages, pageSize, isCommit ? dbSize : 0, isCommit && !async && !noSync, syncFlags);
+        if (isCommit && async && !noSync) {
+            SqlJetWalSyncer.getInstance().schedule(wal, syncFlags);
+        }
+        if (isCommit) {
+            synchronized (wal) {
+                wal.endRead(walSnapshot);
+                walSnapshot = wal.beginRead();
+                walCacheSnapshot = walSnapshot;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.ISqlJetPager#checkpoint()
+     */
+    public void checkpoint() throws SqlJetException {
+        if (null != wal && !readOnly) {
+            readAheadCount = 0;
+            wal.checkpoint(fd, noSync, syncFlags);
+        }
+    }
+
     /**
      * Ensure that there are at least nSavepoint savepoints open.
      */
@@ -3555,7 +4165,9 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
              * the for(...) loop below.
              */
             aNew = new PagerSavepoint[nSavepoint];
-            SqlJetUtility.memcpy(aNew, aSavepoint, nSavepoint);
+            if (aSavepoint != null) {
+                System.arraycopy(aSavepoint, 0, aNew, 0, this.nSavepoint);
+            }
             this.aSavepoint = aNew;
             ii = this.nSavepoint;
             this.nSavepoint = nSavepoint;
@@ -3563,6 +4175,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             /* Populate the PagerSavepoint structures just allocated. */
             for (/* no-op */; ii < nSavepoint; ii++) {
                 assert (dbSizeValid);
+                aNew[ii] = new PagerSavepoint();
                 aNew[ii].nOrig = dbSize;
                 if (journalOpen && journalOff > 0) {
                     aNew[ii].iOffset = journalOff;
@@ -3605,7 +4218,7 @@ public class SqlJetPager implements ISqlJetPager, ISqlJetLimits, ISqlJetPageCall
             }
             nSavepoint = nNew;
 
-            if (op == SqlJetSavepointOperation.ROLLBACK && jfd != null) {
+            if (op == SqlJetSavepointOperation.ROLLBACK && jfd != null && journalOpen) {
                 PagerSavepoint pSavepoint = (nNew == 0) ? null : aSavepoint[nNew - 1];
                 try {
                     playbackSavepoint(pSavepoint);
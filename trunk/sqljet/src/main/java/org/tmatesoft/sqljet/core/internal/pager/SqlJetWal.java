@@ -0,0 +1,741 @@
+/**
+ * SqlJetWal.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetIOException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFileSystem;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetPage;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileAccesPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileType;
+import org.tmatesoft.sqljet.core.internal.SqlJetSyncFlags;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+
+/**
+ * Write-ahead log of the pager.
+ *
+ * The log file has the same layout as the "-wal" file of SQLite 3.7: a 32
+ * byte header followed by zero or more frames, each frame is a 24 byte header
+ * followed by a page image. The header is:
+ *
+ * <pre>
+ *     0: Magic number. 0x377f0682 or 0x377f0683
+ *     4: File format version. Currently 3007000
+ *     8: Database page size.
+ *    12: Checkpoint sequence number
+ *    16: Salt-1, random integer incremented with each checkpoint
+ *    20: Salt-2, a different random integer changing with each ckpt
+ *    24: Checksum-1 (first part of checksum for first 24 bytes of header).
+ *    28: Checksum-2 (second part of checksum for first 24 bytes of header).
+ * </pre>
+ *
+ * and each frame header is:
+ *
+ * <pre>
+ *     0: Page number.
+ *     4: For commit records, the size of the database image in pages
+ *        after the commit. For all other records, zero.
+ *     8: Salt-1 (copied from the header)
+ *    12: Salt-2 (copied from the header)
+ *    16: Checksum-1.
+ *    20: Checksum-2.
+ * </pre>
+ *
+ * SQLite keeps the wal-index in a shared-memory "-shm" file. Java has no
+ * portable way to share memory between processes, so the wal-index is kept
+ * in the heap and is shared by all pagers of this process which have opened
+ * the same database file. The index is rebuilt from the log file when it is
+ * opened for the first time (recovery).
+ *
+ * As SQLite does for WAL without shared memory, the process holds EXCLUSIVE
+ * lock of database file for as long as the log is open (see
+ * {@link ISqlJetFile#lockProcess()}). Other processes, SQLite or SqlJet, get
+ * {@link SqlJetErrorCode#BUSY} until last pager of this process releases the
+ * log, and the log can't be opened while other process holds any lock of
+ * database file.
+ *
+ * Readers take a snapshot which is the number of the last committed frame at
+ * the moment the read transaction was started. They see only frames up to
+ * their snapshot and read other pages from the database file. A single writer
+ * appends frames past the last committed one and publishes them at commit.
+ * Checkpoint copies frames back into the database file, but never beyond the
+ * oldest snapshot in use, so readers are never disturbed by it.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SqlJetWal {
+
+    /**
+     * Suffix of log file name.
+     */
+    public static final String WAL = "-wal";
+
+    /**
+     * System property name for auto-checkpoint threshold (count of frames in
+     * the log), zero or negative value disables auto-checkpoint.
+     */
+    public static final String SQLJET_WAL_AUTOCHECKPOINT = "SQLJET.WAL_AUTOCHECKPOINT";
+    public static final int WAL_AUTOCHECKPOINT_DEFAULT = 1000;
+
+    /**
+     * System property name for interval in milliseconds between commit and
+     * sync of log in {@link org.tmatesoft.sqljet.core.internal.SqlJetSafetyLevel#ASYNC}
+     * safety level.
+     */
+    public static final String SQLJET_WAL_SYNC_INTERVAL = "SQLJET.WAL_SYNC_INTERVAL";
+    public static final int WAL_SYNC_INTERVAL_DEFAULT = 100;
+
+    static final int WAL_MAGIC = 0x377f0682;
+    static final int WAL_VERSION = 3007000;
+    static final int WAL_HDRSIZE = 32;
+    static final int WAL_FRAME_HDRSIZE = 24;
+
+    private static final int INITIAL_FRAMES = 64;
+
+    /** All logs opened in this process, by full path of log file. */
+    private static final Map<String, SqlJetWal> wals = new HashMap<String, SqlJetWal>();
+
+    private final String key;
+    private final ISqlJetFileSystem fileSystem;
+    private final File walName;
+    private ISqlJetFile file;
+
+    /** Count of pagers which use this log */
+    private int refCount;
+
+    /** Page size of frames, zero if it is not known yet */
+    private int pageSize;
+
+    /** Checksums of log file use big-endian byte order */
+    private boolean bigEndianCksum = true;
+
+    private int checkpointSeq;
+    private int salt1, salt2;
+    private int hdrCksum1, hdrCksum2;
+
+    /** Running checksum of last appended frame */
+    private int cksum1, cksum2;
+
+    /** Running checksum of last committed frame */
+    private int commitCksum1, commitCksum2;
+
+    /** Index of last committed frame */
+    private int mxFrame;
+
+    /** Index of last appended frame, including not committed ones */
+    private int nFrame;
+
+    /** Count of frames which are copied back into database */
+    private int nBackfill;
+
+    /** Page number of each frame */
+    private int[] framePgno = new int[INITIAL_FRAMES];
+
+    /** Database size in pages for commit frames, zero for others */
+    private int[] frameCommit = new int[INITIAL_FRAMES];
+
+    /** Frames of each page, in ascending order */
+    private final Map<Integer, FrameList> index = new HashMap<Integer, FrameList>();
+
+    /** Count of readers for each snapshot */
+    private final TreeMap<Integer, Integer> readers = new TreeMap<Integer, Integer>();
+
+    /** Incremented each time the log is restarted from first frame */
+    int generation;
+
+    private boolean writer;
+    private boolean checkpointing;
+    private boolean closed;
+
+    /** Count of commits and count of commits which are synced to disk */
+    private long commits, syncedCommits;
+
+    private static class FrameList {
+        int[] frames = new int[4];
+        int size;
+
+        void add(int frame) {
+            if (size == frames.length) {
+                final int[] a = new int[size * 2];
+                System.arraycopy(frames, 0, a, 0, size);
+                frames = a;
+            }
+            frames[size++] = frame;
+        }
+    }
+
+    private SqlJetWal(final String key, final ISqlJetFileSystem fileSystem, final File walName) {
+        this.key = key;
+        this.fileSystem = fileSystem;
+        this.walName = walName;
+    }
+
+    /**
+     * Opens log of database. If log is already opened by other pager in this
+     * process then shares it, else opens log file and recovers index from it.
+     *
+     * @param fileSystem
+     * @param db
+     *            database file, pager should hold SHARED lock on it.
+     * @param walName
+     *            name of log file.
+     * @param readOnly
+     *            if true then log file will not be created.
+     * @return opened log or null if log file doesn't exist and could not be
+     *         created.
+     * @throws SqlJetException
+     *             {@link SqlJetErrorCode#BUSY} if database file is locked by
+     *             other process or by other connection of this process.
+     */
+    static SqlJetWal open(final ISqlJetFileSystem fileSystem, final ISqlJetFile db, final File walName,
+            final boolean readOnly) throws SqlJetException {
+        final String key = fileSystem.getFullPath(walName);
+        synchronized (wals) {
+            SqlJetWal wal = wals.get(key);
+            if (wal == null) {
+                if (readOnly && !fileSystem.access(walName, SqlJetFileAccesPermission.EXISTS)) {
+                    return null;
+                }
+                if (!db.lockProcess()) {
+                    throw new SqlJetException(SqlJetErrorCode.BUSY,
+                            "Database is locked, write-ahead log can't be opened");
+                }
+                wal = new SqlJetWal(key, fileSystem, walName);
+                try {
+                    wal.file = fileSystem.open(walName, SqlJetFileType.WAL, readOnly ? SqlJetUtility
+                            .of(SqlJetFileOpenPermission.READONLY) : SqlJetUtility.of(
+                            SqlJetFileOpenPermission.READWRITE, SqlJetFileOpenPermission.CREATE));
+                    try {
+                        wal.recover();
+                    } catch (SqlJetException e) {
+                        wal.file.close();
+                        throw e;
+                    }
+                } catch (SqlJetException e) {
+                    db.unlockProcess();
+                    throw e;
+                }
+                wals.put(key, wal);
+            }
+            wal.refCount++;
+            return wal;
+        }
+    }
+
+    /**
+     * Releases log. Last user of log copies all its frames into database,
+     * removes log file and drops lock which excludes other processes.
+     *
+     * @param db
+     *            database file.
+     * @param canCheckpoint
+     *            true if database file could be written.
+     * @param noSync
+     * @param syncFlags
+     * @throws SqlJetException
+     */
+    void release(final ISqlJetFile db, final boolean canCheckpoint, final boolean noSync,
+            final Set<SqlJetSyncFlags> syncFlags) throws SqlJetException {
+        synchronized (wals) {
+            if (--refCount > 0) {
+                return;
+            }
+            wals.remove(key);
+        }
+        boolean delete = false;
+        try {
+            if (canCheckpoint && db != null) {
+                checkpoint(db, noSync, syncFlags);
+                synchronized (this) {
+                    delete = nBackfill == mxFrame;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                closed = true;
+            }
+            try {
+                file.close();
+                if (delete) {
+                    fileSystem.delete(walName, false);
+                }
+            } finally {
+                if (db != null) {
+                    db.unlockProcess();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if this log is used only by one pager.
+     */
+    boolean isExclusive() {
+        synchronized (wals) {
+            return refCount == 1;
+        }
+    }
+
+    /**
+     * Starts read transaction.
+     *
+     * @return snapshot: index of last committed frame which is visible to
+     *         reader.
+     */
+    synchronized int beginRead() {
+        final int snapshot = mxFrame;
+        final Integer n = readers.get(snapshot);
+        readers.put(snapshot, n == null ? 1 : n + 1);
+        return snapshot;
+    }
+
+    /**
+     * Finishes read transaction which was started with {@link #beginRead()}.
+     *
+     * @param snapshot
+     */
+    synchronized void endRead(final int snapshot) {
+        final Integer n = readers.get(snapshot);
+        if (n != null) {
+            if (n > 1) {
+                readers.put(snapshot, n - 1);
+            } else {
+                readers.remove(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Starts write transaction. Writer should hold read transaction on latest
+     * snapshot, otherwise it would overwrite changes which it doesn't see.
+     *
+     * If all frames already are copied into database and there are no other
+     * readers then log is restarted from first frame.
+     *
+     * @param snapshot
+     *            snapshot of writer's read transaction.
+     * @return snapshot of writer, which could be changed if log was restarted.
+     * @throws SqlJetException
+     *             BUSY if there is other writer or snapshot isn't latest.
+     */
+    synchronized int beginWrite(final int snapshot) throws SqlJetException {
+        if (writer || snapshot != mxFrame) {
+            throw new SqlJetException(SqlJetErrorCode.BUSY);
+        }
+        writer = true;
+        if (mxFrame > 0 && nBackfill == mxFrame && !checkpointing && readers.size() == 1
+                && readers.get(snapshot) == 1) {
+            restart();
+            readers.clear();
+            readers.put(0, 1);
+            return 0;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Finishes write transaction. Frames which were appended but not
+     * committed are dropped.
+     */
+    synchronized void endWrite() {
+        for (int frame = nFrame; frame > mxFrame; frame--) {
+            final FrameList list = index.get(framePgno[frame - 1]);
+            if (list != null && --list.size == 0) {
+                index.remove(framePgno[frame - 1]);
+            }
+        }
+        nFrame = mxFrame;
+        cksum1 = commitCksum1;
+        cksum2 = commitCksum2;
+        writer = false;
+    }
+
+    private void restart() {
+        mxFrame = 0;
+        nFrame = 0;
+        nBackfill = 0;
+        index.clear();
+        generation++;
+        checkpointSeq++;
+    }
+
+    /**
+     * @return index of last appended frame, which is visible for writer.
+     */
+    synchronized int getWriteLimit() {
+        return nFrame;
+    }
+
+    /**
+     * @return count of committed frames in the log.
+     */
+    synchronized int getFrameCount() {
+        return mxFrame;
+    }
+
+    /**
+     * Size of database in pages for given snapshot.
+     *
+     * @param snapshot
+     * @return size of database or -1 if there are no frames in snapshot.
+     */
+    synchronized int getDbSize(final int snapshot) {
+        return snapshot > 0 ? frameCommit[snapshot - 1] : -1;
+    }
+
+    /**
+     * Finds latest frame of page which is not greater than limit.
+     *
+     * @param pgno
+     *            number of page.
+     * @param limit
+     *            snapshot of reader or write limit of writer.
+     * @return index of frame or zero if page should be read from database.
+     */
+    synchronized int findFrame(final int pgno, final int limit) {
+        if (limit == 0) {
+            return 0;
+        }
+        final FrameList list = index.get(pgno);
+        if (list != null) {
+            for (int i = list.size - 1; i >= 0; i--) {
+                if (list.frames[i] <= limit) {
+                    return list.frames[i];
+                }
+            }
+        }
+        return 0;
+    }
+
+    private long frameOffset(final int frame) {
+        return WAL_HDRSIZE + ((long) (frame - 1)) * (WAL_FRAME_HDRSIZE + pageSize);
+    }
+
+    /**
+     * Reads page image from frame.
+     *
+     * @param frame
+     * @param data
+     * @param amount
+     *            size of page in pager.
+     * @throws SqlJetIOException
+     */
+    void readFrame(final int frame, final ISqlJetMemoryPointer data, final int amount) throws SqlJetIOException {
+        final int n = amount < pageSize ? amount : pageSize;
+        file.read(data, n, frameOffset(frame) + WAL_FRAME_HDRSIZE);
+        if (n < amount) {
+            SqlJetUtility.memset(data, n, (byte) 0, amount - n);
+        }
+    }
+
+    /**
+     * Appends pages to the log. Only writer could call this.
+     *
+     * @param pages
+     *            pages to write.
+     * @param pageSize
+     *            size of pages.
+     * @param commitSize
+     *            size of database in pages if this is a commit, zero
+     *            otherwise.
+     * @param sync
+     *            if true then log file is synced at commit.
+     * @param syncFlags
+     * @throws SqlJetException
+     */
+    void writeFrames(final List<ISqlJetPage> pages, final int pageSize, final int commitSize, final boolean sync,
+            final Set<SqlJetSyncFlags> syncFlags) throws SqlJetException {
+        if (pages.isEmpty()) {
+            return;
+        }
+        int frame;
+        synchronized (this) {
+            assert (writer);
+            frame = nFrame;
+            if (frame == 0) {
+                this.pageSize = pageSize;
+                writeHeader();
+            } else if (this.pageSize != pageSize) {
+                throw new SqlJetException(SqlJetErrorCode.CORRUPT);
+            }
+        }
+        final ISqlJetMemoryPointer hdr = SqlJetUtility.allocatePtr(WAL_FRAME_HDRSIZE);
+        final int first = frame + 1;
+        int c1 = cksum1, c2 = cksum2;
+        final int last = first + pages.size() - 1;
+        for (final ISqlJetPage page : pages) {
+            frame++;
+            final ISqlJetMemoryPointer data = page.getData();
+            SqlJetUtility.put4byte(hdr, 0, page.getPageNumber());
+            SqlJetUtility.put4byte(hdr, 4, frame == last ? commitSize : 0);
+            SqlJetUtility.put4byte(hdr, 8, salt1);
+            SqlJetUtility.put4byte(hdr, 12, salt2);
+            final int[] c = checksum(data, pageSize, checksum(hdr, 8, new int[] { c1, c2 }));
+            c1 = c[0];
+            c2 = c[1];
+            SqlJetUtility.put4byte(hdr, 16, c1);
+            SqlJetUtility.put4byte(hdr, 20, c2);
+            final long offset = frameOffset(frame);
+            file.write(hdr, WAL_FRAME_HDRSIZE, offset);
+            file.write(data, pageSize, offset + WAL_FRAME_HDRSIZE);
+        }
+        if (commitSize > 0 && sync) {
+            file.sync(syncFlags);
+        }
+        synchronized (this) {
+            frame = first;
+            for (final ISqlJetPage page : pages) {
+                addFrame(frame++, page.getPageNumber(), 0);
+            }
+            cksum1 = c1;
+            cksum2 = c2;
+            if (commitSize > 0) {
+                frameCommit[last - 1] = commitSize;
+                mxFrame = last;
+                commitCksum1 = c1;
+                commitCksum2 = c2;
+                commits++;
+                if (sync) {
+                    syncedCommits = commits;
+                }
+            }
+        }
+    }
+
+    private void addFrame(final int frame, final int pgno, final int commitSize) {
+        if (frame > framePgno.length) {
+            final int[] p = new int[framePgno.length * 2];
+            final int[] c = new int[framePgno.length * 2];
+            System.arraycopy(framePgno, 0, p, 0, framePgno.length);
+            System.arraycopy(frameCommit, 0, c, 0, frameCommit.length);
+            framePgno = p;
+            frameCommit = c;
+        }
+        framePgno[frame - 1] = pgno;
+        frameCommit[frame - 1] = commitSize;
+        FrameList list = index.get(pgno);
+        if (list == null) {
+            list = new FrameList();
+            index.put(pgno, list);
+        }
+        list.add(frame);
+        nFrame = frame;
+    }
+
+    private void writeHeader() throws SqlJetException {
+        salt1 = (int) SqlJetUtility.get4byteUnsigned(fileSystem.randomness(4));
+        salt2 = (int) SqlJetUtility.get4byteUnsigned(fileSystem.randomness(4));
+        bigEndianCksum = true;
+        final ISqlJetMemoryPointer hdr = SqlJetUtility.allocatePtr(WAL_HDRSIZE);
+        SqlJetUtility.put4byte(hdr, 0, WAL_MAGIC | 1);
+        SqlJetUtility.put4byte(hdr, 4, WAL_VERSION);
+        SqlJetUtility.put4byte(hdr, 8, pageSize);
+        SqlJetUtility.put4byte(hdr, 12, checkpointSeq);
+        SqlJetUtility.put4byte(hdr, 16, salt1);
+        SqlJetUtility.put4byte(hdr, 20, salt2);
+        final int[] c = checksum(hdr, 24, new int[] { 0, 0 });
+        hdrCksum1 = c[0];
+        hdrCksum2 = c[1];
+        SqlJetUtility.put4byte(hdr, 24, hdrCksum1);
+        SqlJetUtility.put4byte(hdr, 28, hdrCksum2);
+        file.write(hdr, WAL_HDRSIZE, 0);
+        cksum1 = commitCksum1 = hdrCksum1;
+        cksum2 = commitCksum2 = hdrCksum2;
+    }
+
+    /**
+     * Rebuilds index from log file. Frames past last valid commit frame are
+     * ignored.
+     *
+     * @throws SqlJetException
+     */
+    private void recover() throws SqlJetException {
+        final long size = file.fileSize();
+        if (size < WAL_HDRSIZE) {
+            return;
+        }
+        final ISqlJetMemoryPointer hdr = SqlJetUtility.allocatePtr(WAL_HDRSIZE);
+        file.read(hdr, WAL_HDRSIZE, 0);
+        final int magic = SqlJetUtility.get4byte(hdr, 0);
+        final int szPage = SqlJetUtility.get4byte(hdr, 8);
+        if ((magic & 0xFFFFFFFE) != WAL_MAGIC || SqlJetUtility.get4byte(hdr, 4) != WAL_VERSION || szPage < 512
+                || szPage > 65536 || (szPage & (szPage - 1)) != 0) {
+            return;
+        }
+        bigEndianCksum = (magic & 1) != 0;
+        final int[] c = checksum(hdr, 24, new int[] { 0, 0 });
+        if (c[0] != SqlJetUtility.get4byte(hdr, 24) || c[1] != SqlJetUtility.get4byte(hdr, 28)) {
+            return;
+        }
+        pageSize = szPage;
+        checkpointSeq = SqlJetUtility.get4byte(hdr, 12);
+        salt1 = SqlJetUtility.get4byte(hdr, 16);
+        salt2 = SqlJetUtility.get4byte(hdr, 20);
+        hdrCksum1 = commitCksum1 = c[0];
+        hdrCksum2 = commitCksum2 = c[1];
+
+        final ISqlJetMemoryPointer frameHdr = SqlJetUtility.allocatePtr(WAL_FRAME_HDRSIZE);
+        final ISqlJetMemoryPointer data = SqlJetUtility.allocatePtr(pageSize);
+        for (int frame = 1; frameOffset(frame + 1) <= size; frame++) {
+            final long offset = frameOffset(frame);
+            file.read(frameHdr, WAL_FRAME_HDRSIZE, offset);
+            file.read(data, pageSize, offset + WAL_FRAME_HDRSIZE);
+            final int pgno = SqlJetUtility.get4byte(frameHdr, 0);
+            if (pgno == 0 || SqlJetUtility.get4byte(frameHdr, 8) != salt1
+                    || SqlJetUtility.get4byte(frameHdr, 12) != salt2) {
+                break;
+            }
+            checksum(data, pageSize, checksum(frameHdr, 8, c));
+            if (c[0] != SqlJetUtility.get4byte(frameHdr, 16) || c[1] != SqlJetUtility.get4byte(frameHdr, 20)) {
+                break;
+            }
+            final int commitSize = SqlJetUtility.get4byte(frameHdr, 4);
+            addFrame(frame, pgno, commitSize);
+            if (commitSize > 0) {
+                mxFrame = frame;
+                commitCksum1 = c[0];
+                commitCksum2 = c[1];
+            }
+        }
+        /* drop frames which follow last commit frame */
+        writer = true;
+        endWrite();
+    }
+
+    /**
+     * Copies frames into database file. Frames which could be visible to any
+     * reader aren't copied.
+     *
+     * @param db
+     *            database file.
+     * @param noSync
+     * @param syncFlags
+     * @throws SqlJetException
+     */
+    void checkpoint(final ISqlJetFile db, final boolean noSync, final Set<SqlJetSyncFlags> syncFlags)
+            throws SqlJetException {
+        final TreeMap<Integer, Integer> pages = new TreeMap<Integer, Integer>();
+        final int limit;
+        final int dbSize;
+        synchronized (this) {
+            if (checkpointing) {
+                return;
+            }
+            int l = mxFrame;
+            if (!readers.isEmpty() && readers.firstKey() < l) {
+                l = readers.firstKey();
+            }
+            if (l <= nBackfill) {
+                return;
+            }
+            limit = l;
+            dbSize = frameCommit[limit - 1];
+            for (int frame = nBackfill + 1; frame <= limit; frame++) {
+                pages.put(framePgno[frame - 1], frame);
+            }
+            checkpointing = true;
+        }
+        boolean done = false;
+        try {
+            if (!noSync) {
+                file.sync(syncFlags);
+            }
+            final ISqlJetMemoryPointer data = SqlJetUtility.allocatePtr(pageSize);
+            for (final Map.Entry<Integer, Integer> page : pages.entrySet()) {
+                if (page.getKey() <= dbSize) {
+                    readFrame(page.getValue(), data, pageSize);
+                    db.write(data, pageSize, ((long) (page.getKey() - 1)) * pageSize);
+                }
+            }
+            if (db.fileSize() > ((long) dbSize) * pageSize) {
+                db.truncate(((long) dbSize) * pageSize);
+            }
+            if (!noSync) {
+                db.sync(syncFlags);
+            }
+            done = true;
+        } finally {
+            synchronized (this) {
+                if (done) {
+                    nBackfill = limit;
+                }
+                checkpointing = false;
+            }
+        }
+    }
+
+    /**
+     * Syncs log file if there are commits which aren't synced yet.
+     *
+     * @param syncFlags
+     * @throws SqlJetException
+     */
+    void sync(final Set<SqlJetSyncFlags> syncFlags) throws SqlJetException {
+        final long c;
+        synchronized (this) {
+            if (closed || syncedCommits >= commits) {
+                return;
+            }
+            c = commits;
+        }
+        file.sync(syncFlags);
+        synchronized (this) {
+            if (syncedCommits < c) {
+                syncedCommits = c;
+            }
+        }
+    }
+
+    /**
+     * @return true if all commits are synced to disk.
+     */
+    synchronized boolean isSynced() {
+        return syncedCommits >= commits;
+    }
+
+    private int[] checksum(final ISqlJetMemoryPointer data, final int length, final int[] c) {
+        int s1 = c[0], s2 = c[1];
+        for (int i = 0; i < length; i += 8) {
+            int x1 = data.getInt(i);
+            int x2 = data.getInt(i + 4);
+            if (!bigEndianCksum) {
+                x1 = Integer.reverseBytes(x1);
+                x2 = Integer.reverseBytes(x2);
+            }
+            s1 += x1 + s2;
+            s2 += x2 + s1;
+        }
+        c[0] = s1;
+        c[1] = s2;
+        return c;
+    }
+
+}
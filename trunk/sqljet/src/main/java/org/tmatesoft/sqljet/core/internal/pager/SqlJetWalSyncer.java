@@ -0,0 +1,110 @@
+/**
+ * SqlJetWalSyncer.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.pager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetLogDefinitions;
+import org.tmatesoft.sqljet.core.internal.SqlJetSyncFlags;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+
+/**
+ * Background thread which syncs logs committed in
+ * {@link org.tmatesoft.sqljet.core.internal.SqlJetSafetyLevel#ASYNC} safety
+ * level. Log is synced not later than
+ * {@link SqlJetWal#SQLJET_WAL_SYNC_INTERVAL} milliseconds after commit. One
+ * thread serves all logs of process, it is started on first request and stops
+ * when there is nothing to sync.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+class SqlJetWalSyncer implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(SqlJetLogDefinitions.SQLJET_LOG_PAGER);
+
+    private static final SqlJetWalSyncer instance = new SqlJetWalSyncer(SqlJetUtility.getIntSysProp(
+            SqlJetWal.SQLJET_WAL_SYNC_INTERVAL, SqlJetWal.WAL_SYNC_INTERVAL_DEFAULT));
+
+    private final long interval;
+    private final Map<SqlJetWal, Set<SqlJetSyncFlags>> pending = new LinkedHashMap<SqlJetWal, Set<SqlJetSyncFlags>>();
+    private Thread thread;
+
+    private SqlJetWalSyncer(final long interval) {
+        this.interval = interval;
+    }
+
+    static SqlJetWalSyncer getInstance() {
+        return instance;
+    }
+
+    /**
+     * Requests sync of log.
+     *
+     * @param wal
+     * @param syncFlags
+     */
+    synchronized void schedule(final SqlJetWal wal, final Set<SqlJetSyncFlags> syncFlags) {
+        pending.put(wal, syncFlags);
+        if (thread == null) {
+            thread = new Thread(this, "SqlJet WAL syncer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                // sync what is pending and leave.
+            }
+            final Map<SqlJetWal, Set<SqlJetSyncFlags>> logs;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    thread = null;
+                    return;
+                }
+                logs = new LinkedHashMap<SqlJetWal, Set<SqlJetSyncFlags>>(pending);
+                pending.clear();
+            }
+            for (final Map.Entry<SqlJetWal, Set<SqlJetSyncFlags>> log : logs.entrySet()) {
+                try {
+                    log.getKey().sync(log.getValue());
+                } catch (SqlJetException e) {
+                    // log could be closed meanwhile, then it was synced by
+                    // checkpoint.
+                    logger.log(Level.FINE, "WAL sync failed", e);
+                }
+            }
+        }
+    }
+
+}
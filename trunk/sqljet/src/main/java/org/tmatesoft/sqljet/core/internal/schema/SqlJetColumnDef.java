@@ -37,6 +37,9 @@ public class SqlJetColumnDef implements ISqlJetColumnDef {
     private final List<ISqlJetColumnConstraint> constraints;
     private int index;
 
+    /** Affinity decoded from {@link #type} on first use, type is immutable */
+    private SqlJetTypeAffinity typeAffinity;
+
     public SqlJetColumnDef(CommonTree ast) throws SqlJetException {
         name = ast.getText();
         quotedName = SqlParser.quotedId(ast);
@@ -93,6 +96,13 @@ public class SqlJetColumnDef implements ISqlJetColumnDef {
     }
 
     public SqlJetTypeAffinity getTypeAffinity() {
+        if (typeAffinity == null) {
+            typeAffinity = decodeTypeAffinity();
+        }
+        return typeAffinity;
+    }
+
+    private SqlJetTypeAffinity decodeTypeAffinity() {
         ISqlJetTypeDef type = getType();
         if (type == null) {
             return SqlJetTypeAffinity.decode(null);
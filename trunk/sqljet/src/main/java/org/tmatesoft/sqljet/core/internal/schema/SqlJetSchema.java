@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -709,13 +710,98 @@ public class SqlJetSchema implements ISqlJetSchema {
     public ISqlJetIndexDef createIndex(String sql) throws SqlJetException {
         db.getMutex().enter();
         try {
-            return createIndexSafe(sql);
+            return createIndexesSafe(false, sql).get(0);
         } finally {
             db.getMutex().leave();
         }
     }
 
-    private ISqlJetIndexDef createIndexSafe(String sql) throws SqlJetException {
+    /**
+     * Creates several indexes. Each table which gets new indexes is scanned
+     * only once to fill all of them.
+     *
+     * @param parallel
+     *            if true then keys of indexes are sorted in parallel threads.
+     * @param sql
+     *            CREATE INDEX sentences.
+     * @return definitions of indexes in the same order as sentences.
+     * @throws SqlJetException
+     */
+    public List<ISqlJetIndexDef> createIndexes(boolean parallel, String... sql) throws SqlJetException {
+        db.getMutex().enter();
+        try {
+            return createIndexesSafe(parallel, sql);
+        } finally {
+            db.getMutex().leave();
+        }
+    }
+
+    private List<ISqlJetIndexDef> createIndexesSafe(boolean parallel, String... sql) throws SqlJetException {
+
+        final List<ISqlJetIndexDef> result = new ArrayList<ISqlJetIndexDef>(sql.length);
+        final Map<String, List<SqlJetBtreeIndexTable>> indexTables = new LinkedHashMap<String, List<SqlJetBtreeIndexTable>>();
+
+        final ISqlJetBtreeSchemaTable schemaTable = openSchemaTable(true);
+
+        try {
+
+            schemaTable.lock();
+
+            try {
+
+                for (final String indexSql : sql) {
+                    final ISqlJetIndexDef existing = getExistingIndex(indexSql);
+                    if (existing != null) {
+                        result.add(existing);
+                        continue;
+                    }
+                    final SqlJetIndexDef indexDef = defineIndex(schemaTable, indexSql);
+                    result.add(indexDef);
+                    List<SqlJetBtreeIndexTable> tables = indexTables.get(indexDef.getTableName());
+                    if (tables == null) {
+                        tables = new ArrayList<SqlJetBtreeIndexTable>();
+                        indexTables.put(indexDef.getTableName(), tables);
+                    }
+                    tables.add(new SqlJetBtreeIndexTable(btree, indexDef.getName(), true));
+                }
+
+                for (final Map.Entry<String, List<SqlJetBtreeIndexTable>> entry : indexTables.entrySet()) {
+                    SqlJetBtreeIndexTable.reindex(btree, entry.getKey(), entry.getValue(), parallel);
+                }
+
+                return result;
+
+            } finally {
+                for (final List<SqlJetBtreeIndexTable> tables : indexTables.values()) {
+                    for (final SqlJetBtreeIndexTable indexTable : tables) {
+                        indexTable.close();
+                    }
+                }
+                schemaTable.unlock();
+            }
+
+        } finally {
+            schemaTable.close();
+        }
+    }
+
+    /**
+     * @return index which exists already if sentence has IF NOT EXISTS clause,
+     *         null otherwise.
+     */
+    private ISqlJetIndexDef getExistingIndex(String sql) throws SqlJetException {
+        final SqlJetIndexDef indexDef = new SqlJetIndexDef((CommonTree) parseIndex(sql).getTree(), 0);
+        if (indexDef.isKeepExisting() && null != indexDef.getName()) {
+            return indexDefs.get(indexDef.getName());
+        }
+        return null;
+    }
+
+    /**
+     * Checks CREATE INDEX sentence, creates empty B-Tree of index and adds
+     * index into schema.
+     */
+    private SqlJetIndexDef defineIndex(ISqlJetBtreeSchemaTable schemaTable, String sql) throws SqlJetException {
 
         final ParserRuleReturnScope parseIndex = parseIndex(sql);
         final CommonTree ast = (CommonTree) parseIndex.getTree();
@@ -731,11 +817,7 @@ public class SqlJetSchema implements ISqlJetSchema {
         checkNameReserved(indexName);
 
         if (indexDefs.containsKey(indexName)) {
-            if (indexDef.isKeepExisting()) {
-                return indexDefs.get(indexName);
-            } else {
-                throw new SqlJetException(SqlJetErrorCode.ERROR, "Index \"" + indexName + "\" exists already");
-            }
+            throw new SqlJetException(SqlJetErrorCode.ERROR, "Index \"" + indexName + "\" exists already");
         }
 
         checkNameConflict(SqlJetSchemaObjectType.INDEX, indexName);
@@ -765,42 +847,21 @@ public class SqlJetSchema implements ISqlJetSchema {
                         + tableName + "\"");
         }
 
-        final ISqlJetBtreeSchemaTable schemaTable = openSchemaTable(true);
         final String createIndexSQL = indexDef.isUnique() ? getCreateIndexUniqueSql(parseIndex)
                 : getCreateIndexSql(parseIndex);
 
-        try {
-
-            schemaTable.lock();
+        db.getOptions().changeSchemaVersion();
 
-            try {
-
-                db.getOptions().changeSchemaVersion();
-
-                final int page = btree.createTable(BTREE_CREATE_INDEX_FLAGS);
-
-                final long rowId = schemaTable.insertRecord(INDEX_TYPE, indexName, tableName, page, createIndexSQL);
+        final int page = btree.createTable(BTREE_CREATE_INDEX_FLAGS);
 
-                indexDef.setPage(page);
-                indexDef.setRowId(rowId);
-                indexDef.bindColumns(tableDef);
-                indexDefs.put(indexName, indexDef);
+        final long rowId = schemaTable.insertRecord(INDEX_TYPE, indexName, tableName, page, createIndexSQL);
 
-                final SqlJetBtreeIndexTable indexTable = new SqlJetBtreeIndexTable(btree, indexDef.getName(), true);
-                try {
-                    indexTable.reindex(this);
-                } finally {
-                    indexTable.close();
-                }
-                return indexDef;
+        indexDef.setPage(page);
+        indexDef.setRowId(rowId);
+        indexDef.bindColumns(tableDef);
+        indexDefs.put(indexName, indexDef);
 
-            } finally {
-                schemaTable.unlock();
-            }
-
-        } finally {
-            schemaTable.close();
-        }
+        return indexDef;
     }
 
     public void dropTable(String tableName) throws SqlJetException {
@@ -46,11 +46,12 @@ public interface ISqlJetBtreeDataTable extends ISqlJetBtreeTable {
     Map<String, ISqlJetIndexDef> getIndexDefinitions();
 
     /**
-     * Get indexes which are related with table.
+     * Get indexes which are related with table, opens all of them.
      * 
      * @return
+     * @throws SqlJetException
      */
-    Map<String, ISqlJetBtreeIndexTable> getIndexesTables();
+    Map<String, ISqlJetBtreeIndexTable> getIndexesTables() throws SqlJetException;
 
     /**
      * Go to record with given rowID. Return boolean to indicate success.
@@ -193,9 +194,25 @@ public interface ISqlJetBtreeDataTable extends ISqlJetBtreeTable {
     long insertWithRowId(SqlJetConflictAction onConflict, long rowId, Object[] values) throws SqlJetException;
 
     /**
+     * Get index by name, index is opened on first call.
+     * 
      * @param indexName
-     * @return
+     * @return index or null if it isn't found.
+     * @throws SqlJetException
+     */
+    ISqlJetBtreeIndexTable getIndex(String indexName) throws SqlJetException;
+
+    /**
+     * Counts rows with ROWIDs in range, like {@link #count()} only pages are
+     * read. Position of cursor isn't changed.
+     * 
+     * @param firstRowId
+     *            least ROWID in range, 0 if range is unbounded at left.
+     * @param lastRowId
+     *            greatest ROWID in range, 0 if range is unbounded at right.
+     * @return count of rows in range.
+     * @throws SqlJetException
      */
-    ISqlJetBtreeIndexTable getIndex(String indexName);
+    long count(long firstRowId, long lastRowId) throws SqlJetException;
 
 }
\ No newline at end of file
@@ -104,5 +104,23 @@ public interface ISqlJetBtreeIndexTable extends ISqlJetBtreeTable {
      * @throws SqlJetException
      */
     int compareKeys(Object[] firstKey, Object[] lastKey) throws SqlJetException;
+
+    /**
+     * Counts entries whose keys are in scope, like {@link #count()} only
+     * pages are read. Position of cursor isn't changed.
+     * 
+     * @param firstKey
+     *            left bound of scope, null if scope is unbounded at left.
+     * @param firstKeyIncluded
+     *            true if entries which match left bound are in scope.
+     * @param lastKey
+     *            right bound of scope, null if scope is unbounded at right.
+     * @param lastKeyIncluded
+     *            true if entries which match right bound are in scope.
+     * @return count of entries in scope.
+     * @throws SqlJetException
+     */
+    long count(Object[] firstKey, boolean firstKeyIncluded, Object[] lastKey, boolean lastKeyIncluded)
+            throws SqlJetException;
     
 }
\ No newline at end of file
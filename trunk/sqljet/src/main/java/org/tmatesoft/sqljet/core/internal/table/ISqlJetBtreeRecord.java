@@ -38,18 +38,39 @@ public interface ISqlJetBtreeRecord extends ISqlJetReleasable {
 
     /**
      * @return the fieldsCount
+     * @throws SqlJetException
      */
-    int getFieldsCount();
+    int getFieldsCount() throws SqlJetException;
 
     /**
-     * @return
+     * @return values of all fields, it decodes whole record.
+     * @throws SqlJetException
      */
-    List<ISqlJetVdbeMem> getFields();
+    List<ISqlJetVdbeMem> getFields() throws SqlJetException;
 
     /**
-     * @return
+     * Returns value of one field. Record read from cursor decodes only
+     * requested fields and parses its header only up to them.
+     * 
+     * @param field
+     *            number of field.
+     * @return value of field or null if record has fewer fields.
+     * @throws SqlJetException
+     */
+    ISqlJetVdbeMem getField(int field) throws SqlJetException;
+
+    /**
+     * @return encoded record, for record read from cursor it is copy of its
+     *         payload.
+     * @throws SqlJetException
+     */
+    ISqlJetMemoryPointer getRawRecord() throws SqlJetException;
+
+    /**
+     * @return count of zero bytes at the end of record which are left out of
+     *         {@link #getRawRecord()} because record ends by zero-filled BLOB.
      */
-    ISqlJetMemoryPointer getRawRecord();
+    int getZeroTail();
 
     /**
      * @param field
@@ -62,11 +83,11 @@ public interface ISqlJetBtreeRecord extends ISqlJetReleasable {
      * @param field
      * @return
      */
-    long getIntField(int field);
+    long getIntField(int field) throws SqlJetException;
 
     /**
      * @param field
      * @return
      */
-    double getRealField(int field);
+    double getRealField(int field) throws SqlJetException;
 }
\ No newline at end of file
@@ -269,4 +269,56 @@ public interface ISqlJetBtreeTable {
      */
     boolean popState() throws SqlJetException;
 
+    /**
+     * Starts bulk load of this table: while table is empty and records are
+     * inserted in ascending key order, B-Tree is built bottom-up from them.
+     * Records which break the order are inserted as usual, after B-Tree built
+     * so far is completed. Table can't be read until bulk load is ended.
+     *
+     * @return true if bulk load is started, false if table isn't empty or
+     *         database can't be bulk loaded.
+     * @throws SqlJetException
+     */
+    boolean beginBulkLoad() throws SqlJetException;
+
+    /**
+     * Completes B-Tree built by bulk load. Does nothing if bulk load isn't
+     * started.
+     *
+     * @throws SqlJetException
+     */
+    void endBulkLoad() throws SqlJetException;
+
+    /**
+     * @return true if bulk load is started and not ended yet.
+     */
+    boolean isBulkLoad();
+
+    /**
+     * Counts entries of B-Tree by headers of its pages, without reading of
+     * records. Position of cursor isn't changed.
+     * 
+     * @return count of entries.
+     * @throws SqlJetException
+     */
+    long count() throws SqlJetException;
+
+    /**
+     * @return number of entry at which cursor points starting from 0, or count
+     *         of entries if cursor is at EOF.
+     * @throws SqlJetException
+     */
+    long getPosition() throws SqlJetException;
+
+    /**
+     * Moves cursor to entry with given number, see
+     * {@link org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor#moveToPosition(long)}.
+     * 
+     * @param position
+     *            number of entry starting from 0.
+     * @return true if there is entry with such number.
+     * @throws SqlJetException
+     */
+    boolean goToPosition(long position) throws SqlJetException;
+
 }
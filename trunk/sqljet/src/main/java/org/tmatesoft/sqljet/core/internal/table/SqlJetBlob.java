@@ -0,0 +1,369 @@
+/**
+ * SqlJetBlob.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.table;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.internal.ISqlJetBtree;
+import org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.schema.SqlJetTableDef;
+import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetVdbeSerialType;
+import org.tmatesoft.sqljet.core.schema.ISqlJetIndexDef;
+import org.tmatesoft.sqljet.core.schema.ISqlJetIndexedColumn;
+import org.tmatesoft.sqljet.core.table.ISqlJetBlob;
+import org.tmatesoft.sqljet.core.table.ISqlJetRunnableWithLock;
+import org.tmatesoft.sqljet.core.table.SqlJetDb;
+
+/**
+ * Implementation of {@link ISqlJetBlob}, port of vdbeblob.c. Handle keeps own
+ * B-Tree cursor on the row, this cursor caches numbers of overflow pages of
+ * the row so random access into value doesn't walk the overflow chain from
+ * start each time.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SqlJetBlob implements ISqlJetBlob {
+
+    private final SqlJetDb db;
+    private final SqlJetTableDef tableDef;
+    private final int column;
+    private final boolean write;
+
+    private ISqlJetBtreeCursor cursor;
+
+    /** Offset of value in record and its size */
+    private int iOffset, nByte;
+
+    /** False if handle isn't positioned on row */
+    private boolean valid;
+
+    SqlJetBlob(SqlJetDb db, ISqlJetBtree btree, String tableName, String columnName, long rowId, boolean write)
+            throws SqlJetException {
+        if (!db.isInTransaction() || (write && db.getTransactionMode() == SqlJetTransactionMode.READ_ONLY)) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, write ? "Blob handle requires active write transaction"
+                    : "Blob handle requires active transaction");
+        }
+        this.db = db;
+        this.write = write;
+        this.tableDef = (SqlJetTableDef) btree.getSchema().getTable(tableName);
+        if (null == tableDef) {
+            throw new SqlJetException(SqlJetErrorCode.ERROR, "No such table: " + tableName);
+        }
+        this.column = tableDef.getColumnNumber(columnName);
+        if (column < 0) {
+            throw new SqlJetException(SqlJetErrorCode.ERROR, "No such column: " + columnName);
+        }
+        if (write && isIndexed(btree, columnName)) {
+            throw new SqlJetException(SqlJetErrorCode.ERROR, "Cannot open indexed column for writing");
+        }
+        cursor = btree.getCursor(tableDef.getPage(), write, null);
+        cursor.enterCursor();
+        try {
+            cursor.cacheOverflow();
+            seek(rowId);
+        } catch (SqlJetException e) {
+            cursor.leaveCursor();
+            cursor.closeCursor();
+            cursor = null;
+            throw e;
+        }
+        cursor.leaveCursor();
+    }
+
+    private boolean isIndexed(ISqlJetBtree btree, String columnName) throws SqlJetException {
+        for (final ISqlJetIndexDef indexDef : btree.getSchema().getIndexes(tableDef.getName())) {
+            if (tableDef.getColumnIndexConstraint(indexDef.getName()) != null) {
+                if (columnName.equalsIgnoreCase(tableDef.getColumnIndexConstraint(indexDef.getName()).getColumn()
+                        .getName())) {
+                    return true;
+                }
+            } else if (tableDef.getTableIndexConstraint(indexDef.getName()) != null) {
+                for (final String indexed : tableDef.getTableIndexConstraint(indexDef.getName()).getColumns()) {
+                    if (columnName.equalsIgnoreCase(indexed)) {
+                        return true;
+                    }
+                }
+            } else if (indexDef.getColumns() != null) {
+                for (final ISqlJetIndexedColumn indexed : indexDef.getColumns()) {
+                    if (columnName.equalsIgnoreCase(indexed.getName())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves cursor to the row and finds value in its record. Only header of
+     * record is read.
+     */
+    private void seek(long rowId) throws SqlJetException {
+        valid = false;
+        if (cursor.moveTo(null, rowId, false) != 0 || cursor.eof() || cursor.getKeySize() != rowId) {
+            throw new SqlJetException(SqlJetErrorCode.ERROR, "No such rowid: " + rowId);
+        }
+        final int payloadSize = cursor.getDataSize();
+        int serialType = 0;
+        int offset = 0;
+        if (payloadSize > 0) {
+            final int[] hdrSize = { 0 };
+            final ISqlJetMemoryPointer varint = SqlJetUtility.allocatePtr(Math.min(5, payloadSize));
+            cursor.data(0, varint.remaining(), varint);
+            int idx = SqlJetUtility.getVarint32(varint, hdrSize);
+            if (hdrSize[0] > payloadSize || hdrSize[0] < idx) {
+                throw new SqlJetException(SqlJetErrorCode.CORRUPT);
+            }
+            final ISqlJetMemoryPointer header = SqlJetUtility.allocatePtr(hdrSize[0]);
+            cursor.data(0, hdrSize[0], header);
+            offset = hdrSize[0];
+            final int[] type = { 0 };
+            for (int i = 0; idx < hdrSize[0]; i++) {
+                idx += SqlJetUtility.getVarint32(header, idx, type);
+                if (i == column) {
+                    serialType = type[0];
+                    break;
+                }
+                offset += SqlJetVdbeSerialType.serialTypeLen(type[0]);
+            }
+        }
+        if (serialType < 12) {
+            throw new SqlJetException(SqlJetErrorCode.ERROR, "Cannot open value of type "
+                    + (serialType == 0 ? "null" : serialType == 7 ? "real" : "integer"));
+        }
+        iOffset = offset;
+        nByte = SqlJetVdbeSerialType.serialTypeLen(serialType);
+        if ((long) iOffset + nByte > payloadSize) {
+            throw new SqlJetException(SqlJetErrorCode.CORRUPT);
+        }
+        valid = true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetBlob#getSize()
+     */
+    public int getSize() {
+        return nByte;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetBlob#read(int, byte[], int,
+     * int)
+     */
+    public void read(final int offset, final byte[] buffer, final int bufferOffset, final int count)
+            throws SqlJetException {
+        access(offset, buffer, bufferOffset, count, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetBlob#write(int, byte[], int,
+     * int)
+     */
+    public void write(final int offset, final byte[] buffer, final int bufferOffset, final int count)
+            throws SqlJetException {
+        if (!write) {
+            throw new SqlJetException(SqlJetErrorCode.READONLY);
+        }
+        access(offset, buffer, bufferOffset, count, true);
+    }
+
+    private void access(final int offset, final byte[] buffer, final int bufferOffset, final int count,
+            final boolean put) throws SqlJetException {
+        if (offset < 0 || count < 0 || bufferOffset < 0 || (long) offset + count > nByte
+                || (long) bufferOffset + count > buffer.length) {
+            throw new SqlJetException(SqlJetErrorCode.ERROR);
+        }
+        db.runWithLock(new ISqlJetRunnableWithLock() {
+            public Object runWithLock(SqlJetDb db) throws SqlJetException {
+                checkOpen();
+                if (count == 0) {
+                    return null;
+                }
+                final ISqlJetMemoryPointer pBuf = SqlJetUtility.allocatePtr(count);
+                cursor.enterCursor();
+                try {
+                    if (put) {
+                        pBuf.putBytes(0, buffer, bufferOffset, count);
+                        cursor.putData(iOffset + offset, count, pBuf);
+                    } else {
+                        cursor.data(iOffset + offset, count, pBuf);
+                        pBuf.getBytes(0, buffer, bufferOffset, count);
+                    }
+                } catch (SqlJetException e) {
+                    if (e.getErrorCode() == SqlJetErrorCode.ABORT) {
+                        valid = false;
+                    }
+                    throw e;
+                } finally {
+                    cursor.leaveCursor();
+                }
+                return null;
+            }
+        });
+    }
+
+    private void checkOpen() throws SqlJetException {
+        if (cursor == null) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Blob handle is closed");
+        }
+        if (!valid) {
+            throw new SqlJetException(SqlJetErrorCode.ABORT);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetBlob#reopen(long)
+     */
+    public void reopen(final long rowId) throws SqlJetException {
+        db.runWithLock(new ISqlJetRunnableWithLock() {
+            public Object runWithLock(SqlJetDb db) throws SqlJetException {
+                if (cursor == null) {
+                    throw new SqlJetException(SqlJetErrorCode.MISUSE, "Blob handle is closed");
+                }
+                cursor.enterCursor();
+                try {
+                    seek(rowId);
+                } finally {
+                    cursor.leaveCursor();
+                }
+                return null;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetBlob#close()
+     */
+    public void close() throws SqlJetException {
+        db.runWithLock(new ISqlJetRunnableWithLock() {
+            public Object runWithLock(SqlJetDb db) throws SqlJetException {
+                if (cursor != null) {
+                    try {
+                        cursor.closeCursor();
+                    } finally {
+                        cursor = null;
+                        valid = false;
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    private static IOException toIOException(SqlJetException e) {
+        final IOException io = new IOException(e.getMessage());
+        io.initCause(e);
+        return io;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetBlob#getInputStream()
+     */
+    public InputStream getInputStream() {
+        return new InputStream() {
+            private int position;
+            private final byte[] one = new byte[1];
+
+            @Override
+            public int read() throws IOException {
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                final int n = Math.min(len, nByte - position);
+                if (n <= 0) {
+                    return -1;
+                }
+                try {
+                    SqlJetBlob.this.read(position, b, off, n);
+                } catch (SqlJetException e) {
+                    throw toIOException(e);
+                }
+                position += n;
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                final int skipped = (int) Math.max(0, Math.min(n, nByte - position));
+                position += skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return nByte - position;
+            }
+        };
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetBlob#getOutputStream()
+     */
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            private int position;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (len > nByte - position) {
+                    throw new IOException("Write beyond end of BLOB");
+                }
+                try {
+                    SqlJetBlob.this.write(position, b, off, len);
+                } catch (SqlJetException e) {
+                    throw toIOException(e);
+                }
+                position += len;
+            }
+        };
+    }
+
+}
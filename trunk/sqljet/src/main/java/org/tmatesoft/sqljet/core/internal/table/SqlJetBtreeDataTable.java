@@ -29,6 +29,7 @@ import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBtree;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetRecordWriter;
 import org.tmatesoft.sqljet.core.internal.ISqlJetVdbeMem;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 import org.tmatesoft.sqljet.core.internal.schema.SqlJetTableDef;
@@ -42,6 +43,7 @@ import org.tmatesoft.sqljet.core.schema.ISqlJetSchema;
 import org.tmatesoft.sqljet.core.schema.ISqlJetTableDef;
 import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
 import org.tmatesoft.sqljet.core.schema.SqlJetTypeAffinity;
+import org.tmatesoft.sqljet.core.table.SqlJetZeroBlob;
 
 /**
  * @author TMate Software Ltd.
@@ -65,6 +67,9 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
 
     private ISqlJetBtreeRecord defaults;
 
+    /** ROWID of last record appended by bulk load */
+    private long bulkLastRowId;
+
     /**
      * Open data table by name.
      *
@@ -73,8 +78,7 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
     public SqlJetBtreeDataTable(ISqlJetBtree btree, String tableName, boolean write) throws SqlJetException {
         super(btree, ((SqlJetTableDef) btree.getSchema().getTable(tableName)).getPage(), write, false);
         this.tableDef = (SqlJetTableDef) btree.getSchema().getTable(tableName);
-        defaults = SqlJetBtreeRecord.getRecord(getEncoding(), getDefaults());
-        openIndexes(btree.getSchema());
+        readIndexes(btree.getSchema());
     }
 
     @Override
@@ -89,35 +93,46 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
             sequenceTable.close();
         }
         super.close();
-        defaults.release();
-        defaults = null;
+        if (null != defaults) {
+            defaults.release();
+            defaults = null;
+        }
     }
 
     /**
-     * Open all indexes
+     * Read definitions of all indexes. Indexes are opened on first use by
+     * {@link #getIndex(String)}, so cursors which only read table don't open
+     * B-Trees of indexes.
      *
      * @throws SqlJetException
      *
      */
-    private void openIndexes(ISqlJetSchema schema) throws SqlJetException {
+    private void readIndexes(ISqlJetSchema schema) throws SqlJetException {
         indexesDefs = new TreeMap<String, ISqlJetIndexDef>(String.CASE_INSENSITIVE_ORDER);
         indexesTables = new TreeMap<String, ISqlJetBtreeIndexTable>(String.CASE_INSENSITIVE_ORDER);
         for (final ISqlJetIndexDef indexDef : schema.getIndexes(tableDef.getName())) {
             indexesDefs.put(indexDef.getName(), indexDef);
-            final SqlJetBtreeIndexTable indexTable;
-            if (indexDef.getColumns().size() > 0) {
-                indexTable = new SqlJetBtreeIndexTable(btree, indexDef.getName(), this.write);
+        }
+    }
+
+    /**
+     * Open index
+     *
+     * @throws SqlJetException
+     *
+     */
+    private ISqlJetBtreeIndexTable openIndex(ISqlJetIndexDef indexDef) throws SqlJetException {
+        if (indexDef.getColumns().size() > 0) {
+            return new SqlJetBtreeIndexTable(btree, indexDef.getName(), this.write);
+        } else {
+            List<String> columns;
+            if (tableDef.getTableIndexConstraint(indexDef.getName()) != null) {
+                columns = tableDef.getTableIndexConstraint(indexDef.getName()).getColumns();
             } else {
-                List<String> columns;
-                if (tableDef.getTableIndexConstraint(indexDef.getName()) != null) {
-                    columns = tableDef.getTableIndexConstraint(indexDef.getName()).getColumns();
-                } else {
-                    columns = new ArrayList<String>();
-                    columns.add(tableDef.getColumnIndexConstraint(indexDef.getName()).getColumn().getName());
-                }
-                indexTable = new SqlJetBtreeIndexTable(btree, indexDef.getName(), columns, this.write);
+                columns = new ArrayList<String>();
+                columns.add(tableDef.getColumnIndexConstraint(indexDef.getName()).getColumn().getName());
             }
-            indexesTables.put(indexDef.getName(), indexTable);
+            return new SqlJetBtreeIndexTable(btree, indexDef.getName(), columns, this.write);
         }
     }
 
@@ -196,6 +211,7 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
             final Object[] row = getValuesRowForInsert(values);
             adjustRowIdPosition(values, row);
             if (onConflict == SqlJetConflictAction.REPLACE) {
+                endBulkLoad();
                 rowId = getRowIdForReplace(rowId, values, row);
             }
             if (rowId < 1) {
@@ -370,6 +386,24 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
         }
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetBtreeTable#newRowId(long)
+     */
+    @Override
+    public long newRowId(long prev) throws SqlJetException {
+        if (isBulkLoad()) {
+            final long last = Math.max(prev, bulkLastRowId);
+            if (last < Long.MAX_VALUE) {
+                return last + 1;
+            }
+            endBulkLoad();
+        }
+        return super.newRowId(prev);
+    }
+
     /**
      * @return
      * @throws SqlJetException
@@ -403,25 +437,134 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
      * @throws SqlJetException
      */
     private void doInsert(SqlJetConflictAction onConflict, final long rowId, final Object[] row) throws SqlJetException {
-        final ISqlJetMemoryPointer pData;
+        final ISqlJetRecordWriter writer = btree.getDb().getRecordWriter();
+        if (tableDef.isRowIdPrimaryKey()) {
+            row[getRowIdPrimaryKeyColumn(row)] = rowId;
+        }
+        if (isBulkLoad()) {
+            final ISqlJetMemoryPointer pData = writeRow(writer, row);
+            if (writer.getZeroTail() > 0) {
+                // bulk loader doesn't append zero-filled tails.
+                endBulkLoad();
+            } else if (doBulkInsert(onConflict, rowId, pData, row)) {
+                return;
+            }
+        }
+        if (doActionWithIndexes(Action.INSERT, onConflict, rowId, row)) {
+            // indexes are written by the same writer, so row is encoded after them.
+            final ISqlJetMemoryPointer pData = writeRow(writer, row);
+            getCursor().insert(null, rowId, pData, pData.remaining(), writer.getZeroTail(), true);
+            goToRow(rowId);
+        }
+    }
+
+    /**
+     * Encodes row into record, column which is alias of ROWID is stored as
+     * NULL.
+     *
+     * @return record which is valid until next write by writer.
+     * @throws SqlJetException
+     */
+    private ISqlJetMemoryPointer writeRow(ISqlJetRecordWriter writer, final Object[] row) throws SqlJetException {
         final SqlJetEncoding encoding = btree.getDb().getOptions().getEncoding();
         if (!tableDef.isRowIdPrimaryKey()) {
-            ISqlJetBtreeRecord rec = SqlJetBtreeRecord.getRecord(encoding, row); 
-            pData = rec.getRawRecord();
-            rec.release();
-        } else {
-            final int primaryKeyColumnNumber = tableDef.getColumnNumber(tableDef.getRowIdPrimaryKeyColumnName());
-            if (primaryKeyColumnNumber == -1 || primaryKeyColumnNumber >= row.length)
-                throw new SqlJetException(SqlJetErrorCode.ERROR);
-            row[primaryKeyColumnNumber] = null;
-            ISqlJetBtreeRecord rec = SqlJetBtreeRecord.getRecord(encoding, row); 
-            pData = rec.getRawRecord();
-            rec.release();
+            return writer.write(encoding, row);
+        }
+        final int primaryKeyColumnNumber = getRowIdPrimaryKeyColumn(row);
+        final Object rowId = row[primaryKeyColumnNumber];
+        row[primaryKeyColumnNumber] = null;
+        try {
+            return writer.write(encoding, row);
+        } finally {
             row[primaryKeyColumnNumber] = rowId;
         }
-        if (doActionWithIndexes(Action.INSERT, onConflict, rowId, row)) {
-            getCursor().insert(null, rowId, pData, pData.remaining(), 0, true);
-            goToRow(rowId);
+    }
+
+    private int getRowIdPrimaryKeyColumn(final Object[] row) throws SqlJetException {
+        final int primaryKeyColumnNumber = tableDef.getColumnNumber(tableDef.getRowIdPrimaryKeyColumnName());
+        if (primaryKeyColumnNumber == -1 || primaryKeyColumnNumber >= row.length)
+            throw new SqlJetException(SqlJetErrorCode.ERROR);
+        return primaryKeyColumnNumber;
+    }
+
+    /**
+     * Appends row to table and its indexes which are bulk loaded.
+     *
+     * @return true if row is processed, false if it should be inserted as
+     *         usual. In last case bulk load is ended.
+     * @throws SqlJetException
+     */
+    private boolean doBulkInsert(SqlJetConflictAction onConflict, final long rowId, final ISqlJetMemoryPointer pData,
+            final Object[] row) throws SqlJetException {
+        if (rowId <= bulkLastRowId) {
+            endBulkLoad();
+            return false;
+        }
+        checkNotNull(onConflict, row);
+        final List<Object[]> keys = new ArrayList<Object[]>(indexesDefs.size());
+        for (final ISqlJetIndexDef indexDef : indexesDefs.values()) {
+            final Object[] key = getKeyForIndex(row, indexDef);
+            if (isUniqueIndex(indexDef) && !hasNull(key)
+                    && getIndex(indexDef.getName()).lookup(false, key) != 0) {
+                if (SqlJetConflictAction.IGNORE == onConflict) {
+                    return true;
+                } else if (SqlJetConflictAction.REPLACE == onConflict) {
+                    endBulkLoad();
+                    return false;
+                }
+                throw new SqlJetException(SqlJetErrorCode.CONSTRAINT, "Insert fails: unique index "
+                        + indexDef.getName());
+            }
+            keys.add(key);
+        }
+        if (!appendBulk(null, rowId, pData, pData.remaining())) {
+            endBulkLoad();
+            return false;
+        }
+        bulkLastRowId = rowId;
+        int i = 0;
+        for (final ISqlJetIndexDef indexDef : indexesDefs.values()) {
+            getIndex(indexDef.getName()).insert(rowId, true, keys.get(i++));
+        }
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetBtreeTable#beginBulkLoad()
+     */
+    @Override
+    public boolean beginBulkLoad() throws SqlJetException {
+        if (isBulkLoad()) {
+            return true;
+        }
+        if (!super.beginBulkLoad()) {
+            return false;
+        }
+        bulkLastRowId = 0;
+        for (final ISqlJetBtreeIndexTable indexTable : getIndexesTables().values()) {
+            indexTable.beginBulkLoad();
+        }
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetBtreeTable#endBulkLoad()
+     */
+    @Override
+    public void endBulkLoad() throws SqlJetException {
+        try {
+            // indexes which aren't opened yet aren't loaded.
+            for (final ISqlJetBtreeIndexTable indexTable : indexesTables.values()) {
+                indexTable.endBulkLoad();
+            }
+        } finally {
+            super.endBulkLoad();
         }
     }
 
@@ -531,28 +674,17 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
         if (newRowId == currentRowId && Arrays.equals(rowCompleted, currentRow))
             return;
 
-        final ISqlJetMemoryPointer pData;
-        final SqlJetEncoding encoding = btree.getDb().getOptions().getEncoding();
-        if (!tableDef.isRowIdPrimaryKey()) {
-            final ISqlJetBtreeRecord rec = SqlJetBtreeRecord.getRecord(encoding, rowCompleted);
-            pData = rec.getRawRecord();
-            rec.release();
-        } else {
-            final int primaryKeyColumnNumber = tableDef.getColumnNumber(tableDef.getRowIdPrimaryKeyColumnName());
-            if (primaryKeyColumnNumber == -1 || primaryKeyColumnNumber >= rowCompleted.length)
-                throw new SqlJetException(SqlJetErrorCode.ERROR);
-            rowCompleted[primaryKeyColumnNumber] = null;
-            final ISqlJetBtreeRecord rec = SqlJetBtreeRecord.getRecord(encoding, rowCompleted); 
-            pData = rec.getRawRecord();
-            rec.release();
-            rowCompleted[primaryKeyColumnNumber] = newRowId;
+        final ISqlJetRecordWriter writer = btree.getDb().getRecordWriter();
+        if (tableDef.isRowIdPrimaryKey()) {
+            rowCompleted[getRowIdPrimaryKeyColumn(rowCompleted)] = newRowId;
         }
         if (doActionWithIndexes(Action.UPDATE, onConflict, newRowId, rowCompleted)) {
             final boolean changeRowId = newRowId != currentRowId;
             if (changeRowId) {
                 getCursor().delete();
             }
-            getCursor().insert(null, newRowId, pData, pData.remaining(), 0, changeRowId);
+            final ISqlJetMemoryPointer pData = writeRow(writer, rowCompleted);
+            getCursor().insert(null, newRowId, pData, pData.remaining(), writer.getZeroTail(), changeRowId);
             goToRow(newRowId);
         }
 
@@ -691,19 +823,8 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
             }
         }
 
-        if (Action.DELETE != action && hasNull(row)) {
-            final List<ISqlJetColumnDef> columns = tableDef.getNotNullColumns();
-            if (columns != null && columns.size() != 0) {
-                for (ISqlJetColumnDef column : columns) {
-                    final String name = column.getName();
-                    final int index = column.getIndex();
-                    if (row.length < index || null == row[index]) {
-                        if (SqlJetConflictAction.IGNORE != onConflict) {
-                            throw new SqlJetException(String.format("Field '%s' must be not NULL", name));
-                        }
-                    }
-                }
-            }
+        if (Action.DELETE != action) {
+            checkNotNull(onConflict, row);
         }
 
         class IndexKeys {
@@ -731,13 +852,12 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
                     continue;
                 }
             }
-            final ISqlJetBtreeIndexTable indexTable = indexesTables.get(indexDef.getName());
+            final ISqlJetBtreeIndexTable indexTable = getIndex(indexDef.getName());
             indexKeys.add(new IndexKeys(indexTable, currentKey, key));
 
             // check unique indexes
             if (Action.DELETE != action && !hasNull(key)) {
-                if (indexDef.isUnique() || tableDef.getColumnIndexConstraint(indexDef.getName()) != null
-                        || tableDef.getTableIndexConstraint(indexDef.getName()) != null) {
+                if (isUniqueIndex(indexDef)) {
                     final long lookup = indexTable.lookup(false, key);
                     if (lookup != 0) {
                         if (Action.INSERT == action) {
@@ -785,6 +905,28 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
 
     }
 
+    private void checkNotNull(SqlJetConflictAction onConflict, Object[] row) throws SqlJetException {
+        if (hasNull(row)) {
+            final List<ISqlJetColumnDef> columns = tableDef.getNotNullColumns();
+            if (columns != null && columns.size() != 0) {
+                for (ISqlJetColumnDef column : columns) {
+                    final String name = column.getName();
+                    final int index = column.getIndex();
+                    if (row.length < index || null == row[index]) {
+                        if (SqlJetConflictAction.IGNORE != onConflict) {
+                            throw new SqlJetException(String.format("Field '%s' must be not NULL", name));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isUniqueIndex(ISqlJetIndexDef indexDef) {
+        return indexDef.isUnique() || tableDef.getColumnIndexConstraint(indexDef.getName()) != null
+                || tableDef.getTableIndexConstraint(indexDef.getName()) != null;
+    }
+
     /**
      * @param row
      * @return
@@ -824,6 +966,25 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
     }
 
     public Object[] getKeyForIndex(final Object[] fields, final ISqlJetIndexDef indexDef) {
+        return expandZeroBlobs(getKeyForIndexFields(fields, indexDef));
+    }
+
+    /**
+     * Zero-filled BLOBs are stored in table records without zeros but index
+     * keys are always complete records.
+     */
+    private static Object[] expandZeroBlobs(final Object[] key) {
+        if (null != key) {
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] instanceof SqlJetZeroBlob) {
+                    key[i] = new byte[((SqlJetZeroBlob) key[i]).getSize()];
+                }
+            }
+        }
+        return key;
+    }
+
+    private Object[] getKeyForIndexFields(final Object[] fields, final ISqlJetIndexDef indexDef) {
         if (null == fields) {
             return null;
         } else if (tableDef.getColumnIndexConstraint(indexDef.getName()) != null) {
@@ -885,7 +1046,7 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
         if (null != indexName) {
             if (!indexesDefs.containsKey(indexName))
                 throw new SqlJetException(SqlJetErrorCode.MISUSE, "Index not found: " + indexName);
-            final ISqlJetBtreeIndexTable indexTable = indexesTables.get(indexName);
+            final ISqlJetBtreeIndexTable indexTable = getIndex(indexName);
             final long lookup = indexTable.lookup(next, key);
             return lookup != 0 && goToRow(lookup);
         } else {
@@ -898,9 +1059,12 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
     }
 
     /**
-     * @return the indexesTables
+     * @return the indexesTables, all indexes are opened.
      */
-    public Map<String, ISqlJetBtreeIndexTable> getIndexesTables() {
+    public Map<String, ISqlJetBtreeIndexTable> getIndexesTables() throws SqlJetException {
+        for (final String indexName : indexesDefs.keySet()) {
+            getIndex(indexName);
+        }
         return Collections.unmodifiableMap(indexesTables);
     }
 
@@ -1043,7 +1207,7 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
      */
     @Override
     public void clear() throws SqlJetException {
-        for (ISqlJetBtreeIndexTable index : indexesTables.values()) {
+        for (ISqlJetBtreeIndexTable index : getIndexesTables().values()) {
             index.clear();
         }
         super.clear();
@@ -1084,8 +1248,17 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
         return columns.get(field).getTypeAffinity();
     }
 
-    public ISqlJetBtreeIndexTable getIndex(String indexName) {
-        return indexesTables.get(indexName);
+    public ISqlJetBtreeIndexTable getIndex(String indexName) throws SqlJetException {
+        ISqlJetBtreeIndexTable indexTable = indexesTables.get(indexName);
+        if (indexTable == null) {
+            final ISqlJetIndexDef indexDef = indexesDefs.get(indexName);
+            if (indexDef == null) {
+                return null;
+            }
+            indexTable = openIndex(indexDef);
+            indexesTables.put(indexDef.getName(), indexTable);
+        }
+        return indexTable;
     }
 
     @Override
@@ -1097,4 +1270,39 @@ public class SqlJetBtreeDataTable extends SqlJetBtreeTable implements ISqlJetBtr
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeDataTable#count(long,
+     * long)
+     */
+    public long count(long firstRowId, long lastRowId) throws SqlJetException {
+        lock();
+        try {
+            endBulkLoad();
+            pushState();
+            try {
+                if (firstRowId == 0) {
+                    getCursor().first();
+                } else if (getCursor().moveTo(null, firstRowId, false) < 0) {
+                    getCursor().next();
+                }
+                pushState();
+                try {
+                    if (lastRowId != 0 && getCursor().moveTo(null, lastRowId, false) <= 0) {
+                        getCursor().next();
+                    }
+                    return countFromPreviousState();
+                } finally {
+                    popState();
+                }
+            } finally {
+                popState();
+            }
+        } finally {
+            unlock();
+        }
+    }
+
 }
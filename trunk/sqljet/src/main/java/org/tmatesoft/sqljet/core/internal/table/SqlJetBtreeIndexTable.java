@@ -17,19 +17,29 @@
  */
 package org.tmatesoft.sqljet.core.internal.table;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.tmatesoft.sqljet.core.SqlJetEncoding;
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBtree;
+import org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
-import org.tmatesoft.sqljet.core.internal.ISqlJetVdbeMem;
+import org.tmatesoft.sqljet.core.internal.ISqlJetRecordWriter;
+import org.tmatesoft.sqljet.core.internal.ISqlJetSorter;
 import org.tmatesoft.sqljet.core.internal.SqlJetUnpackedRecordFlags;
 import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 import org.tmatesoft.sqljet.core.internal.schema.SqlJetBaseIndexDef;
 import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetBtreeRecord;
+import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetSorter;
 import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetUnpackedRecord;
 import org.tmatesoft.sqljet.core.schema.ISqlJetIndexDef;
 import org.tmatesoft.sqljet.core.schema.ISqlJetIndexedColumn;
@@ -46,6 +56,9 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
     private ISqlJetIndexDef indexDef;
     private List<String> columns;
 
+    /** Key of last record appended by bulk load */
+    private Object[] bulkLastKey;
+
     /**
      * Open index by name
      * 
@@ -83,6 +96,13 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
     public long lookup(boolean next, Object... values) throws SqlJetException {
         lock();
         try {
+            if (isBulkLoad()) {
+                // keys greater than last appended one are absent for sure.
+                if (!next && (bulkLastKey == null || compareKeys(values, bulkLastKey) < 0)) {
+                    return 0;
+                }
+                endBulkLoad();
+            }
             return lookupSafe(next, false, false, values);
         } finally {
             unlock();
@@ -96,36 +116,37 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
      * @throws SqlJetException
      */
     private long lookupSafe(boolean next, boolean near, boolean last, Object... values) throws SqlJetException {
-        final SqlJetEncoding encoding = btree.getDb().getOptions().getEncoding();
-        ISqlJetBtreeRecord key = SqlJetBtreeRecord.getRecord(encoding, values);
-        final ISqlJetMemoryPointer k = key.getRawRecord();
-        key.release();
-        if (next) {
-            if (!last) {
-                next();
-            } else {
-                previous();
-            }
-        } else {
-            final int moved = cursorMoveTo(k, last);
-            if (moved != 0) {
+        final SqlJetUnpackedRecord key = getKeyInfo().recordFromValues(values);
+        try {
+            if (next) {
                 if (!last) {
-                    if (moved < 0) {
-                        next();
-                    }
+                    next();
                 } else {
-                    if (moved > 0) {
-                        previous();
+                    previous();
+                }
+            } else {
+                final int moved = cursorMoveTo(key, last);
+                if (moved != 0) {
+                    if (!last) {
+                        if (moved < 0) {
+                            next();
+                        }
+                    } else {
+                        if (moved > 0) {
+                            previous();
+                        }
                     }
                 }
             }
+            final ISqlJetBtreeRecord record = getRecord();
+            if (null == record)
+                return 0;
+            if (!near && keyCompare(key) != 0)
+                return 0;
+            return getKeyRowId(record);
+        } finally {
+            key.release();
         }
-        final ISqlJetBtreeRecord record = getRecord();
-        if (null == record)
-            return 0;
-        if (!near && keyCompare(k, record.getRawRecord()) != 0)
-            return 0;
-        return getKeyRowId(record);
     }
 
     /**
@@ -134,67 +155,62 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
      * @return
      * @throws SqlJetException
      */
-    private int cursorMoveTo(final ISqlJetMemoryPointer pKey, boolean last) throws SqlJetException {
+    private int cursorMoveTo(final SqlJetUnpackedRecord pIdxKey, boolean last) throws SqlJetException {
         clearRecordCache();
-        final int nKey = pKey.remaining();
         if (!last) {
-            return getCursor().moveTo(pKey, nKey, false);
-        } else {
-            SqlJetUnpackedRecord pIdxKey = null;
-            if (pKey != null) {
-                assert (nKey == (long) (int) nKey);
-                pIdxKey = getKeyInfo().recordUnpack((int) nKey, pKey);
-                if (pIdxKey == null)
-                    throw new SqlJetException(SqlJetErrorCode.NOMEM);
-                pIdxKey.getFlags().add(SqlJetUnpackedRecordFlags.INCRKEY);
-            }
-            try {
-                return getCursor().moveToUnpacked(pIdxKey, nKey, false);
-            } finally {
-                if (pKey != null) {
-                    SqlJetUnpackedRecord.delete(pIdxKey);
-                }
-                if (pIdxKey != null) {
-                    pIdxKey.release();
-                }
-            }
+            return getCursor().moveToUnpacked(pIdxKey, 0, false);
+        }
+        final Set<SqlJetUnpackedRecordFlags> flags = pIdxKey.getFlags();
+        flags.add(SqlJetUnpackedRecordFlags.INCRKEY);
+        try {
+            return getCursor().moveToUnpacked(pIdxKey, 0, false);
+        } finally {
+            flags.remove(SqlJetUnpackedRecordFlags.INCRKEY);
         }
     }
 
     /**
+     * Compares key with record at current position of cursor, ROWID of record
+     * and its fields beyond key are ignored.
      * 
      * @param key
-     * @param record
      * @return
      * 
      * @throws SqlJetException
      */
-    private int keyCompare(ISqlJetMemoryPointer key, ISqlJetMemoryPointer record) throws SqlJetException {
-        final SqlJetUnpackedRecord unpacked = getKeyInfo().recordUnpack(key.remaining(), key);
-        final Set<SqlJetUnpackedRecordFlags> flags = unpacked.getFlags();
+    private int keyCompare(SqlJetUnpackedRecord key) throws SqlJetException {
+        final Set<SqlJetUnpackedRecordFlags> flags = key.getFlags();
         flags.add(SqlJetUnpackedRecordFlags.IGNORE_ROWID);
         flags.add(SqlJetUnpackedRecordFlags.PREFIX_MATCH);
+        final ISqlJetBtreeCursor cursor = getCursor();
+        cursor.enterCursor();
         try {
-            return unpacked.recordCompare(record.remaining(), record);
+            ISqlJetMemoryPointer pCellKey = cursor.payloadView(true);
+            if (pCellKey == null) {
+                // record spills to overflow pages.
+                final int nKey = (int) cursor.getKeySize();
+                pCellKey = SqlJetUtility.allocatePtr(nKey);
+                cursor.key(0, nKey, pCellKey);
+            }
+            return key.recordCompare(pCellKey.remaining(), pCellKey);
         } finally {
-            unpacked.release();
+            cursor.leaveCursor();
+            flags.remove(SqlJetUnpackedRecordFlags.IGNORE_ROWID);
+            flags.remove(SqlJetUnpackedRecordFlags.PREFIX_MATCH);
         }
     }
 
     public int compareKeys(Object[] firstKey, Object[] lastKey) throws SqlJetException {
         final SqlJetEncoding encoding = btree.getDb().getOptions().getEncoding();
-        final ISqlJetBtreeRecord first = SqlJetBtreeRecord.getRecord(encoding, firstKey);
         final ISqlJetBtreeRecord last = SqlJetBtreeRecord.getRecord(encoding, lastKey);
-        final ISqlJetMemoryPointer firstRec = first.getRawRecord();
         final ISqlJetMemoryPointer lastRec = last.getRawRecord();
-        final SqlJetUnpackedRecord unpacked = getKeyInfo().recordUnpack(firstRec.remaining(), firstRec);
+        final SqlJetUnpackedRecord unpacked = getKeyInfo().recordFromValues(firstKey);
         unpacked.getFlags().add(SqlJetUnpackedRecordFlags.PREFIX_MATCH);
         try {
             return unpacked.recordCompare(lastRec.remaining(), lastRec);
         } finally {
             unpacked.release();
-            first.release();
-            last.release();            
+            last.release();
         }
     }
 
@@ -208,12 +224,11 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
     public boolean checkKey(Object... key) throws SqlJetException {
         if (eof())
             return false;
-        final ISqlJetBtreeRecord rec = SqlJetBtreeRecord.getRecord(btree.getDb().getOptions().getEncoding(), key); 
-        final ISqlJetMemoryPointer keyRecord = rec.getRawRecord();
+        final SqlJetUnpackedRecord unpacked = getKeyInfo().recordFromValues(key);
         try {
-            return 0 == keyCompare(keyRecord, getRecord().getRawRecord());
+            return 0 == keyCompare(unpacked);
         } finally {
-            rec.release();
+            unpacked.release();
         }
     }
 
@@ -238,6 +253,18 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetBtreeTable#beginBulkLoad()
+     */
+    @Override
+    public boolean beginBulkLoad() throws SqlJetException {
+        bulkLastKey = null;
+        return super.beginBulkLoad();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -248,12 +275,14 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
     public void insert(long rowId, boolean append, Object... key) throws SqlJetException {
         lock();
         try {
-            final ISqlJetBtreeRecord rec = SqlJetBtreeRecord.getRecord(btree.getDb().getOptions().getEncoding(),
-                    SqlJetUtility.addArrays(key, new Object[] { rowId }));
-            final ISqlJetMemoryPointer zKey = rec.getRawRecord();
+            final ISqlJetMemoryPointer zKey = btree.getDb().getRecordWriter()
+                    .writeKey(btree.getDb().getOptions().getEncoding(), key, rowId);
+            if (isBulkLoad() && appendBulk(zKey, zKey.remaining(), SqlJetUtility.allocatePtr(0), 0)) {
+                bulkLastKey = key;
+                return;
+            }
             getCursor().insert(zKey, zKey.remaining(), SqlJetUtility.allocatePtr(0), 0, 0, append);
             clearRecordCache();
-            rec.release();
         } finally {
             unlock();
         }
@@ -269,40 +298,43 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
     public boolean delete(long rowId, Object... key) throws SqlJetException {
         lock();
         try {
-            final ISqlJetBtreeRecord rec = SqlJetBtreeRecord.getRecord(btree.getDb().getOptions().getEncoding(), key);
-            final ISqlJetMemoryPointer k = rec.getRawRecord();
-            rec.release();
-            if (cursorMoveTo(k, false) < 0) {
-                next();
-            }
-            do {
-                final ISqlJetBtreeRecord record = getRecord();
-                if (null == record)
-                    return false;
-                if (keyCompare(k, record.getRawRecord()) != 0)
-                    return false;
-                if (getKeyRowId(record) == rowId) {
-                    getCursor().delete();
-                    clearRecordCache();
-                    if (cursorMoveTo(k, false) < 0) {
-                        next();
-                    }
-                    return true;
+            endBulkLoad();
+            final SqlJetUnpackedRecord k = getKeyInfo().recordFromValues(key);
+            try {
+                if (cursorMoveTo(k, false) < 0) {
+                    next();
                 }
-            } while (next());
-            return false;
+                do {
+                    final ISqlJetBtreeRecord record = getRecord();
+                    if (null == record)
+                        return false;
+                    if (keyCompare(k) != 0)
+                        return false;
+                    if (getKeyRowId(record) == rowId) {
+                        getCursor().delete();
+                        clearRecordCache();
+                        if (cursorMoveTo(k, false) < 0) {
+                            next();
+                        }
+                        return true;
+                    }
+                } while (next());
+                return false;
+            } finally {
+                k.release();
+            }
         } finally {
             unlock();
         }
     }
 
-    private long getKeyRowId(ISqlJetBtreeRecord record) {
+    private long getKeyRowId(ISqlJetBtreeRecord record) throws SqlJetException {
         if (null == record)
             return 0;
-        final List<ISqlJetVdbeMem> fields = record.getFields();
-        if (null == fields || 0 == fields.size())
+        final int fieldsCount = record.getFieldsCount();
+        if (0 == fieldsCount)
             return 0;
-        return fields.get(fields.size() - 1).intValue();
+        return record.getIntField(fieldsCount - 1);
     }
 
     public long getKeyRowId() throws SqlJetException {
@@ -310,24 +342,128 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
     }
 
     /**
+     * Rebuilds index from its table, see {@link #reindex(ISqlJetBtree, String, List, boolean)}.
+     *
      * @throws SqlJetException
-     * 
+     *
      */
     public void reindex(ISqlJetSchema schema) throws SqlJetException {
-        lock();
+        reindex(btree, indexDef.getTableName(), Collections.singletonList(this), false);
+    }
+
+    /**
+     * Rebuilds indexes of one table. Keys of all indexes are read by one scan
+     * of table, sorted by {@link SqlJetSorter} for each index and appended to
+     * the empty index B-Trees in sorted order, so B-Trees are built bottom-up
+     * without balancing.
+     *
+     * @param btree
+     * @param tableName
+     *            name of table.
+     * @param indexes
+     *            indexes of that table opened for write.
+     * @param parallel
+     *            if true then runs of each index are sorted and merged in
+     *            separate threads. B-Trees are always written in calling
+     *            thread.
+     * @throws SqlJetException
+     */
+    public static void reindex(ISqlJetBtree btree, String tableName, List<SqlJetBtreeIndexTable> indexes,
+            boolean parallel) throws SqlJetException {
+        final int nIndexes = indexes.size();
+        final SqlJetEncoding encoding = btree.getDb().getOptions().getEncoding();
+        final List<ISqlJetSorter> sorters = new ArrayList<ISqlJetSorter>(nIndexes);
+        int nLocked = 0;
         try {
-            btree.clearTable(rootPage, null);
-            final SqlJetBtreeDataTable dataTable = new SqlJetBtreeDataTable(btree, indexDef.getTableName(), false);
+            for (final SqlJetBtreeIndexTable index : indexes) {
+                index.lock();
+                nLocked++;
+                btree.clearTable(index.rootPage, null);
+                index.clearRecordCache();
+                sorters.add(new SqlJetSorter(btree.getDb().getFileSystem(), index.getKeyInfo()));
+            }
+            final ISqlJetRecordWriter writer = btree.getDb().getRecordWriter();
+            final SqlJetBtreeDataTable dataTable = new SqlJetBtreeDataTable(btree, tableName, false);
             try {
                 for (dataTable.first(); !dataTable.eof(); dataTable.next()) {
-                    final Object[] key = dataTable.getKeyForIndex(dataTable.getValues(), indexDef);
-                    insert(dataTable.getRowId(), true, key);
+                    final Object[] values = dataTable.getValues();
+                    final long rowId = dataTable.getRowId();
+                    for (int i = 0; i < nIndexes; i++) {
+                        final Object[] key = dataTable.getKeyForIndex(values, indexes.get(i).indexDef);
+                        sorters.get(i).write(writer.writeKey(encoding, key, rowId));
+                    }
                 }
             } finally {
                 dataTable.close();
             }
+            sort(sorters, parallel);
+            for (int i = 0; i < nIndexes; i++) {
+                indexes.get(i).load(sorters.get(i));
+            }
         } finally {
-            unlock();
+            for (final ISqlJetSorter sorter : sorters) {
+                sorter.close();
+            }
+            for (int i = 0; i < nLocked; i++) {
+                indexes.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * Completes sorting of all sorters, in parallel threads if asked to.
+     */
+    private static void sort(List<ISqlJetSorter> sorters, boolean parallel) throws SqlJetException {
+        final int nThreads = Math.min(sorters.size(), Runtime.getRuntime().availableProcessors());
+        if (!parallel || nThreads < 2) {
+            for (final ISqlJetSorter sorter : sorters) {
+                sorter.sort();
+            }
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            final List<Future<Object>> futures = new ArrayList<Future<Object>>(sorters.size());
+            for (final ISqlJetSorter sorter : sorters) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws SqlJetException {
+                        sorter.sort();
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Object> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    throw new SqlJetException(SqlJetErrorCode.INTERRUPT, e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof SqlJetException) {
+                        throw (SqlJetException) e.getCause();
+                    }
+                    throw new SqlJetException(SqlJetErrorCode.INTERNAL, e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Appends sorted records to the empty index B-Tree.
+     */
+    private void load(ISqlJetSorter sorter) throws SqlJetException {
+        final ISqlJetMemoryPointer pData = SqlJetUtility.allocatePtr(0);
+        beginBulkLoad();
+        try {
+            ISqlJetMemoryPointer zKey;
+            while ((zKey = sorter.next()) != null) {
+                if (!appendBulk(zKey, zKey.remaining(), pData, 0)) {
+                    getCursor().insert(zKey, zKey.remaining(), pData, 0, 0, true);
+                }
+            }
+        } finally {
+            endBulkLoad();
         }
     }
 
@@ -342,10 +478,12 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
         if (eof()) {
             return 1;
         }
-        final ISqlJetBtreeRecord rec = SqlJetBtreeRecord.getRecord(btree.getDb().getOptions().getEncoding(), key);
-        final ISqlJetMemoryPointer keyRecord = rec.getRawRecord();
-        rec.release();
-        return keyCompare(keyRecord, getRecord().getRawRecord());
+        final SqlJetUnpackedRecord unpacked = getKeyInfo().recordFromValues(key);
+        try {
+            return keyCompare(unpacked);
+        } finally {
+            unpacked.release();
+        }
     }
 
     /*
@@ -358,6 +496,7 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
     public long lookupNear(boolean next, Object[] key) throws SqlJetException {
         lock();
         try {
+            endBulkLoad();
             return lookupSafe(next, true, false, key);
         } finally {
             unlock();
@@ -373,10 +512,69 @@ public class SqlJetBtreeIndexTable extends SqlJetBtreeTable implements ISqlJetBt
     public long lookupLastNear(Object[] key) throws SqlJetException {
         lock();
         try {
+            endBulkLoad();
             return lookupSafe(false, true, true, key);
         } finally {
             unlock();
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeIndexTable#count(java
+     * .lang.Object[], boolean, java.lang.Object[], boolean)
+     */
+    public long count(Object[] firstKey, boolean firstKeyIncluded, Object[] lastKey, boolean lastKeyIncluded)
+            throws SqlJetException {
+        lock();
+        try {
+            endBulkLoad();
+            pushState();
+            try {
+                if (firstKey == null) {
+                    getCursor().first();
+                } else {
+                    seek(firstKey, !firstKeyIncluded);
+                }
+                pushState();
+                try {
+                    if (lastKey != null) {
+                        seek(lastKey, lastKeyIncluded);
+                    }
+                    return countFromPreviousState();
+                } finally {
+                    popState();
+                }
+            } finally {
+                popState();
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Moves cursor to the first entry which key is greater or equal to given
+     * key (or greater only if 'after' is true), or to EOF if there are no
+     * such entries.
+     * 
+     * @param values
+     *            values of key.
+     * @param after
+     *            true to skip entries which match key.
+     * @throws SqlJetException
+     */
+    private void seek(Object[] values, boolean after) throws SqlJetException {
+        final SqlJetUnpackedRecord key = getKeyInfo().recordFromValues(values);
+        try {
+            if (cursorMoveTo(key, after) < 0) {
+                getCursor().next();
+            }
+        } finally {
+            key.release();
+        }
+    }
+
 }
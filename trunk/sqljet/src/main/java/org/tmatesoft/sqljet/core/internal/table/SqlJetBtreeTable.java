@@ -13,7 +13,6 @@
  */
 package org.tmatesoft.sqljet.core.internal.table;
 
-import java.util.List;
 import java.util.Random;
 import java.util.Stack;
 
@@ -22,6 +21,7 @@ import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.SqlJetValueType;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBtree;
+import org.tmatesoft.sqljet.core.internal.ISqlJetBtreeBulkLoader;
 import org.tmatesoft.sqljet.core.internal.ISqlJetBtreeCursor;
 import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
 import org.tmatesoft.sqljet.core.internal.ISqlJetVdbeMem;
@@ -46,10 +46,14 @@ public class SqlJetBtreeTable implements ISqlJetBtreeTable {
     private long priorNewRowid = 0;
 
     private SqlJetBtreeRecord recordCache;
+    /** Released record which is read again at next entry, see {@link #getRecord()} */
+    private SqlJetBtreeRecord recordSpare;
     private Object[] valueCache;
     private Object[] valuesCache;
     
     private Stack<State> states;
+
+    private ISqlJetBtreeBulkLoader bulkLoader;
     
     protected static class State {
 
@@ -153,10 +157,150 @@ public class SqlJetBtreeTable implements ISqlJetBtreeTable {
      * @see org.tmatesoft.sqljet.core.internal.btree.ISqlJetBtreeTable#close()
      */
     public void close() throws SqlJetException {
-        while(popState()) {}
+        try {
+            endBulkLoad();
+        } finally {
+            while(popState()) {}
 
-        clearRecordCache();
-        getCurrentState().close();
+            clearRecordCache();
+            recordSpare = null;
+            getCurrentState().close();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeTable#beginBulkLoad()
+     */
+    public boolean beginBulkLoad() throws SqlJetException {
+        lock();
+        try {
+            if (bulkLoader == null) {
+                bulkLoader = btree.getBulkLoader(rootPage, getKeyInfo());
+            }
+            return bulkLoader != null;
+        } finally {
+            unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeTable#endBulkLoad()
+     */
+    public void endBulkLoad() throws SqlJetException {
+        if (bulkLoader == null) {
+            return;
+        }
+        lock();
+        try {
+            bulkLoader.finish();
+        } finally {
+            bulkLoader = null;
+            clearRecordCache();
+            unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeTable#isBulkLoad()
+     */
+    public boolean isBulkLoad() {
+        return bulkLoader != null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeTable#count()
+     */
+    public long count() throws SqlJetException {
+        lock();
+        try {
+            endBulkLoad();
+            return getCursor().count();
+        } finally {
+            unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeTable#getPosition()
+     */
+    public long getPosition() throws SqlJetException {
+        lock();
+        try {
+            endBulkLoad();
+            return getCursor().getPosition();
+        } finally {
+            unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeTable#goToPosition
+     * (long)
+     */
+    public boolean goToPosition(long position) throws SqlJetException {
+        lock();
+        try {
+            endBulkLoad();
+            clearRecordCache();
+            return getCursor().moveToPosition(position);
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Counts entries from the entry at which cursor of previous state points
+     * (inclusive) up to the entry at which cursor of current state points
+     * (exclusive), or up to the end of B-Tree if current cursor is at EOF.
+     * 
+     * @return count of entries between cursors of two top states.
+     * @throws SqlJetException
+     */
+    protected long countFromPreviousState() throws SqlJetException {
+        assert (states.size() > 1);
+        return states.get(states.size() - 2).getCursor().countTo(getCursor());
+    }
+
+    /**
+     * Appends record to B-Tree which is bulk loaded.
+     * 
+     * @return true if record is appended, false if it should be inserted as
+     *         usual. In last case bulk load is ended.
+     * @throws SqlJetException
+     */
+    protected boolean appendBulk(ISqlJetMemoryPointer pKey, long nKey, ISqlJetMemoryPointer pData, int nData)
+            throws SqlJetException {
+        if (bulkLoader == null) {
+            return false;
+        }
+        lock();
+        try {
+            if (bulkLoader.append(pKey, nKey, pData, nData, 0)) {
+                return true;
+            }
+            bulkLoader = null;
+            clearRecordCache();
+            return false;
+        } finally {
+            unlock();
+        }
     }
 
     /*
@@ -272,11 +416,16 @@ public class SqlJetBtreeTable implements ISqlJetBtreeTable {
         if (null == recordCache) {
             lock();
             try {
-                recordCache = new SqlJetBtreeRecord(getCursor(), index, btree.getDb().getOptions().getFileFormat());
+                if (recordSpare != null) {
+                    recordSpare.read(getCursor());
+                    recordCache = recordSpare;
+                    recordSpare = null;
+                } else {
+                    recordCache = new SqlJetBtreeRecord(getCursor(), index, btree.getDb().getOptions().getFileFormat());
+                }
             } finally {
                 unlock();
             }
-            valueCache = new Object[recordCache.getFieldsCount()];
         }
         return recordCache;
     }
@@ -310,12 +459,7 @@ public class SqlJetBtreeTable implements ISqlJetBtreeTable {
         final ISqlJetBtreeRecord r = getRecord();
         if (null == r)
             return null;
-        if (!checkField(r, field))
-            return null;
-        final List<ISqlJetVdbeMem> fields = r.getFields();
-        if (null == fields)
-            return null;
-        return fields.get(field);
+        return r.getField(field);
     }
 
     public Object getValue(int field) throws SqlJetException {
@@ -326,6 +470,13 @@ public class SqlJetBtreeTable implements ISqlJetBtreeTable {
         }
         final Object valueUncached = getValueUncached(field);
         if (valueUncached != null) {
+            if (valueCache == null || field >= valueCache.length) {
+                final Object[] grown = new Object[Math.max(field + 1, valueCache != null ? valueCache.length * 2 : 0)];
+                if (valueCache != null) {
+                    System.arraycopy(valueCache, 0, grown, 0, valueCache.length);
+                }
+                valueCache = grown;
+            }
             valueCache[field] = valueUncached;
         }
         return valueUncached;
@@ -457,12 +608,12 @@ public class SqlJetBtreeTable implements ISqlJetBtreeTable {
             return valuesCache;
         } else {
             final ISqlJetBtreeRecord record = getRecord();
-            final int fieldsCount = record.getFieldsCount();
-            for (int i = 0; i < fieldsCount; i++) {
-                valueCache[i] = getValue(i);
+            final Object[] values = new Object[record.getFieldsCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getValue(i);
             }
-            valuesCache = valueCache;
-            return valueCache;
+            valuesCache = values;
+            return values;
         }
     }
 
@@ -579,6 +730,7 @@ public class SqlJetBtreeTable implements ISqlJetBtreeTable {
     protected void clearRecordCache() {
         if (recordCache != null) {
             recordCache.release();
+            recordSpare = recordCache;
         }
         recordCache = null;
         valuesCache = null;
@@ -0,0 +1,94 @@
+/**
+ * SqlJetBulkLoader.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.table;
+
+import java.util.Map;
+
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
+import org.tmatesoft.sqljet.core.table.ISqlJetBulkLoader;
+import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
+import org.tmatesoft.sqljet.core.table.SqlJetDb;
+
+/**
+ * Implementation of {@link ISqlJetBulkLoader} over table which is in bulk load
+ * mode.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SqlJetBulkLoader implements ISqlJetBulkLoader {
+
+    private final ISqlJetBtreeDataTable table;
+    private final SqlJetDb db;
+
+    SqlJetBulkLoader(final ISqlJetBtreeDataTable table, SqlJetDb db) throws SqlJetException {
+        if (!db.isInTransaction() || db.getTransactionMode() == SqlJetTransactionMode.READ_ONLY) {
+            table.close();
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Bulk loader requires active write transaction");
+        }
+        this.table = table;
+        this.db = db;
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return table.beginBulkLoad();
+            }
+        });
+    }
+
+    public void close() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                table.close();
+                return null;
+            }
+        });
+    }
+
+    public long insert(Object... values) throws SqlJetException {
+        return insertOr(null, values);
+    }
+
+    public long insertOr(final SqlJetConflictAction onConflict, final Object... values) throws SqlJetException {
+        return (Long) db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return table.insert(onConflict, values);
+            }
+        });
+    }
+
+    public long insertByFieldNames(final Map<String, Object> values) throws SqlJetException {
+        return (Long) db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return table.insert(null, values);
+            }
+        });
+    }
+
+    public long insertWithRowId(final long rowId, final Object... values) throws SqlJetException {
+        return (Long) db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return table.insertWithRowId(null, rowId, values);
+            }
+        });
+    }
+
+}
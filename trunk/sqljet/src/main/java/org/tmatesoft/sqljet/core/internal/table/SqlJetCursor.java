@@ -50,6 +50,33 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
         }
     }
 
+    /**
+     * Enters into mutex of database when calling thread could access B-Tree
+     * directly, i.e. transaction is running already. Getters use it to avoid
+     * allocation of {@link ISqlJetTransaction} and boxing of results on each
+     * call while rows are scanned inside of transaction.
+     * 
+     * @return true if mutex is entered and {@link #leave()} should be called
+     *         after access to B-Tree, false if access should be done through
+     *         {@link SqlJetDb#runReadTransaction(ISqlJetTransaction)}.
+     */
+    protected boolean enter() {
+        if (db.isOpen() && db.getMutex().attempt()) {
+            if (db.isInTransaction()) {
+                return true;
+            }
+            db.getMutex().leave();
+        }
+        return false;
+    }
+
+    /**
+     * Leaves mutex of database entered by {@link #enter()}.
+     */
+    protected void leave() {
+        db.getMutex().leave();
+    }
+
     public void close() throws SqlJetException {
         db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
@@ -60,6 +87,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public boolean eof() throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.eof();
+            } finally {
+                leave();
+            }
+        }
         return (Boolean) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.eof();
@@ -84,6 +118,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public boolean next() throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.next();
+            } finally {
+                leave();
+            }
+        }
         return (Boolean) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.next();
@@ -92,6 +133,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public boolean previous() throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.previous();
+            } finally {
+                leave();
+            }
+        }
         return (Boolean) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.previous();
@@ -100,6 +148,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public int getFieldsCount() throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.getFieldsCount();
+            } finally {
+                leave();
+            }
+        }
         return (Integer) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.getFieldsCount();
@@ -108,6 +163,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public SqlJetValueType getFieldType(final int field) throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.getFieldType(field);
+            } finally {
+                leave();
+            }
+        }
         return (SqlJetValueType) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.getFieldType(field);
@@ -116,6 +178,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public boolean isNull(final int field) throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.isNull(field);
+            } finally {
+                leave();
+            }
+        }
         return (Boolean) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.isNull(field);
@@ -124,6 +193,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public String getString(final int field) throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.getString(field);
+            } finally {
+                leave();
+            }
+        }
         return (String) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.getString(field);
@@ -132,6 +208,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public long getInteger(final int field) throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.getInteger(field);
+            } finally {
+                leave();
+            }
+        }
         return (Long) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.getInteger(field);
@@ -140,6 +223,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public double getFloat(final int field) throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.getFloat(field);
+            } finally {
+                leave();
+            }
+        }
         return (Double) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.getFloat(field);
@@ -178,6 +268,13 @@ public abstract class SqlJetCursor implements ISqlJetCursor {
     }
 
     public boolean getBoolean(final int field) throws SqlJetException {
+        if (enter()) {
+            try {
+                return btreeTable.getInteger(field) != 0;
+            } finally {
+                leave();
+            }
+        }
         return (Boolean) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return btreeTable.getInteger(field) != 0;
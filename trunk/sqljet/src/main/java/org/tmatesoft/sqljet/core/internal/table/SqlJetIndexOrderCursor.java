@@ -41,7 +41,7 @@ public class SqlJetIndexOrderCursor extends SqlJetTableDataCursor implements ISq
         super(table, db);
         this.indexName = indexName != null ? indexName : table.getPrimaryKeyIndex();
         if (this.indexName != null) {
-            this.indexTable = table.getIndexesTables().get(this.indexName);
+            this.indexTable = table.getIndex(this.indexName);
         }
         first();
     }
@@ -191,7 +191,67 @@ public class SqlJetIndexOrderCursor extends SqlJetTableDataCursor implements ISq
             }
         }
     }
-    
-    
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.table.SqlJetRowNumCursor#countRows()
+     */
+    @Override
+    protected long countRows() throws SqlJetException {
+        if (indexTable == null) {
+            return super.countRows();
+        }
+        return (Long) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return indexTable.count();
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetTableDataCursor#getRowNumber
+     * ()
+     */
+    @Override
+    protected long getRowNumber() throws SqlJetException {
+        if (indexTable == null) {
+            return super.getRowNumber();
+        }
+        return (Long) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                if (eof()) {
+                    return getRowCount();
+                }
+                return indexTable.getPosition() + 1;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetTableDataCursor#seekRowNumber
+     * (long)
+     */
+    @Override
+    protected void seekRowNumber(final long rowNum) throws SqlJetException {
+        if (indexTable == null) {
+            super.seekRowNumber(rowNum);
+            return;
+        }
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                if (indexTable.goToPosition(rowNum - 1)) {
+                    goTo(indexTable.getKeyRowId());
+                }
+                return null;
+            }
+        });
+    }
 
 }
@@ -321,4 +321,86 @@ public class SqlJetIndexScopeCursor extends SqlJetIndexOrderCursor {
         });
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.table.SqlJetIndexOrderCursor#countRows()
+     */
+    @Override
+    protected long countRows() throws SqlJetException {
+        return (Long) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                if (indexTable == null) {
+                    return getBtreeDataTable().count(firstRowId, lastRowId);
+                }
+                return indexTable.count(firstKey, firstKeyIncluded, lastKey, lastKeyIncluded);
+            }
+        });
+    }
+
+    /**
+     * @return position of first row of scope in B-Tree of index or table.
+     * @throws SqlJetException
+     */
+    private long getScopeStart() throws SqlJetException {
+        if (indexTable != null) {
+            return firstKey == null ? 0 : indexTable.count(null, true, firstKey, !firstKeyIncluded);
+        }
+        if (firstRowId == 0) {
+            return 0;
+        }
+        final ISqlJetBtreeDataTable table = getBtreeDataTable();
+        table.pushState();
+        try {
+            if (table.moveTo(null, firstRowId, false) < 0) {
+                table.next();
+            }
+            return table.getPosition();
+        } finally {
+            table.popState();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetIndexOrderCursor#getRowNumber
+     * ()
+     */
+    @Override
+    protected long getRowNumber() throws SqlJetException {
+        return (Long) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                if (eof()) {
+                    return getRowCount();
+                }
+                final ISqlJetBtreeTable table = indexTable != null ? indexTable : getBtreeDataTable();
+                return table.getPosition() - getScopeStart() + 1;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetIndexOrderCursor#seekRowNumber
+     * (long)
+     */
+    @Override
+    protected void seekRowNumber(final long rowNum) throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final long position = getScopeStart() + rowNum - 1;
+                if (indexTable == null) {
+                    getBtreeDataTable().goToPosition(position);
+                } else if (indexTable.goToPosition(position)) {
+                    goTo(indexTable.getKeyRowId());
+                }
+                return null;
+            }
+        });
+    }
+
 }
@@ -428,6 +428,17 @@ public class SqlJetReverseOrderCursor implements ISqlJetCursor {
         cursor.setLimit(limit);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.table.ISqlJetCursor#setProjection(java.lang
+     * .String[])
+     */
+    public void setProjection(String... fieldNames) throws SqlJetException {
+        cursor.setProjection(fieldNames);
+    }
+
     /* (non-Javadoc)
      * @see org.tmatesoft.sqljet.core.table.ISqlJetCursor#getRowValues()
      */
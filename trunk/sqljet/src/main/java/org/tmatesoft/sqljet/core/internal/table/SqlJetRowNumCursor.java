@@ -78,12 +78,26 @@ public abstract class SqlJetRowNumCursor extends SqlJetCursor {
     public long getRowCount() throws SqlJetException {
 
         if (rowsCount < 0) {
-            computeRows(false);
+            final long count = countRows();
+            rowsCount = limit > 0 ? Math.min(limit, count) : count;
         }
 
         return rowsCount;
     }
 
+    /**
+     * Counts rows which are visible through this cursor. This implementation
+     * moves through all rows, subclasses count them by pages of B-Trees.
+     * Limit of cursor is applied by caller.
+     * 
+     * @return count of rows.
+     * @throws SqlJetException
+     */
+    protected long countRows() throws SqlJetException {
+        computeRows(false);
+        return rowsCount;
+    }
+
     /**
      * @throws SqlJetException
      */
@@ -133,7 +147,12 @@ public abstract class SqlJetRowNumCursor extends SqlJetCursor {
     public long getRowIndex() throws SqlJetException {
 
         if (currentRowNum < 0 || (rowsCount < 0 && eof()) || currentRowId != getRowIdSafe()) {
-            computeRows(true);
+            if (limit == 0 && hasRowPositions()) {
+                currentRowNum = getRowNumber();
+                currentRowId = getRowIdSafe();
+            } else {
+                computeRows(true);
+            }
         }
 
         return currentRowNum;
@@ -154,6 +173,16 @@ public abstract class SqlJetRowNumCursor extends SqlJetCursor {
                 return false;
             }
 
+            if (limit == 0 && hasRowPositions()) {
+                if (rowNum < 1 || rowNum > getRowCount()) {
+                    return false;
+                }
+                seekRowNumber(rowNum);
+                currentRowNum = rowNum;
+                currentRowId = getRowIdSafe();
+                return true;
+            }
+
             if (currentRowNum < 0 || (eof() && rowsCount < 0) || currentRowId != getRowIdSafe()) {
 
                 currentRowId = getRowIdSafe();
@@ -227,6 +256,40 @@ public abstract class SqlJetRowNumCursor extends SqlJetCursor {
 
     }
 
+    /**
+     * Cursors over B-Trees could find number of row and move to row with
+     * given number by position of entry in B-Tree, which is found by descent
+     * from root using counts of entries in subtrees. Other cursors move
+     * through rows.
+     * 
+     * @return true if {@link #getRowNumber()} and {@link #seekRowNumber(long)}
+     *         are implemented.
+     */
+    protected boolean hasRowPositions() {
+        return false;
+    }
+
+    /**
+     * @return number of current row starting from 1, or count of rows if
+     *         cursor is at EOF.
+     * @throws SqlJetException
+     */
+    protected long getRowNumber() throws SqlJetException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Moves cursor to row with given number.
+     * 
+     * @param rowNum
+     *            number of row starting from 1, it isn't greater than count
+     *            of rows.
+     * @throws SqlJetException
+     */
+    protected void seekRowNumber(long rowNum) throws SqlJetException {
+        throw new UnsupportedOperationException();
+    }
+
     /*
      * (non-Javadoc)
      *
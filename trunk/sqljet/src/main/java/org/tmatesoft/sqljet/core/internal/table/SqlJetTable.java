@@ -17,10 +17,18 @@
  */
 package org.tmatesoft.sqljet.core.internal.table;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
@@ -29,12 +37,16 @@ import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 import org.tmatesoft.sqljet.core.schema.ISqlJetIndexDef;
 import org.tmatesoft.sqljet.core.schema.ISqlJetTableDef;
 import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
+import org.tmatesoft.sqljet.core.table.ISqlJetBlob;
+import org.tmatesoft.sqljet.core.table.ISqlJetBulkLoader;
 import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+import org.tmatesoft.sqljet.core.table.ISqlJetPartitionHandler;
 import org.tmatesoft.sqljet.core.table.ISqlJetRunnableWithLock;
 import org.tmatesoft.sqljet.core.table.ISqlJetTable;
 import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
 import org.tmatesoft.sqljet.core.table.SqlJetDb;
 import org.tmatesoft.sqljet.core.table.SqlJetScope;
+import org.tmatesoft.sqljet.core.table.SqlJetScope.SqlJetScopeBound;
 
 /**
  * Implementation of {@link ISqlJetTable}.
@@ -141,6 +153,34 @@ public class SqlJetTable implements ISqlJetTable {
         });
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetTable#openBulkLoader()
+     */
+    public ISqlJetBulkLoader openBulkLoader() throws SqlJetException {
+        return (ISqlJetBulkLoader) db.runWithLock(new ISqlJetRunnableWithLock() {
+            public Object runWithLock(SqlJetDb db) throws SqlJetException {
+                return new SqlJetBulkLoader(new SqlJetBtreeDataTable(btree, tableName, write), db);
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.table.ISqlJetTable#openBlob(java.lang.String,
+     * long, boolean)
+     */
+    public ISqlJetBlob openBlob(final String columnName, final long rowId, final boolean write)
+            throws SqlJetException {
+        return (ISqlJetBlob) db.runWithLock(new ISqlJetRunnableWithLock() {
+            public Object runWithLock(SqlJetDb db) throws SqlJetException {
+                return new SqlJetBlob(db, btree, tableName, columnName, rowId, write);
+            }
+        });
+    }
+
     public ISqlJetCursor lookup(final String indexName, final Object... key) throws SqlJetException {
         final Object[] k = SqlJetUtility.adjustNumberTypes(key);
         return (ISqlJetCursor) db.runWithLock(new ISqlJetRunnableWithLock() {
@@ -243,6 +283,165 @@ public class SqlJetTable implements ISqlJetTable {
         });
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.table.ISqlJetTable#scanPartitions(java.lang.
+     * String, org.tmatesoft.sqljet.core.table.SqlJetScope, int,
+     * org.tmatesoft.sqljet.core.table.ISqlJetPartitionHandler)
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> scanPartitions(final String indexName, SqlJetScope scope, final int partitions,
+            final ISqlJetPartitionHandler handler) throws SqlJetException {
+        if (partitions < 1) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Count of partitions should be positive");
+        }
+        if (db.isInTransaction()) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Partitions can't be scanned within transaction");
+        }
+        final SqlJetScope adjustedScope = SqlJetUtility.adjustScopeNumberTypes(scope != null ? scope
+                : new SqlJetScope((Object[]) null, (Object[]) null));
+        final List<SqlJetScope> ranges = (List<SqlJetScope>) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return splitScope(indexName, adjustedScope, partitions);
+            }
+        });
+        return scanRanges(indexName, ranges, handler);
+    }
+
+    /**
+     * Splits scope into ranges of almost equal count of rows by positions of
+     * rows in B-Tree of index or table.
+     */
+    private List<SqlJetScope> splitScope(final String indexName, SqlJetScope scope, int partitions)
+            throws SqlJetException {
+        final SqlJetBtreeDataTable table = new SqlJetBtreeDataTable(btree, tableName, false);
+        final SqlJetIndexScopeCursor cursor;
+        try {
+            checkIndexName(indexName, table);
+            if (isNeedReverse(getIndexTable(indexName, table), scope)) {
+                scope = scope.reverse();
+            }
+            cursor = new SqlJetIndexScopeCursor(table, db, indexName, scope);
+        } catch (SqlJetException e) {
+            table.close();
+            throw e;
+        }
+        try {
+            final ISqlJetBtreeIndexTable indexTable = getIndexTable(indexName, table);
+            final long count = cursor.getRowCount();
+            final List<SqlJetScope> ranges = new ArrayList<SqlJetScope>(partitions);
+            SqlJetScopeBound left = scope.getLeftBound();
+            // range before key of first row would be empty.
+            Object[] prevKey = indexTable != null && !cursor.eof() ? getIndexKey(indexTable) : null;
+            for (int i = 1; i < partitions; i++) {
+                final long rowNum = count * i / partitions + 1;
+                if (rowNum < 2 || !cursor.goToRow(rowNum)) {
+                    continue;
+                }
+                final Object[] key;
+                if (indexTable != null) {
+                    key = getIndexKey(indexTable);
+                    if (prevKey != null && indexTable.compareKeys(prevKey, key) == 0) {
+                        continue;
+                    }
+                } else {
+                    // zero ROWID means open bound of scope.
+                    final long rowId = cursor.getRowId();
+                    if (rowId < 2) {
+                        continue;
+                    }
+                    key = new Object[] { rowId };
+                }
+                ranges.add(new SqlJetScope(left, new SqlJetScopeBound(key, false)));
+                left = new SqlJetScopeBound(key, true);
+                prevKey = key;
+            }
+            ranges.add(new SqlJetScope(left, scope.getRightBound()));
+            return ranges;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return values of fields of current index entry without ROWID.
+     */
+    private static Object[] getIndexKey(ISqlJetBtreeIndexTable indexTable) throws SqlJetException {
+        final Object[] values = indexTable.getValues();
+        final Object[] key = new Object[values.length - 1];
+        System.arraycopy(values, 0, key, 0, key.length);
+        return key;
+    }
+
+    /**
+     * Passes ranges to handler, in parallel threads with own connections when
+     * data base is stored in file. There are not more threads than processors,
+     * other ranges wait in queue of executor.
+     */
+    private List<Object> scanRanges(final String indexName, List<SqlJetScope> ranges,
+            final ISqlJetPartitionHandler handler) throws SqlJetException {
+        final List<Object> results = new ArrayList<Object>(ranges.size());
+        final File file = db.getFile();
+        if (ranges.size() < 2 || file == null || SqlJetDb.IN_MEMORY.equals(file)) {
+            for (final SqlJetScope range : ranges) {
+                results.add(db.runReadTransaction(new ISqlJetTransaction() {
+                    public Object run(SqlJetDb db) throws SqlJetException {
+                        return scanRange(db, indexName, range, handler);
+                    }
+                }));
+            }
+            return results;
+        }
+        final int threads = Math.min(ranges.size(), Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Object>> futures = new ArrayList<Future<Object>>(ranges.size());
+            for (final SqlJetScope range : ranges) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws SqlJetException {
+                        final SqlJetDb rangeDb = SqlJetDb.open(file, false, db.getFileSystem());
+                        try {
+                            return rangeDb.runReadTransaction(new ISqlJetTransaction() {
+                                public Object run(SqlJetDb db) throws SqlJetException {
+                                    return scanRange(db, indexName, range, handler);
+                                }
+                            });
+                        } finally {
+                            rangeDb.close();
+                        }
+                    }
+                }));
+            }
+            for (final Future<Object> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (InterruptedException e) {
+                    throw new SqlJetException(SqlJetErrorCode.INTERRUPT, e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof SqlJetException) {
+                        throw (SqlJetException) e.getCause();
+                    }
+                    throw new SqlJetException(SqlJetErrorCode.INTERNAL, e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private Object scanRange(SqlJetDb db, String indexName, SqlJetScope range, ISqlJetPartitionHandler handler)
+            throws SqlJetException {
+        final ISqlJetCursor cursor = db.getTable(tableName).scope(indexName, range);
+        try {
+            return handler.handle(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
     public void clear() throws SqlJetException {
         runWriteTransaction(new ISqlJetTableRun() {
             public Object run(ISqlJetBtreeDataTable table) throws SqlJetException {
@@ -275,7 +474,7 @@ public class SqlJetTable implements ISqlJetTable {
         return false;
     }
 
-    private ISqlJetBtreeIndexTable getIndexTable(final String indexName, final SqlJetBtreeDataTable table) {
+    private ISqlJetBtreeIndexTable getIndexTable(final String indexName, final SqlJetBtreeDataTable table) throws SqlJetException {
         final String index = indexName == null ? table.getPrimaryKeyIndex() : indexName;
         return index != null ? table.getIndex(index) : null;
     }
@@ -286,7 +485,7 @@ public class SqlJetTable implements ISqlJetTable {
         }
     }
 
-    private boolean isIndexNameValid(final String indexName, final SqlJetBtreeDataTable table) {
+    private boolean isIndexNameValid(final String indexName, final SqlJetBtreeDataTable table) throws SqlJetException {
         if (indexName != null) {
             return getIndexTable(indexName, table) != null;
         } else {
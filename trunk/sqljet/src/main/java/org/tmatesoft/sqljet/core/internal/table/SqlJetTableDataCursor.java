@@ -39,6 +39,9 @@ import org.tmatesoft.sqljet.core.table.SqlJetDb;
  */
 public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
 
+    /** Numbers of fields returned by {@link #getRowValues()}, null for all */
+    private int[] projection;
+
     public SqlJetTableDataCursor(ISqlJetBtreeDataTable table, SqlJetDb db) throws SqlJetException {
         super(table, db);
         super.first();
@@ -48,15 +51,26 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
         return (ISqlJetBtreeDataTable) btreeTable;
     }
 
+    private long getCurrentRowId() throws SqlJetException {
+        final ISqlJetBtreeDataTable table = getBtreeDataTable();
+        if (table.eof()) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE,
+                    "Table is empty or the current record doesn't point to a data row");
+        }
+        return table.getRowId();
+    }
+
     public long getRowId() throws SqlJetException {
+        if (enter()) {
+            try {
+                return getCurrentRowId();
+            } finally {
+                leave();
+            }
+        }
         return (Long) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
-                final ISqlJetBtreeDataTable table = getBtreeDataTable();
-                if (table.eof()) {
-                    throw new SqlJetException(SqlJetErrorCode.MISUSE,
-                            "Table is empty or the current record doesn't point to a data row");
-                }
-                return table.getRowId();
+                return getCurrentRowId();
             }
         });
     }
@@ -87,6 +101,13 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
     }
 
     public SqlJetValueType getFieldType(final String fieldName) throws SqlJetException {
+        if (enter()) {
+            try {
+                return getBtreeDataTable().getFieldType(getFieldSafe(fieldName));
+            } finally {
+                leave();
+            }
+        }
         return (SqlJetValueType) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return getBtreeDataTable().getFieldType(getFieldSafe(fieldName));
@@ -95,6 +116,13 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
     }
 
     public boolean isNull(final String fieldName) throws SqlJetException {
+        if (enter()) {
+            try {
+                return getBtreeDataTable().isNull(getFieldSafe(fieldName));
+            } finally {
+                leave();
+            }
+        }
         return (Boolean) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return getBtreeDataTable().isNull(getFieldSafe(fieldName));
@@ -103,6 +131,13 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
     }
 
     public String getString(final String fieldName) throws SqlJetException {
+        if (enter()) {
+            try {
+                return getBtreeDataTable().getString(getFieldSafe(fieldName));
+            } finally {
+                leave();
+            }
+        }
         return (String) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return getBtreeDataTable().getString(getFieldSafe(fieldName));
@@ -111,6 +146,16 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
     }
 
     public long getInteger(final String fieldName) throws SqlJetException {
+        if (enter()) {
+            try {
+                if (SqlJetBtreeDataTable.isFieldNameRowId(fieldName)) {
+                    return getBtreeDataTable().getRowId();
+                }
+                return getBtreeDataTable().getInteger(getFieldSafe(fieldName));
+            } finally {
+                leave();
+            }
+        }
         return (Long) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 if (SqlJetBtreeDataTable.isFieldNameRowId(fieldName)) {
@@ -123,6 +168,13 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
     }
 
     public double getFloat(final String fieldName) throws SqlJetException {
+        if (enter()) {
+            try {
+                return getBtreeDataTable().getFloat(getFieldSafe(fieldName));
+            } finally {
+                leave();
+            }
+        }
         return (Double) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return getBtreeDataTable().getFloat(getFieldSafe(fieldName));
@@ -161,6 +213,13 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
     }
 
     public boolean getBoolean(final String fieldName) throws SqlJetException {
+        if (enter()) {
+            try {
+                return getBoolean(getFieldSafe(fieldName));
+            } finally {
+                leave();
+            }
+        }
         return (Boolean) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
                 return getBoolean(getFieldSafe(fieldName));
@@ -244,10 +303,108 @@ public class SqlJetTableDataCursor extends SqlJetRowNumCursor {
     public Object[] getRowValues() throws SqlJetException {
         return (Object[]) db.runReadTransaction(new ISqlJetTransaction() {
             public Object run(SqlJetDb db) throws SqlJetException {
-                Object[] values = getBtreeDataTable().getValues();
+                final ISqlJetBtreeDataTable table = getBtreeDataTable();
+                if (projection != null) {
+                    final Object[] values = new Object[table.getDefinition().getColumns().size()];
+                    for (int field : projection) {
+                        values[field] = table.getValue(field);
+                    }
+                    return values;
+                }
+                Object[] values = table.getValues();
                 return values.clone();
             }
         });
     }
 
-}
\ No newline at end of file
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.table.ISqlJetCursor#setProjection(java.lang
+     * .String[])
+     */
+    public void setProjection(final String... fieldNames) throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                if (fieldNames == null || fieldNames.length == 0) {
+                    projection = null;
+                    return null;
+                }
+                final int[] fields = new int[fieldNames.length];
+                for (int i = 0; i < fieldNames.length; i++) {
+                    if (fieldNames[i] == null) {
+                        throw new SqlJetException(SqlJetErrorCode.MISUSE, "Field name is null");
+                    }
+                    fields[i] = getBtreeDataTable().getDefinition().getColumnNumber(fieldNames[i]);
+                    if (fields[i] < 0) {
+                        throw new SqlJetException(SqlJetErrorCode.MISUSE, "Field not found: " + fieldNames[i]);
+                    }
+                }
+                projection = fields;
+                return null;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.tmatesoft.sqljet.core.internal.table.SqlJetRowNumCursor#countRows()
+     */
+    @Override
+    protected long countRows() throws SqlJetException {
+        return (Long) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return getBtreeDataTable().count();
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetRowNumCursor#hasRowPositions
+     * ()
+     */
+    @Override
+    protected boolean hasRowPositions() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetRowNumCursor#getRowNumber()
+     */
+    @Override
+    protected long getRowNumber() throws SqlJetException {
+        return (Long) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                if (eof()) {
+                    return getRowCount();
+                }
+                return getBtreeDataTable().getPosition() + 1;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.SqlJetRowNumCursor#seekRowNumber
+     * (long)
+     */
+    @Override
+    protected void seekRowNumber(final long rowNum) throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return getBtreeDataTable().goToPosition(rowNum - 1);
+            }
+        });
+    }
+
+}
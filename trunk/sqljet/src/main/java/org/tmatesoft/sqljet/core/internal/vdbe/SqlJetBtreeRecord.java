@@ -35,6 +35,7 @@ import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
 import org.tmatesoft.sqljet.core.internal.memory.SqlJetMemoryPointer;
 import org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeRecord;
 import org.tmatesoft.sqljet.core.table.ISqlJetOptions;
+import org.tmatesoft.sqljet.core.table.SqlJetZeroBlob;
 
 /**
  * Implements {@link ISqlJetBtreeRecord}.
@@ -48,18 +49,48 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
     private ISqlJetBtreeCursor cursor;
     private boolean isIndex;
 
+    /** Count of fields, -1 while header of record read from cursor isn't parsed up to end */
     private int fieldsCount = 0;
-    private List<Integer> aType = new ArrayList<Integer>();
-    private List<Integer> aOffset = new ArrayList<Integer>();
-    private List<ISqlJetVdbeMem> fields = new ArrayList<ISqlJetVdbeMem>();
+    private ISqlJetVdbeMem[] fields;
+
+    /*
+     * State of lazy parsing of record which is read from cursor. Header is
+     * parsed only up to the highest requested field, values are decoded only
+     * when they are requested.
+     */
+    private long payloadSize;
+    private ISqlJetMemoryPointer header;
+    private int headerSize;
+    private int headerIdx;
+    private int dataOffset;
+    private int parsedCount;
+    private int capacity;
+    private int[] aType;
+    private int[] aOffset;
+
+    /** Out parameters of varint and fetch calls, to not allocate them per read */
+    private final int[] varint = { 0 };
+    private final int[] avail = { 0 };
+
+    /**
+     * View of whole payload on B-Tree page, when record fits in page. It is
+     * used instead of copies of header and values while cursor stays at the
+     * same entry, see {@link #checkView()}.
+     */
+    private ISqlJetMemoryPointer payload;
+    private SqlJetEncoding encoding;
 
     private int file_format = ISqlJetOptions.SQLJET_DEFAULT_FILE_FORMAT;
 
     /**
      * @return the fields
      */
-    public List<ISqlJetVdbeMem> getFields() {
-        return Collections.unmodifiableList(fields);
+    public List<ISqlJetVdbeMem> getFields() throws SqlJetException {
+        final int count = getFieldsCount();
+        for (int i = 0; i < count; i++) {
+            getField(i);
+        }
+        return Collections.unmodifiableList(Arrays.asList(fields).subList(0, count));
     }
 
     public SqlJetBtreeRecord(ISqlJetBtreeCursor cursor, boolean isIndex, int fileFormat) throws SqlJetException {
@@ -69,9 +100,24 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
         read();
     }
 
+    /**
+     * Reads record at current entry of cursor into this released record.
+     * Arrays of previous entry are reused when they are large enough, so
+     * B-Tree tables read all entries through one record while rows are
+     * scanned.
+     * 
+     * @param cursor
+     *            cursor which points to entry.
+     * @throws SqlJetException
+     */
+    public void read(ISqlJetBtreeCursor cursor) throws SqlJetException {
+        release();
+        this.cursor = cursor;
+        read();
+    }
+
     public SqlJetBtreeRecord(List<ISqlJetVdbeMem> values) {
-        fields.addAll(values);
-        fieldsCount = values.size();
+        initFields(values.toArray(new ISqlJetVdbeMem[values.size()]));
     }
 
     public SqlJetBtreeRecord(ISqlJetVdbeMem... values) {
@@ -79,73 +125,92 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
     }
 
     private void initFields(ISqlJetVdbeMem[] values) {
-        fields.addAll(Arrays.asList(values));
+        fields = values.clone();
         fieldsCount = values.length;
     }
 
     public static ISqlJetBtreeRecord getRecord(SqlJetEncoding encoding, Object... values) throws SqlJetException {
         final List<ISqlJetVdbeMem> fields = new ArrayList<ISqlJetVdbeMem>(values.length);
         for (int i = 0; i < values.length; i++) {
-            final Object value = values[i];
-            final ISqlJetVdbeMem mem = SqlJetVdbeMem.obtainInstance();
-            if (null == value) {
-                mem.setNull();
-            } else if (value instanceof String) {
-                mem.setStr(SqlJetUtility.fromString((String) value, encoding), encoding);
-            } else if (value instanceof Boolean) {
-                mem.setInt64(((Boolean) value) ? 1 : 0);
-            } else if (value instanceof Byte) {
-                mem.setInt64((Byte) value);
-            } else if (value instanceof Short) {
-                mem.setInt64((Short) value);
-            } else if (value instanceof Integer) {
-                mem.setInt64((Integer) value);
-            } else if (value instanceof Long) {
-                mem.setInt64((Long) value);
-            } else if (value instanceof Float) {
-                mem.setDouble((Float) value);
-            } else if (value instanceof Double) {
-                mem.setDouble((Double) value);
-            } else if (value instanceof ByteBuffer) {
-                mem.setStr(SqlJetUtility.fromByteBuffer((ByteBuffer) value), encoding);
-                mem.setTypeFlag(SqlJetVdbeMemFlags.Blob);
-            } else if (value instanceof InputStream) {
-                mem.setStr(SqlJetUtility.streamToBuffer((InputStream) value), encoding);
-                mem.setTypeFlag(SqlJetVdbeMemFlags.Blob);
-            } else if ("byte[]".equalsIgnoreCase(value.getClass().getCanonicalName())) {
-                mem.setStr(SqlJetUtility.wrapPtr((byte[]) value), encoding);
-                mem.setTypeFlag(SqlJetVdbeMemFlags.Blob);
-            } else if (value instanceof SqlJetMemoryPointer) {
-                mem.setStr((SqlJetMemoryPointer) value, encoding);
-                mem.setTypeFlag(SqlJetVdbeMemFlags.Blob);
-            } else {
-                throw new SqlJetException(SqlJetErrorCode.MISUSE, "Bad value #" + i + " " + value.toString());
-            }
-            fields.add(mem);
+            fields.add(getValueMem(i, values[i], encoding));
         }
         return new SqlJetBtreeRecord(fields);
     }
 
+    /**
+     * Converts Java value into memory cell.
+     * 
+     * @param i
+     *            number of value, used in error message.
+     * @param value
+     *            value.
+     * @param encoding
+     *            encoding of strings.
+     * @return memory cell with value.
+     * @throws SqlJetException
+     */
+    static SqlJetVdbeMem getValueMem(int i, Object value, SqlJetEncoding encoding) throws SqlJetException {
+        final SqlJetVdbeMem mem = SqlJetVdbeMem.obtainInstance();
+        if (null == value) {
+            mem.setNull();
+        } else if (value instanceof String) {
+            mem.setStr(SqlJetUtility.fromString((String) value, encoding), encoding);
+        } else if (value instanceof Boolean) {
+            mem.setInt64(((Boolean) value) ? 1 : 0);
+        } else if (value instanceof Byte) {
+            mem.setInt64((Byte) value);
+        } else if (value instanceof Short) {
+            mem.setInt64((Short) value);
+        } else if (value instanceof Integer) {
+            mem.setInt64((Integer) value);
+        } else if (value instanceof Long) {
+            mem.setInt64((Long) value);
+        } else if (value instanceof Float) {
+            mem.setDouble((Float) value);
+        } else if (value instanceof Double) {
+            mem.setDouble((Double) value);
+        } else if (value instanceof ByteBuffer) {
+            mem.setStr(SqlJetUtility.fromByteBuffer((ByteBuffer) value), encoding);
+            mem.setTypeFlag(SqlJetVdbeMemFlags.Blob);
+        } else if (value instanceof InputStream) {
+            mem.setStr(SqlJetUtility.streamToBuffer((InputStream) value), encoding);
+            mem.setTypeFlag(SqlJetVdbeMemFlags.Blob);
+        } else if ("byte[]".equalsIgnoreCase(value.getClass().getCanonicalName())) {
+            mem.setStr(SqlJetUtility.wrapPtr((byte[]) value), encoding);
+            mem.setTypeFlag(SqlJetVdbeMemFlags.Blob);
+        } else if (value instanceof SqlJetZeroBlob) {
+            mem.setZeroBlob(((SqlJetZeroBlob) value).getSize());
+        } else if (value instanceof SqlJetMemoryPointer) {
+            mem.setStr((SqlJetMemoryPointer) value, encoding);
+            mem.setTypeFlag(SqlJetVdbeMemFlags.Blob);
+        } else {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Bad value #" + i + " " + value.toString());
+        }
+        return mem;
+    }
+
     /*
      * (non-Javadoc)
      * 
      * @see
      * org.tmatesoft.sqljet.core.internal.vdbe.ISqlJetRecord#getFieldsCount()
      */
-    public int getFieldsCount() {
+    public int getFieldsCount() throws SqlJetException {
+        checkView();
+        if (fieldsCount < 0) {
+            parseHeader(Integer.MAX_VALUE);
+        }
         return fieldsCount;
     }
 
     /**
-     * Read and parse the table header. Store the results of the parse into the
-     * record header cache fields of the cursor.
+     * Read the size of record and copy its header. Header itself is parsed
+     * lazily by {@link #parseHeader(int)}.
      * 
      * @throws SqlJetException
      */
     private void read() throws SqlJetException {
 
-        long payloadSize; /* Number of bytes in the record */
-
         cursor.enterCursor();
         try {
             /*
@@ -158,29 +223,22 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
                 payloadSize = cursor.getDataSize();
             }
             /* If payloadSize is 0, then just store a NULL */
+            payload = null;
             if (payloadSize == 0) {
+                fieldsCount = 0;
                 return;
             }
 
-            int i; /* Loop counter */
             ISqlJetMemoryPointer zData; /* Part of the record being decoded */
-            /* For storing the record being decoded */
-            SqlJetVdbeMem sMem = SqlJetVdbeMem.obtainInstance();
 
-            ISqlJetMemoryPointer zIdx; /* Index into header */
-            ISqlJetMemoryPointer zEndHdr; /*
-                                           * Pointer to first byte after the
-                                           * header
-                                           */
-            int[] offset = { 0 }; /* Offset into the data */
-            int szHdrSz; /* Size of the header size field at start of record */
-            int[] avail = { 0 }; /* Number of bytes of available data */
-
-            assert (aType != null);
-            assert (aOffset != null);
+            encoding = cursor.getCursorDb().getOptions().getEncoding();
+            payload = cursor.payloadView(isIndex);
 
             /* Figure out how many bytes are in the header */
-            if (isIndex) {
+            if (payload != null) {
+                zData = payload;
+                avail[0] = payload.remaining();
+            } else if (isIndex) {
                 zData = cursor.keyFetch(avail);
             } else {
                 zData = cursor.dataFetch(avail);
@@ -190,42 +248,101 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
              * database file has been corrupted externally.* assert( zRec!=0 ||
              * avail>=payloadSize || avail>=9 );
              */
-            szHdrSz = SqlJetUtility.getVarint32(zData, offset);
+            headerIdx = SqlJetUtility.getVarint32(zData, varint);
+            headerSize = varint[0];
+            if (headerSize < headerIdx || headerSize > payloadSize) {
+                throw new SqlJetException(SqlJetErrorCode.CORRUPT);
+            }
 
             /*
-             * The KeyFetch() or DataFetch() above are fast and will get the
-             * entire* record header in most cases. But they will fail to get
-             * the complete* record header if the record header does not fit on
-             * a single page* in the B-Tree. When that happens, use
-             * sqlite3VdbeMemFromBtree() to* acquire the complete header text.
+             * If whole record is on page then header and values are read from
+             * the view of page. Otherwise header is copied because values are
+             * decoded later, when page could be already changed. The
+             * KeyFetch() or DataFetch() above will get the entire record header
+             * in most cases, otherwise the complete header is read through
+             * overflow pages.
              */
-            if (avail[0] < offset[0]) {
-                sMem.fromBtree(cursor, 0, offset[0], isIndex);
-                zData = sMem.z;
+            if (payload != null) {
+                header = payload;
+            } else {
+                copyHeader(zData, avail[0]);
             }
-            zEndHdr = SqlJetUtility.pointer(zData, offset[0]);
-            zIdx = SqlJetUtility.pointer(zData, szHdrSz);
 
             /*
-             * Scan the header and use it to fill in the aType[] and aOffset[]*
-             * arrays. aType[i] will contain the type integer for the i-th*
-             * column and aOffset[i] will contain the offset from the beginning*
-             * of the record to the start of the data for the i-th column
+             * Each field takes at least one byte of header, so the count of
+             * bytes left in header limits the count of fields.
              */
-            fieldsCount = 0;
-            for (i = 0; i < ISqlJetLimits.SQLJET_MAX_COLUMN && zIdx.getPointer() < zEndHdr.getPointer()
-                    && offset[0] <= payloadSize; i++, fieldsCount++) {
-                aOffset.add(i, offset[0]);
-                int[] a = { 0 };
-                SqlJetUtility.movePtr(zIdx, SqlJetUtility.getVarint32(zIdx, a));
-                aType.add(i, a[0]);
-                offset[0] += SqlJetVdbeSerialType.serialTypeLen(a[0]);
+            capacity = Math.min(headerSize - headerIdx, ISqlJetLimits.SQLJET_MAX_COLUMN);
+            if (aType == null || aType.length < capacity) {
+                aType = new int[capacity];
+                aOffset = new int[capacity];
+                fields = new ISqlJetVdbeMem[capacity];
+            }
+            dataOffset = headerSize;
+            parsedCount = 0;
+            fieldsCount = -1;
 
-                fields.add(i, getField(i));
+        } finally {
+            cursor.leaveCursor();
+        }
+    }
 
-            }
-            sMem.release();
+    /**
+     * Copies header of record from cursor.
+     * 
+     * @param zData
+     *            start of record on page.
+     * @param avail
+     *            number of bytes available at zData.
+     * @throws SqlJetException
+     */
+    private void copyHeader(ISqlJetMemoryPointer zData, int avail) throws SqlJetException {
+        header = SqlJetUtility.allocatePtr(headerSize);
+        if (zData != null && avail >= headerSize) {
+            header.copyFrom(zData, headerSize);
+        } else if (isIndex) {
+            cursor.key(0, headerSize, header);
+        } else {
+            cursor.data(0, headerSize, header);
+        }
+    }
+
+    /**
+     * Checks that view of page still could be used. If cursor was moved and
+     * restored or B-Tree was changed then decoded values are dropped, because
+     * strings point to old view, and record is read again.
+     * 
+     * @throws SqlJetException
+     */
+    private void checkView() throws SqlJetException {
+        if (payload == null || cursor.isViewValid(payload)) {
+            return;
+        }
+        release();
+        read();
+    }
 
+    /**
+     * Scan the header and use it to fill in the aType[] and aOffset[] arrays up
+     * to given field. aType[i] will contain the type integer for the i-th
+     * column and aOffset[i] will contain the offset from the beginning of the
+     * record to the start of the data for the i-th column.
+     * 
+     * @param field
+     *            number of field which should be parsed.
+     * @throws SqlJetException
+     */
+    private void parseHeader(int field) throws SqlJetException {
+        checkView();
+        while (parsedCount <= field && parsedCount < capacity && headerIdx < headerSize
+                && dataOffset <= payloadSize) {
+            aOffset[parsedCount] = dataOffset;
+            headerIdx += SqlJetUtility.getVarint32(header, headerIdx, varint);
+            aType[parsedCount] = varint[0];
+            dataOffset += SqlJetVdbeSerialType.serialTypeLen(varint[0]);
+            parsedCount++;
+        }
+        if (parsedCount == capacity || headerIdx >= headerSize || dataOffset > payloadSize) {
             /*
              * If we have read more header data than was contained in the
              * header,* or if the end of the last field appears to be past the
@@ -233,14 +350,37 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
              * before the end* of the record (when all fields present), then we
              * must be dealing* with a corrupt database.
              */
-            if (zIdx.getPointer() > zEndHdr.getPointer() || offset[0] > payloadSize
-                    || (zIdx.getPointer() == zEndHdr.getPointer() && offset[0] != payloadSize)) {
+            if (headerIdx > headerSize || dataOffset > payloadSize
+                    || (headerIdx == headerSize && dataOffset != payloadSize)) {
                 throw new SqlJetException(SqlJetErrorCode.CORRUPT);
             }
+            fieldsCount = parsedCount;
+        }
+    }
 
-        } finally {
-            cursor.leaveCursor();
+    /**
+     * Returns value of field, decodes it on first request.
+     * 
+     * @param field
+     *            number of field.
+     * @return value of field or null if record hasn't such field.
+     * @throws SqlJetException
+     */
+    public ISqlJetVdbeMem getField(int field) throws SqlJetException {
+        if (field < 0) {
+            return null;
+        }
+        checkView();
+        if (cursor != null && fieldsCount < 0 && field >= parsedCount) {
+            parseHeader(field);
+        }
+        if (field >= (fieldsCount < 0 ? parsedCount : fieldsCount)) {
+            return null;
+        }
+        if (fields[field] == null) {
+            fields[field] = decodeField(field);
         }
+        return fields[field];
     }
 
     /**
@@ -258,22 +398,16 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
      * the P4 argument is a P4_MEM use the value of the P4 argument as the
      * result.
      * 
-     * @param pCrsr
-     *            The BTree cursor
-     * @param fieldNum
+     * @param column
      *            column number to retrieve
-     * @param isIndex
-     *            True if an index containing keys only - no data
-     * @param aType
-     *            Type values for all entries in the record
-     * @param aOffset
-     *            Cached offsets to the start of each columns data
-     * @param pDest
      * @throws SqlJetException
      */
-    private ISqlJetVdbeMem getField(int column) throws SqlJetException {
+    private ISqlJetVdbeMem decodeField(int column) throws SqlJetException {
+
+        if (payload != null) {
+            return decodeFromView(column);
+        }
 
-        long payloadSize; /* Number of bytes in the record */
         int len; /* The length of the serialized data for the column */
         ISqlJetMemoryPointer zData; /* Part of the record being decoded */
         /* For storing the record being decoded */
@@ -284,37 +418,15 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
         cursor.enterCursor();
         try {
             /*
-             * This block sets the variable payloadSize to be the total number
-             * of* bytes in the record.
-             */
-            if (isIndex) {
-                payloadSize = cursor.getKeySize();
-            } else {
-                payloadSize = cursor.getDataSize();
-            }
-
-            /* If payloadSize is 0, then just store a NULL */
-            if (payloadSize == 0) {
-                sMem.release();
-                return pDest;
-            }
-
-            /*
-             * Get the column information. If aOffset[p2] is non-zero, then*
-             * deserialize the value from the record. If aOffset[p2] is zero,*
-             * then there are not enough fields in the record to satisfy the*
-             * request. In this case, set the value NULL or to P4 if P4 is* a
-             * pointer to a Mem object.
+             * Get the column information and deserialize the value from the
+             * record.
              */
-            final Integer aOffsetColumn = aOffset.get(column);
-            final Integer aTypeColumn = aType.get(column);
-            if (aOffsetColumn != null && aTypeColumn != null && aOffsetColumn != 0) {
-                len = SqlJetVdbeSerialType.serialTypeLen(aTypeColumn);
-                sMem.fromBtree(cursor, aOffset.get(column), len, isIndex);
-                zData = sMem.z;
-                SqlJetVdbeSerialType.serialGet(zData, aTypeColumn, pDest);
-                pDest.enc = cursor.getCursorDb().getOptions().getEncoding();
-            }
+            final int aTypeColumn = aType[column];
+            len = SqlJetVdbeSerialType.serialTypeLen(aTypeColumn);
+            sMem.fromBtree(cursor, aOffset[column], len, isIndex);
+            zData = sMem.z;
+            SqlJetVdbeSerialType.serialGet(zData, aTypeColumn, pDest);
+            pDest.enc = cursor.getCursorDb().getOptions().getEncoding();
 
         } finally {
             cursor.leaveCursor();
@@ -344,13 +456,34 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
 
     }
 
+    /**
+     * Decodes value of field directly from view of page. Strings stay
+     * ephemeral views of page, they are dropped by {@link #checkView()} when
+     * view becomes invalid. Blobs are copied because they are returned to
+     * callers as is.
+     * 
+     * @param column
+     *            column number to retrieve
+     * @return value of field.
+     */
+    private ISqlJetVdbeMem decodeFromView(int column) {
+        final SqlJetVdbeMem pDest = SqlJetVdbeMem.obtainInstance();
+        pDest.flags = SqlJetUtility.of(SqlJetVdbeMemFlags.Null);
+        SqlJetVdbeSerialType.serialGet(payload, aOffset[column], aType[column], pDest);
+        pDest.enc = encoding;
+        if (pDest.flags.contains(SqlJetVdbeMemFlags.Blob)) {
+            pDest.makeWriteable();
+        }
+        return pDest;
+    }
+
     /*
      * (non-Javadoc)
      * 
      * @see org.tmatesoft.sqljet.core.ISqlJetRecord#getStringField(int)
      */
     public String getStringField(int field, SqlJetEncoding enc) throws SqlJetException {
-        final ISqlJetVdbeMem f = fields.get(field);
+        final ISqlJetVdbeMem f = getField(field);
         if (null == f)
             return null;
         final ISqlJetMemoryPointer v = f.valueText(enc);
@@ -364,8 +497,8 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
      * 
      * @see org.tmatesoft.sqljet.core.ISqlJetRecord#getIntField(int)
      */
-    public long getIntField(int field) {
-        final ISqlJetVdbeMem f = fields.get(field);
+    public long getIntField(int field) throws SqlJetException {
+        final ISqlJetVdbeMem f = getField(field);
         if (null == f)
             return 0;
         return f.intValue();
@@ -378,8 +511,8 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
      * org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeRecord#getRealField
      * (int)
      */
-    public double getRealField(int field) {
-        final ISqlJetVdbeMem f = fields.get(field);
+    public double getRealField(int field) throws SqlJetException {
+        final ISqlJetVdbeMem f = getField(field);
         if (null == f)
             return 0;
         return f.realValue();
@@ -406,7 +539,10 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
      * field is also a varint which is the offset from the beginning of the
      * record to data0.
      */
-    public ISqlJetMemoryPointer getRawRecord() {
+    public ISqlJetMemoryPointer getRawRecord() throws SqlJetException {
+        if (cursor != null && payloadSize > 0) {
+            return getPayload();
+        }
         /* A buffer to hold the data for the new record */
         ISqlJetMemoryPointer zNewRecord;
         int nData = 0; /* Number of bytes of data space */
@@ -421,8 +557,8 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
          * Loop through the elements that will make up the record to figure* out
          * how much space is required for the new record.
          */
-        for (ISqlJetVdbeMem value : fields) {
-            SqlJetVdbeMem pRec = (SqlJetVdbeMem) value;
+        for (int j = 0; j < fieldsCount; j++) {
+            SqlJetVdbeMem pRec = (SqlJetVdbeMem) fields[j];
 
             int len;
             if (pRec.flags.contains(SqlJetVdbeMemFlags.Zero) && pRec.n > 0) {
@@ -460,14 +596,14 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
 
         /* Write the record */
         i = SqlJetUtility.putVarint32(zNewRecord, nHdr);
-        for (ISqlJetVdbeMem value : fields) {
-            SqlJetVdbeMem pRec = (SqlJetVdbeMem) value;
+        for (int j = 0; j < fieldsCount; j++) {
+            SqlJetVdbeMem pRec = (SqlJetVdbeMem) fields[j];
             serial_type = SqlJetVdbeSerialType.serialType(pRec, file_format);
             /* serial type */
             i += SqlJetUtility.putVarint32(SqlJetUtility.pointer(zNewRecord, i), serial_type);
         }
-        for (ISqlJetVdbeMem value : fields) {
-            SqlJetVdbeMem pRec = (SqlJetVdbeMem) value;
+        for (int j = 0; j < fieldsCount; j++) {
+            SqlJetVdbeMem pRec = (SqlJetVdbeMem) fields[j];
             /* serial data */
             i += SqlJetVdbeSerialType.serialPut(SqlJetUtility.pointer(zNewRecord, i), (int) (nByte - i), pRec,
                     file_format);
@@ -477,9 +613,57 @@ public class SqlJetBtreeRecord implements ISqlJetBtreeRecord {
         return zNewRecord;
     }
 
+    /**
+     * Record which is read from cursor is already encoded, so its payload is
+     * copied instead of encoding of decoded values.
+     */
+    private ISqlJetMemoryPointer getPayload() throws SqlJetException {
+        checkView();
+        final ISqlJetMemoryPointer copy = SqlJetUtility.allocatePtr((int) payloadSize);
+        if (payload != null) {
+            copy.copyFrom(payload, (int) payloadSize);
+            return copy;
+        }
+        cursor.enterCursor();
+        try {
+            if (isIndex) {
+                cursor.key(0, (int) payloadSize, copy);
+            } else {
+                cursor.data(0, (int) payloadSize, copy);
+            }
+        } finally {
+            cursor.leaveCursor();
+        }
+        return copy;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeRecord#getZeroTail()
+     */
+    public int getZeroTail() {
+        int nZero = 0;
+        for (int j = 0; j < fieldsCount; j++) {
+            SqlJetVdbeMem pRec = (SqlJetVdbeMem) fields[j];
+            if (pRec.flags.contains(SqlJetVdbeMemFlags.Zero) && pRec.n == 0) {
+                nZero += pRec.nZero;
+            } else if (SqlJetVdbeSerialType.serialTypeLen(SqlJetVdbeSerialType.serialType(pRec, file_format)) != 0) {
+                nZero = 0;
+            }
+        }
+        return nZero;
+    }
+
     public void release() {
-        for (ISqlJetVdbeMem field : fields) {
-            field.release();
+        if (fields != null) {
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] != null) {
+                    fields[i].release();
+                    fields[i] = null;
+                }
+            }
         }
     }
 }
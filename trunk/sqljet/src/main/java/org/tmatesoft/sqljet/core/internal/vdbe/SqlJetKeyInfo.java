@@ -86,6 +86,39 @@ public class SqlJetKeyInfo implements ISqlJetKeyInfo {
         return p;
     }
 
+    /**
+     * Builds unpacked key straight from Java values, it is the same as
+     * {@link #recordUnpack(int, ISqlJetMemoryPointer)} of record made by
+     * {@link SqlJetBtreeRecord#getRecord(SqlJetEncoding, Object...)} from them,
+     * but without encoding and decoding of record.
+     * 
+     * @param values
+     *            values of key.
+     * @return unpacked key which should be released by caller.
+     * @throws SqlJetException
+     */
+    public SqlJetUnpackedRecord recordFromValues(Object[] values) throws SqlJetException {
+        final SqlJetUnpackedRecord p = new SqlJetUnpackedRecord();
+        p.flags = SqlJetUtility.of(SqlJetUnpackedRecordFlags.NEED_DESTROY);
+        p.pKeyInfo = this;
+        p.nField = Math.min(values.length, nField + 1);
+        p.aMem = new SqlJetVdbeMem[p.nField];
+        try {
+            for (int u = 0; u < p.nField; u++) {
+                final SqlJetVdbeMem pMem = SqlJetBtreeRecord.getValueMem(u, values[u], enc);
+                if (pMem.flags.contains(SqlJetVdbeMemFlags.Zero)) {
+                    pMem.expandBlob();
+                }
+                pMem.db = db;
+                p.aMem[u] = pMem;
+            }
+        } catch (SqlJetException e) {
+            p.release();
+            throw e;
+        }
+        return p;
+    }
+
     /**
      * @return the nField
      */
@@ -0,0 +1,421 @@
+/**
+ * SqlJetRecordWriter.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.vdbe;
+
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import org.tmatesoft.sqljet.core.SqlJetEncoding;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetLimits;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetRecordWriter;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.table.ISqlJetOptions;
+import org.tmatesoft.sqljet.core.table.SqlJetZeroBlob;
+
+/**
+ * Implementation of {@link ISqlJetRecordWriter}. Produces the same records as
+ * {@link SqlJetBtreeRecord#getRawRecord()} for the same values, but computes
+ * serial types in first pass over values and writes header and data in second
+ * pass into single buffer which grows only when record doesn't fit into it.
+ *
+ * Strings in UTF-8 and UTF-16 are encoded by hand straight into buffer.
+ * Buffers larger than {@link #SQLJET_RECORD_BUFFER} aren't kept between
+ * writes, so one huge record doesn't hold memory of connection.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SqlJetRecordWriter implements ISqlJetRecordWriter {
+
+    /** Name of system property with maximal size of buffer kept between writes */
+    public static final String SQLJET_RECORD_BUFFER = "SQLJET.RECORD_BUFFER";
+
+    /** Default maximal size of buffer kept between writes */
+    public static final int RECORD_BUFFER_DEFAULT = 64 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int INITIAL_FIELDS_COUNT = 16;
+
+    private final int file_format = ISqlJetOptions.SQLJET_DEFAULT_FILE_FORMAT;
+    private final int maxBufferSize;
+
+    private ISqlJetMemoryPointer buffer;
+    private int bufferSize;
+
+    /*
+     * Per field state of record which is written: serial type, integer value
+     * (or bits of real value) and value of string or blob prepared for
+     * copying. Arrays are reused by following writes.
+     */
+    private int[] aType = new int[INITIAL_FIELDS_COUNT];
+    private long[] aInt = new long[INITIAL_FIELDS_COUNT];
+    private Object[] aValue = new Object[INITIAL_FIELDS_COUNT];
+
+    private int nZero;
+
+    public SqlJetRecordWriter() {
+        this(SqlJetUtility.getIntSysProp(SQLJET_RECORD_BUFFER, RECORD_BUFFER_DEFAULT));
+    }
+
+    /**
+     * @param maxBufferSize
+     *            maximal size of buffer which is kept between writes.
+     */
+    public SqlJetRecordWriter(int maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetRecordWriter#write(org.tmatesoft
+     * .sqljet.core.SqlJetEncoding, java.lang.Object[])
+     */
+    public ISqlJetMemoryPointer write(SqlJetEncoding encoding, Object[] values) throws SqlJetException {
+        return writeRecord(encoding, values, false, 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetRecordWriter#writeKey(org.tmatesoft
+     * .sqljet.core.SqlJetEncoding, java.lang.Object[], long)
+     */
+    public ISqlJetMemoryPointer writeKey(SqlJetEncoding encoding, Object[] key, long rowId) throws SqlJetException {
+        return writeRecord(encoding, key, true, rowId);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetRecordWriter#getZeroTail()
+     */
+    public int getZeroTail() {
+        return nZero;
+    }
+
+    private ISqlJetMemoryPointer writeRecord(SqlJetEncoding encoding, Object[] values, boolean withRowId, long rowId)
+            throws SqlJetException {
+        final int nField = values.length + (withRowId ? 1 : 0);
+        if (aType.length < nField) {
+            final int n = Math.max(nField, aType.length * 2);
+            aType = new int[n];
+            aInt = new long[n];
+            aValue = new Object[n];
+        }
+        try {
+            int nData = 0; /* Number of bytes of data space */
+            int nHdr = 0; /* Number of bytes of header space */
+            nZero = 0;
+            for (int i = 0; i < nField; i++) {
+                if (i < values.length) {
+                    prepare(i, values[i], encoding);
+                } else {
+                    aType[i] = intType(rowId);
+                    aInt[i] = rowId;
+                }
+                final int serial_type = aType[i];
+                final int len = SqlJetVdbeSerialType.serialTypeLen(serial_type);
+                if (len > ISqlJetLimits.SQLJET_MAX_LENGTH) {
+                    throw new SqlJetException(SqlJetErrorCode.TOOBIG);
+                }
+                nData += len;
+                nHdr += SqlJetUtility.varintLen(serial_type);
+                if (aValue[i] instanceof SqlJetZeroBlob) {
+                    nZero += len;
+                } else if (len != 0) {
+                    nZero = 0;
+                }
+            }
+
+            /* Add the initial header varint and total the size */
+            final int nVarint = SqlJetUtility.varintLen(nHdr);
+            nHdr += nVarint;
+            if (nVarint < SqlJetUtility.varintLen(nHdr)) {
+                nHdr++;
+            }
+            final int nByte = nHdr + nData - nZero;
+            final ISqlJetMemoryPointer zNewRecord = getBuffer(nByte);
+
+            /* Write the record */
+            int i = putVarint(zNewRecord, 0, nHdr);
+            for (int j = 0; j < nField; j++) {
+                i = putVarint(zNewRecord, i, aType[j]);
+            }
+            for (int j = 0; j < nField; j++) {
+                i = putData(zNewRecord, i, nByte, j, encoding);
+            }
+            assert (i == nByte);
+            zNewRecord.limit(nByte);
+            return zNewRecord;
+        } finally {
+            for (int i = 0; i < nField; i++) {
+                aValue[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Computes serial type of value and keeps what is needed to write it.
+     */
+    private void prepare(int i, Object value, SqlJetEncoding encoding) throws SqlJetException {
+        aValue[i] = null;
+        if (null == value) {
+            aType[i] = 0;
+        } else if (value instanceof String) {
+            final String s = (String) value;
+            final int n = encodedLength(s, encoding);
+            if (n >= 0) {
+                aValue[i] = s;
+                aType[i] = n * 2 + 13;
+            } else {
+                final byte[] b = getBytes(s, encoding);
+                aValue[i] = b;
+                aType[i] = b.length * 2 + 13;
+            }
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            final long v = ((Number) value).longValue();
+            aType[i] = intType(v);
+            aInt[i] = v;
+        } else if (value instanceof Double || value instanceof Float) {
+            final double r = ((Number) value).doubleValue();
+            if (Double.isNaN(r)) {
+                aType[i] = 0;
+            } else {
+                aType[i] = 7;
+                aInt[i] = Double.doubleToLongBits(r);
+            }
+        } else if (value instanceof Boolean) {
+            final long v = ((Boolean) value) ? 1 : 0;
+            aType[i] = intType(v);
+            aInt[i] = v;
+        } else if (value instanceof byte[]) {
+            aValue[i] = value;
+            aType[i] = ((byte[]) value).length * 2 + 12;
+        } else if (value instanceof ISqlJetMemoryPointer) {
+            aValue[i] = value;
+            aType[i] = ((ISqlJetMemoryPointer) value).remaining() * 2 + 12;
+        } else if (value instanceof ByteBuffer) {
+            final ISqlJetMemoryPointer p = SqlJetUtility.fromByteBuffer((ByteBuffer) value);
+            aValue[i] = p;
+            aType[i] = p.remaining() * 2 + 12;
+        } else if (value instanceof InputStream) {
+            final ISqlJetMemoryPointer p = SqlJetUtility.streamToBuffer((InputStream) value);
+            aValue[i] = p;
+            aType[i] = p.remaining() * 2 + 12;
+        } else if (value instanceof SqlJetZeroBlob) {
+            aValue[i] = value;
+            aType[i] = ((SqlJetZeroBlob) value).getSize() * 2 + 12;
+        } else {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Bad value #" + i + " " + value.toString());
+        }
+    }
+
+    /**
+     * Same as {@link SqlJetVdbeSerialType#serialType(SqlJetVdbeMem, int)} for
+     * integers.
+     */
+    private int intType(long i) {
+        final long MAX_6BYTE = ((((long) 0x00008000) << 32) - 1);
+        if (file_format >= 4 && (i & 1) == i) {
+            return 8 + (int) i;
+        }
+        final long u = SqlJetUtility.absolute(i);
+        if (u <= 127)
+            return 1;
+        if (u <= 32767)
+            return 2;
+        if (u <= 8388607)
+            return 3;
+        if (u <= 2147483647)
+            return 4;
+        if (u <= MAX_6BYTE)
+            return 5;
+        return 6;
+    }
+
+    /**
+     * Writes data of field like
+     * {@link SqlJetVdbeSerialType#serialPut(ISqlJetMemoryPointer, int, SqlJetVdbeMem, int)}
+     * does.
+     *
+     * @return offset after written data.
+     */
+    private int putData(ISqlJetMemoryPointer z, int offset, int nByte, int field, SqlJetEncoding encoding) {
+        final int serial_type = aType[field];
+        final int len = SqlJetVdbeSerialType.serialTypeLen(serial_type);
+
+        /* Integer and Real */
+        if (serial_type <= 7 && serial_type > 0) {
+            long v = aInt[field];
+            int i = len;
+            while (i-- > 0) {
+                z.putByteUnsigned(offset + i, (int) v);
+                v >>>= 8;
+            }
+            return offset + len;
+        }
+
+        /* String or blob */
+        if (serial_type >= 12) {
+            final Object value = aValue[field];
+            if (value instanceof String) {
+                putString(z, offset, (String) value, encoding);
+            } else if (value instanceof byte[]) {
+                z.putBytes(offset, (byte[]) value, 0, len);
+            } else if (value instanceof ISqlJetMemoryPointer) {
+                if (len > 0) {
+                    z.copyFrom(offset, (ISqlJetMemoryPointer) value, 0, len);
+                }
+            } else {
+                /* zero-filled blob, its zeros at the end of record aren't stored */
+                final int n = Math.min(len, nByte - offset);
+                z.fill(offset, n, (byte) 0);
+                return offset + n;
+            }
+            return offset + len;
+        }
+
+        /* NULL or constants 0 or 1 */
+        return offset;
+    }
+
+    private static int putVarint(ISqlJetMemoryPointer z, int offset, long v) {
+        if ((v & ~0x7fL) == 0) {
+            z.putByteUnsigned(offset, (int) v);
+            return offset + 1;
+        }
+        final int n = SqlJetUtility.varintLen(v);
+        if (n == 9) {
+            z.putByteUnsigned(offset + 8, (int) v);
+            v >>= 8;
+            for (int i = 7; i >= 0; i--) {
+                z.putByteUnsigned(offset + i, (int) ((v & 0x7f) | 0x80));
+                v >>= 7;
+            }
+            return offset + 9;
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            z.putByteUnsigned(offset + i, (int) ((v & 0x7f) | (i == n - 1 ? 0 : 0x80)));
+            v >>= 7;
+        }
+        return offset + n;
+    }
+
+    /**
+     * @return buffer where at least nByte bytes could be written.
+     */
+    private ISqlJetMemoryPointer getBuffer(int nByte) {
+        if (buffer != null && nByte <= bufferSize) {
+            buffer.limit(bufferSize);
+            return buffer;
+        }
+        final int n = Math.max(nByte, Math.max(bufferSize * 2, INITIAL_BUFFER_SIZE));
+        if (n > maxBufferSize) {
+            return SqlJetUtility.allocatePtr(nByte);
+        }
+        buffer = SqlJetUtility.allocatePtr(n);
+        bufferSize = n;
+        return buffer;
+    }
+
+    /**
+     * Returns length of string in given encoding, or -1 if string can't be
+     * encoded by hand (other encoding or unpaired surrogates which are
+     * replaced by {@link String#getBytes(String)}).
+     */
+    private static int encodedLength(String s, SqlJetEncoding encoding) {
+        final int length = s.length();
+        final boolean utf8 = encoding == SqlJetEncoding.UTF8;
+        if (!utf8 && encoding != SqlJetEncoding.UTF16LE && encoding != SqlJetEncoding.UTF16BE) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (Character.isHighSurrogate(c)) {
+                if (i + 1 >= length || !Character.isLowSurrogate(s.charAt(i + 1))) {
+                    return -1;
+                }
+                i++;
+                n += 4;
+            } else if (Character.isLowSurrogate(c)) {
+                return -1;
+            } else if (!utf8) {
+                n += 2;
+            } else if (c < 0x80) {
+                n += 1;
+            } else if (c < 0x800) {
+                n += 2;
+            } else {
+                n += 3;
+            }
+        }
+        return n;
+    }
+
+    private static void putString(ISqlJetMemoryPointer z, int offset, String s, SqlJetEncoding encoding) {
+        final int length = s.length();
+        int p = offset;
+        if (encoding == SqlJetEncoding.UTF8) {
+            for (int i = 0; i < length; i++) {
+                final char c = s.charAt(i);
+                if (c < 0x80) {
+                    z.putByteUnsigned(p++, c);
+                } else if (c < 0x800) {
+                    z.putByteUnsigned(p++, 0xc0 | (c >> 6));
+                    z.putByteUnsigned(p++, 0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c)) {
+                    final int cp = Character.toCodePoint(c, s.charAt(++i));
+                    z.putByteUnsigned(p++, 0xf0 | (cp >> 18));
+                    z.putByteUnsigned(p++, 0x80 | ((cp >> 12) & 0x3f));
+                    z.putByteUnsigned(p++, 0x80 | ((cp >> 6) & 0x3f));
+                    z.putByteUnsigned(p++, 0x80 | (cp & 0x3f));
+                } else {
+                    z.putByteUnsigned(p++, 0xe0 | (c >> 12));
+                    z.putByteUnsigned(p++, 0x80 | ((c >> 6) & 0x3f));
+                    z.putByteUnsigned(p++, 0x80 | (c & 0x3f));
+                }
+            }
+        } else {
+            final boolean le = encoding == SqlJetEncoding.UTF16LE;
+            for (int i = 0; i < length; i++) {
+                final char c = s.charAt(i);
+                z.putByteUnsigned(p++, le ? c & 0xff : c >> 8);
+                z.putByteUnsigned(p++, le ? c >> 8 : c & 0xff);
+            }
+        }
+    }
+
+    private static byte[] getBytes(String s, SqlJetEncoding encoding) throws SqlJetException {
+        try {
+            return s.getBytes(encoding.getCharsetName());
+        } catch (UnsupportedEncodingException e) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE, "Unknown charset " + encoding.name());
+        }
+    }
+
+}
@@ -0,0 +1,485 @@
+/**
+ * SqlJetSorter.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal.vdbe;
+
+import static org.tmatesoft.sqljet.core.internal.SqlJetUtility.getVarint32;
+import static org.tmatesoft.sqljet.core.internal.SqlJetUtility.memcpy;
+import static org.tmatesoft.sqljet.core.internal.SqlJetUtility.putVarint32;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFileSystem;
+import org.tmatesoft.sqljet.core.internal.ISqlJetKeyInfo;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetSorter;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileType;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+
+/**
+ * Implementation of {@link ISqlJetSorter}, external merge sort like
+ * vdbesort.c does. Each sorted run is written into temporary file as sequence
+ * of records, each record is prefixed by varint with its size. At most
+ * {@link #MERGE_FANIN} runs are merged at once, if there are more runs they
+ * are merged into longer runs first.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SqlJetSorter implements ISqlJetSorter {
+
+    /** Name of system property with count of bytes of records kept in memory */
+    public static final String SQLJET_SORTER_MEMORY = "SQLJET.SORTER_MEMORY";
+
+    /** Default count of bytes of records kept in memory */
+    public static final int SORTER_MEMORY_DEFAULT = 16 << 20;
+
+    /** Maximum count of runs merged at once */
+    static final int MERGE_FANIN = 16;
+
+    /** Size of buffers used for reading and writing of runs */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Estimated count of bytes used by each record in memory besides itself */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /** Estimated count of bytes used by unpacked form of record */
+    private static final int UNPACKED_OVERHEAD = 48;
+
+    /** Estimated count of bytes used by each field of unpacked record */
+    private static final int FIELD_OVERHEAD = 144;
+
+    private static final Set<SqlJetFileOpenPermission> TEMP_PERMISSIONS = SqlJetUtility.of(
+            SqlJetFileOpenPermission.READWRITE, SqlJetFileOpenPermission.CREATE, SqlJetFileOpenPermission.EXCLUSIVE,
+            SqlJetFileOpenPermission.DELETEONCLOSE);
+
+    private final ISqlJetFileSystem fileSystem;
+    private final ISqlJetKeyInfo keyInfo;
+    private final int memoryLimit;
+
+    /** Records collected in memory */
+    private List<Entry> aMemory = new ArrayList<Entry>();
+    private long nMemory;
+    private int iMemory;
+
+    /** Temporary file with runs, null while nothing is spilled */
+    private ISqlJetFile pTemp;
+    private long nTempSize;
+
+    /** Bounds of runs in temporary file: start and end offsets */
+    private List<long[]> aRuns = new ArrayList<long[]>();
+
+    /** Runs which are merged while records are read */
+    private PriorityQueue<RunReader> pMerger;
+
+    private boolean sorted;
+
+    private final Comparator<Entry> entryComparator = new Comparator<Entry>() {
+        public int compare(Entry e1, Entry e2) {
+            return e1.compareTo(e2);
+        }
+    };
+
+    private final Comparator<RunReader> readerComparator = new Comparator<RunReader>() {
+        public int compare(RunReader r1, RunReader r2) {
+            return r1.pEntry.compareTo(r2.pEntry);
+        }
+    };
+
+    /**
+     * @param fileSystem
+     *            file system where temporary file is created.
+     * @param keyInfo
+     *            key info of index which records are sorted.
+     * @param memoryLimit
+     *            count of bytes of records which are sorted in memory.
+     */
+    public SqlJetSorter(ISqlJetFileSystem fileSystem, ISqlJetKeyInfo keyInfo, int memoryLimit) {
+        this.fileSystem = fileSystem;
+        this.keyInfo = keyInfo;
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * Creates sorter with memory limit from {@link #SQLJET_SORTER_MEMORY}.
+     */
+    public SqlJetSorter(ISqlJetFileSystem fileSystem, ISqlJetKeyInfo keyInfo) {
+        this(fileSystem, keyInfo, SqlJetUtility.getIntSysProp(SQLJET_SORTER_MEMORY, SORTER_MEMORY_DEFAULT));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.tmatesoft.sqljet.core.internal.ISqlJetSorter#write(org.tmatesoft.
+     * sqljet.core.internal.ISqlJetMemoryPointer)
+     */
+    public void write(ISqlJetMemoryPointer pRecord) throws SqlJetException {
+        if (sorted) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE);
+        }
+        final int nRecord = pRecord.remaining();
+        final ISqlJetMemoryPointer pCopy = SqlJetUtility.allocatePtr(nRecord);
+        memcpy(pCopy, pRecord, nRecord);
+        aMemory.add(new Entry(pCopy));
+        // each record is unpacked when it is compared while sorting.
+        nMemory += nRecord + ENTRY_OVERHEAD + UNPACKED_OVERHEAD + countFields(pCopy) * FIELD_OVERHEAD;
+        if (nMemory >= memoryLimit && fileSystem != null) {
+            spill();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetSorter#sort()
+     */
+    public void sort() throws SqlJetException {
+        if (sorted) {
+            return;
+        }
+        sorted = true;
+        if (pTemp == null) {
+            sortMemory();
+            return;
+        }
+        if (!aMemory.isEmpty()) {
+            spill();
+        }
+        while (aRuns.size() > MERGE_FANIN) {
+            final List<long[]> aMerged = new ArrayList<long[]>();
+            for (int i = 0; i < aRuns.size(); i += MERGE_FANIN) {
+                final List<long[]> aGroup = aRuns.subList(i, Math.min(i + MERGE_FANIN, aRuns.size()));
+                if (aGroup.size() == 1) {
+                    aMerged.add(aGroup.get(0));
+                } else {
+                    aMerged.add(mergeRuns(aGroup));
+                }
+            }
+            aRuns = aMerged;
+        }
+        pMerger = openMerger(aRuns);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetSorter#next()
+     */
+    public ISqlJetMemoryPointer next() throws SqlJetException {
+        if (!sorted) {
+            throw new SqlJetException(SqlJetErrorCode.MISUSE);
+        }
+        if (pMerger != null) {
+            return nextMerged(pMerger);
+        }
+        if (iMemory >= aMemory.size()) {
+            return null;
+        }
+        final Entry pEntry = aMemory.get(iMemory);
+        aMemory.set(iMemory++, null);
+        pEntry.release();
+        return pEntry.pRecord;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetSorter#getRunsCount()
+     */
+    public int getRunsCount() {
+        return aRuns.size();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.tmatesoft.sqljet.core.internal.ISqlJetSorter#close()
+     */
+    public void close() throws SqlJetException {
+        releaseMemory();
+        if (pMerger != null) {
+            for (final RunReader pReader : pMerger) {
+                pReader.pEntry.release();
+            }
+            pMerger = null;
+        }
+        if (pTemp != null) {
+            try {
+                pTemp.close();
+            } finally {
+                pTemp = null;
+            }
+        }
+    }
+
+    private void sortMemory() throws SqlJetException {
+        try {
+            Collections.sort(aMemory, entryComparator);
+        } catch (CompareException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return count of fields in header of record.
+     */
+    private static int countFields(ISqlJetMemoryPointer pRecord) {
+        final int[] v = new int[1];
+        int idx = getVarint32(pRecord, v);
+        final int nHeader = Math.min(v[0], pRecord.remaining());
+        int nField = 0;
+        while (idx < nHeader) {
+            idx += getVarint32(pRecord, idx, v);
+            nField++;
+        }
+        return nField;
+    }
+
+    private void releaseMemory() {
+        for (final Entry pEntry : aMemory) {
+            if (pEntry != null) {
+                pEntry.release();
+            }
+        }
+        aMemory = new ArrayList<Entry>();
+        nMemory = 0;
+        iMemory = 0;
+    }
+
+    /**
+     * Sorts records in memory and writes them into temporary file as new run.
+     */
+    private void spill() throws SqlJetException {
+        if (pTemp == null) {
+            pTemp = fileSystem.open(null, SqlJetFileType.TEMP_JOURNAL, TEMP_PERMISSIONS);
+        }
+        sortMemory();
+        final RunWriter pWriter = new RunWriter();
+        for (final Entry pEntry : aMemory) {
+            pWriter.write(pEntry.pRecord);
+        }
+        aRuns.add(pWriter.finish());
+        releaseMemory();
+    }
+
+    /**
+     * Merges group of runs into one new run at the end of temporary file.
+     */
+    private long[] mergeRuns(List<long[]> aGroup) throws SqlJetException {
+        final PriorityQueue<RunReader> pQueue = openMerger(aGroup);
+        final RunWriter pWriter = new RunWriter();
+        ISqlJetMemoryPointer pRecord;
+        while ((pRecord = nextMerged(pQueue)) != null) {
+            pWriter.write(pRecord);
+        }
+        return pWriter.finish();
+    }
+
+    private PriorityQueue<RunReader> openMerger(List<long[]> aGroup) throws SqlJetException {
+        final PriorityQueue<RunReader> pQueue = new PriorityQueue<RunReader>(aGroup.size(), readerComparator);
+        try {
+            for (final long[] aRun : aGroup) {
+                final RunReader pReader = new RunReader(aRun[0], aRun[1]);
+                if (pReader.next()) {
+                    pQueue.add(pReader);
+                }
+            }
+        } catch (CompareException e) {
+            throw e.getCause();
+        }
+        return pQueue;
+    }
+
+    private ISqlJetMemoryPointer nextMerged(PriorityQueue<RunReader> pQueue) throws SqlJetException {
+        final RunReader pReader = pQueue.poll();
+        if (pReader == null) {
+            return null;
+        }
+        final ISqlJetMemoryPointer pRecord = pReader.pEntry.pRecord;
+        try {
+            if (pReader.next()) {
+                pQueue.add(pReader);
+            }
+        } catch (CompareException e) {
+            throw e.getCause();
+        }
+        return pRecord;
+    }
+
+    /**
+     * Record with its unpacked form which is made on first comparison.
+     */
+    private class Entry {
+
+        private final ISqlJetMemoryPointer pRecord;
+        private SqlJetUnpackedRecord pUnpacked;
+
+        Entry(ISqlJetMemoryPointer pRecord) {
+            this.pRecord = pRecord;
+        }
+
+        int compareTo(Entry pOther) {
+            if (pUnpacked == null) {
+                pUnpacked = keyInfo.recordUnpack(pRecord.remaining(), pRecord);
+            }
+            try {
+                // recordCompare() compares given record with unpacked one.
+                return -pUnpacked.recordCompare(pOther.pRecord.remaining(), pOther.pRecord);
+            } catch (SqlJetException e) {
+                throw new CompareException(e);
+            }
+        }
+
+        void release() {
+            if (pUnpacked != null) {
+                pUnpacked.release();
+                pUnpacked = null;
+            }
+        }
+    }
+
+    /**
+     * Carries error of comparison through {@link Comparator}, it is unwrapped
+     * around sorting and merging.
+     */
+    private static class CompareException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        CompareException(SqlJetException cause) {
+            super(cause);
+        }
+
+        @Override
+        public SqlJetException getCause() {
+            return (SqlJetException) super.getCause();
+        }
+    }
+
+    /**
+     * Writes run at the end of temporary file through buffer.
+     */
+    private class RunWriter {
+
+        private final long iStart = nTempSize;
+        private final ISqlJetMemoryPointer aBuffer = SqlJetUtility.allocatePtr(BUFFER_SIZE);
+        private int nBuffer;
+
+        void write(ISqlJetMemoryPointer pRecord) throws SqlJetException {
+            final int nRecord = pRecord.remaining();
+            if (nBuffer + 5 + nRecord > BUFFER_SIZE) {
+                flush();
+            }
+            nBuffer += putVarint32(aBuffer.getMoved(nBuffer), nRecord);
+            if (nBuffer + nRecord > BUFFER_SIZE) {
+                flush();
+                pTemp.write(pRecord, nRecord, nTempSize);
+                nTempSize += nRecord;
+            } else {
+                memcpy(aBuffer, nBuffer, pRecord, 0, nRecord);
+                nBuffer += nRecord;
+            }
+        }
+
+        private void flush() throws SqlJetException {
+            if (nBuffer > 0) {
+                pTemp.write(aBuffer, nBuffer, nTempSize);
+                nTempSize += nBuffer;
+                nBuffer = 0;
+            }
+        }
+
+        long[] finish() throws SqlJetException {
+            flush();
+            return new long[] { iStart, nTempSize };
+        }
+    }
+
+    /**
+     * Reads run from temporary file through buffer.
+     */
+    private class RunReader {
+
+        private long iOffset;
+        private final long iEnd;
+        private final ISqlJetMemoryPointer aBuffer;
+        private long iBufferStart;
+        private int nBuffer;
+        private final int[] nRecord = new int[1];
+
+        /** Current record of run */
+        private Entry pEntry;
+
+        RunReader(long iStart, long iEnd) {
+            this.iOffset = iStart;
+            this.iEnd = iEnd;
+            this.aBuffer = SqlJetUtility.allocatePtr((int) Math.min(BUFFER_SIZE, iEnd - iStart));
+        }
+
+        /**
+         * Moves to next record of run.
+         *
+         * @return false if run is over.
+         */
+        boolean next() throws SqlJetException {
+            if (pEntry != null) {
+                pEntry.release();
+                pEntry = null;
+            }
+            if (iOffset >= iEnd) {
+                return false;
+            }
+            fill(Math.min(5, (int) (iEnd - iOffset)));
+            iOffset += getVarint32(aBuffer, (int) (iOffset - iBufferStart), nRecord);
+            final ISqlJetMemoryPointer pRecord = SqlJetUtility.allocatePtr(nRecord[0]);
+            if (nRecord[0] > aBuffer.remaining()) {
+                pTemp.read(pRecord, nRecord[0], iOffset);
+            } else {
+                fill(nRecord[0]);
+                memcpy(pRecord, 0, aBuffer, (int) (iOffset - iBufferStart), nRecord[0]);
+            }
+            iOffset += nRecord[0];
+            pEntry = new Entry(pRecord);
+            return true;
+        }
+
+        /**
+         * Makes sure that buffer contains given count of bytes from current
+         * offset.
+         */
+        private void fill(int nBytes) throws SqlJetException {
+            if (iOffset + nBytes <= iBufferStart + nBuffer && iOffset >= iBufferStart) {
+                return;
+            }
+            iBufferStart = iOffset;
+            nBuffer = (int) Math.min(aBuffer.remaining(), iEnd - iOffset);
+            pTemp.read(aBuffer, nBuffer, iBufferStart);
+        }
+    }
+
+}
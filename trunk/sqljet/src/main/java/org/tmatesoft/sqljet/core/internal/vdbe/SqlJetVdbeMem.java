@@ -1114,7 +1114,7 @@ public class SqlJetVdbeMem extends SqlJetCloneable implements ISqlJetVdbeMem {
             expandBlob();
             flags.remove(SqlJetVdbeMemFlags.Str);
             flags.add(SqlJetVdbeMemFlags.Blob);
-            z.limit(n);
+            z.limit(z.getPointer() + n);
             return z;
         } else {
             return valueText(SqlJetEncoding.UTF8);
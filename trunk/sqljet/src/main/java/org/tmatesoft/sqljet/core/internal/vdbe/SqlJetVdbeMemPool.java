@@ -1,21 +1,22 @@
 package org.tmatesoft.sqljet.core.internal.vdbe;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
 public class SqlJetVdbeMemPool {
     
     private static final int MAX_POOL_SIZE = 1024;
     
-    private Queue<SqlJetVdbeMem> queue = new LinkedList<SqlJetVdbeMem>();
+    /** Stack of released cells, array doesn't allocate nodes on release */
+    private final SqlJetVdbeMem[] pool = new SqlJetVdbeMem[MAX_POOL_SIZE];
+    private int size = 0;
     public static int obtained = 0;
     public static int released = 0;
     public static int created = 0;
     
     public synchronized SqlJetVdbeMem obtain() {
         obtained++;
-        if (!queue.isEmpty()) {
-            return queue.remove();
+        if (size > 0) {
+            final SqlJetVdbeMem mem = pool[--size];
+            pool[size] = null;
+            return mem;
         } else {
             created++;
             return new SqlJetVdbeMem(this);
@@ -24,8 +25,8 @@ public class SqlJetVdbeMemPool {
     
     public synchronized void release(SqlJetVdbeMem mem) {
         released++;
-        if (queue.size() < MAX_POOL_SIZE) {
-            queue.add(mem);
+        if (size < MAX_POOL_SIZE) {
+            pool[size++] = mem;
         }
     }
     
@@ -33,6 +34,6 @@ public class SqlJetVdbeMemPool {
         return "\ncreated: " + created + 
                 "\n" + "obtained: " + obtained + 
                 "\n" + "released: " + released +
-                "\n" + "in pool:  " + queue.size();
+                "\n" + "in pool:  " + size;
     }
 }
@@ -146,7 +146,7 @@ public class SqlJetVdbeSerialType {
         default: {
             int len = (serial_type - 12) / 2;
             pMem.z = SqlJetUtility.pointer(buf, offset);
-            pMem.z.limit(len);
+            pMem.z.limit(pMem.z.getPointer() + len);
             pMem.n = len;
             pMem.xDel = null;
             if ((serial_type & 0x01) != 0) {
@@ -248,7 +248,9 @@ public class SqlJetVdbeSerialType {
             assert (pMem.n + (pMem.flags.contains(SqlJetVdbeMemFlags.Zero) ? pMem.nZero : 0) == serialTypeLen(serial_type));
             assert (pMem.n <= nBuf);
             len = pMem.n;
-            SqlJetUtility.memcpy(buf, pMem.z, len);
+            if (len > 0) {
+                SqlJetUtility.memcpy(buf, pMem.z, len);
+            }
             if (pMem.flags.contains(SqlJetVdbeMemFlags.Zero)) {
                 len += pMem.nZero;
                 if (len > nBuf) {
@@ -0,0 +1,117 @@
+/**
+ * ISqlJetBlob.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * <p>
+ * Handle for incremental I/O of one BLOB or TEXT value, like sqlite3_blob in
+ * SQLite. Value is read and written by parts directly in pages of database, it
+ * is never loaded into memory as whole.
+ * </p>
+ *
+ * <p>
+ * Size of value can't be changed by handle. To store large value without
+ * holding it in memory insert {@link SqlJetZeroBlob} of required size and
+ * then write content through handle.
+ * </p>
+ *
+ * <p>
+ * Handle can be opened only within active transaction and should be closed
+ * before transaction ends. When the row is modified or deleted by other means
+ * the handle expires and all its operations fail with
+ * {@link org.tmatesoft.sqljet.core.SqlJetErrorCode#ABORT}.
+ * </p>
+ *
+ * @see ISqlJetTable#openBlob(String, long, boolean)
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public interface ISqlJetBlob {
+
+    /**
+     * @return size of value in bytes.
+     */
+    int getSize();
+
+    /**
+     * Reads part of value.
+     *
+     * @param offset
+     *            offset in value.
+     * @param buffer
+     *            buffer where bytes are read to.
+     * @param bufferOffset
+     *            offset in buffer.
+     * @param count
+     *            count of bytes to read, offset + count should not exceed size
+     *            of value.
+     * @throws SqlJetException
+     */
+    void read(int offset, byte[] buffer, int bufferOffset, int count) throws SqlJetException;
+
+    /**
+     * Writes part of value. Handle should be opened for writing.
+     *
+     * @param offset
+     *            offset in value.
+     * @param buffer
+     *            buffer with bytes to write.
+     * @param bufferOffset
+     *            offset in buffer.
+     * @param count
+     *            count of bytes to write, offset + count should not exceed
+     *            size of value.
+     * @throws SqlJetException
+     */
+    void write(int offset, byte[] buffer, int bufferOffset, int count) throws SqlJetException;
+
+    /**
+     * Moves handle to the same column of other row.
+     *
+     * @param rowId
+     *            ROWID of row.
+     * @throws SqlJetException
+     */
+    void reopen(long rowId) throws SqlJetException;
+
+    /**
+     * @return stream which reads value from start to end.
+     */
+    InputStream getInputStream();
+
+    /**
+     * @return stream which writes value from start, it can't write beyond
+     *         size of value.
+     */
+    OutputStream getOutputStream();
+
+    /**
+     * Closes handle.
+     *
+     * @throws SqlJetException
+     */
+    void close() throws SqlJetException;
+
+}
@@ -0,0 +1,104 @@
+/**
+ * ISqlJetBulkLoader.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import java.util.Map;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
+
+/**
+ * <p>
+ * Loader which fills empty table with records given in ascending ROWID order.
+ * Table B-Tree is built bottom-up: pages are filled one after another without
+ * balancing of tree on each insert. Each index of table is built in the same
+ * way while keys of index come in ascending order too.
+ * </p>
+ *
+ * <p>
+ * When table isn't empty or record breaks the order, loader continues with
+ * usual inserts, so result is always the same as with
+ * {@link ISqlJetTable#insert(Object...)}, only slower.
+ * </p>
+ *
+ * <p>
+ * Loader works only within active write transaction. Records become visible
+ * when loader is closed, loader must be closed before end of transaction.
+ * </p>
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public interface ISqlJetBulkLoader {
+
+    /**
+     * Completes table and its indexes and closes the loader.
+     *
+     * @throws SqlJetException
+     */
+    void close() throws SqlJetException;
+
+    /**
+     * Appends record to the table, see {@link ISqlJetTable#insert(Object...)}.
+     *
+     * @param values
+     *            Values for the new record.
+     * @return ROWID of inserted record.
+     * @throws SqlJetException
+     */
+    long insert(Object... values) throws SqlJetException;
+
+    /**
+     * Appends record by names of fields, see
+     * {@link ISqlJetTable#insertByFieldNames(Map)}.
+     *
+     * @param values
+     *            Values for the new record.
+     * @return ROWID of inserted record.
+     * @throws SqlJetException
+     */
+    long insertByFieldNames(Map<String, Object> values) throws SqlJetException;
+
+    /**
+     * Appends record with given ROWID, see
+     * {@link ISqlJetTable#insertWithRowId(long, Object...)}.
+     *
+     * @param rowId
+     *            ROWID of record.
+     * @param values
+     *            Values for the new record.
+     * @return ROWID of inserted record.
+     * @throws SqlJetException
+     */
+    long insertWithRowId(long rowId, Object... values) throws SqlJetException;
+
+    /**
+     * Appends record, implements ON CONFLICT clause, see
+     * {@link ISqlJetTable#insertOr(SqlJetConflictAction, Object...)}.
+     *
+     * @param onConflict
+     *            {@link SqlJetConflictAction}.
+     * @param values
+     *            Values for the new record.
+     * @return ROWID of inserted record.
+     * @throws SqlJetException
+     */
+    long insertOr(SqlJetConflictAction onConflict, Object... values) throws SqlJetException;
+
+}
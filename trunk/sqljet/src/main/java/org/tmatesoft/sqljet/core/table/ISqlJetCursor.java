@@ -28,6 +28,14 @@ import org.tmatesoft.sqljet.core.schema.SqlJetConflictAction;
  * This class represents table cursor that may be used to browse over records in
  * the table, to modify or delete existing records.
  *
+ * <p>
+ * When rows are scanned inside of transaction, getters which take number of
+ * field are cheapest: numbers of fields could be resolved once by
+ * {@link org.tmatesoft.sqljet.core.schema.ISqlJetTableDef#getColumnNumber(String)}
+ * and getters then read values without allocation of transaction's wrappers
+ * or boxing of primitive results.
+ * </p>
+ *
  * @author TMate Software Ltd.
  * @author Sergey Scherbina (sergey.scherbina@gmail.com)
  *
@@ -420,4 +428,16 @@ public interface ISqlJetCursor {
      */
     long getLimit();
 
+    /**
+     * Declares fields which will be read through this cursor. Then
+     * {@link #getRowValues()} decodes only these fields and returns
+     * <code>null</code> for others, so reading a few columns of wide table
+     * doesn't decode whole rows. Other methods still can read any field.
+     *
+     * @param fieldNames
+     *            names of fields, no names reset projection to all fields.
+     * @throws SqlJetException
+     */
+    void setProjection(String... fieldNames) throws SqlJetException;
+
 }
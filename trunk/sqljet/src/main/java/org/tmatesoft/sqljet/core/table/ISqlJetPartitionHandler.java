@@ -0,0 +1,45 @@
+/**
+ * ISqlJetPartitionHandler.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * Handler of one partition of table scanned by
+ * {@link ISqlJetTable#scanPartitions(String, SqlJetScope, int, ISqlJetPartitionHandler)}.
+ *
+ * Handlers of different partitions could be called at the same time from
+ * different threads, so shared state should be synchronized.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public interface ISqlJetPartitionHandler {
+
+    /**
+     * Processes rows of partition.
+     *
+     * @param cursor
+     *            cursor over rows of partition, it is positioned at first row
+     *            and is closed after return.
+     * @return result of partition.
+     * @throws SqlJetException
+     */
+    public Object handle(ISqlJetCursor cursor) throws SqlJetException;
+}
@@ -17,6 +17,7 @@
  */
 package org.tmatesoft.sqljet.core.table;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -99,6 +100,47 @@ public interface ISqlJetTable {
      */
     ISqlJetCursor open() throws SqlJetException;
 
+    /**
+     * <p>
+     * Open loader which fills empty table with records given in ascending
+     * ROWID order faster than {@link #insert(Object...)}, see
+     * {@link ISqlJetBulkLoader}.
+     * </p>
+     *
+     * <p>
+     * Loader can be opened only within active write transaction and should be
+     * closed before transaction ends.
+     * </p>
+     *
+     * @return loader of table records.
+     * @throws SqlJetException
+     */
+    ISqlJetBulkLoader openBulkLoader() throws SqlJetException;
+
+    /**
+     * <p>
+     * Open handle for incremental I/O of BLOB or TEXT value in the given
+     * column of the given row, see {@link ISqlJetBlob}. Value is never loaded
+     * into memory as whole.
+     * </p>
+     *
+     * <p>
+     * Handle can be opened only within active transaction (write transaction
+     * for writing) and should be closed before transaction ends. Indexed
+     * columns can't be opened for writing.
+     * </p>
+     *
+     * @param columnName
+     *            name of column.
+     * @param rowId
+     *            ROWID of row.
+     * @param write
+     *            true if value will be written.
+     * @return handle of value.
+     * @throws SqlJetException
+     */
+    ISqlJetBlob openBlob(String columnName, long rowId, boolean write) throws SqlJetException;
+
     /**
      * <p>
      * Open cursor for records which have found by key on index.
@@ -204,6 +246,51 @@ public interface ISqlJetTable {
      */
     ISqlJetCursor scope(String indexName, SqlJetScope scope) throws SqlJetException;
 
+    /**
+     * <p>
+     * Scans scope of index in parallel. Scope is split into given number of
+     * ranges of index keys which have almost equal count of rows, each range is
+     * passed to handler in own thread with cursor of own read-only connection
+     * to data base. Rows with same key of index are always in same range, so
+     * there could be less ranges than requested.
+     * </p>
+     *
+     * <p>
+     * Ranges are read in own transactions of their connections and follow in
+     * order of index regardless of order of scope bounds. Data bases in memory
+     * can't be shared by connections, their ranges are handled one by one.
+     * Not more ranges than available processors are handled at once, others
+     * wait for their turn.
+     * </p>
+     *
+     * <p>
+     * Each range reads own snapshot of data base, which is taken when its
+     * transaction begins. If other connection commits meanwhile then ranges
+     * could see different states of table: row could be missed or seen twice
+     * when it is moved between ranges, and results could be inconsistent with
+     * each other. Scan within a consistent snapshot needs writers to be
+     * stopped for its time.
+     * </p>
+     *
+     * <p>
+     * Can't be used within active transaction.
+     * </p>
+     *
+     * @param indexName
+     *            Name of the searched index. If null then primary key will be
+     *            used.
+     * @param scope
+     *            scope of rows, could be NULL for whole table.
+     * @param partitions
+     *            requested count of ranges.
+     * @param handler
+     *            handler of ranges.
+     * @return results of handler in order of ranges.
+     * @throws SqlJetException
+     */
+    List<Object> scanPartitions(String indexName, SqlJetScope scope, int partitions, ISqlJetPartitionHandler handler)
+            throws SqlJetException;
+
     /**
      * <p>
      * Add new record to the table with specified values.
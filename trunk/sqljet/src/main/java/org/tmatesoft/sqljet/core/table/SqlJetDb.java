@@ -19,6 +19,7 @@ package org.tmatesoft.sqljet.core.table;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import org.tmatesoft.sqljet.core.SqlJetErrorCode;
 import org.tmatesoft.sqljet.core.SqlJetException;
@@ -288,6 +289,39 @@ public class SqlJetDb extends SqlJetEngine {
         });
     }
 
+    /**
+     * Create several indexes at once. Table is scanned only once to fill all
+     * its new indexes. All indexes are created in one transaction.
+     *
+     * @param sql
+     *            CREATE INDEX ... sentences.
+     * @return definitions of created indexes.
+     */
+    public List<ISqlJetIndexDef> createIndexes(final String... sql) throws SqlJetException {
+        return createIndexes(false, sql);
+    }
+
+    /**
+     * Create several indexes at once. Table is scanned only once to fill all
+     * its new indexes. All indexes are created in one transaction.
+     *
+     * @param parallel
+     *            if true then keys of each index are sorted in separate
+     *            thread.
+     * @param sql
+     *            CREATE INDEX ... sentences.
+     * @return definitions of created indexes.
+     */
+    @SuppressWarnings("unchecked")
+    public List<ISqlJetIndexDef> createIndexes(final boolean parallel, final String... sql) throws SqlJetException {
+        checkOpen();
+        return (List<ISqlJetIndexDef>) runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return getSchemaInternal().createIndexes(parallel, sql);
+            }
+        });
+    }
+
     /**
      * Drop table.
      * 
@@ -18,8 +18,11 @@
 package org.tmatesoft.sqljet.core.table.engine;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 import org.tmatesoft.sqljet.core.ISqlJetMutex;
@@ -67,6 +70,12 @@ public class SqlJetEngine {
 					SqlJetFileOpenPermission.READWRITE,
 					SqlJetFileOpenPermission.CREATE));
 
+	/**
+	 * Name of system property which enables group commit by default, see
+	 * {@link #setGroupCommit(boolean)}.
+	 */
+	public static final String SQLJET_GROUP_COMMIT = "SQLJET.GROUP_COMMIT";
+
 	protected static final ISqlJetFileSystemsManager FILE_SYSTEM_MANAGER = SqlJetFileSystemsManager
 			.getManager();
 
@@ -81,6 +90,11 @@ public class SqlJetEngine {
 	private boolean transaction;
 	private SqlJetTransactionMode transactionMode;
 
+	private volatile boolean groupCommit = SqlJetUtility.getBoolSysProp(
+			SQLJET_GROUP_COMMIT, false);
+	private final List<GroupCommitRequest> commitQueue = new LinkedList<GroupCommitRequest>();
+	private volatile long commitCount;
+
 	/**
      *
      */
@@ -380,6 +394,181 @@ public class SqlJetEngine {
 		});
 	}
 
+	/**
+	 * Get count of page reads which were served by cache. Together with
+	 * {@link #getCacheMissCount()} allows to compare replacement policies of
+	 * cache, which is selected by "SQLJET.PAGE_CACHE_REPLACEMENT" property.
+	 * 
+	 * @return count of cache hits.
+	 */
+	public long getCacheHitCount() throws SqlJetException {
+		checkOpen();
+		return (Long) runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				return btree.getPager().getCacheHitCount();
+			}
+		});
+	}
+
+	/**
+	 * Get count of page reads which weren't found in cache.
+	 * 
+	 * @return count of cache misses.
+	 */
+	public long getCacheMissCount() throws SqlJetException {
+		checkOpen();
+		return (Long) runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				return btree.getPager().getCacheMissCount();
+			}
+		});
+	}
+
+	/**
+	 * Set count of bytes of database file which are mapped into memory for
+	 * reading. Pages inside of mapped region are read without copying until
+	 * they are modified. Zero disables memory-mapped reads.
+	 * 
+	 * @param mmapSize
+	 *            maximum count of mapped bytes.
+	 */
+	public void setMmapSize(final long mmapSize) throws SqlJetException {
+		checkOpen();
+		runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				btree.getPager().setMmapSize(mmapSize);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Get count of bytes of database file which are mapped into memory.
+	 * 
+	 * @return maximum count of mapped bytes.
+	 */
+	public long getMmapSize() throws SqlJetException {
+		checkOpen();
+		return (Long) runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				return btree.getPager().getMmapSize();
+			}
+		});
+	}
+
+	/**
+	 * Set maximum count of pages which are read ahead when pages of database
+	 * are read sequentially, for example by scan of table or index. Count of
+	 * pages read at once grows up to this value while reading stays
+	 * sequential. Zero disables read-ahead.
+	 * 
+	 * @param readAhead
+	 *            maximum count of pages read ahead.
+	 */
+	public void setReadAhead(final int readAhead) throws SqlJetException {
+		checkOpen();
+		runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				btree.getPager().setReadAhead(readAhead);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Get maximum count of pages which are read ahead.
+	 * 
+	 * @return maximum count of pages read ahead.
+	 */
+	public int getReadAhead() throws SqlJetException {
+		checkOpen();
+		return (Integer) runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				return btree.getPager().getReadAhead();
+			}
+		});
+	}
+
+	/**
+	 * Set count of bytes by which database file grows when data is appended
+	 * to it. Space of file is allocated in such chunks during write
+	 * transaction and file is truncated to size of data on commit, this
+	 * reduces fragmentation of file on bulk inserts. Zero means that file
+	 * grows by pages.
+	 * 
+	 * @param chunkSize
+	 *            count of bytes in chunk.
+	 */
+	public void setChunkSize(final int chunkSize) throws SqlJetException {
+		checkOpen();
+		runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				btree.getPager().setChunkSize(chunkSize);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Get count of bytes by which database file grows.
+	 * 
+	 * @return count of bytes in chunk.
+	 */
+	public int getChunkSize() throws SqlJetException {
+		checkOpen();
+		return (Integer) runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				return btree.getPager().getChunkSize();
+			}
+		});
+	}
+
+	/**
+	 * Set count of bytes after which statement journals, and rollback
+	 * journals in MEMORY and WAL journal modes, are moved from memory into
+	 * temporary files. Small transactions don't do any journal I/O, while big
+	 * ones don't hold whole journal in memory. Negative value keeps journals
+	 * in memory, zero keeps them in files.
+	 * 
+	 * @param journalSpillSize
+	 *            maximum count of bytes of journal kept in memory.
+	 */
+	public void setJournalSpillSize(final int journalSpillSize)
+			throws SqlJetException {
+		checkOpen();
+		runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				btree.getPager().setJournalSpillSize(journalSpillSize);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Get count of bytes after which journals are moved from memory into
+	 * temporary files.
+	 * 
+	 * @return maximum count of bytes of journal kept in memory.
+	 */
+	public int getJournalSpillSize() throws SqlJetException {
+		checkOpen();
+		return (Integer) runSynchronized(new ISqlJetEngineSynchronized() {
+			public Object runSynchronized(SqlJetEngine engine)
+					throws SqlJetException {
+				return btree.getPager().getJournalSpillSize();
+			}
+		});
+	}
+
 	/**
      * Set safety level
      * 
@@ -414,6 +603,24 @@ public class SqlJetEngine {
         });
     }
 
+    /**
+     * Copy committed pages from write-ahead log back into database file. Has
+     * effect only in {@link SqlJetPagerJournalMode#WAL} journal mode, pages
+     * which could be visible to running read transactions stay in the log.
+     * 
+     * @throws SqlJetException
+     */
+    public void checkpoint() throws SqlJetException {
+        checkOpen();
+        runSynchronized(new ISqlJetEngineSynchronized() {
+            public Object runSynchronized(SqlJetEngine engine)
+                    throws SqlJetException {
+                btree.getPager().checkpoint();
+                return null;
+            }
+        });
+    }
+
     /**
      * Get safety level
      * 
@@ -459,6 +666,42 @@ public class SqlJetEngine {
 		return transactionMode;
 	}
 
+	/**
+	 * Enables or disables group commit. When it is enabled then write
+	 * transactions which are run by {@link #runEngineTransaction} from
+	 * concurrent threads are queued while other transaction commits, and then
+	 * all queued transactions are committed together by one journal and
+	 * database sync. Each transaction of the group runs in its own statement
+	 * subtransaction, so failure of one transaction is reported only to its
+	 * caller and doesn't roll back others. Failure of the commit itself is
+	 * reported to all callers of the group.
+	 * 
+	 * @param groupCommit
+	 *            true to enable group commit.
+	 */
+	public void setGroupCommit(boolean groupCommit) {
+		this.groupCommit = groupCommit;
+	}
+
+	/**
+	 * @return true if group commit is enabled.
+	 * @see #setGroupCommit(boolean)
+	 */
+	public boolean isGroupCommit() {
+		return groupCommit;
+	}
+
+	/**
+	 * Returns count of write transactions committed to database by this
+	 * engine. With group commit it could be less than count of successfully
+	 * run write transactions.
+	 * 
+	 * @return count of commits.
+	 */
+	public long getCommitCount() {
+		return commitCount;
+	}
+
 	/**
 	 * Begin transaction.
 	 * 
@@ -526,6 +769,9 @@ public class SqlJetEngine {
 	protected Object runEngineTransaction(final ISqlJetEngineTransaction op,
 			final SqlJetTransactionMode mode) throws SqlJetException {
 		checkOpen();
+		if (groupCommit && mode == SqlJetTransactionMode.WRITE) {
+			return runGroupCommitTransaction(op);
+		}
 		return runSynchronized(new ISqlJetEngineSynchronized() {
 			public Object runSynchronized(SqlJetEngine engine)
 					throws SqlJetException {
@@ -551,6 +797,145 @@ public class SqlJetEngine {
 		});
 	}
 
+	private Object runGroupCommitTransaction(final ISqlJetEngineTransaction op)
+			throws SqlJetException {
+		final ISqlJetMutex mutex = dbHandle.getMutex();
+		final GroupCommitRequest request = new GroupCommitRequest(op);
+		if (mutex.attempt()) {
+			try {
+				if (isTransactionStarted(SqlJetTransactionMode.WRITE)) {
+					return op.run(this);
+				}
+				synchronized (commitQueue) {
+					commitQueue.add(request);
+				}
+				runGroupCommit();
+			} finally {
+				mutex.leave();
+			}
+		} else {
+			synchronized (commitQueue) {
+				commitQueue.add(request);
+			}
+			// while we wait for mutex other transactions could commit our
+			// request together with their own.
+			mutex.enter();
+			try {
+				if (!request.done) {
+					if (isTransactionStarted(SqlJetTransactionMode.WRITE)) {
+						synchronized (commitQueue) {
+							commitQueue.remove(request);
+						}
+						return op.run(this);
+					}
+					runGroupCommit();
+				}
+			} finally {
+				mutex.leave();
+			}
+		}
+		return request.getResult();
+	}
+
+	private void runGroupCommit() throws SqlJetException {
+		checkOpen();
+		final List<GroupCommitRequest> group;
+		synchronized (commitQueue) {
+			group = new ArrayList<GroupCommitRequest>(commitQueue);
+			commitQueue.clear();
+		}
+		final boolean statements = group.size() > 1;
+		try {
+			doBeginTransaction(SqlJetTransactionMode.WRITE);
+			boolean success = false;
+			try {
+				for (final GroupCommitRequest request : group) {
+					if (statements) {
+						btree.beginStmt();
+					}
+					try {
+						request.result = request.op.run(this);
+					} catch (Throwable e) {
+						request.error = e;
+					}
+					if (statements) {
+						if (request.error == null) {
+							btree.commitStmt();
+						} else {
+							btree.closeAllCursors();
+							btree.rollbackStmt();
+							btree.setSchema(null);
+						}
+					}
+				}
+				// single failed transaction is simply rolled back.
+				if (statements || group.get(0).error == null) {
+					doCommitTransaction();
+					success = true;
+				}
+			} finally {
+				if (!success) {
+					doRollbackTransaction();
+				}
+				transaction = false;
+				transactionMode = null;
+			}
+		} catch (SqlJetException e) {
+			failGroupCommit(group, e);
+		} catch (RuntimeException e) {
+			failGroupCommit(group, e);
+			throw e;
+		} catch (Error e) {
+			failGroupCommit(group, e);
+			throw e;
+		} finally {
+			for (final GroupCommitRequest request : group) {
+				request.done = true;
+			}
+		}
+	}
+
+	/**
+	 * Sets error of group commit to requests which haven't failed on their
+	 * own, so waiting transactions don't return as committed.
+	 */
+	private static void failGroupCommit(final List<GroupCommitRequest> group, final Throwable e) {
+		for (final GroupCommitRequest request : group) {
+			if (request.error == null) {
+				request.error = e;
+			}
+		}
+	}
+
+	/**
+	 * Write transaction which waits for group commit.
+	 */
+	private static class GroupCommitRequest {
+
+		private final ISqlJetEngineTransaction op;
+		private volatile boolean done;
+		private Object result;
+		private Throwable error;
+
+		public GroupCommitRequest(final ISqlJetEngineTransaction op) {
+			this.op = op;
+		}
+
+		public Object getResult() throws SqlJetException {
+			if (error instanceof SqlJetException) {
+				throw (SqlJetException) error;
+			} else if (error instanceof RuntimeException) {
+				throw (RuntimeException) error;
+			} else if (error instanceof Error) {
+				throw (Error) error;
+			} else if (error != null) {
+				throw new SqlJetException(error);
+			}
+			return result;
+		}
+
+	}
+
 	private boolean isTransactionStarted(final SqlJetTransactionMode mode) {
 		return transaction
 				&& (transactionMode == mode || mode == SqlJetTransactionMode.READ_ONLY);
@@ -567,6 +952,9 @@ public class SqlJetEngine {
 	private void doCommitTransaction() throws SqlJetException {
 		btree.closeAllCursors();
 		btree.commit();
+		if (transactionMode != SqlJetTransactionMode.READ_ONLY) {
+			commitCount++;
+		}
 		transaction = false;
 		transactionMode = null;
 	}
@@ -0,0 +1,178 @@
+/**
+ * CursorAllocationBenchmark.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.schema.ISqlJetTableDef;
+import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+import org.tmatesoft.sqljet.core.table.ISqlJetTable;
+import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
+import org.tmatesoft.sqljet.core.table.SqlJetDb;
+
+/**
+ * Measures time and bytes allocated per row by scans of table through typed
+ * getters of cursor. Allocations are counted by
+ * <code>com.sun.management.ThreadMXBean</code>, which is looked up by
+ * reflection, and they aren't checked by JVMs which don't have it.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class CursorAllocationBenchmark extends AbstractNewDbTest {
+
+    private static final int ROWS = 100000 * SqlJetUtility.getIntSysProp("SqlJetBenchmark.ScaleFactor", 1);
+
+    /**
+     * Limit of bytes allocated per row by scan, typed getters allocate about
+     * 500-600 bytes per row (600-700 without compressed references) and about
+     * 1300 when they go through transaction wrappers. The rest is allocated
+     * by flags of memory cells and by cell info of B-Tree pages.
+     */
+    private static final int MAX_BYTES_PER_ROW = SqlJetUtility.getIntSysProp(
+            "SqlJetBenchmark.MaxBytesPerRow", 720);
+
+    private static Logger logger;
+
+    private ISqlJetTable table;
+
+    private interface Scan {
+        long scan(ISqlJetCursor c) throws SqlJetException;
+    }
+
+    @BeforeClass
+    static public void setUpClass() throws Exception {
+        logger = Logger.getAnonymousLogger();
+        if (!SqlJetUtility.getBoolSysProp("SqlJetBenchmark.TimeLog", false)) {
+            logger.setLevel(Level.OFF);
+        }
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b integer, c real, d text)");
+                final ISqlJetTable t = db.getTable("t");
+                for (int i = 1; i <= ROWS; i++) {
+                    t.insert(null, i, i / 2.0, i % 10 == 0 ? null : "d" + i);
+                }
+                return null;
+            }
+        });
+        table = db.getTable("t");
+    }
+
+    private static long getAllocatedBytes() {
+        final Object threads = ManagementFactory.getThreadMXBean();
+        try {
+            final Class<?> allocations = Class.forName("com.sun.management.ThreadMXBean");
+            if (!allocations.isInstance(threads)) {
+                return -1;
+            }
+            final Method supported = allocations.getMethod("isThreadAllocatedMemorySupported");
+            final Method enabled = allocations.getMethod("isThreadAllocatedMemoryEnabled");
+            if (Boolean.TRUE.equals(supported.invoke(threads)) && Boolean.TRUE.equals(enabled.invoke(threads))) {
+                final Method allocated = allocations.getMethod("getThreadAllocatedBytes", long.class);
+                return (Long) allocated.invoke(threads, Thread.currentThread().getId());
+            }
+        } catch (Exception e) {
+            // allocations aren't counted by this JVM.
+        }
+        return -1;
+    }
+
+    private long run(final Scan scan) throws SqlJetException {
+        return (Long) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = table.open();
+                try {
+                    return scan.scan(c);
+                } finally {
+                    c.close();
+                }
+            }
+        });
+    }
+
+    private void measure(String name, Scan scan) throws SqlJetException {
+        final long expected = run(scan); // warm up
+        final long bytes = getAllocatedBytes();
+        final long time = System.currentTimeMillis();
+        Assert.assertEquals(expected, run(scan));
+        final long elapsed = System.currentTimeMillis() - time;
+        final long perRow = bytes < 0 ? -1 : (getAllocatedBytes() - bytes) / ROWS;
+        logger.info(String.format("CursorAllocationBenchmark.%s %d ms %d bytes/row", name, elapsed, perRow));
+        // allocations aren't counted by some JVMs.
+        if (perRow >= 0) {
+            Assert.assertTrue(String.format("%s allocates %d bytes/row", name, perRow), perRow < MAX_BYTES_PER_ROW);
+        }
+    }
+
+    @Test
+    public void scanByFields() throws Exception {
+        // fields are resolved once, getters return primitives.
+        final ISqlJetTableDef def = table.getDefinition();
+        final int b = def.getColumnNumber("b");
+        final int c = def.getColumnNumber("c");
+        final int d = def.getColumnNumber("d");
+        measure("scanByFields", new Scan() {
+            public long scan(ISqlJetCursor cursor) throws SqlJetException {
+                long sum = 0;
+                for (; !cursor.eof(); cursor.next()) {
+                    sum += cursor.getRowId() + cursor.getInteger(b) + (long) cursor.getFloat(c);
+                    if (!cursor.isNull(d)) {
+                        sum++;
+                    }
+                }
+                return sum;
+            }
+        });
+    }
+
+    @Test
+    public void scanByNames() throws Exception {
+        measure("scanByNames", new Scan() {
+            public long scan(ISqlJetCursor cursor) throws SqlJetException {
+                long sum = 0;
+                for (; !cursor.eof(); cursor.next()) {
+                    sum += cursor.getRowId() + cursor.getInteger("b") + (long) cursor.getFloat("c");
+                    if (!cursor.isNull("d")) {
+                        sum++;
+                    }
+                }
+                return sum;
+            }
+        });
+    }
+
+}
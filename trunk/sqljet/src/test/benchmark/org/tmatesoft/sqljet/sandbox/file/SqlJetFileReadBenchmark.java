@@ -0,0 +1,136 @@
+/**
+ * SqlJetFileReadBenchmark.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.sandbox.file;
+
+import java.io.File;
+import java.util.EnumSet;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileType;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.fs.SqlJetFileSystem;
+
+/**
+ * Random page reads from one {@link ISqlJetFile} shared by several threads.
+ * Reads don't hold monitor of file so throughput should grow with count of
+ * threads.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SqlJetFileReadBenchmark {
+
+    private static final int PAGE_SIZE = 1024;
+    private static final int PAGES = 4096;
+    private static final int READS = SqlJetUtility.getIntSysProp("SqlJetFileReadBenchmark.Reads", 200000);
+
+    private File path;
+    private ISqlJetFile file;
+
+    @Before
+    public void setUp() throws Exception {
+        path = File.createTempFile("test", "tmp", new File("./"));
+        file = new SqlJetFileSystem().open(path, SqlJetFileType.MAIN_DB, EnumSet.of(
+                SqlJetFileOpenPermission.READWRITE, SqlJetFileOpenPermission.CREATE));
+        final ISqlJetMemoryPointer page = SqlJetUtility.allocatePtr(PAGE_SIZE);
+        final Random random = new Random();
+        final byte[] data = new byte[PAGE_SIZE];
+        for (int i = 0; i < PAGES; i++) {
+            random.nextBytes(data);
+            page.putBytes(0, data);
+            page.putIntUnsigned(0, i);
+            file.write(page, PAGE_SIZE, (long) i * PAGE_SIZE);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } finally {
+            path.delete();
+        }
+    }
+
+    private void print(String s) {
+        System.out.print(s);
+    }
+
+    @Test
+    public void test() throws Exception {
+        print("for " + READS + " reads of " + PAGE_SIZE + " bytes:\n\n");
+        time(1);
+        time(2);
+        time(4);
+        time(8);
+    }
+
+    private void time(final int threads) throws Exception {
+        print("threads(" + threads + ")");
+        final Thread[] workers = new Thread[threads];
+        final Exception[] errors = new Exception[threads];
+        for (int i = 0; i < threads; i++) {
+            final int n = i;
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        read(READS / threads, n);
+                    } catch (Exception e) {
+                        errors[n] = e;
+                    }
+                }
+            };
+        }
+        final long start = System.currentTimeMillis();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        final long end = System.currentTimeMillis();
+        for (Exception e : errors) {
+            if (e != null) {
+                throw e;
+            }
+        }
+        print("  " + (end - start) + " ms\n");
+    }
+
+    private void read(int count, int seed) throws Exception {
+        final Random random = new Random(seed);
+        final ISqlJetMemoryPointer page = SqlJetUtility.allocatePtr(PAGE_SIZE);
+        for (int i = 0; i < count; i++) {
+            final int n = random.nextInt(PAGES);
+            Assert.assertEquals(PAGE_SIZE, file.read(page, PAGE_SIZE, (long) n * PAGE_SIZE));
+            Assert.assertEquals(n, page.getIntUnsigned(0));
+        }
+    }
+
+}
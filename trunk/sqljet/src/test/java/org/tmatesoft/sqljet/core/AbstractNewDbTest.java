@@ -28,6 +28,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
 import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+import org.tmatesoft.sqljet.core.table.ISqlJetTable;
 import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
 import org.tmatesoft.sqljet.core.table.SqlJetDb;
 import org.tmatesoft.sqljet.core.table.SqlJetScope;
@@ -68,6 +69,100 @@ abstract public class AbstractNewDbTest extends AbstractDataCopyTest {
         }
     }
 
+    /**
+     * Creates table <code>t(a integer primary key, b text)</code> and fills it
+     * by {@link #insertRows(SqlJetDb, String, int)}.
+     */
+    protected static void createRowsTable(SqlJetDb db, final String prefix, final int rows) throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b text)");
+                insertRows(db, prefix, rows);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Inserts rows into table <code>t</code>, value of <code>b</code> is
+     * prefix followed by number of row, starting from 0.
+     */
+    protected static void insertRows(SqlJetDb db, final String prefix, final int rows) throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                for (int i = 0; i < rows; i++) {
+                    t.insert(null, prefix + i);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Sets <code>b</code> of each row of table <code>t</code> to prefix
+     * followed by number of row, starting from 0.
+     */
+    protected static void updateRows(SqlJetDb db, final String prefix) throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    long i = 0;
+                    while (!c.eof()) {
+                        c.update(c.getInteger("a"), prefix + i++);
+                        c.next();
+                    }
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Scans table <code>t</code> and checks that rows are numbered from 1 and
+     * <code>b</code> is prefix followed by number of row, starting from 0.
+     * 
+     * @return count of scanned rows.
+     */
+    protected static long checkRows(SqlJetDb db, final String prefix) throws SqlJetException {
+        return (Long) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    long count = 0;
+                    while (!c.eof()) {
+                        Assert.assertEquals(count + 1, c.getInteger("a"));
+                        Assert.assertEquals(prefix + count, c.getString("b"));
+                        count++;
+                        c.next();
+                    }
+                    return count;
+                } finally {
+                    c.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return count of rows of table <code>t</code>.
+     */
+    protected static long countRows(SqlJetDb db) throws SqlJetException {
+        return (Long) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    return c.getRowCount();
+                } finally {
+                    c.close();
+                }
+            }
+        });
+    }
+
     protected void assertScope(SqlJetScope scope, String tableName, String indexName, Object... expectedKeysInScope) throws SqlJetException {
         assertScope(scope, tableName, indexName, false, expectedKeysInScope);
     }
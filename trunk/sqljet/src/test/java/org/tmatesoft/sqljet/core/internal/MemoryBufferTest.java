@@ -201,4 +201,21 @@ public class MemoryBufferTest {
         memoryManager.free(b);
     }
 
+    @Test
+    public void testSlabRecycle() {
+        final ISqlJetMemoryManager memoryManager = new SqlJetMemoryManager();
+        ISqlJetMemoryBuffer b = memoryManager.allocate(1024, SqlJetMemoryBufferType.SLAB);
+        Assert.assertEquals(1, memoryManager.getSlabAllocationCount());
+        b.putInt(0, Integer.MAX_VALUE);
+        Assert.assertEquals(Integer.MAX_VALUE, b.getInt(0));
+        memoryManager.free(b);
+        b = memoryManager.allocate(1024, SqlJetMemoryBufferType.SLAB);
+        Assert.assertEquals(1, memoryManager.getSlabAllocationCount());
+        Assert.assertEquals(0, b.getInt(0));
+        Assert.assertEquals(1024, b.getSize());
+        memoryManager.allocate(1024, SqlJetMemoryBufferType.SLAB);
+        Assert.assertEquals(2, memoryManager.getSlabAllocationCount());
+        memoryManager.free(b);
+    }
+
 }
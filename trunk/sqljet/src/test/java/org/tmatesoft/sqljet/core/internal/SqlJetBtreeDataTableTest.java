@@ -0,0 +1,315 @@
+/**
+ * SqlJetBtreeDataTableTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.internal.btree.SqlJetBtree;
+import org.tmatesoft.sqljet.core.internal.db.SqlJetDbHandle;
+import org.tmatesoft.sqljet.core.internal.schema.SqlJetSchema;
+import org.tmatesoft.sqljet.core.internal.schema.SqlJetTableDef;
+import org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeDataTable;
+import org.tmatesoft.sqljet.core.internal.table.SqlJetBtreeDataTable;
+import org.tmatesoft.sqljet.core.internal.table.SqlJetOptions;
+import org.tmatesoft.sqljet.core.table.ISqlJetTable;
+import org.tmatesoft.sqljet.core.table.ISqlJetTransaction;
+import org.tmatesoft.sqljet.core.table.SqlJetDb;
+
+/**
+ * Indexes of data table are opened on first use, but are maintained and
+ * checked as if all of them were opened.
+ *
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SqlJetBtreeDataTableTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 10;
+
+    private ISqlJetDbHandle dbHandle;
+    private ISqlJetBtree btree;
+    private SqlJetSchema schema;
+
+    /** B-Tree which records root pages of opened cursors */
+    private ISqlJetBtree tracedBtree;
+    private final Set<Integer> opened = new HashSet<Integer>();
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        // defaults of columns are applied by file format 4.
+        db.getOptions().setFileFormat(ISqlJetLimits.SQLJET_MAX_FILE_FORMAT);
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b integer, c text, d text default 'none')");
+                db.createIndex("create index tb on t(b)");
+                db.createIndex("create unique index tc on t(c)");
+                db.createIndex("create index td on t(d)");
+                final ISqlJetTable t = db.getTable("t");
+                for (int i = 1; i <= ROWS; i++) {
+                    t.insert(null, i, "c" + i, "d" + i);
+                }
+                return null;
+            }
+        });
+        // old rows get default value of added column when they are read.
+        db.alterTable("alter table t add column e integer default 7");
+        db.close();
+        db = null;
+
+        dbHandle = new SqlJetDbHandle();
+        dbHandle.getMutex().enter();
+        btree = new SqlJetBtree();
+        btree.open(file, dbHandle, SqlJetUtility.of(SqlJetBtreeFlags.READWRITE), SqlJetFileType.MAIN_DB,
+                SqlJetUtility.of(SqlJetFileOpenPermission.READWRITE));
+        dbHandle.setOptions(new SqlJetOptions(btree, dbHandle));
+        schema = new SqlJetSchema(dbHandle, btree);
+        btree.setSchema(schema);
+
+        tracedBtree = (ISqlJetBtree) Proxy.newProxyInstance(ISqlJetBtree.class.getClassLoader(),
+                new Class<?>[] { ISqlJetBtree.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getCursor".equals(method.getName())) {
+                            opened.add((Integer) args[0]);
+                        }
+                        try {
+                            return method.invoke(btree, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            try {
+                if (null != btree) {
+                    btree.close();
+                }
+            } finally {
+                dbHandle.getMutex().leave();
+            }
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    private ISqlJetBtreeDataTable open(boolean write) throws SqlJetException {
+        opened.clear();
+        return new SqlJetBtreeDataTable(tracedBtree, "t", write);
+    }
+
+    private int page(String name) throws SqlJetException {
+        return name.equals("t") ? ((SqlJetTableDef) schema.getTable(name)).getPage() : schema.getIndex(name)
+                .getPage();
+    }
+
+    private Set<Integer> pages(String... names) throws SqlJetException {
+        final Set<Integer> pages = new HashSet<Integer>();
+        for (String name : names) {
+            pages.add(page(name));
+        }
+        return pages;
+    }
+
+    private void assertIndexed(ISqlJetBtreeDataTable data, boolean indexed, long b, String c, String d)
+            throws SqlJetException {
+        assertEquals(indexed, data.locate("tb", false, b));
+        assertEquals(indexed, data.locate("tc", false, c));
+        assertEquals(indexed, data.locate("td", false, d));
+    }
+
+    private static void assertConstraint(SqlJetException e) {
+        assertEquals(SqlJetErrorCode.CONSTRAINT, e.getErrorCode());
+    }
+
+    @Test
+    public void testScanOpensNoIndex() throws SqlJetException {
+        btree.beginTrans(SqlJetTransactionMode.READ_ONLY);
+        try {
+            final ISqlJetBtreeDataTable data = open(false);
+            try {
+                int rows = 0;
+                for (data.first(); !data.eof(); data.next()) {
+                    rows++;
+                    assertEquals(rows, data.getInteger(1));
+                    assertEquals("c" + rows, data.getString(2));
+                }
+                assertEquals(ROWS, rows);
+                assertEquals(pages("t"), opened);
+            } finally {
+                data.close();
+            }
+        } finally {
+            btree.commit();
+        }
+    }
+
+    @Test
+    public void testLookupOpensOnlyItsIndex() throws SqlJetException {
+        btree.beginTrans(SqlJetTransactionMode.READ_ONLY);
+        try {
+            final ISqlJetBtreeDataTable data = open(false);
+            try {
+                assertTrue(data.locate("tc", false, "c5"));
+                assertEquals(5, data.getRowId());
+                assertEquals("d5", data.getString(3));
+                assertEquals(pages("t", "tc"), opened);
+            } finally {
+                data.close();
+            }
+        } finally {
+            btree.commit();
+        }
+    }
+
+    @Test
+    public void testInsertMaintainsIndexes() throws SqlJetException {
+        btree.beginTrans(SqlJetTransactionMode.WRITE);
+        try {
+            ISqlJetBtreeDataTable data = open(true);
+            try {
+                // unique index isn't opened yet, but it is checked.
+                data.insert(null, null, 100L, "c3", "x");
+                fail("Unique constraint of not opened index is not checked");
+            } catch (SqlJetException e) {
+                assertConstraint(e);
+            } finally {
+                data.close();
+            }
+
+            data = open(true);
+            try {
+                final long rowId = data.insert(null, null, 100L, "c100", "x");
+                assertEquals(pages("t", "tb", "tc", "td"), opened);
+                assertIndexed(data, true, 100L, "c100", "x");
+                assertTrue(data.goToRow(rowId));
+                assertEquals(7, data.getInteger(4));
+            } finally {
+                data.close();
+            }
+        } finally {
+            btree.commit();
+        }
+    }
+
+    @Test
+    public void testUpdateMaintainsIndexes() throws SqlJetException {
+        btree.beginTrans(SqlJetTransactionMode.WRITE);
+        try {
+            ISqlJetBtreeDataTable data = open(true);
+            try {
+                data.update(null, 4, 4L, 4L, "c5", "d4");
+                fail("Unique constraint of not opened index is not checked");
+            } catch (SqlJetException e) {
+                assertConstraint(e);
+            } finally {
+                data.close();
+            }
+
+            data = open(true);
+            try {
+                data.update(null, 4, 4L, 40L, "c40", "d40");
+                assertIndexed(data, false, 4L, "c4", "d4");
+                assertIndexed(data, true, 40L, "c40", "d40");
+                assertEquals(4, data.getRowId());
+            } finally {
+                data.close();
+            }
+        } finally {
+            btree.commit();
+        }
+    }
+
+    @Test
+    public void testDeleteMaintainsIndexes() throws SqlJetException {
+        btree.beginTrans(SqlJetTransactionMode.WRITE);
+        try {
+            ISqlJetBtreeDataTable data = open(true);
+            try {
+                data.delete(6);
+            } finally {
+                data.close();
+            }
+
+            data = open(false);
+            try {
+                assertIndexed(data, false, 6L, "c6", "d6");
+                assertIndexed(data, true, 7L, "c7", "d7");
+                assertFalse(data.goToRow(6));
+            } finally {
+                data.close();
+            }
+        } finally {
+            btree.commit();
+        }
+    }
+
+    @Test
+    public void testDefaults() throws SqlJetException {
+        btree.beginTrans(SqlJetTransactionMode.WRITE);
+        try {
+            ISqlJetBtreeDataTable data = open(true);
+            try {
+                // default of added column is read from lazily built record.
+                assertTrue(data.goToRow(1));
+                assertEquals(7, data.getInteger(4));
+                assertFalse(data.isNull(4));
+            } finally {
+                data.close();
+            }
+
+            data = open(true);
+            try {
+                // omitted fields are read as their defaults.
+                final long rowId = data.insert(null, null, 200L, "c200");
+                assertTrue(data.goToRow(rowId));
+                assertEquals("none", data.getString(3));
+                assertEquals(7, data.getInteger(4));
+                assertEquals("c200", data.getString(2));
+            } finally {
+                data.close();
+            }
+        } finally {
+            btree.commit();
+        }
+    }
+
+}
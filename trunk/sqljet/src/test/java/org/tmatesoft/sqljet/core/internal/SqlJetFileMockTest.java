@@ -115,6 +115,54 @@ public class SqlJetFileMockTest extends SqlJetAbstractFileSystemMockTest {
                 .getBuffer().asArray());
     }
 
+    @Test
+    public void testGatheringWrite() throws Exception {
+        final ISqlJetMemoryPointer wb1 = SqlJetUtility.wrapPtr(new byte[] { 1, 2, 3 });
+        final ISqlJetMemoryPointer wb2 = SqlJetUtility.allocatePtr(4, SqlJetMemoryBufferType.DIRECT);
+        wb2.putIntUnsigned(0, 0x04050607L);
+        final ISqlJetMemoryPointer wb3 = SqlJetUtility.wrapPtr(new byte[] { 8, 9 });
+        file.write(new ISqlJetMemoryPointer[] { wb1, wb2, wb3 }, new int[] { 3, 4, 1 }, 2);
+        Assert.assertEquals(10, file.fileSize());
+        final ISqlJetMemoryPointer rb = SqlJetUtility.allocatePtr(10);
+        file.read(rb, 10, 0);
+        Assert.assertArrayEquals(new byte[] { 0, 0, 1, 2, 3, 4, 5, 6, 7, 8 }, rb.getBuffer().asArray());
+    }
+
+    @Test
+    public void testChunkSize() throws Exception {
+        file.setChunkSize(1024);
+        final ISqlJetMemoryPointer wb = SqlJetUtility.wrapPtr(new byte[] { 1 });
+        // without exclusive lock file grows by writes.
+        file.write(wb, 1, 0);
+        Assert.assertEquals(1, path.length());
+        Assert.assertTrue(file.lock(SqlJetLockType.SHARED));
+        Assert.assertTrue(file.lock(SqlJetLockType.RESERVED));
+        Assert.assertTrue(file.lock(SqlJetLockType.EXCLUSIVE));
+        file.write(wb, 1, 1);
+        Assert.assertEquals(2, file.fileSize());
+        Assert.assertEquals(1024, path.length());
+        file.write(wb, 1, 2000);
+        Assert.assertEquals(2001, file.fileSize());
+        Assert.assertEquals(2048, path.length());
+        final ISqlJetMemoryPointer rb = SqlJetUtility.allocatePtr(100);
+        Assert.assertEquals(1, file.read(rb, 100, 2000));
+        Assert.assertEquals(0, file.read(rb, 100, 2001));
+        // chunk isn't trimmed by sync.
+        file.sync(null);
+        Assert.assertEquals(2048, path.length());
+        file.write(wb, 1, 3000);
+        Assert.assertEquals(3072, path.length());
+        Assert.assertTrue(file.unlock(SqlJetLockType.SHARED));
+        Assert.assertEquals(3001, path.length());
+        Assert.assertEquals(3001, file.fileSize());
+        Assert.assertTrue(file.lock(SqlJetLockType.RESERVED));
+        Assert.assertTrue(file.lock(SqlJetLockType.EXCLUSIVE));
+        file.write(wb, 1, 4000);
+        Assert.assertEquals(4096, path.length());
+        file.close();
+        Assert.assertEquals(4001, path.length());
+    }
+
     @Test
     public void testSize() throws Exception {
         final long fileSize = file.fileSize();
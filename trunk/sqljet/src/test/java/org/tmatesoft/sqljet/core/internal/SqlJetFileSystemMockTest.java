@@ -316,4 +316,57 @@ public class SqlJetFileSystemMockTest extends SqlJetAbstractFileSystemMockTest {
         Assert.assertTrue("Current time should return some no empty value", .0!=t );
     }
     
+    // memJournalOpen()
+
+    private static ISqlJetMemoryPointer block(int size, int seed) {
+        final ISqlJetMemoryPointer b = SqlJetUtility.allocatePtr(size);
+        for (int i = 0; i < size; i++) {
+            b.putByteUnsigned(i, (i + seed) % 251);
+        }
+        return b;
+    }
+
+    private static void checkBlock(ISqlJetFile journal, int size, int seed, long offset) throws Exception {
+        final ISqlJetMemoryPointer r = SqlJetUtility.allocatePtr(size);
+        Assert.assertEquals(size, journal.read(r, size, offset));
+        Assert.assertArrayEquals(block(size, seed).getBuffer().asArray(), r.getBuffer().asArray());
+    }
+
+    private void checkMemJournal(int spillSize) throws Exception {
+        final ISqlJetFile journal = fileSystem.memJournalOpen(SqlJetFileType.SUBJOURNAL, spillSize);
+        try {
+            Assert.assertTrue(journal.isMemJournal());
+            for (int i = 0; i < 3; i++) {
+                journal.write(block(1000, i), 1000, i * 1000);
+            }
+            Assert.assertEquals(3000, journal.fileSize());
+            for (int i = 0; i < 3; i++) {
+                checkBlock(journal, 1000, i, i * 1000);
+            }
+            journal.truncate(1500);
+            Assert.assertEquals(1500, journal.fileSize());
+            journal.write(block(700, 7), 700, 1500);
+            checkBlock(journal, 1000, 0, 0);
+            checkBlock(journal, 700, 7, 1500);
+            journal.truncate(0);
+            Assert.assertEquals(0, journal.fileSize());
+            journal.write(block(500, 5), 500, 0);
+            Assert.assertEquals(500, journal.fileSize());
+            checkBlock(journal, 500, 5, 0);
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testMemJournal() throws Exception {
+        checkMemJournal(-1);
+    }
+
+    @Test
+    public void testMemJournalSpill() throws Exception {
+        checkMemJournal(1500);
+        checkMemJournal(0);
+    }
+
 }
@@ -0,0 +1,283 @@
+/**
+ * BlobIOTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class BlobIOTest extends AbstractNewDbTest {
+
+    private static final int SIZE = 3 * 1024 * 1024 + 17;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b text, d blob, e text)");
+                db.createIndex("create index tb on t(b)");
+                final ISqlJetTable t = db.getTable("t");
+                t.insert(1, "doc", new SqlJetZeroBlob(SIZE), null);
+                t.insert(2, "small", new byte[] { 1, 2, 3 }, null);
+                t.insert(3, "middle", new SqlJetZeroBlob(10), "tail");
+                return null;
+            }
+        });
+    }
+
+    private static byte content(int i) {
+        return (byte) (i * 31 + i / 4096);
+    }
+
+    private void writeDoc() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetBlob blob = db.getTable("t").openBlob("d", 1, true);
+                try {
+                    assertEquals(SIZE, blob.getSize());
+                    final OutputStream out = blob.getOutputStream();
+                    final byte[] chunk = new byte[10000];
+                    for (int i = 0; i < SIZE; i += chunk.length) {
+                        final int n = Math.min(chunk.length, SIZE - i);
+                        for (int j = 0; j < n; j++) {
+                            chunk[j] = content(i + j);
+                        }
+                        out.write(chunk, 0, n);
+                    }
+                } catch (java.io.IOException e) {
+                    throw new SqlJetException(e);
+                } finally {
+                    blob.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    private static void assertError(SqlJetErrorCode errorCode, SqlJetException e) {
+        assertEquals(errorCode, e.getErrorCode());
+    }
+
+    @Test
+    public void testZeroBlob() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    assertEquals(SIZE, c.getBlobAsArray("d").length);
+                    c.next();
+                    c.next();
+                    assertTrue(Arrays.equals(new byte[10], c.getBlobAsArray("d")));
+                    assertEquals("tail", c.getValue(3));
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        writeDoc();
+        db.close();
+        db = SqlJetDb.open(file, true);
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetBlob blob = db.getTable("t").openBlob("d", 1, false);
+                try {
+                    final byte[] buffer = new byte[5000];
+                    // random access back and forth through overflow chain.
+                    for (int offset : new int[] { SIZE - 5000, 0, 1234567, 4093, SIZE / 2, 17 }) {
+                        blob.read(offset, buffer, 0, buffer.length);
+                        for (int j = 0; j < buffer.length; j++) {
+                            assertEquals(content(offset + j), buffer[j]);
+                        }
+                    }
+                    final InputStream in = blob.getInputStream();
+                    int i = 0;
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        for (int j = 0; j < n; j++) {
+                            assertEquals(content(i + j), buffer[j]);
+                        }
+                        i += n;
+                    }
+                    assertEquals(SIZE, i);
+                } catch (java.io.IOException e) {
+                    throw new SqlJetException(e);
+                } finally {
+                    blob.close();
+                }
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    final byte[] d = c.getBlobAsArray("d");
+                    for (int j = 0; j < SIZE; j += 997) {
+                        assertEquals(content(j), d[j]);
+                    }
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testReopen() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetBlob blob = db.getTable("t").openBlob("b", 1, false);
+                try {
+                    final byte[] buffer = new byte[5];
+                    blob.reopen(2);
+                    assertEquals(5, blob.getSize());
+                    blob.read(0, buffer, 0, 5);
+                    assertEquals("small", new String(buffer));
+                    blob.reopen(3);
+                    blob.read(1, buffer, 0, 5);
+                    assertEquals("iddle", new String(buffer));
+                } finally {
+                    blob.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testExpiresOnUpdate() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetBlob blob = db.getTable("t").openBlob("d", 2, true);
+                final ISqlJetBlob other = db.getTable("t").openBlob("d", 1, false);
+                try {
+                    final byte[] buffer = new byte[3];
+                    blob.read(0, buffer, 0, 3);
+                    final ISqlJetCursor c = db.getTable("t").open();
+                    try {
+                        c.next();
+                        c.update(2, "small", new byte[] { 4, 5, 6 }, null);
+                    } finally {
+                        c.close();
+                    }
+                    try {
+                        blob.read(0, buffer, 0, 3);
+                        fail();
+                    } catch (SqlJetException e) {
+                        assertError(SqlJetErrorCode.ABORT, e);
+                    }
+                    other.read(0, buffer, 0, 3);
+                    final ISqlJetCursor d = db.getTable("t").open();
+                    try {
+                        d.delete();
+                    } finally {
+                        d.close();
+                    }
+                    try {
+                        other.read(0, buffer, 0, 3);
+                        fail();
+                    } catch (SqlJetException e) {
+                        assertError(SqlJetErrorCode.ABORT, e);
+                    }
+                } finally {
+                    blob.close();
+                    other.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testErrors() throws SqlJetException {
+        try {
+            db.getTable("t").openBlob("d", 1, false);
+            fail();
+        } catch (SqlJetException e) {
+            assertError(SqlJetErrorCode.MISUSE, e);
+        }
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                try {
+                    t.openBlob("d", 4, false);
+                    fail();
+                } catch (SqlJetException e) {
+                    assertError(SqlJetErrorCode.ERROR, e);
+                }
+                try {
+                    t.openBlob("a", 1, false);
+                    fail();
+                } catch (SqlJetException e) {
+                    assertError(SqlJetErrorCode.ERROR, e);
+                }
+                try {
+                    t.openBlob("d", 1, true);
+                    fail();
+                } catch (SqlJetException e) {
+                    assertError(SqlJetErrorCode.MISUSE, e);
+                }
+                final ISqlJetBlob blob = t.openBlob("d", 2, false);
+                try {
+                    blob.read(1, new byte[3], 0, 3);
+                    fail();
+                } catch (SqlJetException e) {
+                    assertError(SqlJetErrorCode.ERROR, e);
+                }
+                try {
+                    blob.write(0, new byte[3], 0, 3);
+                    fail();
+                } catch (SqlJetException e) {
+                    assertError(SqlJetErrorCode.READONLY, e);
+                } finally {
+                    blob.close();
+                }
+                return null;
+            }
+        });
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                try {
+                    db.getTable("t").openBlob("b", 1, true);
+                    fail();
+                } catch (SqlJetException e) {
+                    assertError(SqlJetErrorCode.ERROR, e);
+                }
+                return null;
+            }
+        });
+    }
+
+}
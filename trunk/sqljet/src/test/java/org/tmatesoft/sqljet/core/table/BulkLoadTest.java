@@ -0,0 +1,242 @@
+/**
+ * BulkLoadTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class BulkLoadTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 10000;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b text, c integer, d blob)");
+                db.createIndex("create index tb on t(b)");
+                db.createIndex("create index tc on t(c)");
+                return null;
+            }
+        });
+    }
+
+    private static String text(long i) {
+        return String.format("row %08d", i);
+    }
+
+    private static byte[] blob(long i) {
+        // every hundredth row spills into overflow pages.
+        final byte[] blob = new byte[i % 100 == 0 ? 5000 : 10];
+        Arrays.fill(blob, (byte) i);
+        return blob;
+    }
+
+    private void load(final long from, final long to, final long step) throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetBulkLoader loader = db.getTable("t").openBulkLoader();
+                try {
+                    for (long i = from; i != to; i += step) {
+                        assertEquals(i, loader.insert(i, text(i), ROWS - i, blob(i)));
+                    }
+                } finally {
+                    loader.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    private void check(final long count) throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                checkOrder(t.open(), "a", count);
+                checkOrder(t.order("tb"), "a", count);
+                checkOrder(t.order("tc"), "c", count);
+                for (long i = 1; i <= count; i += 997) {
+                    checkLookup(t.lookup("tb", text(i)), i);
+                    checkLookup(t.lookup("tc", ROWS - i), i);
+                }
+                return null;
+            }
+        });
+    }
+
+    private static void checkOrder(ISqlJetCursor c, String field, long count) throws SqlJetException {
+        try {
+            long n = 0;
+            long prev = Long.MIN_VALUE;
+            while (!c.eof()) {
+                final long a = c.getInteger("a");
+                assertTrue(c.getInteger(field) > prev);
+                prev = c.getInteger(field);
+                assertEquals(text(a), c.getString("b"));
+                assertTrue(Arrays.equals(blob(a), c.getBlobAsArray("d")));
+                n++;
+                c.next();
+            }
+            assertEquals(count, n);
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void checkLookup(ISqlJetCursor c, long rowId) throws SqlJetException {
+        try {
+            assertFalse(c.eof());
+            assertEquals(rowId, c.getRowId());
+            c.next();
+            assertTrue(c.eof());
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        load(1, ROWS + 1, 1);
+        check(ROWS);
+        db.close();
+        db = SqlJetDb.open(file, true);
+        check(ROWS);
+    }
+
+    @Test
+    public void testInsertAfterLoad() throws SqlJetException {
+        load(1, ROWS / 2 + 1, 1);
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                for (long i = ROWS / 2 + 1; i <= ROWS; i++) {
+                    t.insert(i, text(i), ROWS - i, blob(i));
+                }
+                return null;
+            }
+        });
+        check(ROWS);
+    }
+
+    @Test
+    public void testOutOfOrder() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetBulkLoader loader = db.getTable("t").openBulkLoader();
+                try {
+                    for (long i = 1; i <= ROWS; i++) {
+                        // second half of rows comes before first one.
+                        final long a = i <= ROWS / 2 ? i + ROWS / 2 : i - ROWS / 2;
+                        loader.insert(a, text(a), ROWS - a, blob(a));
+                    }
+                } finally {
+                    loader.close();
+                }
+                return null;
+            }
+        });
+        check(ROWS);
+    }
+
+    @Test
+    public void testNotEmpty() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return db.getTable("t").insert(1, text(1), ROWS - 1, blob(1));
+            }
+        });
+        load(2, ROWS + 1, 1);
+        check(ROWS);
+    }
+
+    @Test
+    public void testUnique() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createIndex("create unique index tu on t(c)");
+                return null;
+            }
+        });
+        db.beginTransaction(SqlJetTransactionMode.WRITE);
+        try {
+            final ISqlJetBulkLoader loader = db.getTable("t").openBulkLoader();
+            try {
+                loader.insert(1, text(1), 1, blob(1));
+                loader.insert(2, text(2), 2, blob(2));
+                try {
+                    loader.insert(3, text(3), 2, blob(3));
+                    fail();
+                } catch (SqlJetException e) {
+                    assertEquals(SqlJetErrorCode.CONSTRAINT, e.getErrorCode());
+                }
+                loader.insertOr(null, 4, text(4), 4, blob(4));
+            } finally {
+                loader.close();
+            }
+            db.commit();
+        } finally {
+            if (db.isInTransaction()) {
+                db.rollback();
+            }
+        }
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").order("tu");
+                try {
+                    for (long c1 : new long[] { 1, 2, 4 }) {
+                        assertFalse(c.eof());
+                        assertEquals(c1, c.getInteger("c"));
+                        c.next();
+                    }
+                    assertTrue(c.eof());
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testRequiresWriteTransaction() throws SqlJetException {
+        try {
+            db.getTable("t").openBulkLoader();
+            fail();
+        } catch (SqlJetException e) {
+            assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * ChunkSizeTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.internal.ISqlJetLimits;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class ChunkSizeTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 5000;
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int CACHE_SIZE = 20;
+    private static final String TEXT = "row with some text ";
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        createRowsTable(db, TEXT, 0);
+        db.setChunkSize(CHUNK_SIZE);
+        db.setCacheSize(CACHE_SIZE);
+    }
+
+    @Test
+    public void testCommit() throws SqlJetException {
+        assertEquals(CHUNK_SIZE, db.getChunkSize());
+        db.beginTransaction(SqlJetTransactionMode.WRITE);
+        boolean committed = false;
+        try {
+            insertRows(db, TEXT, ROWS);
+            // pages spilled from small cache were written into chunk.
+            assertEquals(0, file.length() % CHUNK_SIZE);
+            assertTrue(file.length() > 0);
+            db.commit();
+            committed = true;
+        } finally {
+            if (!committed) {
+                db.rollback();
+            }
+        }
+        assertTrue(file.length() < CHUNK_SIZE);
+        assertEquals(0, file.length() % ISqlJetLimits.SQLJET_DEFAULT_PAGE_SIZE);
+        assertEquals(ROWS, checkRows(db, TEXT));
+        db.close();
+        db = SqlJetDb.open(file, true);
+        assertEquals(ROWS, checkRows(db, TEXT));
+    }
+
+    @Test
+    public void testRollback() throws SqlJetException {
+        final long length = file.length();
+        db.beginTransaction(SqlJetTransactionMode.WRITE);
+        try {
+            insertRows(db, TEXT, ROWS);
+            assertEquals(0, file.length() % CHUNK_SIZE);
+        } finally {
+            db.rollback();
+        }
+        assertEquals(length, file.length());
+        assertEquals(0, checkRows(db, TEXT));
+    }
+
+    @Test
+    public void testDisabled() throws SqlJetException {
+        db.setChunkSize(0);
+        insertRows(db, TEXT, ROWS);
+        assertEquals(ROWS, checkRows(db, TEXT));
+    }
+
+}
@@ -0,0 +1,267 @@
+/**
+ * CountTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class CountTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 10000;
+    private static final String PAD = "0123456789012345678901234567890123456789";
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b integer, c text)");
+                db.createIndex("create index tb on t(b)");
+                db.createIndex("create index tc on t(c)");
+                final ISqlJetTable t = db.getTable("t");
+                for (int i = 1; i <= ROWS; i++) {
+                    t.insert(null, i % 97, text(i * 7 % ROWS));
+                }
+                return null;
+            }
+        });
+    }
+
+    private static String text(int i) {
+        return (i % 10) + PAD + i;
+    }
+
+    private static long iterate(ISqlJetCursor c) throws SqlJetException {
+        long n = 0;
+        for (; !c.eof(); c.next()) {
+            n++;
+        }
+        return n;
+    }
+
+    private static void assertCount(ISqlJetTable t, String index, Object[] first, boolean firstIncluded,
+            Object[] last, boolean lastIncluded) throws SqlJetException {
+        final SqlJetScope scope = new SqlJetScope(first, firstIncluded, last, lastIncluded);
+        final ISqlJetCursor iterated = t.scope(index, scope);
+        final ISqlJetCursor counted = t.scope(index, scope);
+        try {
+            assertEquals(iterate(iterated), counted.getRowCount());
+        } finally {
+            iterated.close();
+            counted.close();
+        }
+    }
+
+    private static Object[] key(Object value) {
+        return value == null ? null : new Object[] { value };
+    }
+
+    @Test
+    public void testTable() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                final ISqlJetCursor c = t.open();
+                try {
+                    c.goTo(1234);
+                    assertEquals(ROWS, c.getRowCount());
+                    assertEquals(1234, c.getRowId());
+                } finally {
+                    c.close();
+                }
+                for (String index : new String[] { "tb", "tc" }) {
+                    final ISqlJetCursor o = t.order(index);
+                    try {
+                        assertEquals(ROWS, o.getRowCount());
+                    } finally {
+                        o.close();
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testIndexScopes() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                final Object[] numbers = { null, -1L, 0L, 5L, 50L, 96L, 200L };
+                final Object[] texts = { null, "", "1", text(4321), "5", text(9999), "9z" };
+                for (int i = 0; i < numbers.length; i++) {
+                    for (int j = 0; j < numbers.length; j++) {
+                        for (int f = 0; f < 4; f++) {
+                            assertCount(t, "tb", key(numbers[i]), (f & 1) == 0, key(numbers[j]), (f & 2) == 0);
+                            assertCount(t, "tc", key(texts[i]), (f & 1) == 0, key(texts[j]), (f & 2) == 0);
+                        }
+                    }
+                }
+                final ISqlJetCursor l = t.lookup("tb", 13L);
+                try {
+                    assertEquals(iterate(t.lookup("tb", 13L)), l.getRowCount());
+                } finally {
+                    l.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testLimit() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                final ISqlJetCursor[] cursors = { t.open(), t.order("tc"),
+                        t.scope("tb", new Object[] { 5L }, new Object[] { 50L }), t.scope(null, key(100L), key(5000L)) };
+                for (final ISqlJetCursor c : cursors) {
+                    try {
+                        final long count = c.getRowCount();
+                        c.setLimit(count / 2);
+                        assertEquals(count / 2, c.getRowCount());
+                        c.setLimit(count + 10);
+                        assertEquals(count, c.getRowCount());
+                        c.setLimit(0);
+                        assertEquals(count, c.getRowCount());
+                    } finally {
+                        c.close();
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testRowIdScopes() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                final Object[] rowIds = { null, 1L, 2L, 500L, 9999L, 10000L, 20000L };
+                for (int i = 0; i < rowIds.length; i++) {
+                    for (int j = 0; j < rowIds.length; j++) {
+                        if (i > 0 && j > 0 && j < i) {
+                            // reversed scope is counted as direct one.
+                            continue;
+                        }
+                        assertCount(t, null, key(rowIds[i]), true, key(rowIds[j]), true);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testAfterChanges() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                final ISqlJetCursor c = t.scope("tb", key(10L), key(20L));
+                try {
+                    final long before = c.getRowCount();
+                    c.delete();
+                    assertEquals(before - 1, c.getRowCount());
+                } finally {
+                    c.close();
+                }
+                t.insert(null, 15L, "x");
+                assertCount(t, "tb", key(10L), true, key(20L), true);
+                final ISqlJetCursor o = t.open();
+                try {
+                    assertEquals(ROWS, o.getRowCount());
+                } finally {
+                    o.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    private static void assertPositions(ISqlJetCursor c) throws SqlJetException {
+        final List<Long> rowIds = new ArrayList<Long>();
+        for (c.first(); !c.eof(); c.next()) {
+            rowIds.add(c.getRowId());
+            if (rowIds.size() % 37 == 1) {
+                assertEquals(rowIds.size(), c.getRowIndex());
+            }
+        }
+        final int count = rowIds.size();
+        for (int i = count; i > 0; i -= 1 + i / 7) {
+            assertTrue(c.goToRow(i));
+            assertEquals(rowIds.get(i - 1).longValue(), c.getRowId());
+            assertEquals(i, c.getRowIndex());
+            if (i < count) {
+                c.next();
+                assertEquals(rowIds.get(i).longValue(), c.getRowId());
+                assertEquals(i + 1, c.getRowIndex());
+            }
+        }
+        assertFalse(c.goToRow(count + 1));
+        assertFalse(c.goToRow(0));
+    }
+
+    @Test
+    public void testRowPositions() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                for (int pass = 0; pass < 2; pass++) {
+                    for (ISqlJetCursor c : new ISqlJetCursor[] { t.open(), t.order("tc"), t.order("tb"),
+                            t.scope("tb", key(10L), key(20L)), t.scope("tc", key("3"), key(text(7777))),
+                            t.scope(null, key(100L), key(5000L)) }) {
+                        try {
+                            assertPositions(c);
+                        } finally {
+                            c.close();
+                        }
+                    }
+                    // positions are counted again after changes.
+                    for (int i = 0; i < 300; i++) {
+                        t.insert(null, 15L, text(i));
+                    }
+                    final ISqlJetCursor d = t.scope(null, key(200L), key(400L));
+                    try {
+                        while (!d.eof()) {
+                            d.delete();
+                        }
+                    } finally {
+                        d.close();
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,328 @@
+/**
+ * GroupCommitTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.fs.SqlJetFileSystem;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class GroupCommitTest extends AbstractNewDbTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSACTIONS = 50;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        createRowsTable(db, "row", 0);
+        db.setGroupCommit(true);
+    }
+
+    private static ISqlJetTransaction insert(final String value) {
+        return new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                return db.getTable("t").insert(null, value);
+            }
+        };
+    }
+
+    private static Thread start(final SqlJetDb db, final ISqlJetTransaction op, final Object[] results, final int n) {
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    results[n] = db.runWriteTransaction(op);
+                } catch (Throwable e) {
+                    results[n] = e;
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private static void waitBlocked(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.BLOCKED) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        final long commits = db.getCommitCount();
+        final Throwable[] errors = new Throwable[THREADS];
+        final Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int n = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < TRANSACTIONS; j++) {
+                            db.runWriteTransaction(insert(n + ":" + j));
+                        }
+                    } catch (Throwable e) {
+                        errors[n] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Throwable e : errors) {
+            assertNull(e);
+        }
+        assertEquals(THREADS * TRANSACTIONS, countRows(db));
+        final long groupCommits = db.getCommitCount() - commits;
+        assertTrue(groupCommits > 0);
+        // some transactions were queued while others were committed.
+        assertTrue(groupCommits < THREADS * TRANSACTIONS);
+    }
+
+    @Test
+    public void testFailureIsIsolated() throws Exception {
+        final long commits = db.getCommitCount();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object[] results = new Object[4];
+
+        // first transaction holds database while others are queued.
+        final Thread first = start(db, new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SqlJetException(e);
+                }
+                return db.getTable("t").insert(null, "first");
+            }
+        }, results, 0);
+        started.await();
+
+        final Thread second = start(db, insert("second"), results, 1);
+        waitBlocked(second);
+        final Thread failed = start(db, new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.getTable("t").insert(null, "failed");
+                throw new SqlJetException(SqlJetErrorCode.CONSTRAINT);
+            }
+        }, results, 2);
+        waitBlocked(failed);
+        final Thread third = start(db, insert("third"), results, 3);
+        waitBlocked(third);
+
+        release.countDown();
+        first.join();
+        second.join();
+        failed.join();
+        third.join();
+
+        assertEquals(1L, results[0]);
+        assertTrue(results[2] instanceof SqlJetException);
+        assertEquals(SqlJetErrorCode.CONSTRAINT, ((SqlJetException) results[2]).getErrorCode());
+        assertNotNull(results[1]);
+        assertNotNull(results[3]);
+        assertFalse(results[1] instanceof Throwable);
+        assertFalse(results[3] instanceof Throwable);
+        assertEquals(3, countRows(db));
+        // second, failed and third were committed together.
+        assertEquals(2, db.getCommitCount() - commits);
+
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    while (!c.eof()) {
+                        assertFalse("failed".equals(c.getString("b")));
+                        c.next();
+                    }
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testCountAfterRolledBackStatement() throws Exception {
+        insertRows(db, "row", 5000);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object[] results = new Object[3];
+
+        final Thread first = start(db, new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SqlJetException(e);
+                }
+                return null;
+            }
+        }, results, 0);
+        started.await();
+
+        // counts of subtrees are cached by failed statement.
+        final Thread failed = start(db, new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                for (int i = 0; i < 3000; i++) {
+                    t.insert(null, "failed" + i);
+                }
+                final ISqlJetCursor c = t.open();
+                try {
+                    assertEquals(8000, c.getRowCount());
+                    assertTrue(c.goToRow(7000));
+                } finally {
+                    c.close();
+                }
+                throw new SqlJetException(SqlJetErrorCode.CONSTRAINT);
+            }
+        }, results, 1);
+        waitBlocked(failed);
+        final Thread counted = start(db, new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    assertFalse(c.goToRow(7000));
+                    assertTrue(c.goToRow(5000));
+                    assertEquals(5000, c.getRowIndex());
+                    return c.getRowCount();
+                } finally {
+                    c.close();
+                }
+            }
+        }, results, 2);
+        waitBlocked(counted);
+
+        release.countDown();
+        first.join();
+        failed.join();
+        counted.join();
+
+        assertTrue(results[1] instanceof SqlJetException);
+        assertEquals(5000L, results[2]);
+        assertEquals(5000, countRows(db));
+    }
+
+    @Test
+    public void testCommitFailureIsSeenByAll() throws Exception {
+        // journal can't be deleted at commit once it is armed.
+        final boolean[] armed = new boolean[1];
+        final SqlJetFileSystem fileSystem = new SqlJetFileSystem() {
+            @Override
+            public boolean delete(File path, boolean sync) {
+                if (armed[0] && path.getName().endsWith("-journal")) {
+                    armed[0] = false;
+                    throw new IllegalStateException("journal");
+                }
+                return super.delete(path, sync);
+            }
+        };
+        db.close();
+        db = SqlJetDb.open(file, true, fileSystem);
+        db.setGroupCommit(true);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object[] results = new Object[3];
+
+        final Thread first = start(db, new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SqlJetException(e);
+                }
+                return db.getTable("t").insert(null, "first");
+            }
+        }, results, 0);
+        started.await();
+
+        final Thread leader = start(db, new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                armed[0] = true;
+                return db.getTable("t").insert(null, "leader");
+            }
+        }, results, 1);
+        waitBlocked(leader);
+        final Thread follower = start(db, insert("follower"), results, 2);
+        waitBlocked(follower);
+
+        release.countDown();
+        first.join();
+        leader.join();
+        follower.join();
+
+        assertEquals(1L, results[0]);
+        assertTrue(results[1] instanceof IllegalStateException);
+        assertTrue(results[2] instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testSingleFailure() throws SqlJetException {
+        try {
+            db.runWriteTransaction(new ISqlJetTransaction() {
+                public Object run(SqlJetDb db) throws SqlJetException {
+                    db.getTable("t").insert(null, "failed");
+                    throw new SqlJetException(SqlJetErrorCode.CONSTRAINT);
+                }
+            });
+        } catch (SqlJetException e) {
+            assertEquals(SqlJetErrorCode.CONSTRAINT, e.getErrorCode());
+        }
+        assertEquals(0, countRows(db));
+        db.runWriteTransaction(insert("ok"));
+        assertEquals(1, countRows(db));
+    }
+
+    @Test
+    public void testNestedTransaction() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.getTable("t").insert(null, "outer");
+                return db.runWriteTransaction(insert("inner"));
+            }
+        });
+        assertEquals(2, countRows(db));
+    }
+
+}
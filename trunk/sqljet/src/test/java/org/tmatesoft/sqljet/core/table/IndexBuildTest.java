@@ -0,0 +1,238 @@
+/**
+ * IndexBuildTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetKeyInfo;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetSorter;
+import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetUnpackedRecord;
+import org.tmatesoft.sqljet.core.schema.ISqlJetIndexDef;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class IndexBuildTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 20000;
+
+    @Before
+    public void setUp() throws Exception {
+        // small sorter memory makes index builds spill and merge many runs.
+        System.setProperty(SqlJetSorter.SQLJET_SORTER_MEMORY, "16384");
+        super.setUp();
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b text, c integer)");
+                final ISqlJetTable t = db.getTable("t");
+                for (long i = 1; i <= ROWS; i++) {
+                    t.insert(i, text(scramble(i)), scramble(i) % 100);
+                }
+                return null;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(SqlJetSorter.SQLJET_SORTER_MEMORY);
+        super.tearDown();
+    }
+
+    private static long scramble(long i) {
+        return (i * 7919) % ROWS;
+    }
+
+    private static String text(long i) {
+        return String.format("row %08d", i);
+    }
+
+    private void createIndex(final String sql) throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createIndex(sql);
+                return null;
+            }
+        });
+    }
+
+    private void checkIndex(final String index, final String field, final boolean desc) throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").order(index);
+                try {
+                    long n = 0;
+                    Object prev = null;
+                    long prevRowId = 0;
+                    while (!c.eof()) {
+                        final Object value = c.getValue(field);
+                        if (prev != null) {
+                            @SuppressWarnings("unchecked")
+                            final int cmp = ((Comparable<Object>) value).compareTo(prev);
+                            assertTrue(desc ? cmp <= 0 : cmp >= 0);
+                            if (cmp == 0 && !desc) {
+                                // entries with equal keys are ordered by rowid.
+                                assertTrue(c.getRowId() > prevRowId);
+                            }
+                        }
+                        prev = value;
+                        prevRowId = c.getRowId();
+                        assertEquals(text(scramble(c.getRowId())), c.getString("b"));
+                        n++;
+                        c.next();
+                    }
+                    assertEquals(ROWS, n);
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testCreateIndex() throws SqlJetException {
+        createIndex("create index tb on t(b)");
+        checkIndex("tb", "b", false);
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                for (long i = 1; i <= ROWS; i += 997) {
+                    final ISqlJetCursor c = db.getTable("t").lookup("tb", text(scramble(i)));
+                    try {
+                        assertFalse(c.eof());
+                        assertEquals(i, c.getRowId());
+                        c.next();
+                        assertTrue(c.eof());
+                    } finally {
+                        c.close();
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testCreateIndexDuplicates() throws SqlJetException {
+        createIndex("create index tc on t(c)");
+        checkIndex("tc", "c", false);
+    }
+
+    @Test
+    public void testCreateIndexDesc() throws SqlJetException {
+        createIndex("create index tcb on t(c desc, b)");
+        checkIndex("tcb", "c", true);
+    }
+
+    @Test
+    public void testCreateIndexes() throws SqlJetException {
+        final List<ISqlJetIndexDef> indexes = db.createIndexes("create index tb on t(b)", "create index tc on t(c)",
+                "create index tcb on t(c desc, b)");
+        assertEquals(3, indexes.size());
+        assertEquals("tc", indexes.get(1).getName());
+        checkIndex("tb", "b", false);
+        checkIndex("tc", "c", false);
+        checkIndex("tcb", "c", true);
+    }
+
+    @Test
+    public void testCreateIndexesParallel() throws SqlJetException {
+        db.createIndexes(true, "create index tb on t(b)", "create index tc on t(c)",
+                "create index tcb on t(c desc, b)");
+        db.close();
+        db = SqlJetDb.open(file, true);
+        checkIndex("tb", "b", false);
+        checkIndex("tc", "c", false);
+        checkIndex("tcb", "c", true);
+    }
+
+    @Test
+    public void testCreateIndexesFails() throws SqlJetException {
+        try {
+            db.createIndexes("create index tb on t(b)", "create index tx on t(x)");
+            fail();
+        } catch (SqlJetException e) {
+            assertEquals(SqlJetErrorCode.ERROR, e.getErrorCode());
+        }
+        assertNull(db.getSchema().getIndex("tb"));
+        db.createIndexes("create index tb on t(b)", "create index if not exists tb on t(b)");
+        checkIndex("tb", "b", false);
+    }
+
+    @Test
+    public void testInsertAfterCreateIndex() throws SqlJetException {
+        createIndex("create index tb on t(b)");
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    while (!c.eof()) {
+                        c.update(c.getInteger("a"), text(scramble(c.getRowId())), 0);
+                        c.next();
+                    }
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+        checkIndex("tb", "b", false);
+    }
+
+    @Test
+    public void testCompareErrorIsThrown() throws SqlJetException {
+        final SqlJetSorter sorter = new SqlJetSorter(null, new ISqlJetKeyInfo() {
+            public SqlJetUnpackedRecord recordUnpack(int nKey, ISqlJetMemoryPointer pKey) {
+                return new SqlJetUnpackedRecord() {
+                    @Override
+                    public int recordCompare(int nKey1, ISqlJetMemoryPointer pKey1) throws SqlJetException {
+                        throw new SqlJetException(SqlJetErrorCode.CORRUPT);
+                    }
+                };
+            }
+        });
+        try {
+            for (int i = 0; i < 10; i++) {
+                sorter.write(SqlJetUtility.wrapPtr(new byte[] { 2, 1, (byte) i }));
+            }
+            sorter.sort();
+            fail();
+        } catch (SqlJetException e) {
+            assertEquals(SqlJetErrorCode.CORRUPT, e.getErrorCode());
+        } finally {
+            sorter.close();
+        }
+    }
+
+}
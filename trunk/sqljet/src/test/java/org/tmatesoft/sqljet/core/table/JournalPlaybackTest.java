@@ -0,0 +1,104 @@
+/**
+ * JournalPlaybackTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class JournalPlaybackTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 2000;
+    private static final int CACHE_SIZE = 30;
+    private static final String ORIGINAL = "original row with some text ";
+
+    private File copy;
+    private File copyJournal;
+    private SqlJetDb db2;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        createRowsTable(db, ORIGINAL, ROWS);
+        copy = File.createTempFile(getClass().getSimpleName(), null);
+        copyJournal = new File(copy.getPath() + "-journal");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (db2 != null) {
+                db2.close();
+            }
+        } finally {
+            try {
+                super.tearDown();
+            } finally {
+                SqlJetFileUtil.deleteFile(copy);
+                SqlJetFileUtil.deleteFile(copyJournal);
+            }
+        }
+    }
+
+    @Test
+    public void testRollback() throws SqlJetException {
+        db.setCacheSize(CACHE_SIZE);
+        db.beginTransaction(SqlJetTransactionMode.WRITE);
+        try {
+            updateRows(db, "changed row with some more text ");
+        } finally {
+            db.rollback();
+        }
+        assertEquals(ROWS, checkRows(db, ORIGINAL));
+    }
+
+    @Test
+    public void testHotJournal() throws Exception {
+        // small cache makes changed pages spill into database file before
+        // commit, so copy of files looks like crash in the middle of commit.
+        db.setCacheSize(CACHE_SIZE);
+        db.beginTransaction(SqlJetTransactionMode.WRITE);
+        try {
+            updateRows(db, "changed row with some more text ");
+            final File journal = new File(file.getPath() + "-journal");
+            assertTrue(journal.exists());
+            copyFile(file, copy);
+            copyFile(journal, copyJournal);
+        } finally {
+            db.rollback();
+        }
+
+        db2 = SqlJetDb.open(copy, true);
+        assertEquals(ROWS, checkRows(db2, ORIGINAL));
+    }
+
+}
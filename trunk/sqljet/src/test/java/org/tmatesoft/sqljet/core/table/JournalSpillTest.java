@@ -0,0 +1,84 @@
+/**
+ * JournalSpillTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class JournalSpillTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 2000;
+    private static final int CACHE_SIZE = 30;
+    private static final int SPILL_SIZE = 16 * 1024;
+    private static final String ORIGINAL = "original row with some text ";
+    private static final String CHANGED = "changed row with some more text ";
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        createRowsTable(db, ORIGINAL, ROWS);
+        db.setJournalMode(SqlJetPagerJournalMode.MEMORY);
+        db.setCacheSize(CACHE_SIZE);
+    }
+
+    private void rollback(int spillSize) throws SqlJetException {
+        db.setJournalSpillSize(spillSize);
+        assertEquals(spillSize, db.getJournalSpillSize());
+        db.beginTransaction(SqlJetTransactionMode.WRITE);
+        try {
+            updateRows(db, CHANGED);
+        } finally {
+            db.rollback();
+        }
+        assertEquals(ROWS, checkRows(db, ORIGINAL));
+    }
+
+    @Test
+    public void testRollbackInMemory() throws SqlJetException {
+        rollback(-1);
+    }
+
+    @Test
+    public void testRollbackSpilled() throws SqlJetException {
+        rollback(SPILL_SIZE);
+    }
+
+    @Test
+    public void testRollbackInFile() throws SqlJetException {
+        rollback(0);
+    }
+
+    @Test
+    public void testCommitSpilled() throws SqlJetException {
+        db.setJournalSpillSize(SPILL_SIZE);
+        updateRows(db, CHANGED);
+        assertEquals(ROWS, checkRows(db, CHANGED));
+    }
+
+}
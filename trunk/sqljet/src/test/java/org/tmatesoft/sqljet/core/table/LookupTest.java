@@ -74,4 +74,52 @@ public class LookupTest extends AbstractNewDbTest {
         });
     }
 
+    @Test
+    public void lookupNumbers() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table n(a integer primary key, b, c)");
+                db.createIndex("create index nbc on n(b desc, c)");
+                final ISqlJetTable n = db.getTable("n");
+                n.insert(1, 2, "x");
+                n.insert(2, 2.5, "y");
+                n.insert(3, 2, "z");
+                Assert.assertEquals(1, n.lookup("nbc", 2.0, "x").getRowId());
+                Assert.assertEquals(2, n.lookup("nbc", 2.5f).getRowId());
+                Assert.assertEquals(3, n.lookup("nbc", (short) 2, "z").getRowId());
+                final ISqlJetCursor c = n.lookup("nbc", 2L);
+                Assert.assertEquals(1, c.getRowId());
+                Assert.assertTrue(c.next());
+                Assert.assertEquals(3, c.getRowId());
+                Assert.assertFalse(c.next());
+                Assert.assertTrue(n.lookup("nbc", 2, "w").eof());
+                Assert.assertTrue(n.lookup("nbc", "2").eof());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void lookupOverflowKeys() throws SqlJetException {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            b.append("long key ");
+        }
+        final String prefix = b.toString();
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                for (int i = 0; i < 50; i++) {
+                    table.insert(10 + i, prefix + i);
+                }
+                final ISqlJetCursor c = table.lookup("i", prefix + 25);
+                Assert.assertEquals(35, c.getRowId());
+                c.delete();
+                Assert.assertTrue(table.lookup("i", prefix + 25).eof());
+                Assert.assertEquals(36, table.lookup("i", prefix + 26).getRowId());
+                Assert.assertTrue(table.lookup("i", prefix).eof());
+                return null;
+            }
+        });
+    }
+
 }
@@ -0,0 +1,121 @@
+/**
+ * MmapTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class MmapTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 1000;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        createRowsTable(db, "row", ROWS);
+        db.close();
+        db = SqlJetDb.open(file, true);
+        db.setMmapSize(1 << 20);
+    }
+
+    private static String read(SqlJetDb db, final long rowId) throws SqlJetException {
+        return (String) db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    assertTrue(c.goTo(rowId));
+                    return c.getString("b");
+                } finally {
+                    c.close();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testRead() throws SqlJetException {
+        assertEquals(1 << 20, db.getMmapSize());
+        assertEquals(ROWS, countRows(db));
+        assertEquals("row0", read(db, 1));
+        assertEquals("row" + (ROWS - 1), read(db, ROWS));
+    }
+
+    @Test
+    public void testUpdateMappedPages() throws SqlJetException {
+        updateRows(db, "updated");
+        assertEquals("updated0", read(db, 1));
+        assertEquals("updated" + (ROWS - 1), read(db, ROWS));
+        db.close();
+        db = SqlJetDb.open(file, false);
+        assertEquals(ROWS, checkRows(db, "updated"));
+    }
+
+    @Test
+    public void testRollbackMappedPages() throws SqlJetException {
+        assertEquals(ROWS, countRows(db));
+        db.beginTransaction(SqlJetTransactionMode.WRITE);
+        try {
+            db.getTable("t").clear();
+        } finally {
+            db.rollback();
+        }
+        assertEquals(ROWS, countRows(db));
+        assertEquals("row0", read(db, 1));
+    }
+
+    @Test
+    public void testGrowBeyondMap() throws SqlJetException {
+        insertRows(db, "more", ROWS);
+        assertEquals(2 * ROWS, countRows(db));
+        assertEquals("more0", read(db, ROWS + 1));
+    }
+
+    @Test
+    public void testWal() throws SqlJetException {
+        db.setJournalMode(SqlJetPagerJournalMode.WAL);
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    c.update(c.getInteger("a"), "in log");
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+        assertEquals("in log", read(db, 1));
+        db.setMmapSize(0);
+        assertFalse(db.getMmapSize() > 0);
+        assertEquals("in log", read(db, 1));
+    }
+
+}
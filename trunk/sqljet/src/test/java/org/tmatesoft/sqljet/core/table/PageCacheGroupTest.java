@@ -0,0 +1,131 @@
+/**
+ * PageCacheGroupTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.fs.util.SqlJetFileUtil;
+import org.tmatesoft.sqljet.core.internal.pager.SqlJetPageCacheGroup;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class PageCacheGroupTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 5000;
+    private static final String PREFIX = "row with some text to make it longer ";
+    private static final int PAGE_SIZE = 1024;
+    private static final int LIMIT = 100 * PAGE_SIZE;
+
+    private final SqlJetPageCacheGroup group = SqlJetPageCacheGroup.getInstance();
+
+    private long limit;
+    private long base;
+    private File file2;
+    private SqlJetDb db2;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        limit = group.getSoftHeapLimit();
+        group.setSoftHeapLimit(0);
+        base = group.getUsedBytes();
+        createRowsTable(db, PREFIX, ROWS);
+        file2 = File.createTempFile(getClass().getSimpleName(), null);
+        file2.deleteOnExit();
+        db2 = SqlJetDb.open(file2, true);
+        createRowsTable(db2, PREFIX, ROWS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        group.setSoftHeapLimit(limit);
+        try {
+            if (db2 != null) {
+                db2.close();
+            }
+        } finally {
+            try {
+                super.tearDown();
+            } finally {
+                SqlJetFileUtil.deleteFile(file2);
+            }
+        }
+    }
+
+    private static void scan(SqlJetDb db) throws SqlJetException {
+        assertEquals(ROWS, checkRows(db, PREFIX));
+    }
+
+    @Test
+    public void testAccounting() throws SqlJetException {
+        scan(db);
+        scan(db2);
+        assertTrue(group.getUsedBytes() > base + LIMIT);
+        final long used = group.getUsedBytes();
+        db2.close();
+        db2 = null;
+        assertTrue(group.getUsedBytes() < used);
+    }
+
+    @Test
+    public void testSoftHeapLimit() throws SqlJetException {
+        group.setSoftHeapLimit(base + LIMIT);
+        assertEquals(base + LIMIT, group.getSoftHeapLimit());
+        scan(db);
+        scan(db2);
+        assertTrue(group.getUsedBytes() <= base + LIMIT);
+        scan(db);
+        assertTrue(group.getUsedBytes() <= base + LIMIT);
+    }
+
+    @Test
+    public void testIdleCacheIsReclaimed() throws SqlJetException {
+        scan(db);
+        final long misses = db.getCacheMissCount();
+        scan(db);
+        assertEquals(misses, db.getCacheMissCount());
+
+        db2.close();
+        db2 = SqlJetDb.open(file2, false);
+        // absolute limit: idle pages of caches left by other tests could satisfy a relative one.
+        group.setSoftHeapLimit(10 * PAGE_SIZE);
+        scan(db2);
+        scan(db);
+        assertTrue(db.getCacheMissCount() > misses);
+    }
+
+    @Test
+    public void testWriteUnderLimit() throws SqlJetException {
+        group.setSoftHeapLimit(base + 20 * PAGE_SIZE);
+        updateRows(db, "updated");
+        scan(db2);
+        assertEquals(ROWS, checkRows(db, "updated"));
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * PageCacheReplacementTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetPageCacheReplacement;
+import org.tmatesoft.sqljet.core.internal.pager.SqlJetPageCache;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class PageCacheReplacementTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 5000;
+    private static final int HOT_ROWS = 20;
+    private static final int CACHE_SIZE = 50;
+    private static final String PREFIX = new String(new char[100]).replace('\0', 'x');
+
+    private SqlJetDb db2;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        createRowsTable(db, PREFIX, ROWS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(SqlJetPageCache.SQLJET_PAGE_CACHE_REPLACEMENT);
+        try {
+            if (db2 != null) {
+                db2.close();
+            }
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    private SqlJetDb open(SqlJetPageCacheReplacement replacement) throws SqlJetException {
+        System.setProperty(SqlJetPageCache.SQLJET_PAGE_CACHE_REPLACEMENT, replacement.name());
+        final SqlJetDb db = SqlJetDb.open(file, true);
+        db.setCacheSize(CACHE_SIZE);
+        return db;
+    }
+
+    private static void lookup(SqlJetDb db) throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    for (int i = 0; i < HOT_ROWS; i++) {
+                        assertTrue(c.goTo(1 + i * (ROWS / HOT_ROWS)));
+                    }
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    private static void scan(SqlJetDb db) throws SqlJetException {
+        assertEquals(ROWS, checkRows(db, PREFIX));
+    }
+
+    /**
+     * @return count of misses of lookups which follow scans.
+     */
+    private static long run(SqlJetDb db) throws SqlJetException {
+        for (int i = 0; i < 3; i++) {
+            lookup(db);
+            lookup(db);
+            scan(db);
+        }
+        long misses = 0;
+        for (int i = 0; i < 5; i++) {
+            scan(db);
+            final long before = db.getCacheMissCount();
+            lookup(db);
+            misses += db.getCacheMissCount() - before;
+        }
+        return misses;
+    }
+
+    @Test
+    public void testCounters() throws SqlJetException {
+        db2 = open(SqlJetPageCacheReplacement.LRU);
+        final long misses = db2.getCacheMissCount();
+        final long hits = db2.getCacheHitCount();
+        lookup(db2);
+        assertTrue(db2.getCacheMissCount() > misses);
+        final long missesAfterLookup = db2.getCacheMissCount();
+        lookup(db2);
+        assertEquals(missesAfterLookup, db2.getCacheMissCount());
+        assertTrue(db2.getCacheHitCount() > hits);
+    }
+
+    @Test
+    public void testScanResistance() throws SqlJetException {
+        db2 = open(SqlJetPageCacheReplacement.LRU);
+        final long lruMisses = run(db2);
+        db2.close();
+        db2 = null;
+
+        db2 = open(SqlJetPageCacheReplacement.TWO_Q);
+        final long twoQMisses = run(db2);
+
+        assertTrue("2Q " + twoQMisses + " vs LRU " + lruMisses, 2 * twoQMisses < lruMisses);
+    }
+
+    @Test
+    public void testTwoQSmallCache() throws SqlJetException {
+        db2 = open(SqlJetPageCacheReplacement.TWO_Q);
+        db2.setCacheSize(SqlJetPageCache.PAGE_CACHE_SIZE_MINIMUM);
+        scan(db2);
+        lookup(db2);
+        updateRows(db2, "updated");
+        assertEquals(ROWS, checkRows(db2, "updated"));
+    }
+
+}
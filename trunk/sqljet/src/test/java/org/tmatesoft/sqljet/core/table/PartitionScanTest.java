@@ -0,0 +1,206 @@
+/**
+ * PartitionScanTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class PartitionScanTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 20000;
+
+    private final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+    private final ISqlJetPartitionHandler rowIds = new ISqlJetPartitionHandler() {
+        public Object handle(ISqlJetCursor cursor) throws SqlJetException {
+            threads.add(Thread.currentThread());
+            final List<Long> rows = new ArrayList<Long>();
+            for (; !cursor.eof(); cursor.next()) {
+                rows.add(cursor.getRowId());
+            }
+            return rows;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        fill(db);
+    }
+
+    private static void fill(SqlJetDb db) throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b integer, c text)");
+                db.createIndex("create index tb on t(b)");
+                db.createIndex("create index tc on t(c)");
+                final ISqlJetTable t = db.getTable("t");
+                for (int i = 1; i <= ROWS; i++) {
+                    t.insert(null, i % 3, "c" + (i * 7 % ROWS));
+                }
+                return null;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> join(List<Object> results) {
+        final List<Long> rows = new ArrayList<Long>();
+        for (final Object result : results) {
+            rows.addAll((List<Long>) result);
+        }
+        return rows;
+    }
+
+    private static List<Long> scan(SqlJetDb db, final String index, final SqlJetScope scope)
+            throws SqlJetException {
+        final List<Long> rows = new ArrayList<Long>();
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                final ISqlJetCursor c = scope != null ? t.scope(index, scope) : t.order(index);
+                try {
+                    for (; !c.eof(); c.next()) {
+                        rows.add(c.getRowId());
+                    }
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+        return rows;
+    }
+
+    private void assertPartitions(SqlJetDb db, String index, SqlJetScope scope, int partitions)
+            throws SqlJetException {
+        assertPartitions(db, index, scope, scope, partitions);
+    }
+
+    private void assertPartitions(SqlJetDb db, String index, SqlJetScope scope, SqlJetScope ordered,
+            int partitions) throws SqlJetException {
+        final List<Object> results = db.getTable("t").scanPartitions(index, scope, partitions, rowIds);
+        assertTrue(results.size() <= partitions);
+        assertEquals(scan(db, index, ordered), join(results));
+    }
+
+    @Test
+    public void testTable() throws SqlJetException {
+        final List<Object> results = db.getTable("t").scanPartitions(null, null, 8, rowIds);
+        assertEquals(8, results.size());
+        // ranges beyond count of processors wait for free threads.
+        assertEquals(Math.min(8, Runtime.getRuntime().availableProcessors()), threads.size());
+        for (final Object result : results) {
+            assertEquals(ROWS / 8, ((List<?>) result).size());
+        }
+        final List<Long> rows = join(results);
+        assertEquals(ROWS, rows.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(i + 1, rows.get(i).longValue());
+        }
+        assertPartitions(db, null, new SqlJetScope(new Object[] { 100 }, false, new Object[] { 7000 }, true), 5);
+        // ranges follow in order of index.
+        assertPartitions(db, null, new SqlJetScope(new Object[] { 7000 }, new Object[] { 100 }),
+                new SqlJetScope(new Object[] { 100 }, new Object[] { 7000 }), 5);
+        assertPartitions(db, null, new SqlJetScope(new Object[] { ROWS + 1 }, null), 5);
+        assertPartitions(db, null, null, 1);
+    }
+
+    @Test
+    public void testIndex() throws SqlJetException {
+        assertPartitions(db, "tc", null, 7);
+        assertPartitions(db, "tc", new SqlJetScope(new Object[] { "c2" }, false, new Object[] { "c5" }, false), 4);
+        assertPartitions(db, "tc", new SqlJetScope(new Object[] { "c5" }, new Object[] { "c2" }),
+                new SqlJetScope(new Object[] { "c2" }, new Object[] { "c5" }), 4);
+        // rows with same key aren't split.
+        final List<Object> results = db.getTable("t").scanPartitions("tb", null, 8, rowIds);
+        assertEquals(3, results.size());
+        assertEquals(scan(db, "tb", null), join(results));
+        assertPartitions(db, "tb", new SqlJetScope(new Object[] { 1 }, null), 8);
+    }
+
+    @Test
+    public void testInMemory() throws SqlJetException {
+        final SqlJetDb memory = SqlJetDb.open(SqlJetDb.IN_MEMORY, true);
+        try {
+            fill(memory);
+            assertPartitions(memory, null, null, 4);
+            assertPartitions(memory, "tc", null, 4);
+            assertEquals(1, threads.size());
+        } finally {
+            memory.close();
+        }
+    }
+
+    @Test
+    public void testErrors() throws SqlJetException {
+        final ISqlJetTable t = db.getTable("t");
+        try {
+            t.scanPartitions("x", null, 2, rowIds);
+            fail();
+        } catch (SqlJetException e) {
+            assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+        }
+        try {
+            t.scanPartitions(null, null, 0, rowIds);
+            fail();
+        } catch (SqlJetException e) {
+            assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+        }
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                try {
+                    db.getTable("t").scanPartitions(null, null, 2, rowIds);
+                    fail();
+                } catch (SqlJetException e) {
+                    assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+                }
+                return null;
+            }
+        });
+        try {
+            t.scanPartitions(null, null, 4, new ISqlJetPartitionHandler() {
+                public Object handle(ISqlJetCursor cursor) throws SqlJetException {
+                    throw new SqlJetException(SqlJetErrorCode.ABORT);
+                }
+            });
+            fail();
+        } catch (SqlJetException e) {
+            assertEquals(SqlJetErrorCode.ABORT, e.getErrorCode());
+        }
+    }
+
+}
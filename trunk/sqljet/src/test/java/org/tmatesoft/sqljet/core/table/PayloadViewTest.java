@@ -0,0 +1,173 @@
+/**
+ * PayloadViewTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.internal.ISqlJetBtree;
+import org.tmatesoft.sqljet.core.internal.ISqlJetDbHandle;
+import org.tmatesoft.sqljet.core.internal.SqlJetBtreeFlags;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileType;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.btree.SqlJetBtree;
+import org.tmatesoft.sqljet.core.internal.db.SqlJetDbHandle;
+import org.tmatesoft.sqljet.core.internal.schema.SqlJetSchema;
+import org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeDataTable;
+import org.tmatesoft.sqljet.core.internal.table.SqlJetBtreeDataTable;
+import org.tmatesoft.sqljet.core.internal.table.SqlJetOptions;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class PayloadViewTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 500;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b text, c blob, d text)");
+                db.createIndex("create index tb on t(b)");
+                final ISqlJetTable t = db.getTable("t");
+                for (int i = 1; i <= ROWS; i++) {
+                    t.insert(null, "b" + i, new byte[] { (byte) i, 1, 2 }, "d" + i);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testChangedByOtherCursor() throws SqlJetException {
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                final ISqlJetCursor c = t.open();
+                try {
+                    c.goTo(10);
+                    assertEquals("b10", c.getString("b"));
+                    final byte[] blob = c.getBlobAsArray("c");
+                    final ISqlJetCursor u = t.open();
+                    try {
+                        u.goTo(10);
+                        u.update(10, "changed", new byte[] { 7, 7, 7 }, "other");
+                        // shift content of page.
+                        u.goTo(9);
+                        u.delete();
+                    } finally {
+                        u.close();
+                    }
+                    assertTrue(Arrays.equals(new byte[] { 10, 1, 2 }, blob));
+                    assertEquals(10, c.getRowId());
+                    assertEquals("other", c.getString("d"));
+                    assertEquals("changed", c.getString("b"));
+                    assertTrue(Arrays.equals(new byte[] { 7, 7, 7 }, c.getBlobAsArray("c")));
+                    c.next();
+                    assertEquals("b11", c.getString("b"));
+                    assertEquals("d11", c.getString("d"));
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testIndexScan() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").scope("tb", new Object[] { "b2" }, new Object[] { "b3" });
+                try {
+                    int count = 0;
+                    while (!c.eof()) {
+                        assertTrue(c.getString("b").startsWith("b2") || c.getString("b").equals("b3"));
+                        assertEquals("d" + c.getRowId(), c.getString("d"));
+                        count++;
+                        c.next();
+                    }
+                    // b2, b20..b29, b200..b299, b3
+                    assertEquals(1 + 10 + 100 + 1, count);
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testRolledBackStatement() throws SqlJetException {
+        db.close();
+        db = null;
+        final ISqlJetDbHandle dbHandle = new SqlJetDbHandle();
+        dbHandle.getMutex().enter();
+        try {
+            final ISqlJetBtree btree = new SqlJetBtree();
+            btree.open(file, dbHandle, SqlJetUtility.of(SqlJetBtreeFlags.READWRITE), SqlJetFileType.MAIN_DB,
+                    SqlJetUtility.of(SqlJetFileOpenPermission.READWRITE));
+            try {
+                dbHandle.setOptions(new SqlJetOptions(btree, dbHandle));
+                btree.setSchema(new SqlJetSchema(dbHandle, btree));
+                btree.beginTrans(SqlJetTransactionMode.WRITE);
+                try {
+                    final ISqlJetBtreeDataTable c = new SqlJetBtreeDataTable(btree, "t", false);
+                    try {
+                        assertTrue(c.goToRow(10));
+                        assertEquals("b10", c.getString(1));
+                        btree.beginStmt();
+                        final ISqlJetBtreeDataTable u = new SqlJetBtreeDataTable(btree, "t", true);
+                        try {
+                            u.update(null, 10, 10L, "changed", new byte[] { 7, 7, 7 }, "other");
+                        } finally {
+                            u.close();
+                        }
+                        assertEquals("changed", c.getString(1));
+                        // pages are restored in place, record must not keep its view.
+                        btree.rollbackStmt();
+                        assertEquals(10, c.getRowId());
+                        assertEquals("b10", c.getString(1));
+                        assertEquals("d10", c.getString(3));
+                    } finally {
+                        c.close();
+                    }
+                } finally {
+                    btree.rollback();
+                }
+            } finally {
+                btree.close();
+            }
+        } finally {
+            dbHandle.getMutex().leave();
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * ReadAheadTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class ReadAheadTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 5000;
+    private static final int CACHE_SIZE = 20;
+    private static final int READ_AHEAD = 32;
+    private static final String TEXT = "row with some text ";
+
+    private SqlJetDb db2;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        createRowsTable(db, TEXT, ROWS);
+        db.createIndex("create index tb on t(b)");
+        db.close();
+        db = SqlJetDb.open(file, true);
+        db.setCacheSize(CACHE_SIZE);
+        db.setReadAhead(READ_AHEAD);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (db2 != null) {
+                db2.close();
+            }
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    @Test
+    public void testScan() throws SqlJetException {
+        assertEquals(READ_AHEAD, db.getReadAhead());
+        assertEquals(ROWS, checkRows(db, TEXT));
+        assertEquals(ROWS, checkRows(db, TEXT));
+    }
+
+    @Test
+    public void testIndexScan() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").order("tb");
+                try {
+                    long count = 0;
+                    String prev = "";
+                    while (!c.eof()) {
+                        final String b = c.getString("b");
+                        assertEquals(true, prev.compareTo(b) < 0);
+                        prev = b;
+                        count++;
+                        c.next();
+                    }
+                    assertEquals(ROWS, count);
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testUpdate() throws SqlJetException {
+        assertEquals(ROWS, checkRows(db, TEXT));
+        updateRows(db, "updated ");
+        assertEquals(ROWS, checkRows(db, "updated "));
+    }
+
+    @Test
+    public void testOtherConnection() throws SqlJetException {
+        assertEquals(ROWS, checkRows(db, TEXT));
+        db2 = SqlJetDb.open(file, true);
+        updateRows(db2, "changed by other ");
+        assertEquals(ROWS, checkRows(db, "changed by other "));
+    }
+
+    @Test
+    public void testWal() throws SqlJetException {
+        db.setJournalMode(SqlJetPagerJournalMode.WAL);
+        assertEquals(ROWS, checkRows(db, TEXT));
+        updateRows(db, "in log ");
+        assertEquals(ROWS, checkRows(db, "in log "));
+    }
+
+    @Test
+    public void testDisabled() throws SqlJetException {
+        db.setReadAhead(0);
+        assertEquals(0, db.getReadAhead());
+        assertEquals(ROWS, checkRows(db, TEXT));
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * RecordWriterTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetEncoding;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.ISqlJetMemoryPointer;
+import org.tmatesoft.sqljet.core.internal.ISqlJetRecordWriter;
+import org.tmatesoft.sqljet.core.internal.table.ISqlJetBtreeRecord;
+import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetBtreeRecord;
+import org.tmatesoft.sqljet.core.internal.vdbe.SqlJetRecordWriter;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class RecordWriterTest extends AbstractNewDbTest {
+
+    private static final String TEXT = "ascii éж 中文 𝄞";
+
+    private static Object[] values() {
+        final StringBuilder s = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            s.append(TEXT);
+        }
+        return new Object[] { null, 0L, 1, -1, 127, 128, -32769, 8388608, 2147483648L, 1L << 47, Long.MIN_VALUE,
+                (short) 3, (byte) -4, true, false, 1.5d, 2.5f, Double.NaN, "", TEXT, s.toString(), "broken \ud834",
+                new byte[] { 1, 2, 3 }, ByteBuffer.wrap(new byte[] { 4, 5 }),
+                new ByteArrayInputStream(new byte[] { 6 }), new SqlJetZeroBlob(5), "after zeros", null,
+                new SqlJetZeroBlob(7), null };
+    }
+
+    private static byte[] toArray(ISqlJetMemoryPointer p) {
+        final byte[] b = new byte[p.remaining()];
+        p.getBytes(b);
+        return b;
+    }
+
+    private static void assertSameRecord(ISqlJetRecordWriter writer, SqlJetEncoding encoding, Object[] values)
+            throws SqlJetException {
+        final ISqlJetBtreeRecord record = SqlJetBtreeRecord.getRecord(encoding, values);
+        final byte[] expected = toArray(record.getRawRecord());
+        final int expectedZeroTail = record.getZeroTail();
+        record.release();
+        assertTrue(Arrays.equals(expected, toArray(writer.write(encoding, values))));
+        assertEquals(expectedZeroTail, writer.getZeroTail());
+    }
+
+    private static Object[] range(Object[] values, int from, int to) {
+        final Object[] range = new Object[to - from];
+        System.arraycopy(values, from, range, 0, range.length);
+        return range;
+    }
+
+    @Test
+    public void testSameAsRecord() throws SqlJetException {
+        // small limit forces allocation of buffers which aren't kept.
+        for (ISqlJetRecordWriter writer : new ISqlJetRecordWriter[] { new SqlJetRecordWriter(),
+                new SqlJetRecordWriter(100) }) {
+            for (SqlJetEncoding encoding : new SqlJetEncoding[] { SqlJetEncoding.UTF8, SqlJetEncoding.UTF16LE,
+                    SqlJetEncoding.UTF16BE, SqlJetEncoding.UTF16 }) {
+                final Object[] values = values();
+                for (int i = 0; i <= values.length; i++) {
+                    assertSameRecord(writer, encoding, range(values, i, values.length));
+                    assertSameRecord(writer, encoding, range(values, 0, i));
+                }
+            }
+            final Object[] wide = new Object[3000];
+            Arrays.fill(wide, 300, 3000, "x");
+            assertSameRecord(writer, SqlJetEncoding.UTF8, wide);
+            assertSameRecord(writer, SqlJetEncoding.UTF8, new Object[] { 1 });
+        }
+    }
+
+    @Test
+    public void testKey() throws SqlJetException {
+        final ISqlJetRecordWriter writer = new SqlJetRecordWriter();
+        final Object[] key = new Object[] { "a", 7L };
+        final ISqlJetBtreeRecord record = SqlJetBtreeRecord.getRecord(SqlJetEncoding.UTF8, "a", 7L, 1234567L);
+        assertTrue(Arrays.equals(toArray(record.getRawRecord()),
+                toArray(writer.writeKey(SqlJetEncoding.UTF8, key, 1234567L))));
+        record.release();
+    }
+
+    @Test
+    public void testInsertUpdate() throws SqlJetException {
+        db.getOptions().setEncoding(SqlJetEncoding.UTF16LE);
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                db.createTable("create table t(a integer primary key, b text, c)");
+                db.createIndex("create index tb on t(b)");
+                final ISqlJetTable t = db.getTable("t");
+                for (int i = 1; i <= 1000; i++) {
+                    t.insert(null, TEXT + i, i % 2 == 0 ? Long.valueOf(i) : new byte[i]);
+                }
+                final ISqlJetCursor c = t.lookup("tb", TEXT + 500);
+                try {
+                    c.update(500, TEXT, 1.5d);
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetTable t = db.getTable("t");
+                final ISqlJetCursor c = t.open();
+                try {
+                    for (int i = 1; i <= 1000; i++, c.next()) {
+                        assertEquals(i, c.getInteger("a"));
+                        if (i == 500) {
+                            assertEquals(TEXT, c.getString("b"));
+                            assertEquals(1.5d, c.getFloat("c"), 0);
+                        } else {
+                            assertEquals(TEXT + i, c.getString("b"));
+                            if (i % 2 == 0) {
+                                assertEquals(i, c.getInteger("c"));
+                            } else {
+                                assertEquals(i, c.getBlobAsArray("c").length);
+                            }
+                        }
+                    }
+                } finally {
+                    c.close();
+                }
+                final ISqlJetCursor l = t.lookup("tb", TEXT + 999);
+                try {
+                    assertEquals(999, l.getRowId());
+                } finally {
+                    l.close();
+                }
+                final ISqlJetCursor u = t.lookup("tb", TEXT);
+                try {
+                    assertEquals(500, u.getRowId());
+                } finally {
+                    u.close();
+                }
+                return null;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * SlabPageBuffersTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.internal.SqlJetMemoryBufferType;
+import org.tmatesoft.sqljet.core.internal.SqlJetUtility;
+import org.tmatesoft.sqljet.core.internal.pager.SqlJetPage;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class SlabPageBuffersTest extends AbstractNewDbTest {
+
+    private static final int ROWS = 5000;
+    private static final int CACHE_SIZE = 50;
+    private static final String PREFIX = "row with some text to make it longer ";
+
+    private SqlJetDb db2;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        createRowsTable(db, PREFIX, ROWS);
+        System.setProperty(SqlJetPage.SQLJET_PAGE_BUFFER_TYPE, SqlJetMemoryBufferType.SLAB.name());
+        db2 = SqlJetDb.open(file, true);
+        db2.setCacheSize(CACHE_SIZE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(SqlJetPage.SQLJET_PAGE_BUFFER_TYPE);
+        try {
+            if (db2 != null) {
+                db2.close();
+            }
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    @Test
+    public void testBuffersAreRecycled() throws SqlJetException {
+        assertEquals(ROWS, checkRows(db2, PREFIX));
+        final long allocations = SqlJetUtility.memoryManager.getSlabAllocationCount();
+        final long misses = db2.getCacheMissCount();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ROWS, checkRows(db2, PREFIX));
+        }
+        // pages were evicted and read again, but into recycled buffers.
+        assertEquals(true, db2.getCacheMissCount() > misses);
+        assertEquals(allocations, SqlJetUtility.memoryManager.getSlabAllocationCount());
+    }
+
+    @Test
+    public void testUpdate() throws SqlJetException {
+        updateRows(db2, "updated");
+        assertEquals(ROWS, checkRows(db2, "updated"));
+    }
+
+}
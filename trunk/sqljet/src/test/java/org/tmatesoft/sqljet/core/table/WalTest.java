@@ -0,0 +1,365 @@
+/**
+ * WalTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.internal.ISqlJetFile;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileOpenPermission;
+import org.tmatesoft.sqljet.core.internal.SqlJetFileType;
+import org.tmatesoft.sqljet.core.internal.SqlJetPagerJournalMode;
+import org.tmatesoft.sqljet.core.internal.SqlJetSafetyLevel;
+import org.tmatesoft.sqljet.core.internal.fs.SqlJetFileSystem;
+import org.tmatesoft.sqljet.core.internal.pager.SqlJetWal;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class WalTest extends AbstractNewDbTest {
+
+    private File walFile;
+    private SqlJetDb db2;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        walFile = new File(file.getPath() + "-wal");
+        db.setJournalMode(SqlJetPagerJournalMode.WAL);
+        createRowsTable(db, "row", 10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (db2 != null) {
+                db2.close();
+            }
+        } finally {
+            super.tearDown();
+            walFile.delete();
+        }
+    }
+
+    @Test
+    public void testCommitGoesToLog() throws SqlJetException {
+        assertEquals(SqlJetPagerJournalMode.WAL, db.getJournalMode());
+        assertTrue(walFile.length() > 0);
+        assertEquals(10, countRows(db));
+    }
+
+    @Test
+    public void testReaderKeepsSnapshot() throws Exception {
+        db2 = SqlJetDb.open(file, true);
+        db2.setJournalMode(SqlJetPagerJournalMode.WAL);
+        db2.beginTransaction(SqlJetTransactionMode.READ_ONLY);
+        try {
+            assertEquals(10, countRows(db2));
+            final SqlJetException[] error = new SqlJetException[1];
+            final Thread writer = new Thread() {
+                public void run() {
+                    try {
+                        insertRows(db, "row", 5);
+                    } catch (SqlJetException e) {
+                        error[0] = e;
+                    }
+                }
+            };
+            writer.start();
+            writer.join();
+            assertNull(error[0]);
+            assertEquals(10, countRows(db2));
+        } finally {
+            db2.commit();
+        }
+        assertEquals(15, countRows(db2));
+        assertEquals(15, countRows(db));
+    }
+
+    @Test
+    public void testRollback() throws SqlJetException {
+        db.beginTransaction(SqlJetTransactionMode.WRITE);
+        try {
+            db.getTable("t").insert(null, "rolled back");
+        } finally {
+            db.rollback();
+        }
+        assertEquals(10, countRows(db));
+        insertRows(db, "row", 1);
+        assertEquals(11, countRows(db));
+    }
+
+    @Test
+    public void testLargeTransactionSpillsToLog() throws SqlJetException {
+        db.setCacheSize(10);
+        insertRows(db, "row", 2000);
+        assertEquals(2010, countRows(db));
+        db.beginTransaction(SqlJetTransactionMode.WRITE);
+        try {
+            final ISqlJetTable t = db.getTable("t");
+            for (int i = 0; i < 2000; i++) {
+                t.insert(null, "rolled back " + i);
+            }
+        } finally {
+            db.rollback();
+        }
+        assertEquals(2010, countRows(db));
+    }
+
+    @Test
+    public void testCheckpointAndClose() throws SqlJetException {
+        db.checkpoint();
+        assertEquals(10, countRows(db));
+        db.close();
+        db = null;
+        assertFalse(walFile.exists());
+
+        db = SqlJetDb.open(file, false);
+        assertEquals(SqlJetPagerJournalMode.DELETE, db.getJournalMode());
+        assertEquals(10, countRows(db));
+    }
+
+    @Test
+    public void testLogIsReadByNewConnection() throws SqlJetException {
+        db2 = SqlJetDb.open(file, false);
+        assertEquals(10, countRows(db2));
+        assertEquals(SqlJetPagerJournalMode.WAL, db2.getJournalMode());
+    }
+
+    @Test
+    public void testAsyncCommit() throws Exception {
+        db.setSafetyLevel(SqlJetSafetyLevel.ASYNC);
+        assertEquals(SqlJetSafetyLevel.ASYNC, db.getSafetyLevel());
+        for (int i = 0; i < 100; i++) {
+            insertRows(db, "row", 1);
+        }
+        assertEquals(110, countRows(db));
+        db2 = SqlJetDb.open(file, false);
+        assertEquals(110, countRows(db2));
+        // let background thread sync the log.
+        Thread.sleep(200);
+        insertRows(db, "row", 1);
+        db.checkpoint();
+        assertEquals(111, countRows(db));
+        db2.close();
+        db2 = null;
+        db.close();
+        db = null;
+        assertFalse(walFile.exists());
+
+        db = SqlJetDb.open(file, false);
+        assertEquals(111, countRows(db));
+    }
+
+    @Test
+    public void testAsyncCommitWithoutLog() throws SqlJetException {
+        db.setJournalMode(SqlJetPagerJournalMode.DELETE);
+        db.setSafetyLevel(SqlJetSafetyLevel.ASYNC);
+        for (int i = 0; i < 10; i++) {
+            insertRows(db, "row", 1);
+        }
+        assertEquals(20, countRows(db));
+        db.close();
+        db = SqlJetDb.open(file, false);
+        assertEquals(20, countRows(db));
+    }
+
+    @Test
+    public void testSyncOfCommits() throws Exception {
+        final AtomicInteger syncs = new AtomicInteger();
+        final SqlJetFileSystem fileSystem = new SqlJetFileSystem() {
+            @Override
+            public ISqlJetFile open(File path, SqlJetFileType type, Set<SqlJetFileOpenPermission> permissions)
+                    throws SqlJetException {
+                final ISqlJetFile opened = super.open(path, type, permissions);
+                if (type != SqlJetFileType.WAL) {
+                    return opened;
+                }
+                return (ISqlJetFile) Proxy.newProxyInstance(ISqlJetFile.class.getClassLoader(),
+                        new Class<?>[] { ISqlJetFile.class }, new InvocationHandler() {
+                            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                                if ("sync".equals(method.getName())) {
+                                    syncs.incrementAndGet();
+                                }
+                                try {
+                                    return method.invoke(opened, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            }
+                        });
+            }
+        };
+        db.close();
+        db = SqlJetDb.open(file, true, fileSystem);
+        db.setJournalMode(SqlJetPagerJournalMode.WAL);
+        final long interval = SqlJetWal.WAL_SYNC_INTERVAL_DEFAULT;
+
+        // NORMAL and FULL sync every commit.
+        for (SqlJetSafetyLevel level : new SqlJetSafetyLevel[] { SqlJetSafetyLevel.NORMAL, SqlJetSafetyLevel.FULL }) {
+            db.setSafetyLevel(level);
+            syncs.set(0);
+            for (int i = 0; i < 5; i++) {
+                insertRows(db, "row", 1);
+            }
+            assertTrue(syncs.get() >= 5);
+        }
+
+        // ASYNC syncs later and not more often than once per interval.
+        db.setSafetyLevel(SqlJetSafetyLevel.ASYNC);
+        syncs.set(0);
+        for (int i = 0; i < 20; i++) {
+            insertRows(db, "row", 1);
+        }
+        assertTrue(syncs.get() < 20);
+        Thread.sleep(interval * 5);
+        assertTrue(syncs.get() > 0);
+
+        // OFF never syncs.
+        db.setSafetyLevel(SqlJetSafetyLevel.OFF);
+        syncs.set(0);
+        for (int i = 0; i < 5; i++) {
+            insertRows(db, "row", 1);
+        }
+        Thread.sleep(interval * 3);
+        assertEquals(0, syncs.get());
+        assertEquals(45, countRows(db));
+    }
+
+    /**
+     * Connection of other process, it prints "READY" when its read
+     * transaction is started, and result: "OK" or error code.
+     */
+    public static class OtherProcess {
+        public static void main(String[] args) throws Exception {
+            final SqlJetDb db = SqlJetDb.open(new File(args[0]), true);
+            try {
+                if ("read".equals(args[1])) {
+                    db.beginTransaction(SqlJetTransactionMode.READ_ONLY);
+                    try {
+                        db.getTable("t").open().close();
+                        System.out.println("READY");
+                        new BufferedReader(new InputStreamReader(System.in)).readLine();
+                    } finally {
+                        db.commit();
+                    }
+                } else {
+                    insertRows(db, "row", 1);
+                }
+                System.out.println("OK");
+            } catch (SqlJetException e) {
+                System.out.println(e.getErrorCode());
+            } finally {
+                db.close();
+            }
+        }
+    }
+
+    private Process startOtherProcess(String action) throws IOException {
+        final File java = new File(new File(System.getProperty("java.home"), "bin"), "java");
+        final ProcessBuilder builder = new ProcessBuilder(java.getPath(), "-cp", System.getProperty("java.class.path"),
+                "-D" + SqlJetDefaultBusyHandler.SQLJET_BUSY_RETRIES_PROPERTY + "=1", OtherProcess.class.getName(),
+                file.getPath(), action);
+        builder.redirectErrorStream(true);
+        return builder.start();
+    }
+
+    private static String readResult(Process process, String expected) throws Exception {
+        final BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String last = null;
+        for (String line = output.readLine(); line != null; line = output.readLine()) {
+            last = line.trim();
+            if (last.equals(expected)) {
+                return last;
+            }
+        }
+        process.waitFor();
+        return last;
+    }
+
+    private String runOtherProcess(String action) throws Exception {
+        return readResult(startOtherProcess(action), "OK");
+    }
+
+    @Test(timeout = 60000)
+    public void testOtherProcessIsLockedOut() throws Exception {
+        assertEquals(SqlJetErrorCode.BUSY.name(), runOtherProcess("insert"));
+        assertEquals(10, countRows(db));
+
+        db.close();
+        db = null;
+        assertFalse(walFile.exists());
+        assertEquals("OK", runOtherProcess("insert"));
+
+        db = SqlJetDb.open(file, true);
+        assertEquals(11, countRows(db));
+    }
+
+    @Test(timeout = 60000)
+    public void testLogIsRefusedWhileOtherProcessHoldsLock() throws Exception {
+        db.close();
+        db = null;
+
+        final Process reader = startOtherProcess("read");
+        try {
+            assertEquals("READY", readResult(reader, "READY"));
+            db = SqlJetDb.open(file, true);
+            db.setJournalMode(SqlJetPagerJournalMode.WAL);
+            try {
+                countRows(db);
+                fail("Log is opened while other process holds lock");
+            } catch (SqlJetException e) {
+                assertEquals(SqlJetErrorCode.BUSY, e.getErrorCode());
+            }
+            assertFalse(walFile.exists());
+        } finally {
+            reader.getOutputStream().write('\n');
+            reader.getOutputStream().flush();
+        }
+        assertEquals("OK", readResult(reader, "OK"));
+        reader.waitFor();
+
+        insertRows(db, "row", 1);
+        assertTrue(walFile.exists());
+        assertEquals(11, countRows(db));
+    }
+
+}
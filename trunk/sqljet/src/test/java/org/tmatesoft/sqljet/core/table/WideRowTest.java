@@ -0,0 +1,162 @@
+/**
+ * WideRowTest.java
+ * Copyright (C) 2009-2013 TMate Software Ltd
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 2 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For information on how to redistribute this software under
+ * the terms of a license other than GNU General Public License
+ * contact TMate Software at support@sqljet.com
+ */
+package org.tmatesoft.sqljet.core.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.sqljet.core.AbstractNewDbTest;
+import org.tmatesoft.sqljet.core.SqlJetErrorCode;
+import org.tmatesoft.sqljet.core.SqlJetException;
+
+/**
+ * @author TMate Software Ltd.
+ * @author Sergey Scherbina (sergey.scherbina@gmail.com)
+ *
+ */
+public class WideRowTest extends AbstractNewDbTest {
+
+    // header of such row doesn't fit in page.
+    private static final int COLUMNS = 1500;
+    private static final int ROWS = 20;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        db.runWriteTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final StringBuilder sql = new StringBuilder("create table t(");
+                for (int i = 0; i < COLUMNS; i++) {
+                    sql.append(i > 0 ? ", c" : "c").append(i);
+                }
+                db.createTable(sql.append(")").toString());
+                final ISqlJetTable t = db.getTable("t");
+                final Object[] values = new Object[COLUMNS];
+                for (int row = 0; row < ROWS; row++) {
+                    for (int i = 0; i < COLUMNS; i++) {
+                        values[i] = value(row, i);
+                    }
+                    t.insert(values);
+                }
+                return null;
+            }
+        });
+    }
+
+    private static Object value(int row, int column) {
+        switch (column % 3) {
+        case 0:
+            return Long.valueOf(row * column);
+        case 1:
+            return "r" + row + "c" + column;
+        default:
+            return null;
+        }
+    }
+
+    @Test
+    public void testReadColumns() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    int row = 0;
+                    while (!c.eof()) {
+                        assertEquals(value(row, COLUMNS - 2), c.getValue(COLUMNS - 2));
+                        assertEquals(value(row, 3), c.getValue("c3"));
+                        assertEquals(value(row, 7), c.getString(7));
+                        assertNull(c.getValue(5));
+                        assertEquals(COLUMNS, c.getFieldsCount());
+                        final Object[] values = c.getRowValues();
+                        assertEquals(COLUMNS, values.length);
+                        for (int i = 0; i < COLUMNS; i += 97) {
+                            assertEquals(value(row, i), values[i]);
+                        }
+                        row++;
+                        c.next();
+                    }
+                    assertEquals(ROWS, row);
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testProjection() throws SqlJetException {
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    c.setProjection("c1", "c1200");
+                    int row = 0;
+                    while (!c.eof()) {
+                        final Object[] values = c.getRowValues();
+                        assertEquals(COLUMNS, values.length);
+                        assertEquals(value(row, 1), values[1]);
+                        assertEquals(value(row, 1200), values[1200]);
+                        assertNull(values[0]);
+                        assertNull(values[3]);
+                        // other fields still can be read.
+                        assertEquals(value(row, 3), c.getValue(3));
+                        row++;
+                        c.next();
+                    }
+                    assertEquals(ROWS, row);
+                    c.setProjection();
+                    c.first();
+                    assertEquals(value(0, 3), c.getRowValues()[3]);
+                    try {
+                        c.setProjection("c1", "x");
+                        fail();
+                    } catch (SqlJetException e) {
+                        assertEquals(SqlJetErrorCode.MISUSE, e.getErrorCode());
+                    }
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testAddedColumn() throws SqlJetException {
+        db.alterTable("alter table t add column x");
+        db.runReadTransaction(new ISqlJetTransaction() {
+            public Object run(SqlJetDb db) throws SqlJetException {
+                final ISqlJetCursor c = db.getTable("t").open();
+                try {
+                    c.setProjection("c0", "x");
+                    assertNull(c.getValue("x"));
+                    assertEquals(COLUMNS + 1, c.getRowValues().length);
+                    assertEquals(COLUMNS, c.getFieldsCount());
+                } finally {
+                    c.close();
+                }
+                return null;
+            }
+        });
+    }
+
+}